@@ -41,7 +41,7 @@ if %ERRORLEVEL% EQU 0 (
     echo.
     
     :: Executer depuis la racine du projet pour les ressources
-    java -cp "%BIN_DIR%" Main
+    java -cp "%BIN_DIR%" Main %*
 ) else (
     del sources.txt 2>nul
     echo.
@@ -41,7 +41,7 @@ if [ $? -eq 0 ]; then
     
     # Exécuter depuis la racine du projet pour les ressources
     cd "$PROJECT_DIR"
-    java -cp "$BIN_DIR" Main
+    java -cp "$BIN_DIR" Main "$@"
 else
     echo "❌ Erreur de compilation !"
     exit 1
@@ -11,6 +11,41 @@ import javax.swing.SwingUtilities;
 public class Main {
 
     public static void main(String[] args) {
+        // Serveur dédié : aucune classe Swing/AWT ne doit être chargée
+        if (args.length > 0 && "--server".equals(args[0])) {
+            network.DedicatedServer.main(args);
+            return;
+        }
+        if (args.length > 0 && "--matchmaker".equals(args[0])) {
+            network.Matchmaker.main(args);
+            return;
+        }
+
+        // Émulation d'une liaison dégradée pour les parties en réseau
+        if (!configureLinkEmulation(args)) {
+            System.exit(1);
+        }
+
+        // Partie pair à pair en réseau local, sans serveur (network.PeerMatch)
+        network.PeerMatch peerMatch = null;
+        if (args.length > 0 && "--p2p".equals(args[0])) {
+            try {
+                peerMatch = network.PeerMatch.fromArgs(args);
+            } catch (IllegalArgumentException | java.net.SocketException e) {
+                System.err.println("[ROLLBACK] " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        network.PeerMatch match = peerMatch;
+
+        // Capture des datagrammes pour tools.CaptureReplay
+        for (int i = 0; i + 1 < args.length; i++) {
+            if ("--capture".equals(args[i])) {
+                network.GameClient.setDefaultCapture(java.nio.file.Path.of(args[i + 1]));
+                System.out.println("[CAPTURE] Les parties en réseau seront capturées dans " + args[i + 1]);
+            }
+        }
+
         // Optimisations graphiques Java2D
         System.setProperty("sun.java2d.opengl", "true");
         System.setProperty("sun.java2d.d3d", "true");
@@ -33,6 +68,49 @@ public class Main {
 
             GameEngine game = new GameEngine();
             game.start();
+            if (match != null) {
+                game.startPeerMatch(match);
+            }
         });
     }
+
+    /**
+     * Lit les options --link "profil" (les deux sens), --link-up, --link-down
+     * et --link-seed (voir network.LinkProfile pour le format)
+     *
+     * @return false si une option est invalide
+     */
+    private static boolean configureLinkEmulation(String[] args) {
+        network.LinkProfile up = null;
+        network.LinkProfile down = null;
+        long seed = 1;
+        try {
+            for (int i = 0; i + 1 < args.length; i++) {
+                switch (args[i]) {
+                    case "--link":
+                        up = network.LinkProfile.parse(args[++i]);
+                        down = network.LinkProfile.parse(args[i]);
+                        break;
+                    case "--link-up":
+                        up = network.LinkProfile.parse(args[++i]);
+                        break;
+                    case "--link-down":
+                        down = network.LinkProfile.parse(args[++i]);
+                        break;
+                    case "--link-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("[LINK] " + e.getMessage());
+            return false;
+        }
+        if (up != null || down != null) {
+            network.GameClient.setDefaultLinkEmulation(up, down, seed);
+            System.out.println("[LINK] Liaison émulée - montée: " + (up != null ? up : "parfaite")
+                    + " / descente: " + (down != null ? down : "parfaite") + " (graine " + seed + ")");
+        }
+        return true;
+    }
 }
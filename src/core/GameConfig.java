@@ -15,6 +15,7 @@ public final class GameConfig {
     public static final String GAME_VERSION = "v2.0";
     public static final int TARGET_FPS = 60;
     public static final int FRAME_TIME = 1000 / TARGET_FPS; // ~16ms
+    public static final int TICK_RATE = 60;          // Pas de simulation par seconde (GameLoop, exact)
 
     // === GAMEPLAY ===
     public static final int GROUND_Y = 580;           // Position du sol
@@ -68,7 +69,8 @@ public final class GameConfig {
     public enum GameMode {
         SOLO,           // Joueur seul
         LOCAL,          // Multijoueur local (même écran)
-        NETWORK         // Multijoueur en réseau
+        NETWORK,        // Multijoueur en réseau
+        PEER_TO_PEER    // Multijoueur en réseau local, pair à pair (Main --p2p)
     }
 
     private GameConfig() {
@@ -71,6 +71,11 @@ public class GameEngine {
 
         switch (newState) {
             case MENU:
+                // Quitter une partie pair à pair la termine
+                if (gameMode == GameConfig.GameMode.PEER_TO_PEER) {
+                    gamePanel.endPeerMatch();
+                    setGameMode(GameConfig.GameMode.SOLO);
+                }
                 cardLayout.show(mainContainer, "MENU");
                 menuPanel.requestFocusInWindow();
                 break;
@@ -123,6 +128,8 @@ public class GameEngine {
 
     public void exitGame() {
         System.out.println("👋 Merci d'avoir joué à VOID RUNNER !");
+        gamePanel.stopGame();
+        gamePanel.endPeerMatch();
         System.exit(0);
     }
 
@@ -154,6 +161,23 @@ public class GameEngine {
         return gameMode == GameConfig.GameMode.NETWORK;
     }
 
+    // === Partie pair à pair ===
+
+    /**
+     * Lance une partie pair à pair (Main --p2p) : le joueur local joue avec
+     * les touches du joueur 1 ou le clic
+     */
+    public void startPeerMatch(network.PeerMatch match) {
+        int localId = match.getLocalId();
+        PlayerConfig local = new PlayerConfig(localId, "Joueur " + localId,
+                PlayerConfig.PLAYER_COLORS[(localId - 1) % PlayerConfig.PLAYER_COLORS.length],
+                PlayerConfig.KEY_SCHEMES[0][0], PlayerConfig.KEY_SCHEMES[0][1]);
+        playerConfigs = new ArrayList<>(List.of(local));
+        setGameMode(GameConfig.GameMode.PEER_TO_PEER);
+        gamePanel.startPeerMatch(match, local);
+        setState(GameState.PLAYING);
+    }
+
     // === Gestion du ping (pour le mode réseau) ===
 
     public void setPing(int ping) {
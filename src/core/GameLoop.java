@@ -0,0 +1,230 @@
+package core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+
+/**
+ * Boucle de jeu à pas fixe, cadencée par un thread dédié
+ *
+ * La simulation avance d'exactement GameConfig.TICK_RATE pas par seconde,
+ * quelle que soit la fréquence d'affichage : le temps écoulé (nanoTime)
+ * s'accumule, et chaque image exécute autant de pas qu'il en contient. Le
+ * reste, fraction de pas, sert au rendu pour interpoler entre les deux
+ * derniers états (0 = état précédent, 1 = état courant).
+ *
+ * Les images sont cadencées à la fréquence de l'écran. Pas et rendu d'une
+ * image s'exécutent ensemble sur l'EDT (invokeAndWait) : l'état du jeu
+ * reste confiné au thread de Swing, comme les inputs et les événements
+ * réseau, et le thread de la boucle ne fait que mesurer et attendre.
+ *
+ * Si une image est trop lente (chargement, GC, fenêtre déplacée), les pas
+ * en retard sont rattrapés dans la limite de MAX_TICKS_PER_FRAME ; au-delà
+ * ils sont abandonnés, pour que la boucle ne s'enfonce pas à rattraper un
+ * retard qui grandit (spiral of death). Le jeu ralentit au lieu de geler.
+ */
+public final class GameLoop {
+
+    /**
+     * Partie animée par la boucle (méthodes appelées sur l'EDT)
+     */
+    public interface Game {
+
+        /**
+         * Avance la simulation d'un pas
+         */
+        void step();
+
+        /**
+         * Dessine l'image courante
+         *
+         * @param interpolation position entre l'état précédent (0) et
+         * l'état courant (1)
+         */
+        void render(double interpolation);
+    }
+
+    /**
+     * Pas rattrapés au plus par image
+     */
+    static final int MAX_TICKS_PER_FRAME = 5;
+
+    // Fin de l'attente en attente active : parkNanos peut se réveiller tard
+    private static final long SPIN_NANOS = 1_000_000L;
+
+    private final Game game;
+    private final long tickNanos;
+
+    // Thread en cours ; un thread remplacé (stop puis start) s'arrête seul
+    private volatile Thread thread;
+
+    // Mesures (écrites par le thread de la boucle)
+    private volatile long ticks;
+    private volatile long frames;
+    private volatile long catchUpTicks;
+    private volatile long droppedTicks;
+    private final WindowedHistogram frameInterval = new WindowedHistogram();
+    private final WindowedHistogram frameWork = new WindowedHistogram();
+
+    public GameLoop(int tickRate, Game game) {
+        this.game = game;
+        this.tickNanos = 1_000_000_000L / tickRate;
+    }
+
+    // ==================== CYCLE DE VIE ====================
+    /**
+     * Lance la boucle si elle ne tourne pas déjà
+     *
+     * @param frameRate images par seconde (fréquence de l'écran)
+     */
+    public synchronized void start(int frameRate) {
+        if (thread != null) {
+            return;
+        }
+        long frameNanos = 1_000_000_000L / Math.max(1, frameRate);
+        thread = new Thread(() -> run(frameNanos), "Game-Loop");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("[LOOP] Boucle démarrée (" + (1_000_000_000L / tickNanos) + " pas/s, "
+                + frameRate + " images/s)");
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        thread = null;
+        System.out.println("[LOOP] Boucle arrêtée: " + ticks + " pas, " + frames + " images, "
+                + catchUpTicks + " rattrapés, " + droppedTicks + " abandonnés");
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    private boolean isCurrent() {
+        return thread == Thread.currentThread();
+    }
+
+    // ==================== BOUCLE ====================
+    private void run(long frameNanos) {
+        long previous = System.nanoTime();
+        long nextFrame = previous;
+        long accumulator = 0;
+
+        while (isCurrent()) {
+            long now = System.nanoTime();
+            if (frames > 0) {
+                frameInterval.record((now - previous) / 1000);
+            }
+            accumulator += now - previous;
+            previous = now;
+
+            int steps = (int) (accumulator / tickNanos);
+            accumulator -= steps * tickNanos;
+            if (steps > MAX_TICKS_PER_FRAME) {
+                droppedTicks += steps - MAX_TICKS_PER_FRAME;
+                steps = MAX_TICKS_PER_FRAME;
+            }
+            if (steps > 1) {
+                catchUpTicks += steps - 1;
+            }
+            double interpolation = (double) accumulator / tickNanos;
+
+            if (!runFrame(steps, interpolation)) {
+                return;
+            }
+            ticks += steps;
+            frames++;
+            frameWork.record((System.nanoTime() - now) / 1000);
+
+            // Image suivante ; après un retard de plus d'une image, repartir
+            // de maintenant au lieu d'enchaîner les images sans attendre
+            nextFrame += frameNanos;
+            long end = System.nanoTime();
+            if (end - nextFrame > frameNanos) {
+                nextFrame = end;
+            }
+            waitUntil(nextFrame);
+        }
+    }
+
+    /**
+     * Pas et rendu d'une image, sur l'EDT
+     *
+     * @return false si la boucle a été arrêtée pendant l'attente
+     */
+    private boolean runFrame(int steps, double interpolation) {
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                for (int i = 0; i < steps; i++) {
+                    game.step();
+                }
+                game.render(interpolation);
+            });
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        } catch (InvocationTargetException e) {
+            // Comme un Timer Swing : l'image est perdue, la boucle continue
+            System.err.println("[LOOP] Erreur dans l'image: " + e.getCause());
+            return isCurrent();
+        }
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while (isCurrent() && (remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // ==================== MESURES ====================
+    /**
+     * Pas de simulation exécutés
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Images dessinées
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Pas exécutés en plus du premier dans une même image (retard rattrapé)
+     */
+    public long getCatchUpTicks() {
+        return catchUpTicks;
+    }
+
+    /**
+     * Pas abandonnés au-delà de MAX_TICKS_PER_FRAME (le jeu a ralenti)
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Intervalle entre deux images, en microsecondes
+     */
+    public WindowedHistogram.Summary getFrameInterval() {
+        return frameInterval.summarize();
+    }
+
+    /**
+     * Durée d'une image sur l'EDT (pas et rendu, attente de l'EDT comprise),
+     * en microsecondes
+     */
+    public WindowedHistogram.Summary getFrameWork() {
+        return frameWork.summarize();
+    }
+}
@@ -0,0 +1,171 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme glissant sans verrou (latences, intervalles)
+ *
+ * Les valeurs (entiers positifs, en microsecondes pour les durées) sont
+ * rangées dans des classes log-linéaires : 8 classes par puissance de deux,
+ * soit une précision d'environ 12 %. La fenêtre est découpée en SLOTS
+ * tranches d'une seconde ; une tranche expirée est vidée par le premier
+ * enregistrement qui la réutilise. Les enregistrements faits pendant ce
+ * vidage peuvent être perdus : le résultat est une mesure, pas une
+ * comptabilité exacte.
+ *
+ * Écriture : quelques opérations atomiques, sans allocation. Lecture
+ * (summarize) : un tableau temporaire, à appeler quelques fois par seconde au
+ * plus (overlay, journaux).
+ */
+public final class WindowedHistogram {
+
+    /**
+     * Tranches de la fenêtre (la dernière est en cours de remplissage)
+     */
+    public static final int SLOTS = 10;
+    public static final long SLOT_MILLIS = 1000;
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 26;   // Valeurs plafonnées à 2^27 - 1 (134 s en µs)
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BINS = SUB_COUNT + (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT;
+
+    // Tranche i : classes [i * BINS, (i + 1) * BINS)
+    private final AtomicLongArray bins = new AtomicLongArray(SLOTS * BINS);
+    private final AtomicLongArray epochs = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray sums = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray maxima = new AtomicLongArray(SLOTS);
+
+    // Origine des tranches (nanoTime peut être négatif)
+    private final long origin = System.nanoTime();
+
+    /**
+     * Résumé de la fenêtre courante
+     *
+     * @param count nombre de valeurs
+     * @param mean moyenne exacte
+     * @param p50 médiane (à la précision des classes)
+     * @param p90 90e centile
+     * @param p99 99e centile
+     * @param max valeur maximale exacte
+     */
+    public record Summary(long count, double mean, long p50, long p90, long p99, long max) {
+
+        public static final Summary EMPTY = new Summary(0, 0, 0, 0, 0, 0);
+    }
+
+    public WindowedHistogram() {
+        for (int i = 0; i < SLOTS; i++) {
+            epochs.set(i, -1);
+        }
+    }
+
+    // ==================== ÉCRITURE ====================
+    public void record(long value) {
+        value = Math.max(0, Math.min(MAX_VALUE, value));
+        int slot = currentSlot();
+        if (slot < 0) {
+            return; // Tranche en cours de vidage
+        }
+        bins.incrementAndGet(slot * BINS + binOf(value));
+        counts.incrementAndGet(slot);
+        sums.addAndGet(slot, value);
+        long max;
+        while (value > (max = maxima.get(slot)) && !maxima.compareAndSet(slot, max, value)) {
+            // Réessayer : un autre thread a relevé le maximum
+        }
+    }
+
+    /**
+     * Tranche de la seconde courante, vidée si elle contient une ancienne
+     * seconde
+     *
+     * @return son indice, ou -1 si un autre thread est en train de la vider
+     */
+    private int currentSlot() {
+        long epoch = currentEpoch();
+        int slot = (int) (epoch % SLOTS);
+        long current = epochs.get(slot);
+        if (current == epoch) {
+            return slot;
+        }
+        if (current == Long.MIN_VALUE || current > epoch || !epochs.compareAndSet(slot, current, Long.MIN_VALUE)) {
+            return epochs.get(slot) == epoch ? slot : -1;
+        }
+        for (int i = slot * BINS; i < (slot + 1) * BINS; i++) {
+            bins.set(i, 0);
+        }
+        counts.set(slot, 0);
+        sums.set(slot, 0);
+        maxima.set(slot, 0);
+        epochs.set(slot, epoch);
+        return slot;
+    }
+
+    private long currentEpoch() {
+        return (System.nanoTime() - origin) / 1_000_000 / SLOT_MILLIS;
+    }
+
+    // ==================== LECTURE ====================
+    public Summary summarize() {
+        long epoch = currentEpoch();
+        long[] merged = new long[BINS];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long slotEpoch = epochs.get(slot);
+            if (slotEpoch < 0 || epoch - slotEpoch >= SLOTS) {
+                continue; // Vide ou expirée
+            }
+            for (int b = 0; b < BINS; b++) {
+                merged[b] += bins.get(slot * BINS + b);
+            }
+            count += counts.get(slot);
+            sum += sums.get(slot);
+            max = Math.max(max, maxima.get(slot));
+        }
+        if (count == 0) {
+            return Summary.EMPTY;
+        }
+        return new Summary(count, (double) sum / count, quantile(merged, count, 0.50, max),
+                quantile(merged, count, 0.90, max), quantile(merged, count, 0.99, max), max);
+    }
+
+    private static long quantile(long[] merged, long count, double q, long max) {
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int b = 0; b < BINS; b++) {
+            seen += merged[b];
+            if (seen >= rank) {
+                return Math.min(max, valueOf(b));
+            }
+        }
+        return max;
+    }
+
+    // ==================== CLASSES ====================
+    static int binOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Valeur représentative d'une classe (son milieu)
+     */
+    static long valueOf(int bin) {
+        if (bin < SUB_COUNT) {
+            return bin;
+        }
+        int exponent = (bin - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        int sub = (bin - SUB_COUNT) % SUB_COUNT;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_COUNT + sub) * width) + (width - 1) / 2;
+    }
+}
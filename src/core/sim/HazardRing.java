@@ -0,0 +1,131 @@
+package core.sim;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Dangers d'un même genre rangés par abscisse croissante, dans un tampon
+ * circulaire
+ *
+ * Tous les dangers apparaissent au bord droit de l'écran et défilent à la
+ * même vitesse : l'ordre d'apparition est aussi l'ordre des abscisses, et
+ * il ne change jamais. Un nouveau danger s'ajoute donc en queue, et comme
+ * les dangers sont espacés de bien plus que leur différence de largeur, ils
+ * quittent l'écran dans le même ordre et se retirent en tête. Les deux sont
+ * en O(1), sans allocation une fois le tableau dimensionné.
+ *
+ * L'ordre permet de trouver par dichotomie les seuls dangers qui touchent un
+ * intervalle d'abscisses ({@link #firstReaching}) : une collision ne coûte
+ * plus un parcours de tous les dangers à l'écran, quelle que soit leur
+ * densité.
+ *
+ * Vue en lecture seule comme une List (get, size, itération), rangée du plus
+ * à gauche au plus à droite.
+ */
+public final class HazardRing<T extends SimHazard> extends AbstractList<T> implements RandomAccess {
+
+    private SimHazard[] items = new SimHazard[16]; // Capacité : puissance de deux
+    private int head;
+    private int size;
+
+    // Plus grande largeur rangée depuis le dernier clear : borne la distance
+    // entre l'abscisse d'un danger et son bord droit
+    private int maxWidth;
+
+    /**
+     * Ajoute un danger à droite de tous les autres
+     *
+     * @throws IllegalArgumentException si le danger est à gauche du dernier
+     * (l'ordre des abscisses serait perdu)
+     */
+    public void addLast(T hazard) {
+        if (size > 0 && hazard.getX() < get(size - 1).getX()) {
+            throw new IllegalArgumentException("Danger hors d'ordre: x=" + hazard.getX() + " après x="
+                    + get(size - 1).getX());
+        }
+        if (size == items.length) {
+            grow();
+        }
+        items[(head + size) & (items.length - 1)] = hazard;
+        size++;
+        maxWidth = Math.max(maxWidth, hazard.getWidth());
+        modCount++;
+    }
+
+    /**
+     * Retire le danger le plus à gauche
+     */
+    public T removeFirst() {
+        if (size == 0) {
+            throw new IllegalStateException("Aucun danger");
+        }
+        T first = get(0);
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        size--;
+        modCount++;
+        return first;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(items, null);
+        head = 0;
+        size = 0;
+        maxWidth = 0;
+        modCount++;
+    }
+
+    private void grow() {
+        SimHazard[] larger = new SimHazard[items.length * 2];
+        for (int i = 0; i < size; i++) {
+            larger[i] = items[(head + i) & (items.length - 1)];
+        }
+        items = larger;
+        head = 0;
+    }
+
+    // ==================== RECHERCHE ====================
+    /**
+     * Rang du premier danger dont l'abscisse dépasse strictement x (size si
+     * aucun), par dichotomie
+     */
+    public int indexAfter(double x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (get(mid).getX() <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Rang à partir duquel parcourir les dangers qui peuvent atteindre
+     * l'abscisse left : ceux d'avant finissent tous avant left. Le parcours
+     * s'arrête au premier danger qui commence après le bord droit cherché.
+     */
+    public int firstReaching(double left) {
+        return indexAfter(left - maxWidth - 1);
+    }
+
+    // ==================== LISTE ====================
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Rang " + index + ", taille " + size);
+        }
+        return (T) items[(head + index) & (items.length - 1)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
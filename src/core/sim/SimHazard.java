@@ -0,0 +1,50 @@
+package core.sim;
+
+import core.GameConfig;
+
+/**
+ * Danger de simulation (trou ou obstacle) : numéro, abscisse et largeur,
+ * seule partie utile au défilement et au rangement dans un HazardRing
+ */
+public abstract class SimHazard {
+
+    private final int id;
+    private double x;
+    private final int width;
+
+    /**
+     * @param id numéro d'apparition dans la manche (-1 si inconnu)
+     */
+    protected SimHazard(int id, double x, int width) {
+        this.id = id;
+        this.x = x;
+        this.width = width;
+    }
+
+    /**
+     * Déplacement d'un tick vers la gauche
+     */
+    public void update() {
+        x -= GameConfig.GAME_SPEED;
+    }
+
+    public boolean isOffScreen() {
+        return x + width < 0;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public void setX(double x) {
+        this.x = x;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+}
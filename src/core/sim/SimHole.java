@@ -0,0 +1,18 @@
+package core.sim;
+
+/**
+ * Trou de simulation pure (position et largeur uniquement)
+ */
+public class SimHole extends SimHazard {
+
+    public SimHole(double x, int width) {
+        this(-1, x, width);
+    }
+
+    /**
+     * @param id numéro d'apparition dans la manche (-1 si inconnu)
+     */
+    public SimHole(int id, double x, int width) {
+        super(id, x, width);
+    }
+}
@@ -0,0 +1,41 @@
+package core.sim;
+
+/**
+ * Obstacle de simulation pure (boîte englobante uniquement)
+ */
+public class SimObstacle extends SimHazard {
+
+    private final double y;
+    private final int height;
+
+    public SimObstacle(double x, double y, int width, int height) {
+        this(-1, x, y, width, height);
+    }
+
+    /**
+     * @param id numéro d'apparition dans la manche (-1 si inconnu)
+     */
+    public SimObstacle(int id, double x, double y, int width, int height) {
+        super(id, x, width);
+        this.y = y;
+        this.height = height;
+    }
+
+    /**
+     * Test d'intersection avec un rectangle entier, équivalent à
+     * Rectangle.intersects mais sans allocation
+     */
+    public boolean intersects(int rx, int ry, int rw, int rh) {
+        int ox = (int) getX();
+        int oy = (int) y;
+        return rx < ox + getWidth() && rx + rw > ox && ry < oy + height && ry + rh > oy;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
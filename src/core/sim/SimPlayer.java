@@ -0,0 +1,224 @@
+package core.sim;
+
+import core.GameConfig;
+import entity.Gravity;
+
+/**
+ * Joueur de simulation pure (sans rendu) - utilisé par le serveur et toute
+ * simulation headless.
+ *
+ * Ne contient que l'état nécessaire à la physique : pas de particules, de
+ * traînée, de sprite ni de couleur. Les effets visuels sont recréés côté
+ * client à partir des changements d'état (gravité inversée, mort...).
+ */
+public class SimPlayer {
+
+    // Identification
+    private final int playerId;
+
+    // Position et mouvement
+    private double x;
+    private double y;
+    private double speedX;
+    private double speedY;
+
+    // État
+    private boolean gravityUp;
+    private boolean alive;
+    private boolean grounded;
+    private boolean falling;
+
+    // Score
+    private int score;
+
+    // Constantes (identiques à factory.entity.Player)
+    private static final double GRAVITY_FORCE = GameConfig.GRAVITY_FORCE * 1.5;
+    private static final double HORIZONTAL_IMPULSE = GameConfig.HORIZONTAL_IMPULSE;
+    private static final double MAX_SPEED_Y = GameConfig.MAX_FALL_SPEED * 1.3;
+    private static final double FRICTION = 0.92;
+    private static final double MAX_X = GameConfig.WINDOW_WIDTH - GameConfig.PLAYER_WIDTH;
+
+    public SimPlayer(int playerId) {
+        this.playerId = playerId;
+        reset();
+    }
+
+    /**
+     * Réinitialise le joueur
+     */
+    public void reset() {
+        this.x = GameConfig.PLAYER_START_X;
+        this.y = GameConfig.GROUND_Y - GameConfig.PLAYER_HEIGHT;
+        this.speedX = 0;
+        this.speedY = 0;
+        this.gravityUp = false;
+        this.alive = true;
+        this.grounded = true;
+        this.falling = false;
+        this.score = 0;
+    }
+
+    /**
+     * Met à jour la physique du joueur (un tick)
+     */
+    public void update() {
+        if (!alive) {
+            // La chute continue après la mort (dans un trou)
+            if (falling) {
+                applyGravity();
+            }
+            return;
+        }
+
+        if (!grounded || falling) {
+            applyGravity();
+        } else {
+            speedY = 0;
+        }
+
+        // Mouvement horizontal avec friction
+        x += speedX;
+        speedX *= FRICTION;
+        if (Math.abs(speedX) < 0.1) {
+            speedX = 0;
+        }
+        x = Math.max(0, Math.min(MAX_X, x));
+    }
+
+    private void applyGravity() {
+        speedY += gravityUp ? -GRAVITY_FORCE : GRAVITY_FORCE;
+        speedY = Math.max(-MAX_SPEED_Y, Math.min(MAX_SPEED_Y, speedY));
+        y += speedY;
+    }
+
+    /**
+     * Change la gravité du joueur (uniquement s'il est posé et vivant)
+     */
+    public void switchGravity() {
+        if (alive && grounded && !falling) {
+            gravityUp = !gravityUp;
+            speedY = (gravityUp ? -GRAVITY_FORCE : GRAVITY_FORCE) * 8;
+            speedX = HORIZONTAL_IMPULSE;
+            grounded = false;
+        }
+    }
+
+    public void die() {
+        alive = false;
+    }
+
+    // === SAUVEGARDE (rollback) ===
+    /**
+     * Copie l'état du joueur à l'indice i de la sauvegarde
+     */
+    void save(SimState s, int i) {
+        s.playerX[i] = x;
+        s.playerY[i] = y;
+        s.playerSpeedX[i] = speedX;
+        s.playerSpeedY[i] = speedY;
+        s.playerFlags[i] = (gravityUp ? 1 : 0) | (alive ? 2 : 0) | (grounded ? 4 : 0) | (falling ? 8 : 0);
+        s.playerScore[i] = score;
+    }
+
+    void restore(SimState s, int i) {
+        x = s.playerX[i];
+        y = s.playerY[i];
+        speedX = s.playerSpeedX[i];
+        speedY = s.playerSpeedY[i];
+        int flags = s.playerFlags[i];
+        gravityUp = (flags & 1) != 0;
+        alive = (flags & 2) != 0;
+        grounded = (flags & 4) != 0;
+        falling = (flags & 8) != 0;
+        score = s.playerScore[i];
+    }
+
+    // === GETTERS & SETTERS ===
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public void setX(double x) {
+        this.x = x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public void setY(double y) {
+        this.y = y;
+    }
+
+    public int getWidth() {
+        return GameConfig.PLAYER_WIDTH;
+    }
+
+    public int getHeight() {
+        return GameConfig.PLAYER_HEIGHT;
+    }
+
+    public double getVelocityY() {
+        return speedY;
+    }
+
+    public void setVelocityY(double vy) {
+        this.speedY = vy;
+    }
+
+    public Gravity getGravity() {
+        return gravityUp ? Gravity.UP : Gravity.DOWN;
+    }
+
+    public void setGravity(Gravity gravity) {
+        this.gravityUp = gravity == Gravity.UP;
+    }
+
+    public boolean isGravityUp() {
+        return gravityUp;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    public void setAlive(boolean alive) {
+        this.alive = alive;
+    }
+
+    public boolean isGrounded() {
+        return grounded;
+    }
+
+    public void setGrounded(boolean grounded) {
+        this.grounded = grounded;
+        if (grounded) {
+            speedY = 0;
+            speedX *= 0.5;
+        }
+    }
+
+    public boolean isFalling() {
+        return falling;
+    }
+
+    public void setFalling(boolean falling) {
+        this.falling = falling;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public void addScore(int points) {
+        this.score += points;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+}
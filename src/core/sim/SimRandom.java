@@ -0,0 +1,78 @@
+package core.sim;
+
+/**
+ * Générateur pseudo-aléatoire de la simulation
+ *
+ * Même algorithme que java.util.Random (congruence linéaire sur 48 bits,
+ * mêmes méthodes nextInt, nextBoolean et nextFloat) : une graine donne
+ * exactement la même suite de trous et d'obstacles qu'avant. Contrairement à
+ * Random, l'état tient dans un long lisible et réinscriptible, ce qui permet
+ * de sauvegarder et de restaurer la simulation (rollback) sans sérialisation.
+ *
+ * Non synchronisé : une simulation n'est avancée que par un thread à la fois.
+ */
+public final class SimRandom {
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    public SimRandom(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Même brouillage de la graine que Random.setSeed
+     */
+    public void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * État interne (48 bits), pour une sauvegarde
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Reprend un état lu par getState (pas une graine)
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    private int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * Entier uniforme dans [0, bound[ (rejet des valeurs biaisées, comme
+     * Random.nextInt)
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound doit être positif: " + bound);
+        }
+        int r = next(31);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+            // Tirage rejeté : recommencer
+        }
+        return r;
+    }
+
+    public boolean nextBoolean() {
+        return next(1) != 0;
+    }
+
+    public float nextFloat() {
+        return next(24) / ((float) (1 << 24));
+    }
+}
@@ -0,0 +1,89 @@
+package core.sim;
+
+import java.util.Arrays;
+
+/**
+ * Sauvegarde complète d'une Simulation à un tick donné (voir
+ * Simulation.saveState et restoreState)
+ *
+ * Prévue pour être réutilisée à chaque tick : les tableaux ne grandissent
+ * que lorsqu'il y a plus de trous ou d'obstacles que jamais, une sauvegarde
+ * n'alloue donc rien en régime établi.
+ *
+ * Trous et obstacles ne changent que d'abscisse une fois créés : la
+ * sauvegarde garde une référence vers chacun et son abscisse, la restauration
+ * remet les mêmes objets dans leur HazardRing et leur rend leur position.
+ */
+public final class SimState {
+
+    // Simulation
+    long tick;
+    int frameCount;
+    int obstacleFrameCount;
+    int nextHazardId;
+    boolean finishLineActive;
+    double finishLineX;
+    int winnerId;
+    long randomState;
+    long hazardHash;
+    long worldHash;
+
+    // Joueurs (dans l'ordre de la liste de la simulation)
+    int playerCount;
+    double[] playerX = new double[4];
+    double[] playerY = new double[4];
+    double[] playerSpeedX = new double[4];
+    double[] playerSpeedY = new double[4];
+    int[] playerFlags = new int[4];
+    int[] playerScore = new int[4];
+
+    // Dangers
+    int holeCount;
+    SimHole[] holes = new SimHole[16];
+    double[] holeX = new double[16];
+    int obstacleCount;
+    SimObstacle[] obstacles = new SimObstacle[16];
+    double[] obstacleX = new double[16];
+
+    void ensurePlayers(int count) {
+        if (count > playerX.length) {
+            int size = Math.max(count, playerX.length * 2);
+            playerX = Arrays.copyOf(playerX, size);
+            playerY = Arrays.copyOf(playerY, size);
+            playerSpeedX = Arrays.copyOf(playerSpeedX, size);
+            playerSpeedY = Arrays.copyOf(playerSpeedY, size);
+            playerFlags = Arrays.copyOf(playerFlags, size);
+            playerScore = Arrays.copyOf(playerScore, size);
+        }
+    }
+
+    void ensureHoles(int count) {
+        if (count > holes.length) {
+            int size = Math.max(count, holes.length * 2);
+            holes = Arrays.copyOf(holes, size);
+            holeX = Arrays.copyOf(holeX, size);
+        }
+    }
+
+    void ensureObstacles(int count) {
+        if (count > obstacles.length) {
+            int size = Math.max(count, obstacles.length * 2);
+            obstacles = Arrays.copyOf(obstacles, size);
+            obstacleX = Arrays.copyOf(obstacleX, size);
+        }
+    }
+
+    /**
+     * Tick de la simulation au moment de la sauvegarde
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Empreinte du monde au moment de la sauvegarde
+     */
+    public long getWorldHash() {
+        return worldHash;
+    }
+}
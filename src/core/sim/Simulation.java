@@ -0,0 +1,580 @@
+package core.sim;
+
+import core.GameConfig;
+import entity.Gravity;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simulation d'une partie sans aucune dépendance graphique (ni Swing ni AWT).
+ *
+ * Seule source des règles du jeu (génération des trous et obstacles,
+ * collisions, score, ligne d'arrivée), partagée par tous ceux qui font
+ * tourner une partie : GamePanel en solo et en local, le serveur (Room), le
+ * mode pair à pair, les outils headless. Un appel à {@link #step(long)}
+ * avance la partie d'un tick avec les inputs de ce tick. Il n'alloue que
+ * lorsqu'un danger apparaît (un SimHole ou un SimObstacle, toutes les
+ * quelques dizaines de ticks) : ces objets ne sont pas recyclés, car les
+ * sauvegardes (SimState) gardent une référence vers eux
+ * (tools.SimulationBenchmark).
+ *
+ * Chaque tick se termine par le calcul de deux empreintes de l'état, pour
+ * détecter qu'une copie de la simulation diverge de celle du serveur :
+ * celle des dangers (trous et obstacles, qui ne dépendent que de la graine
+ * et du tick) et celle du monde entier (dangers, joueurs, ligne d'arrivée).
+ *
+ * L'état complet se sauvegarde et se restaure sans allocation
+ * ({@link #saveState} et {@link #restoreState}) : c'est ce qui permet au
+ * mode pair à pair (network.RollbackSession) de revenir quelques ticks en
+ * arrière quand un input arrive en retard, puis de resimuler.
+ *
+ * Chaque trou ou obstacle reçoit à son apparition un numéro, croissant dans
+ * la manche : c'est ce qui permet au serveur de ne transmettre qu'une fois
+ * chaque danger (network.Room, HAZARD_SPAWN), sa position se déduisant
+ * ensuite du tick.
+ *
+ * Trous et obstacles sont rangés par abscisse (HazardRing) : chaque joueur
+ * ne teste que les quelques dangers à sa hauteur, trouvés par dichotomie.
+ */
+public class Simulation {
+
+    // Règles
+    public static final int SCORE_TO_WIN = 5;
+    private static final int HOLE_MIN_WIDTH = 60;
+    private static final int HOLE_MAX_WIDTH = 120;
+
+    // Entités
+    private final List<SimPlayer> players = new ArrayList<>();
+    private final HazardRing<SimHole> holes = new HazardRing<>();
+    private final HazardRing<SimObstacle> obstacles = new HazardRing<>();
+
+    // Génération (déterministe à partir de la graine)
+    private final SimRandom random = new SimRandom(0);
+
+    // État
+    private long tick;
+    private int frameCount;
+    private int obstacleFrameCount;
+    private int nextHazardId;
+    private boolean finishLineActive;
+    private double finishLineX;
+    private int winnerId = -1;
+
+    // Empreintes du dernier tick
+    private long hazardHash;
+    private long worldHash;
+
+    /**
+     * Prépare une nouvelle partie avec la graine donnée. Les joueurs déjà
+     * présents sont conservés et remis à zéro.
+     */
+    public void reset(long seed) {
+        random.setSeed(seed);
+        for (SimPlayer p : players) {
+            p.reset();
+        }
+        holes.clear();
+        obstacles.clear();
+        tick = 0;
+        frameCount = 0;
+        obstacleFrameCount = 0;
+        nextHazardId = 0;
+        finishLineActive = false;
+        finishLineX = GameConfig.WINDOW_WIDTH + 200;
+        winnerId = -1;
+        updateHashes();
+    }
+
+    public SimPlayer addPlayer(int playerId) {
+        SimPlayer p = new SimPlayer(playerId);
+        players.add(p);
+        return p;
+    }
+
+    public void removePlayer(int playerId) {
+        players.removeIf(p -> p.getPlayerId() == playerId);
+    }
+
+    /**
+     * Rang d'un joueur dans getPlayers (bit de ses inputs pour step), -1 si
+     * absent
+     */
+    public int indexOf(int playerId) {
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).getPlayerId() == playerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public SimPlayer getPlayer(int playerId) {
+        int i = indexOf(playerId);
+        return i < 0 ? null : players.get(i);
+    }
+
+    /**
+     * Applique une inversion de gravité pour un joueur
+     */
+    public void switchGravity(int playerId) {
+        SimPlayer p = getPlayer(playerId);
+        if (p != null && p.isAlive()) {
+            p.switchGravity();
+        }
+    }
+
+    // ==================== TICK ====================
+    /**
+     * Avance la simulation d'un tick avec les inputs de ce tick
+     *
+     * @param gravitySwitches bit i : le joueur de rang i (getPlayers, indexOf)
+     * inverse sa gravité
+     */
+    public void step(long gravitySwitches) {
+        for (int i = 0; gravitySwitches != 0 && i < players.size(); i++, gravitySwitches >>>= 1) {
+            if ((gravitySwitches & 1) != 0) {
+                SimPlayer p = players.get(i);
+                if (p.isAlive()) {
+                    p.switchGravity();
+                }
+            }
+        }
+        step();
+    }
+
+    /**
+     * Avance la simulation d'un tick sans nouvel input (ceux appliqués
+     * entre-temps par switchGravity comptent pour ce tick). Sans effet une
+     * fois la partie terminée.
+     */
+    public void step() {
+        if (isFinished()) {
+            return;
+        }
+        tick++;
+
+        // Génération des trous
+        frameCount++;
+        if (frameCount % GameConfig.HOLE_SPAWN_INTERVAL == 0) {
+            int width = HOLE_MIN_WIDTH + random.nextInt(HOLE_MAX_WIDTH - HOLE_MIN_WIDTH + 1);
+            holes.addLast(new SimHole(nextHazardId++, GameConfig.WINDOW_WIDTH, width));
+        }
+
+        // Génération des obstacles
+        obstacleFrameCount++;
+        if (obstacleFrameCount % GameConfig.OBSTACLE_SPAWN_INTERVAL == 0) {
+            SimObstacle newObs = generateObstacle(nextHazardId, GameConfig.WINDOW_WIDTH);
+
+            // Vérifier la distance avec les trous : le premier trou au-delà de
+            // x - MIN_SPAWN_DISTANCE est le plus proche par la gauche
+            int near = holes.indexAfter(newObs.getX() - GameConfig.MIN_SPAWN_DISTANCE);
+            boolean tooClose = near < holes.size()
+                    && holes.get(near).getX() < newObs.getX() + GameConfig.MIN_SPAWN_DISTANCE;
+
+            if (!tooClose) {
+                obstacles.addLast(newObs);
+                nextHazardId++;
+            }
+        }
+
+        // Mise à jour des joueurs
+        for (int i = 0; i < players.size(); i++) {
+            SimPlayer p = players.get(i);
+            p.update();
+
+            // Joueur poussé hors de l'écran (à gauche)
+            if (p.isAlive() && p.getX() + p.getWidth() < 0) {
+                p.die();
+            }
+        }
+
+        // Mise à jour des trous (un point par trou franchi) ; ils sortent
+        // de l'écran dans l'ordre, par la tête
+        for (int i = 0; i < holes.size(); i++) {
+            holes.get(i).update();
+        }
+        while (!holes.isEmpty() && holes.get(0).isOffScreen()) {
+            holes.removeFirst();
+            for (int j = 0; j < players.size(); j++) {
+                SimPlayer p = players.get(j);
+                if (p.isAlive()) {
+                    p.addScore(1);
+                }
+            }
+        }
+
+        // Mise à jour des obstacles
+        for (int i = 0; i < obstacles.size(); i++) {
+            obstacles.get(i).update();
+        }
+        while (!obstacles.isEmpty() && obstacles.get(0).isOffScreen()) {
+            obstacles.removeFirst();
+        }
+
+        checkObstacleCollisions();
+        checkPlatformCollisions();
+        updateFinishLine();
+        updateHashes();
+    }
+
+    /**
+     * Même distribution que ObstacleFactory.generate
+     */
+    private SimObstacle generateObstacle(int id, double startX) {
+        boolean onGround = random.nextBoolean();
+        boolean isSpike = random.nextFloat() < 0.3f;
+
+        int width;
+        int height;
+        if (isSpike) {
+            width = 30 + random.nextInt(30);
+            height = 50 + random.nextInt(40);
+        } else {
+            width = 30 + random.nextInt(50);
+            height = 50 + random.nextInt(70);
+        }
+
+        double y = onGround ? GameConfig.GROUND_Y - height : GameConfig.CEILING_Y;
+        return new SimObstacle(id, startX, y, width, height);
+    }
+
+    private void updateFinishLine() {
+        int maxScore = 0;
+        for (int i = 0; i < players.size(); i++) {
+            maxScore = Math.max(maxScore, players.get(i).getScore());
+        }
+
+        if (!finishLineActive && maxScore >= SCORE_TO_WIN) {
+            finishLineActive = true;
+            finishLineX = GameConfig.WINDOW_WIDTH + 100;
+        }
+
+        if (finishLineActive) {
+            finishLineX -= GameConfig.GAME_SPEED;
+
+            for (int i = 0; i < players.size(); i++) {
+                SimPlayer p = players.get(i);
+                if (p.isAlive() && p.getX() + p.getWidth() >= finishLineX - 10) {
+                    winnerId = p.getPlayerId();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void checkObstacleCollisions() {
+        for (int i = 0; i < players.size(); i++) {
+            SimPlayer p = players.get(i);
+            if (!p.isAlive()) {
+                continue;
+            }
+
+            // Même boîte que Player.getBounds()
+            int px = (int) p.getX() + 5;
+            int py = (int) p.getY() + 5;
+            int pw = GameConfig.PLAYER_WIDTH - 10;
+            int ph = GameConfig.PLAYER_HEIGHT - 10;
+
+            // Seuls les obstacles qui chevauchent [px, px + pw] (le +1 couvre
+            // l'arrondi de intersects)
+            for (int j = obstacles.firstReaching(px);
+                    j < obstacles.size() && obstacles.get(j).getX() < px + pw + 1; j++) {
+                if (obstacles.get(j).intersects(px, py, pw, ph)) {
+                    // Toute collision avec un obstacle est mortelle
+                    p.die();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void checkPlatformCollisions() {
+        for (int i = 0; i < players.size(); i++) {
+            SimPlayer p = players.get(i);
+            // Sortie de l'écran pendant une chute dans un trou
+            if (p.isFalling() && p.isAlive()) {
+                if (p.getGravity() == Gravity.DOWN && p.getY() > GameConfig.WINDOW_HEIGHT) {
+                    p.die();
+                } else if (p.getGravity() == Gravity.UP && p.getY() + p.getHeight() < 0) {
+                    p.die();
+                }
+            }
+
+            if (!p.isAlive()) {
+                continue;
+            }
+
+            boolean overHole = isOverHole(p);
+
+            if (p.getGravity() == Gravity.DOWN) {
+                if (p.getY() + p.getHeight() >= GameConfig.GROUND_Y) {
+                    landOrFall(p, overHole, GameConfig.GROUND_Y - p.getHeight());
+                } else {
+                    p.setGrounded(false);
+                }
+            } else {
+                if (p.getY() <= GameConfig.CEILING_Y) {
+                    landOrFall(p, overHole, GameConfig.CEILING_Y);
+                } else {
+                    p.setGrounded(false);
+                }
+            }
+        }
+    }
+
+    private void landOrFall(SimPlayer p, boolean overHole, double surfaceY) {
+        if (overHole) {
+            p.setFalling(true);
+            p.setGrounded(false);
+        } else if (!p.isFalling()) {
+            p.setY(surfaceY);
+            p.setGrounded(true);
+            p.setFalling(false);
+        } else {
+            // On était en train de tomber dans un trou mais on en est sorti -> mort
+            p.die();
+        }
+    }
+
+    /**
+     * Le joueur est au-dessus d'un trou si son centre OU une partie
+     * significative de son corps est dans le trou
+     */
+    private boolean isOverHole(SimPlayer p) {
+        double playerLeft = p.getX() + 10;
+        double playerRight = p.getX() + p.getWidth() - 10;
+        double playerCenterX = p.getX() + p.getWidth() / 2.0;
+
+        // Le centre est entre les deux bords : seuls comptent les trous qui
+        // chevauchent [playerLeft, playerRight]
+        for (int i = holes.firstReaching(playerLeft); i < holes.size() && holes.get(i).getX() < playerRight; i++) {
+            SimHole h = holes.get(i);
+            double holeLeft = h.getX();
+            double holeRight = h.getX() + h.getWidth();
+
+            boolean centerOverHole = playerCenterX > holeLeft && playerCenterX < holeRight;
+            boolean significantOverlap = playerLeft < holeRight && playerRight > holeLeft
+                    && Math.min(playerRight, holeRight) - Math.max(playerLeft, holeLeft) > p.getWidth() * 0.4;
+
+            if (centerOverHole || significantOverlap) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================== EMPREINTES ====================
+    /**
+     * Recalcule les empreintes : quelques dizaines de multiplications, sans
+     * allocation (boucles indexées, pas d'itérateur)
+     */
+    private void updateHashes() {
+        long h = mix(0, tick);
+        h = mix(h, holes.size());
+        for (int i = 0; i < holes.size(); i++) {
+            SimHole hole = holes.get(i);
+            h = mix(h, Double.doubleToLongBits(hole.getX()));
+            h = mix(h, hole.getWidth());
+        }
+        h = mix(h, obstacles.size());
+        for (int i = 0; i < obstacles.size(); i++) {
+            SimObstacle o = obstacles.get(i);
+            h = mix(h, Double.doubleToLongBits(o.getX()));
+            h = mix(h, Double.doubleToLongBits(o.getY()));
+            h = mix(h, ((long) o.getWidth() << 32) | o.getHeight());
+        }
+        hazardHash = h;
+
+        h = mix(h, players.size());
+        for (int i = 0; i < players.size(); i++) {
+            SimPlayer p = players.get(i);
+            h = mix(h, p.getPlayerId());
+            h = mix(h, Double.doubleToLongBits(p.getX()));
+            h = mix(h, Double.doubleToLongBits(p.getY()));
+            h = mix(h, Double.doubleToLongBits(p.getVelocityY()));
+            h = mix(h, ((long) p.getScore() << 8) | (p.isGravityUp() ? 1 : 0) | (p.isAlive() ? 2 : 0)
+                    | (p.isGrounded() ? 4 : 0) | (p.isFalling() ? 8 : 0));
+        }
+        h = mix(h, finishLineActive ? Double.doubleToLongBits(finishLineX) : -1);
+        worldHash = mix(h, winnerId);
+    }
+
+    /**
+     * Mélange une valeur dans l'empreinte (multiplication par le nombre d'or
+     * puis repli des bits hauts, comme un pas de SplitMix64)
+     */
+    private static long mix(long h, long v) {
+        h = (h ^ v) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Empreinte des trous et obstacles au dernier tick : ne dépend que de la
+     * graine et du tick, une simulation sans joueurs la reproduit
+     */
+    public long getHazardHash() {
+        return hazardHash;
+    }
+
+    /**
+     * Empreinte de tout le monde au dernier tick (dangers, joueurs, ligne
+     * d'arrivée, vainqueur)
+     */
+    public long getWorldHash() {
+        return worldHash;
+    }
+
+    /**
+     * Description lisible de l'état, pour accompagner un rapport de
+     * désynchronisation
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("tick ").append(tick).append(", dangers ").append(Long.toHexString(hazardHash))
+                .append(", monde ").append(Long.toHexString(worldHash)).append('\n');
+        sb.append("  trous:");
+        for (SimHole h : holes) {
+            sb.append(' ').append(h.getX()).append('/').append(h.getWidth());
+        }
+        sb.append("\n  obstacles:");
+        for (SimObstacle o : obstacles) {
+            sb.append(' ').append(o.getX()).append(',').append(o.getY()).append('/')
+                    .append(o.getWidth()).append('x').append(o.getHeight());
+        }
+        for (SimPlayer p : players) {
+            sb.append("\n  joueur ").append(p.getPlayerId()).append(": ").append(p.getX()).append(',')
+                    .append(p.getY()).append(" vy ").append(p.getVelocityY()).append(' ').append(p.getGravity())
+                    .append(p.isAlive() ? "" : " mort").append(" score ").append(p.getScore());
+        }
+        return sb.toString();
+    }
+
+    // ==================== SAUVEGARDE ====================
+    /**
+     * Copie l'état complet dans une sauvegarde réutilisable (aucune
+     * allocation une fois les tableaux de la sauvegarde dimensionnés)
+     */
+    public void saveState(SimState s) {
+        s.tick = tick;
+        s.frameCount = frameCount;
+        s.obstacleFrameCount = obstacleFrameCount;
+        s.nextHazardId = nextHazardId;
+        s.finishLineActive = finishLineActive;
+        s.finishLineX = finishLineX;
+        s.winnerId = winnerId;
+        s.randomState = random.getState();
+        s.hazardHash = hazardHash;
+        s.worldHash = worldHash;
+
+        int playerCount = players.size();
+        s.ensurePlayers(playerCount);
+        s.playerCount = playerCount;
+        for (int i = 0; i < playerCount; i++) {
+            players.get(i).save(s, i);
+        }
+
+        int holeCount = holes.size();
+        s.ensureHoles(holeCount);
+        s.holeCount = holeCount;
+        for (int i = 0; i < holeCount; i++) {
+            SimHole h = holes.get(i);
+            s.holes[i] = h;
+            s.holeX[i] = h.getX();
+        }
+
+        int obstacleCount = obstacles.size();
+        s.ensureObstacles(obstacleCount);
+        s.obstacleCount = obstacleCount;
+        for (int i = 0; i < obstacleCount; i++) {
+            SimObstacle o = obstacles.get(i);
+            s.obstacles[i] = o;
+            s.obstacleX[i] = o.getX();
+        }
+    }
+
+    /**
+     * Revient à l'état d'une sauvegarde faite par cette simulation
+     *
+     * @throws IllegalArgumentException si les joueurs ont changé depuis la
+     * sauvegarde (ajout ou retrait)
+     */
+    public void restoreState(SimState s) {
+        if (s.playerCount != players.size()) {
+            throw new IllegalArgumentException("Sauvegarde de " + s.playerCount + " joueurs, simulation de "
+                    + players.size());
+        }
+        tick = s.tick;
+        frameCount = s.frameCount;
+        obstacleFrameCount = s.obstacleFrameCount;
+        nextHazardId = s.nextHazardId;
+        finishLineActive = s.finishLineActive;
+        finishLineX = s.finishLineX;
+        winnerId = s.winnerId;
+        random.setState(s.randomState);
+        hazardHash = s.hazardHash;
+        worldHash = s.worldHash;
+
+        for (int i = 0; i < s.playerCount; i++) {
+            players.get(i).restore(s, i);
+        }
+
+        holes.clear();
+        for (int i = 0; i < s.holeCount; i++) {
+            SimHole h = s.holes[i];
+            h.setX(s.holeX[i]);
+            holes.addLast(h);
+        }
+
+        obstacles.clear();
+        for (int i = 0; i < s.obstacleCount; i++) {
+            SimObstacle o = s.obstacles[i];
+            o.setX(s.obstacleX[i]);
+            obstacles.addLast(o);
+        }
+    }
+
+    // ==================== ÉTAT ====================
+    public boolean isAllDead() {
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Partie terminée : un vainqueur a franchi la ligne ou tout le monde est mort
+     */
+    public boolean isFinished() {
+        return winnerId >= 0 || (!players.isEmpty() && isAllDead());
+    }
+
+    public int getWinnerId() {
+        return winnerId;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public boolean isFinishLineActive() {
+        return finishLineActive;
+    }
+
+    public double getFinishLineX() {
+        return finishLineX;
+    }
+
+    public List<SimPlayer> getPlayers() {
+        return players;
+    }
+
+    public List<SimHole> getHoles() {
+        return holes;
+    }
+
+    public List<SimObstacle> getObstacles() {
+        return obstacles;
+    }
+}
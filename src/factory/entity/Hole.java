@@ -8,12 +8,23 @@ import java.awt.*;
  */
 public class Hole {
 
+    private final int id; // Numéro du trou de simulation affiché, -1 si aucun
     private double x;
+    private double previousX; // Avant le dernier pas (interpolation du rendu)
     private int width;
     private float wavePhase;
 
     public Hole(double x, int width) {
+        this(-1, x, width);
+    }
+
+    /**
+     * Vue d'un trou de simulation (core.sim.SimHole)
+     */
+    public Hole(int id, double x, int width) {
+        this.id = id;
         this.x = x;
+        this.previousX = x;
         this.width = width;
         this.wavePhase = (float) (Math.random() * Math.PI * 2);
     }
@@ -22,10 +33,20 @@ public class Hole {
      * Met à jour le trou (déplacement)
      */
     public void update() {
+        previousX = x;
         x -= GameConfig.GAME_SPEED;
         wavePhase += 0.05f;
     }
 
+    /**
+     * Place le trou à la position calculée par la simulation
+     */
+    public void moveTo(double x) {
+        previousX = this.x;
+        this.x = x;
+        wavePhase += 0.05f;
+    }
+
     /**
      * Vérifie si le trou est hors écran
      */
@@ -49,8 +70,17 @@ public class Hole {
         return entityX + entityWidth > x && entityX < x + width;
     }
 
+    /**
+     * Abscisse affichée, entre l'avant-dernier (0) et le dernier pas (1)
+     */
+    public double getRenderX(double interpolation) {
+        return previousX + (x - previousX) * interpolation;
+    }
+
     // === GETTERS ===
 
+    public int getId() { return id; }
+
     public double getX() { return x; }
     public void setX(double x) { this.x = x; }
 
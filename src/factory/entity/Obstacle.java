@@ -15,7 +15,9 @@ public class Obstacle {
         BLOCK       // Bloc simple
     }
 
+    private final int id; // Numéro de l'obstacle de simulation affiché, -1 si aucun
     private double x;
+    private double previousX; // Avant le dernier pas (interpolation du rendu)
     private double y;
     private int width;
     private int height;
@@ -24,7 +26,13 @@ public class Obstacle {
     private float pulsePhase;
 
     public Obstacle(double x, double y, int width, int height, ObstacleType type) {
+        this(-1, x, y, width, height, type);
+    }
+
+    private Obstacle(int id, double x, double y, int width, int height, ObstacleType type) {
+        this.id = id;
         this.x = x;
+        this.previousX = x;
         this.y = y;
         this.width = width;
         this.height = height;
@@ -38,7 +46,14 @@ public class Obstacle {
      * Constructeur simplifié pour le réseau
      */
     public Obstacle(int x, int y, int width, int height) {
-        this(x, y, width, height, y < GameConfig.WINDOW_HEIGHT / 2 ?
+        this(-1, x, y, width, height);
+    }
+
+    /**
+     * Vue d'un obstacle de simulation (core.sim.SimObstacle)
+     */
+    public Obstacle(int id, double x, double y, int width, int height) {
+        this(id, x, y, width, height, y < GameConfig.WINDOW_HEIGHT / 2 ?
              ObstacleType.CEILING : ObstacleType.GROUND);
     }
 
@@ -46,10 +61,20 @@ public class Obstacle {
      * Met à jour l'obstacle (déplacement)
      */
     public void update() {
+        previousX = x;
         x -= GameConfig.GAME_SPEED;
         pulsePhase += 0.1f;
     }
 
+    /**
+     * Place l'obstacle à la position calculée par la simulation
+     */
+    public void moveTo(double x) {
+        previousX = this.x;
+        this.x = x;
+        pulsePhase += 0.1f;
+    }
+
     /**
      * Vérifie si l'obstacle est hors écran
      */
@@ -61,7 +86,14 @@ public class Obstacle {
      * Dessine l'obstacle (simplifié pour performance)
      */
     public void render(Graphics2D g2d) {
-        int px = (int) x;
+        render(g2d, 1);
+    }
+
+    /**
+     * Dessine l'obstacle entre l'avant-dernier (0) et le dernier pas (1)
+     */
+    public void render(Graphics2D g2d, double interpolation) {
+        int px = (int) (previousX + (x - previousX) * interpolation);
         int py = (int) y;
 
         // Corps simple
@@ -83,6 +115,8 @@ public class Obstacle {
 
     // === GETTERS ===
 
+    public int getId() { return id; }
+
     public double getX() { return x; }
     public void setX(double x) { this.x = x; }
 
@@ -20,6 +20,8 @@ public class Player {
     // Position et mouvement
     private double x;
     private double y;
+    private double previousX; // Avant le dernier pas (interpolation du rendu)
+    private double previousY;
     private double speedY;
     private double speedX;
 
@@ -72,6 +74,8 @@ public class Player {
     public void reset() {
         this.x = GameConfig.PLAYER_START_X;
         this.y = GameConfig.GROUND_Y - GameConfig.PLAYER_HEIGHT;
+        this.previousX = x;
+        this.previousY = y;
         this.speedY = 0;
         this.speedX = 0;
         this.gravity = Gravity.DOWN;
@@ -90,6 +94,8 @@ public class Player {
      * Met à jour la physique du joueur
      */
     public void update() {
+        previousX = x;
+        previousY = y;
         particles.update();
 
         if (!alive) {
@@ -188,6 +194,68 @@ public class Player {
         }
     }
 
+    /**
+     * Applique un état de simulation (locale, ou reçu du serveur) et
+     * déclenche les effets visuels correspondant aux changements (inversion
+     * de gravité, mort)
+     */
+    public void applyState(double x, double y, double vy, Gravity gravity,
+                                  boolean alive, int score) {
+        this.previousX = this.x;
+        this.previousY = this.y;
+        this.x = x;
+        this.y = y;
+        this.speedY = vy;
+        this.score = score;
+
+        if (alive && gravity != this.gravity) {
+            switchingGravity = true;
+            switchAnimationFrame = 0;
+            particles.emitGravitySwitch(x + GameConfig.PLAYER_WIDTH / 2,
+                                       y + GameConfig.PLAYER_HEIGHT / 2,
+                                       playerColor);
+        }
+        this.gravity = gravity;
+
+        // Le serveur ne transmet pas "grounded" : vitesse nulle = posé
+        this.grounded = alive && vy == 0;
+        if (!alive) {
+            die();
+        } else if (!this.alive) {
+            // Réapparition (nouvelle manche)
+            this.alive = true;
+            this.alpha = 1.0f;
+        }
+    }
+
+    /**
+     * Met à jour uniquement les effets visuels (la physique est calculée par
+     * core.sim.Simulation, localement ou sur le serveur)
+     */
+    public void updateEffects() {
+        particles.update();
+
+        if (!alive) {
+            alpha = Math.max(0, alpha - 0.02f);
+            return;
+        }
+
+        if (switchingGravity) {
+            switchAnimationFrame++;
+            if (switchAnimationFrame >= SWITCH_ANIMATION_DURATION) {
+                switchingGravity = false;
+                switchAnimationFrame = 0;
+            }
+        }
+
+        updateTrail();
+
+        if (grounded) {
+            particles.emitTrail(x + GameConfig.PLAYER_WIDTH / 2,
+                              y + GameConfig.PLAYER_HEIGHT, playerColor);
+        }
+    }
+
     /**
      * Vérifie si le joueur est complètement hors de l'écran (pour arrêter le rendu)
      */
@@ -222,6 +290,17 @@ public class Player {
         renderGravityIndicator(g2d);
     }
 
+    /**
+     * Dessine le joueur entre l'avant-dernier (0) et le dernier pas (1)
+     */
+    public void render(Graphics2D g2d, double interpolation) {
+        double dx = (previousX - x) * (1 - interpolation);
+        double dy = (previousY - y) * (1 - interpolation);
+        g2d.translate(dx, dy);
+        render(g2d);
+        g2d.translate(-dx, -dy);
+    }
+
     /**
      * Dessine le joueur stylisé (sans sprite)
      */
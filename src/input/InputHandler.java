@@ -27,6 +27,8 @@ public class InputHandler implements KeyListener {
         void onPausePressed();
 
         void onRestartPressed();
+
+        void onStatsToggled();
     }
 
     public InputHandler(GameEngine engine) {
@@ -103,6 +105,12 @@ public class InputHandler implements KeyListener {
                     }
                 }
                 break;
+
+            case KeyEvent.VK_F3:
+                if (callback != null) {
+                    callback.onStatsToggled();
+                }
+                break;
         }
     }
 
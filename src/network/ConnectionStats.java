@@ -0,0 +1,394 @@
+package network;
+
+import core.WindowedHistogram;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques d'une connexion client ↔ serveur, sans verrou
+ *
+ * Chaque côté en tient une par connexion (GameClient pour le serveur,
+ * GameServer pour chaque client) :
+ * - compteurs cumulés depuis la connexion : messages, datagrammes, octets ;
+ * - numéros de séquence des datagrammes reçus (ticks des états côté client,
+ *   inputs côté serveur) : pertes, doublons et arrivées en retard, sur une
+ *   fenêtre de 64 numéros ;
+ * - débits et taux de perte sur les dernières secondes ;
+ * - histogrammes glissants : RTT, intervalle entre deux datagrammes,
+ *   latence input → application par le serveur.
+ *
+ * Les compteurs peuvent être incrémentés depuis n'importe quel thread et lus
+ * à tout moment (overlay, outils). recordSequence et acknowledgeInputs sont
+ * appelés par le seul thread de réception de la connexion.
+ */
+public final class ConnectionStats {
+
+    /**
+     * Classement d'un datagramme numéroté à son arrivée
+     */
+    public enum Arrival {
+        NEWEST,     // Plus récent que tous les précédents
+        LATE,       // Plus ancien que le dernier reçu, jamais vu
+        DUPLICATE   // Déjà reçu
+    }
+
+    private static final int SEQUENCE_WINDOW = 64;
+    private static final int PENDING_INPUTS = 64; // Inputs en attente d'accusé (puissance de deux)
+
+    private final long startNanos = System.nanoTime();
+
+    // Cumuls
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder datagramsSent = new LongAdder();
+    private final LongAdder datagramsReceived = new LongAdder();
+    private final LongAdder messageBytesSent = new LongAdder();
+    private final LongAdder messageBytesReceived = new LongAdder();
+    private final LongAdder datagramBytesSent = new LongAdder();
+    private final LongAdder datagramBytesReceived = new LongAdder();
+    private final LongAdder newest = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+
+    // Fenêtre glissante
+    private final WindowedCounter bytesIn = new WindowedCounter();
+    private final WindowedCounter bytesOut = new WindowedCounter();
+    private final WindowedCounter packetsIn = new WindowedCounter();
+    private final WindowedCounter packetsOut = new WindowedCounter();
+    private final WindowedCounter arrivalsWindow = new WindowedCounter();
+    private final WindowedCounter missedWindow = new WindowedCounter();
+    private final WindowedHistogram rtt = new WindowedHistogram();
+    private final WindowedHistogram arrivalInterval = new WindowedHistogram();
+    private final WindowedHistogram inputLatency = new WindowedHistogram();
+
+    // Séquence (thread de réception uniquement)
+    private long highestSequence = -1;
+    private long receivedMask; // Bit i : highestSequence - i reçu
+    private volatile long lastArrivalNanos;
+
+    // Inputs envoyés, en attente de leur application par le serveur
+    private final AtomicLongArray pendingSequences = new AtomicLongArray(PENDING_INPUTS);
+    private final AtomicLongArray pendingSentAt = new AtomicLongArray(PENDING_INPUTS);
+    private long lastAcknowledged;
+
+    // ==================== ENREGISTREMENT ====================
+    public void onMessageSent(int bytes) {
+        messagesSent.increment();
+        messageBytesSent.add(bytes);
+        bytesOut.add(bytes);
+    }
+
+    public void onMessageReceived(int bytes) {
+        messagesReceived.increment();
+        messageBytesReceived.add(bytes);
+        bytesIn.add(bytes);
+    }
+
+    public void onDatagramSent(int bytes) {
+        datagramsSent.increment();
+        datagramBytesSent.add(bytes);
+        bytesOut.add(bytes);
+        packetsOut.add(1);
+    }
+
+    public void onDatagramReceived(int bytes) {
+        datagramsReceived.increment();
+        datagramBytesReceived.add(bytes);
+        bytesIn.add(bytes);
+        packetsIn.add(1);
+    }
+
+    /**
+     * Classe un datagramme numéroté et met à jour pertes, retards et
+     * doublons. Un numéro sauté compte comme perdu jusqu'à ce qu'il arrive en
+     * retard.
+     */
+    public Arrival recordSequence(long sequence) {
+        long now = System.nanoTime();
+        if (highestSequence < 0 || sequence > highestSequence) {
+            if (highestSequence >= 0) {
+                long gap = sequence - highestSequence;
+                if (gap > 1) {
+                    missed.add(gap - 1);
+                    missedWindow.add(gap - 1);
+                }
+                receivedMask = gap >= SEQUENCE_WINDOW ? 1 : (receivedMask << gap) | 1;
+                arrivalInterval.record((now - lastArrivalNanos) / 1000);
+            } else {
+                receivedMask = 1;
+            }
+            highestSequence = sequence;
+            lastArrivalNanos = now;
+            newest.increment();
+            arrivalsWindow.add(1);
+            return Arrival.NEWEST;
+        }
+
+        long offset = highestSequence - sequence;
+        if (offset < SEQUENCE_WINDOW) {
+            long bit = 1L << offset;
+            if ((receivedMask & bit) != 0) {
+                duplicates.increment();
+                return Arrival.DUPLICATE;
+            }
+            receivedMask |= bit;
+            // Compté comme perdu à l'arrivée du suivant
+            missed.decrement();
+            missedWindow.add(-1);
+        }
+        late.increment();
+        arrivalsWindow.add(1);
+        return Arrival.LATE;
+    }
+
+    /**
+     * @param micros aller-retour mesuré (PING → PONG)
+     */
+    public void recordRtt(long micros) {
+        rtt.record(micros);
+    }
+
+    /**
+     * Mémorise l'envoi d'un input dont on attend l'application
+     */
+    public void markInputSent(long sequence) {
+        int slot = (int) sequence & (PENDING_INPUTS - 1);
+        pendingSentAt.set(slot, System.nanoTime());
+        pendingSequences.set(slot, sequence);
+    }
+
+    /**
+     * Le serveur a appliqué tous les inputs jusqu'à lastApplied (champ
+     * lastInput de l'état du joueur) : mesure la latence des inputs en
+     * attente
+     */
+    public void acknowledgeInputs(long lastApplied) {
+        if (lastApplied <= lastAcknowledged) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (long seq = Math.max(lastAcknowledged + 1, lastApplied - PENDING_INPUTS + 1); seq <= lastApplied; seq++) {
+            int slot = (int) seq & (PENDING_INPUTS - 1);
+            long sentAt = pendingSentAt.get(slot);
+            if (pendingSequences.get(slot) == seq && sentAt != 0) {
+                inputLatency.record((now - sentAt) / 1000);
+                pendingSentAt.set(slot, 0);
+            }
+        }
+        lastAcknowledged = lastApplied;
+    }
+
+    // ==================== CUMULS ====================
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    public long getDatagramsSent() {
+        return datagramsSent.sum();
+    }
+
+    public long getDatagramsReceived() {
+        return datagramsReceived.sum();
+    }
+
+    /**
+     * Octets envoyés (messages et datagrammes)
+     */
+    public long getBytesSent() {
+        return messageBytesSent.sum() + datagramBytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return messageBytesReceived.sum() + datagramBytesReceived.sum();
+    }
+
+    /**
+     * Datagrammes numérotés retenus (les plus récents à leur arrivée)
+     */
+    public long getNewest() {
+        return newest.sum();
+    }
+
+    /**
+     * Numéros jamais reçus
+     */
+    public long getMissed() {
+        return Math.max(0, missed.sum());
+    }
+
+    /**
+     * Arrivés après un numéro plus récent
+     */
+    public long getLate() {
+        return late.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getUptimeMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // ==================== FENÊTRE GLISSANTE ====================
+    public double getBytesInPerSecond() {
+        return bytesIn.perSecond(startNanos);
+    }
+
+    public double getBytesOutPerSecond() {
+        return bytesOut.perSecond(startNanos);
+    }
+
+    public double getPacketsInPerSecond() {
+        return packetsIn.perSecond(startNanos);
+    }
+
+    public double getPacketsOutPerSecond() {
+        return packetsOut.perSecond(startNanos);
+    }
+
+    /**
+     * Part des datagrammes numérotés perdus sur la fenêtre (0 à 1)
+     */
+    public double getLossRate() {
+        long lost = Math.max(0, missedWindow.sum());
+        long expected = arrivalsWindow.sum() + lost;
+        return expected == 0 ? 0 : (double) lost / expected;
+    }
+
+    /**
+     * Âge du dernier datagramme numéroté retenu (ms), -1 si aucun
+     */
+    public long getSnapshotAgeMillis() {
+        long last = lastArrivalNanos;
+        return last == 0 ? -1 : (System.nanoTime() - last) / 1_000_000;
+    }
+
+    /**
+     * Aller-retour (µs)
+     */
+    public WindowedHistogram.Summary getRtt() {
+        return rtt.summarize();
+    }
+
+    /**
+     * Intervalle entre deux datagrammes numérotés retenus (µs)
+     */
+    public WindowedHistogram.Summary getArrivalInterval() {
+        return arrivalInterval.summarize();
+    }
+
+    /**
+     * Envoi d'un input → premier état où le serveur l'a appliqué (µs)
+     */
+    public WindowedHistogram.Summary getInputLatency() {
+        return inputLatency.summarize();
+    }
+
+    // ==================== RÉSUMÉ ====================
+    /**
+     * Résumé lisible sur plusieurs lignes (journal de fin de connexion)
+     */
+    public String format() {
+        long expected = getNewest() + getLate() + getMissed();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("  durée       %.1f s%n", getUptimeMillis() / 1000.0));
+        sb.append(String.format("  messages    envoyés %d (%s), reçus %d (%s)%n",
+                getMessagesSent(), formatBytes(messageBytesSent.sum()), getMessagesReceived(),
+                formatBytes(messageBytesReceived.sum())));
+        sb.append(String.format("  datagrammes envoyés %d (%s), reçus %d (%s)%n",
+                getDatagramsSent(), formatBytes(datagramBytesSent.sum()), getDatagramsReceived(),
+                formatBytes(datagramBytesReceived.sum())));
+        sb.append(String.format("  séquence    retenus %d, perdus %d (%.2f %%), en retard %d, doublons %d%n",
+                getNewest(), getMissed(), expected == 0 ? 0.0 : 100.0 * getMissed() / expected,
+                getLate(), getDuplicates()));
+        appendHistogram(sb, "RTT", getRtt());
+        appendHistogram(sb, "intervalle", getArrivalInterval());
+        appendHistogram(sb, "input", getInputLatency());
+        return sb.toString().stripTrailing();
+    }
+
+    private static void appendHistogram(StringBuilder sb, String name, WindowedHistogram.Summary s) {
+        if (s.count() == 0) {
+            return;
+        }
+        sb.append(String.format("  %-11s p50 %.1f ms, p99 %.1f ms, max %.1f ms (%d mesures, %d s)%n", name,
+                s.p50() / 1000.0, s.p99() / 1000.0, s.max() / 1000.0, s.count(), WindowedHistogram.SLOTS));
+    }
+
+    /**
+     * Taille lisible (octets, Ko, Mo)
+     */
+    public static String formatBytes(double bytes) {
+        if (bytes < 1024) {
+            return String.format("%.0f o", bytes);
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f Ko", bytes / 1024);
+        }
+        return String.format("%.1f Mo", bytes / 1024 / 1024);
+    }
+
+    // ==================== COMPTEUR GLISSANT ====================
+    /**
+     * Somme sur les WindowedHistogram.SLOTS dernières secondes, mêmes
+     * tranches (et même approximation au changement de tranche) que
+     * WindowedHistogram
+     */
+    private static final class WindowedCounter {
+
+        private final AtomicLongArray epochs = new AtomicLongArray(WindowedHistogram.SLOTS);
+        private final AtomicLongArray sums = new AtomicLongArray(WindowedHistogram.SLOTS);
+        private final long origin = System.nanoTime();
+
+        WindowedCounter() {
+            for (int i = 0; i < WindowedHistogram.SLOTS; i++) {
+                epochs.set(i, -1);
+            }
+        }
+
+        void add(long n) {
+            long epoch = epoch();
+            int slot = (int) (epoch % WindowedHistogram.SLOTS);
+            long current = epochs.get(slot);
+            if (current < epoch && epochs.compareAndSet(slot, current, epoch)) {
+                sums.set(slot, 0);
+            }
+            sums.addAndGet(slot, n);
+        }
+
+        long sum() {
+            long epoch = epoch();
+            long total = 0;
+            for (int slot = 0; slot < WindowedHistogram.SLOTS; slot++) {
+                long slotEpoch = epochs.get(slot);
+                if (slotEpoch >= 0 && epoch - slotEpoch < WindowedHistogram.SLOTS) {
+                    total += sums.get(slot);
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Débit moyen sur la fenêtre, ou depuis startNanos si la connexion
+         * est plus récente
+         */
+        double perSecond(long startNanos) {
+            long now = System.nanoTime();
+            double windowSeconds = (WindowedHistogram.SLOTS - 1)
+                    + ((now - origin) / 1_000_000 % WindowedHistogram.SLOT_MILLIS) / 1000.0;
+            double seconds = Math.min(windowSeconds, (now - startNanos) / 1e9);
+            return seconds <= 0 ? 0 : sum() / seconds;
+        }
+
+        private long epoch() {
+            return (System.nanoTime() - origin) / 1_000_000 / WindowedHistogram.SLOT_MILLIS;
+        }
+    }
+}
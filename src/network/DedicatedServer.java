@@ -0,0 +1,118 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Point d'entrée du serveur dédié (sans interface graphique)
+ *
+ * Lance un GameServer sans joueur hôte qui simule lui-même la partie. Tous
+ * les joueurs s'y connectent en tant que clients. Aucune classe Swing, AWT
+ * ou ResourceManager n'est chargée : le serveur tourne sur une machine Linux
+ * sans affichage.
+ *
+ * Ses mesures de santé sont publiées en JMX (voidrunner:type=GameServer) et,
+ * avec --metrics-port, en texte sur http://hote:port/metrics.
+ *
+ * Usage: java -cp bin Main --server [--name "Nom du serveur"] [--port 25565]
+ * [--udp-port 25566] [--max-rooms 8] [--matchmaker hote:25568]
+ * [--metrics-port 9100]
+ */
+public final class DedicatedServer {
+
+    private DedicatedServer() {
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        String serverName = "Serveur dédié";
+        int tcpPort = NetworkProtocol.TCP_PORT;
+        int udpPort = NetworkProtocol.UDP_PORT;
+        int maxRooms = 1;
+        InetSocketAddress matchmaker = null;
+        int metricsPort = -1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    break;
+                }
+                switch (args[i]) {
+                    case "--name":
+                        serverName = args[++i];
+                        break;
+                    case "--port":
+                        tcpPort = Integer.parseInt(args[++i]);
+                        break;
+                    case "--udp-port":
+                        udpPort = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-rooms":
+                        maxRooms = Integer.parseInt(args[++i]);
+                        break;
+                    case "--matchmaker":
+                        matchmaker = parseAddress(args[++i], NetworkProtocol.MATCHMAKER_PORT);
+                        break;
+                    case "--metrics-port":
+                        metricsPort = Integer.parseInt(args[++i]);
+                        break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("[SERVER] Argument invalide: " + e.getMessage());
+            System.exit(1);
+        }
+
+        GameServer server = new GameServer(serverName, true, tcpPort, udpPort);
+        server.setMaxRooms(maxRooms);
+        server.setMatchmaker(matchmaker);
+        if (!server.start()) {
+            System.exit(1);
+        }
+
+        MetricsHttpServer metricsHttp = metricsPort >= 0 ? startMetrics(server, metricsPort) : null;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (metricsHttp != null) {
+                metricsHttp.stop();
+            }
+            server.stop();
+        }, "Server-Shutdown"));
+
+        System.out.println("[SERVER] Serveur dédié \"" + serverName + "\" prêt ("
+                + NetworkProtocol.TICK_RATE + " ticks/s, TCP " + server.getTcpPort()
+                + ", UDP " + server.getUdpPort() + ", " + maxRooms + " salle(s) max)");
+        if (matchmaker != null) {
+            System.out.println("[SERVER] Enregistré auprès du matchmaker " + matchmaker);
+        }
+        System.out.println("[SERVER] La partie démarre quand tous les joueurs connectés sont prêts");
+    }
+
+    /**
+     * Démarre le point d'accès HTTP des mesures
+     *
+     * @return null si le port est indisponible (le serveur de jeu continue
+     * sans)
+     */
+    private static MetricsHttpServer startMetrics(GameServer server, int port) {
+        MetricsHttpServer metricsHttp = new MetricsHttpServer(server.getMetrics());
+        try {
+            metricsHttp.start(port);
+            return metricsHttp;
+        } catch (IOException e) {
+            System.err.println("[METRICS] Port " + port + " indisponible: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lit une adresse "hote:port" (ou "hote" seul, avec le port par défaut)
+     */
+    private static InetSocketAddress parseAddress(String value, int defaultPort) {
+        int colon = value.lastIndexOf(':');
+        if (colon < 0) {
+            return new InetSocketAddress(value, defaultPort);
+        }
+        return new InetSocketAddress(value.substring(0, colon), Integer.parseInt(value.substring(colon + 1)));
+    }
+}
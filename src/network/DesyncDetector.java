@@ -0,0 +1,119 @@
+package network;
+
+import core.GameConfig;
+import core.sim.Simulation;
+import java.util.List;
+
+/**
+ * Détection côté client d'une divergence avec la simulation du serveur
+ *
+ * Les trous et obstacles ne dépendent que de la graine de la manche et du
+ * tick : le client les régénère dans une Simulation sans joueurs à partir du
+ * seed de GAME_START, avance cette copie jusqu'au tick de chaque empreinte
+ * reçue (hashTick, tous les NetworkProtocol.HASH_INTERVAL ticks) et compare
+ * son empreinte des dangers à celle du serveur. La première différence est
+ * signalée une seule fois par manche, avec l'état des deux côtés.
+ *
+ * L'empreinte du monde entier (joueurs compris) est aussi transmise : elle
+ * servira quand le client simulera les joueurs lui-même (prédiction).
+ *
+ * start et stop sont appelés à la réception des messages TCP, check à celle
+ * des datagrammes : les trois sont synchronisés.
+ */
+public final class DesyncDetector {
+
+    private final Simulation shadow = new Simulation();
+    private boolean active;
+    private long lastMatchTick;
+    private volatile long divergentTick = -1;
+
+    /**
+     * Nouvelle manche : régénérer les dangers depuis la graine
+     */
+    public synchronized void start(long seed) {
+        shadow.reset(seed);
+        lastMatchTick = 0;
+        divergentTick = -1;
+        active = true;
+    }
+
+    /**
+     * Fin de manche : les états suivants ne sont plus vérifiés jusqu'au
+     * prochain GAME_START (un état de la manche suivante peut arriver avant
+     * lui)
+     */
+    public synchronized void stop() {
+        active = false;
+    }
+
+    /**
+     * Compare une empreinte du serveur à la copie locale
+     *
+     * @param hazards dangers annoncés par le serveur (HAZARD_SPAWN, protocole
+     * 6), lus seulement pour décrire une divergence ; l'appelant les protège
+     * des modifications pendant l'appel
+     * @return le rapport de la première divergence de la manche, sinon null
+     */
+    public synchronized Messages.DesyncReport check(Messages.GameState state, List<Messages.Hazard> hazards) {
+        if (!active || divergentTick >= 0 || state.hashTick() < shadow.getTick()) {
+            return null; // Inactif, déjà signalé, ou état d'avant la dernière vérification
+        }
+        while (shadow.getTick() < state.hashTick()) {
+            shadow.step();
+        }
+        if (shadow.getHazardHash() == state.hazardHash()) {
+            lastMatchTick = state.hashTick();
+            return null;
+        }
+        divergentTick = state.hashTick();
+        return new Messages.DesyncReport(divergentTick, lastMatchTick, shadow.getHazardHash(),
+                state.hazardHash(), "local  : " + shadow.dump() + "\nserveur: " + describe(state, hazards));
+    }
+
+    /**
+     * Premier tick divergent de la manche en cours, -1 si aucun
+     */
+    public long getDivergentTick() {
+        return divergentTick;
+    }
+
+    /**
+     * Dangers du serveur au tick de l'empreinte : ceux du GAME_STATE
+     * (protocole 5 ou moins), sinon ceux annoncés par HAZARD_SPAWN, placés au
+     * tick par xAt
+     */
+    private static String describe(Messages.GameState state, List<Messages.Hazard> hazards) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("tick ").append(state.hashTick()).append(", dangers ")
+                .append(Long.toHexString(state.hazardHash())).append(", monde ")
+                .append(Long.toHexString(state.worldHash())).append("\n  trous:");
+        for (Messages.HoleState h : state.holes()) {
+            sb.append(' ').append(h.x()).append('/').append(h.width());
+        }
+        for (Messages.Hazard h : hazards) {
+            if (h.isHole() && isOnScreen(h, state.hashTick())) {
+                sb.append(' ').append(h.xAt(state.hashTick())).append('/').append(h.width());
+            }
+        }
+        sb.append("\n  obstacles:");
+        for (Messages.ObstacleState o : state.obstacles()) {
+            sb.append(' ').append(o.x()).append(',').append(o.y()).append('/')
+                    .append(o.width()).append('x').append(o.height());
+        }
+        for (Messages.Hazard o : hazards) {
+            if (!o.isHole() && isOnScreen(o, state.hashTick())) {
+                sb.append(' ').append(o.xAt(state.hashTick())).append(',').append(o.y()).append('/')
+                        .append(o.width()).append('x').append(o.height());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Danger apparu et pas encore sorti de l'écran au tick donné
+     */
+    private static boolean isOnScreen(Messages.Hazard h, long tick) {
+        double x = h.xAt(tick);
+        return x <= GameConfig.WINDOW_WIDTH && x + h.width() >= 0;
+    }
+}
@@ -1,18 +1,31 @@
 package network;
 
 import core.GameConfig;
+import core.sim.SimHole;
+import core.sim.SimObstacle;
+import core.sim.SimPlayer;
 import entity.Gravity;
-import entity.Hole;
-import entity.Obstacle;
-import entity.Player;
-import java.awt.Color;
 import java.io.*;
 import java.net.*;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
  * Client de jeu réseau - Se connecte au serveur via TCP - Envoie ses inputs en
  * UDP - Reçoit l'état du jeu en UDP - Le serveur fait autorité
+ *
+ * Les échanges passent par un Transport : sockets pour un serveur distant,
+ * en mémoire (connectLocal) pour l'hôte connecté à son propre serveur.
+ *
+ * Si la connexion à un serveur distant tombe en pleine manche, le client
+ * tente de reprendre sa session (jeton du CONNECT_ACCEPT, protocole 4)
+ * pendant NetworkProtocol.RECONNECT_GRACE avant d'annoncer la déconnexion :
+ * le serveur lui rend sa place et une image complète de la manche (RESYNC).
+ *
+ * En protocole 6, les trous et obstacles ne sont pas dans les états reçus :
+ * chacun est annoncé une fois (HAZARD_SPAWN) et sa position est calculée à
+ * partir du tick de simulation du dernier état appliqué. Un état perdu ne fait donc
+ * jamais disparaître un danger.
  */
 public class GameClient {
 
@@ -20,32 +33,70 @@ public class GameClient {
     private Socket tcpSocket;
     private BufferedReader tcpReader;
     private PrintWriter tcpWriter;
-    private DatagramSocket udpSocket;
+    private volatile Transport transport;
+
+    // Nombre maximum de redirections suivies (matchmaker)
+    private static final int MAX_REDIRECTS = 3;
 
     // Identification
     private String playerName;
     private int playerId = -1;
     private String serverAddress;
     private int serverTcpPort;
+    private int roomId = -1;
+    private volatile int protocolVersion = -1;
+    private volatile long session; // Jeton de reprise donné par le serveur, 0 si aucun
+    private volatile long udpToken; // Jeton de l'en-tête de routage UDP, 0 si aucun
 
     // État
     private volatile boolean connected;
     private volatile boolean running;
+    private volatile boolean inMatch;
+    private volatile boolean resuming;
     private long inputSequence = 0;
 
     // Ping
     private long lastPingTime;
+    private volatile long lastPingNanos;
     private int currentPing;
 
     // État du jeu reçu du serveur
-    private final List<Player> players = new ArrayList<>();
-    private final List<Hole> holes = new ArrayList<>();
-    private final List<Obstacle> obstacles = new ArrayList<>();
-    private long lastTick = 0;
+    private final List<SimPlayer> players = new ArrayList<>();
+    private final List<SimHole> holes = new ArrayList<>();
+    private final List<SimObstacle> obstacles = new ArrayList<>();
+    private final List<Messages.Hazard> hazards = new ArrayList<>(); // Protocole 6
+    private volatile long stateTick; // Tick de simulation du dernier état appliqué (protocole 6)
+    private final Map<Integer, String> playerNames = new HashMap<>();
+    private final Map<Integer, String> playerColors = new HashMap<>();
+    private final JsonReader udpReader = new JsonReader(); // Thread UDP uniquement
+    // Application des états : thread UDP (GAME_STATE) et thread TCP (image
+    // d'un RESYNC, début et fin de manche)
+    private final Object stateLock = new Object();
+    private volatile double finishLineX = -1;
+    private volatile int winnerId = -1;
+    private volatile long lastStateTime;
+
+    // Vérification des empreintes de la simulation du serveur
+    private final DesyncDetector desync = new DesyncDetector();
+
+    // Statistiques de la connexion courante (remplacées à chaque connexion)
+    private volatile ConnectionStats stats = new ConnectionStats();
 
     // Découverte LAN
     private LANDiscovery lanDiscovery;
 
+    // Émulation de liaison (désactivée par défaut)
+    private static volatile LinkProfile defaultLinkUp;
+    private static volatile LinkProfile defaultLinkDown;
+    private static volatile long defaultLinkSeed = 1;
+    private LinkProfile linkUp;
+    private LinkProfile linkDown;
+    private long linkSeed;
+
+    // Capture des datagrammes (désactivée par défaut)
+    private static volatile Path defaultCapturePath;
+    private Path capturePath;
+
     // Callbacks
     private ClientListener listener;
 
@@ -60,7 +111,7 @@ public class GameClient {
 
         void onDisconnected(String reason);
 
-        void onPlayerListUpdate(List<Map<String, Object>> players);
+        void onPlayerListUpdate(List<Messages.PlayerEntry> players);
 
         void onChatMessage(int playerId, String playerName, String message);
 
@@ -73,8 +124,120 @@ public class GameClient {
         void onPingUpdate(int ping);
     }
 
+    // Réception des envois du serveur, quel que soit le transport
+    private final Transport.Receiver receiver = new Transport.Receiver() {
+        @Override
+        public void onMessage(String json) {
+            stats.onMessageReceived(json.length() + 1);
+            processTcpMessage(json);
+        }
+
+        @Override
+        public void onDatagram(byte[] data, int length) {
+            stats.onDatagramReceived(length);
+            processUdpMessage(data, length);
+        }
+
+        @Override
+        public void onClosed() {
+            if (running && !startResume()) {
+                cleanup("Connexion perdue");
+            }
+        }
+    };
+
     public GameClient(String playerName) {
         this.playerName = playerName;
+        this.linkUp = defaultLinkUp;
+        this.linkDown = defaultLinkDown;
+        this.linkSeed = defaultLinkSeed;
+        this.capturePath = defaultCapturePath;
+    }
+
+    // ==================== ÉMULATION DE LIAISON ====================
+    /**
+     * Dégrade la liaison de ce client via un LinkEmulator (à appeler avant
+     * la connexion)
+     *
+     * @param up envois vers le serveur (null = parfaite)
+     * @param down réceptions depuis le serveur (null = parfaite)
+     * @param seed graine des tirages, pour des mesures reproductibles
+     */
+    public void setLinkEmulation(LinkProfile up, LinkProfile down, long seed) {
+        this.linkUp = up;
+        this.linkDown = down;
+        this.linkSeed = seed;
+    }
+
+    /**
+     * Émulation appliquée à tous les clients créés ensuite (option --link)
+     */
+    public static void setDefaultLinkEmulation(LinkProfile up, LinkProfile down, long seed) {
+        defaultLinkUp = up;
+        defaultLinkDown = down;
+        defaultLinkSeed = seed;
+    }
+
+    // ==================== CAPTURE ====================
+    /**
+     * Capture les datagrammes des connexions suivantes dans un fichier
+     * (PacketCapture), à relire avec tools.CaptureReplay
+     *
+     * @param path fichier complété à chaque connexion, null = pas de capture
+     */
+    public void setCapture(Path path) {
+        this.capturePath = path;
+    }
+
+    /**
+     * Capture appliquée à tous les clients créés ensuite (option --capture)
+     */
+    public static void setDefaultCapture(Path path) {
+        defaultCapturePath = path;
+    }
+
+    /**
+     * Prépare le rejeu d'une capture : nouvelles statistiques, état de jeu
+     * vidé, identité du joueur capturé et protocole de sa connexion
+     * (PacketCapture.PLAYER)
+     */
+    public void startReplay(int replayedPlayerId, int replayedProtocol) {
+        this.playerId = replayedPlayerId;
+        this.protocolVersion = replayedProtocol;
+        this.stats = new ConnectionStats();
+        clearGameState();
+    }
+
+    /**
+     * Traite un datagramme capturé comme s'il venait d'arriver : même
+     * comptage, même décodage et même application que pendant la partie
+     */
+    public void replayDatagram(byte[] data, int length) {
+        receiver.onDatagram(data, length);
+    }
+
+    /**
+     * Traite un message fiable capturé, dans l'ordre de la capture. Seuls
+     * ceux qui changent l'état de la partie sont appliqués (GAME_START,
+     * RETURN_TO_LOBBY, RESYNC, HAZARD_SPAWN) : la connexion, le chat et le
+     * ping ne sont pas rejoués.
+     */
+    public void replayMessage(String json) {
+        stats.onMessageReceived(json.length() + 1);
+        try {
+            Messages.TcpMessage msg = Messages.decodeTcp(json);
+            if (msg == null) {
+                return;
+            }
+            switch (msg.type()) {
+                case GAME_START, RETURN_TO_LOBBY, RESYNC, HAZARD_SPAWN -> handleTcpMessage(msg);
+                default -> {
+                    // Hors de l'état de la partie
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[CLIENT] Erreur rejeu TCP: " + e.getMessage());
+        }
     }
 
     // ==================== DÉCOUVERTE LAN ====================
@@ -89,6 +252,16 @@ public class GameClient {
         lanDiscovery.startClientDiscovery(discoveryListener);
     }
 
+    /**
+     * Interroge à nouveau les serveurs du LAN (liste vidée puis remplie par
+     * leurs réponses)
+     */
+    public void refreshDiscovery() {
+        if (lanDiscovery != null) {
+            lanDiscovery.refresh();
+        }
+    }
+
     /**
      * Arrête la recherche de serveurs
      */
@@ -113,72 +286,34 @@ public class GameClient {
     public void connect(String address, int port) {
         this.serverAddress = address;
         this.serverTcpPort = port;
+        this.session = 0;
+        this.stats = new ConnectionStats();
 
         new Thread(() -> {
             try {
-                // Connexion TCP
-                tcpSocket = new Socket();
-                tcpSocket.connect(new InetSocketAddress(address, port), NetworkProtocol.CONNECTION_TIMEOUT);
-                tcpSocket.setSoTimeout(0); // Pas de timeout pour la lecture
-
-                tcpReader = new BufferedReader(
-                        new InputStreamReader(tcpSocket.getInputStream(), "UTF-8")
-                );
-                tcpWriter = new PrintWriter(
-                        new OutputStreamWriter(tcpSocket.getOutputStream(), "UTF-8"), true
-                );
-
-                // Envoyer la demande de connexion
-                tcpWriter.println(JsonUtils.builder()
-                        .put("type", NetworkProtocol.TcpMessageType.CONNECT_REQUEST.name())
-                        .put("playerName", playerName)
-                        .put("version", GameConfig.GAME_VERSION)
-                        .build());
-
-                // Attendre la réponse
-                String response = tcpReader.readLine();
-                Map<String, Object> resp = JsonUtils.parse(response);
-                String type = JsonUtils.getString(resp, "type", "");
-
-                if (NetworkProtocol.TcpMessageType.CONNECT_ACCEPT.name().equals(type)) {
-                    playerId = JsonUtils.getInt(resp, "playerId", -1);
-                    String serverName = JsonUtils.getString(resp, "serverName", "Serveur");
-
-                    connected = true;
-                    running = true;
-
-                    // Ouvrir le socket UDP
-                    udpSocket = new DatagramSocket();
-                    udpSocket.setSoTimeout(100);
-
-                    // Envoyer un premier paquet UDP pour établir le port
-                    sendInput("NONE");
+                Messages.TcpMessage resp = sendConnectRequest(address, port);
 
-                    // Démarrer les threads de lecture
-                    new Thread(this::tcpReadLoop, "Client-TCP").start();
-                    new Thread(this::udpReadLoop, "Client-UDP").start();
-                    new Thread(this::pingLoop, "Client-Ping").start();
+                // Matchmaker : suivre la redirection vers le serveur choisi
+                for (int hops = 0; hops < MAX_REDIRECTS && resp instanceof Messages.ConnectRedirect; hops++) {
+                    Messages.ConnectRedirect redirect = (Messages.ConnectRedirect) resp;
+                    tcpSocket.close();
+                    serverAddress = redirect.address() != null ? redirect.address() : address;
+                    serverTcpPort = redirect.tcpPort();
+                    System.out.println("[CLIENT] Redirigé vers " + serverAddress + ":" + serverTcpPort);
 
-                    // Arrêter la découverte
-                    stopDiscovery();
+                    resp = sendConnectRequest(serverAddress, serverTcpPort);
+                }
 
-                    if (listener != null) {
-                        listener.onConnected(playerId, serverName);
-                        listener.onPlayerListUpdate(JsonUtils.getArray(resp, "players")
-                                .stream()
-                                .filter(o -> o instanceof Map)
-                                .map(o -> {
-                                    @SuppressWarnings("unchecked")
-                                    Map<String, Object> m = (Map<String, Object>) o;
-                                    return m;
-                                })
-                                .collect(java.util.stream.Collectors.toList()));
-                    }
+                String reason = checkAccept(resp);
+                if (reason == null) {
+                    Messages.ConnectAccept accept = (Messages.ConnectAccept) resp;
+                    openTransport(accept.udpPort());
+                    onConnectAccepted(accept);
 
-                    System.out.println("[CLIENT] Connecté au serveur (id=" + playerId + ")");
+                    // Démarrer les threads de lecture
+                    transport.start(receiver);
 
-                } else if (NetworkProtocol.TcpMessageType.CONNECT_REJECT.name().equals(type)) {
-                    String reason = JsonUtils.getString(resp, "reason", "Connexion refusée");
+                } else {
                     tcpSocket.close();
                     if (listener != null) {
                         listener.onConnectionFailed(reason);
@@ -197,266 +332,543 @@ public class GameClient {
         }, "Client-Connect").start();
     }
 
+    /**
+     * Se connecte à un serveur du même processus (joueur hôte), sans socket
+     * ni sérialisation réseau : les messages et états passent par un
+     * LoopbackTransport, mais suivent exactement le même chemin que pour un
+     * client distant.
+     */
+    public void connectLocal(GameServer server) {
+        this.serverAddress = "local";
+        this.serverTcpPort = server.getTcpPort();
+        this.session = 0;
+        this.stats = new ConnectionStats();
+
+        LoopbackTransport[] ends = LoopbackTransport.createPair("Hote");
+        transport = PacketCapture.wrap(LinkEmulator.wrap(ends[0], linkUp, linkDown, linkSeed), capturePath);
+        transport.start(receiver);
+        server.connectLocal(ends[1], connectRequest());
+    }
+
+    /**
+     * Demande de connexion : nom du joueur, versions du protocole comprises
+     * et, pour une reprise, le jeton de la session
+     */
+    private Messages.ConnectRequest connectRequest() {
+        return new Messages.ConnectRequest(playerName, GameConfig.GAME_VERSION,
+                NetworkProtocol.MIN_PROTOCOL_VERSION, NetworkProtocol.PROTOCOL_VERSION, -1, session);
+    }
+
+    /**
+     * Transport vers le serveur sur la connexion TCP qui vient d'être
+     * acceptée, avec un nouveau socket UDP
+     */
+    private void openTransport(int udpPort) throws IOException {
+        DatagramSocket udpSocket = new DatagramSocket();
+        udpSocket.setSoTimeout(100);
+
+        SocketTransport socketTransport = new SocketTransport(tcpSocket, tcpReader, tcpWriter,
+                udpSocket, true, "Client");
+        socketTransport.setDatagramPeer(tcpSocket.getInetAddress(), udpPort);
+        transport = PacketCapture.wrap(
+                LinkEmulator.wrap(socketTransport, linkUp, linkDown, linkSeed), capturePath);
+    }
+
+    /**
+     * Vérifie la réponse à la demande de connexion
+     *
+     * @return null si la connexion est acceptée dans une version du
+     * protocole que l'on comprend, sinon la raison de l'échec
+     */
+    private static String checkAccept(Messages.TcpMessage resp) {
+        if (resp instanceof Messages.ConnectReject) {
+            return ((Messages.ConnectReject) resp).reason();
+        }
+        if (!(resp instanceof Messages.ConnectAccept)) {
+            return "Réponse inattendue du serveur";
+        }
+        int protocol = ((Messages.ConnectAccept) resp).protocol();
+        if (protocol < NetworkProtocol.MIN_PROTOCOL_VERSION || protocol > NetworkProtocol.PROTOCOL_VERSION) {
+            return "Version incompatible (serveur en protocole " + protocol + ")";
+        }
+        return null;
+    }
+
+    /**
+     * Connexion acceptée : mémoriser l'identité et démarrer le ping
+     */
+    private void onConnectAccepted(Messages.ConnectAccept accept) {
+        playerId = accept.playerId();
+        roomId = accept.roomId();
+        protocolVersion = accept.protocol();
+        session = accept.session();
+        udpToken = accept.udpToken();
+        if (transport instanceof PacketCapture capture) {
+            capture.markPlayer(playerId, protocolVersion);
+        }
+
+        connected = true;
+        running = true;
+
+        // Envoyer un premier paquet UDP pour établir le port
+        sendInput("NONE");
+
+        new Thread(this::pingLoop, "Client-Ping").start();
+
+        // Arrêter la découverte
+        stopDiscovery();
+
+        if (listener != null) {
+            listener.onConnected(playerId, accept.serverName());
+            listener.onPlayerListUpdate(accept.players());
+        }
+
+        System.out.println("[CLIENT] Connecté au serveur (id=" + playerId + ", protocole " + protocolVersion + ")");
+    }
+
+    // ==================== REPRISE DE SESSION ====================
+    /**
+     * Connexion perdue : lance la reprise de la session si la manche est en
+     * cours et que le serveur a donné un jeton
+     *
+     * @return false si la reprise n'est pas possible
+     */
+    private boolean startResume() {
+        if (session == 0 || !inMatch || "local".equals(serverAddress)) {
+            return false;
+        }
+        connected = false;
+        resuming = true;
+        System.out.println("[CLIENT] Connexion perdue, reprise de la session...");
+        new Thread(this::resumeLoop, "Client-Resume").start();
+        return true;
+    }
+
+    /**
+     * Renvoie la demande de connexion avec le jeton jusqu'à ce que le
+     * serveur accepte ou refuse, ou que le délai de reprise soit écoulé
+     */
+    private void resumeLoop() {
+        long deadline = System.currentTimeMillis() + NetworkProtocol.RECONNECT_GRACE;
+        String failure = "Connexion perdue";
+        while (running && resuming && System.currentTimeMillis() < deadline) {
+            try {
+                Messages.TcpMessage resp = sendConnectRequest(serverAddress, serverTcpPort);
+                String reason = checkAccept(resp);
+                if (reason != null || ((Messages.ConnectAccept) resp).playerId() != playerId) {
+                    tcpSocket.close();
+                    failure = "Connexion perdue (" + (reason != null ? reason : "place reprise") + ")";
+                    break;
+                }
+                Messages.ConnectAccept accept = (Messages.ConnectAccept) resp;
+                openTransport(accept.udpPort());
+                protocolVersion = accept.protocol();
+                udpToken = accept.udpToken();
+                if (transport instanceof PacketCapture capture) {
+                    capture.markPlayer(playerId, protocolVersion);
+                }
+                resuming = false;
+                connected = true;
+
+                // L'image de la manche (RESYNC) suit l'acceptation
+                transport.start(receiver);
+                sendInput("NONE");
+                if (listener != null) {
+                    listener.onPlayerListUpdate(accept.players());
+                }
+                System.out.println("[CLIENT] Session reprise (id=" + playerId + ")");
+                return;
+
+            } catch (IOException e) {
+                // Serveur encore injoignable : réessayer
+                try {
+                    Thread.sleep(NetworkProtocol.RECONNECT_RETRY);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        if (running && resuming) {
+            resuming = false;
+            cleanup(failure);
+        }
+    }
+
+    /**
+     * Applique l'image complète reçue après une reprise : la manche repart
+     * du tick courant du serveur, empreintes vérifiées depuis la graine
+     */
+    private void applyResync(Messages.Resync resync) {
+        byte[] state = resync.snapshot();
+        Messages.GameState keyframe;
+        try {
+            // Lecteur propre : udpReader appartient au thread UDP, déjà relancé
+            Messages.UdpMessage msg = Messages.decodeUdp(new JsonReader().reset(state, 0, state.length));
+            if (!(msg instanceof Messages.GameState)) {
+                System.err.println("[CLIENT] Image de reprise illisible");
+                return;
+            }
+            keyframe = (Messages.GameState) msg;
+        } catch (IllegalStateException e) {
+            System.err.println("[CLIENT] Image de reprise illisible: " + e.getMessage());
+            return;
+        }
+        synchronized (stateLock) {
+            desync.start(resync.seed());
+            applyGameState(keyframe);
+        }
+        System.out.println("[CLIENT] Manche reprise au tick " + resync.tick() + " (image de "
+                + resync.state().length() + " octets, " + state.length + " décompressés)");
+    }
+
+    /**
+     * Ouvre la connexion TCP et envoie la demande de connexion
+     *
+     * @return la réponse du serveur (acceptation, refus ou redirection),
+     * null si elle est illisible
+     */
+    private Messages.TcpMessage sendConnectRequest(String address, int port) throws IOException {
+        // Connexion TCP
+        tcpSocket = new Socket();
+        tcpSocket.connect(new InetSocketAddress(address, port), NetworkProtocol.CONNECTION_TIMEOUT);
+        tcpSocket.setSoTimeout(0); // Pas de timeout pour la lecture
+
+        tcpReader = new BufferedReader(
+                new InputStreamReader(tcpSocket.getInputStream(), "UTF-8")
+        );
+        tcpWriter = new PrintWriter(
+                new OutputStreamWriter(tcpSocket.getOutputStream(), "UTF-8"), true
+        );
+
+        // Envoyer la demande de connexion
+        tcpWriter.println(Messages.toJson(connectRequest()));
+
+        // Attendre la réponse
+        String response = tcpReader.readLine();
+        if (response == null) {
+            throw new EOFException("connexion fermée par le serveur");
+        }
+        return Messages.decodeTcp(response);
+    }
+
     /**
      * Se déconnecte du serveur
      */
     public void disconnect() {
-        if (!connected) {
+        if (!connected && !resuming) {
             return;
         }
 
-        try {
-            tcpWriter.println(JsonUtils.builder()
-                    .put("type", NetworkProtocol.TcpMessageType.DISCONNECT.name())
-                    .build());
-        } catch (Exception ignored) {
+        if (connected) {
+            try {
+                send(new Messages.Disconnect(null));
+            } catch (Exception ignored) {
+            }
         }
 
         cleanup("Déconnexion");
     }
 
     private void cleanup(String reason) {
+        boolean wasConnected = connected || resuming;
         connected = false;
         running = false;
+        resuming = false;
+        inMatch = false;
+        session = 0;
+        udpToken = 0;
 
-        try {
-            if (tcpSocket != null) {
-                tcpSocket.close();
-            }
-            if (udpSocket != null) {
-                udpSocket.close();
-            }
-        } catch (Exception ignored) {
+        if (transport != null) {
+            transport.close();
         }
 
         if (listener != null && reason != null) {
             listener.onDisconnected(reason);
         }
 
-        System.out.println("[CLIENT] Déconnecté: " + reason);
+        System.out.println("[CLIENT] Déconnecté: " + reason + (wasConnected ? "\n" + stats.format() : ""));
     }
 
-    // ==================== RÉCEPTION TCP ====================
-    private void tcpReadLoop() {
+    // ==================== RÉCEPTION ====================
+    private void processTcpMessage(String json) {
         try {
-            String line;
-            while (running && (line = tcpReader.readLine()) != null) {
-                processTcpMessage(line);
+            Messages.TcpMessage msg = Messages.decodeTcp(json);
+            if (msg != null) {
+                handleTcpMessage(msg);
             }
         } catch (Exception e) {
-            if (running) {
-                cleanup("Connexion perdue");
-            }
+            System.err.println("[CLIENT] Erreur traitement TCP: " + e.getMessage());
         }
     }
 
-    private void processTcpMessage(String json) {
-        try {
-            Map<String, Object> msg = JsonUtils.parse(json);
-            String type = JsonUtils.getString(msg, "type", "");
-
-            switch (type) {
-                case "PLAYER_LIST":
+    private void handleTcpMessage(Messages.TcpMessage msg) {
+        switch (msg.type()) {
+            case CONNECT_ACCEPT -> {
+                // Connexion locale : la réponse arrive par le transport
+                String reason = checkAccept(msg);
+                if (reason == null) {
+                    onConnectAccepted((Messages.ConnectAccept) msg);
+                } else {
+                    cleanup(null);
                     if (listener != null) {
-                        List<Map<String, Object>> playerList = JsonUtils.getArray(msg, "players")
-                                .stream()
-                                .filter(o -> o instanceof Map)
-                                .map(o -> {
-                                    @SuppressWarnings("unchecked")
-                                    Map<String, Object> m = (Map<String, Object>) o;
-                                    return m;
-                                })
-                                .collect(java.util.stream.Collectors.toList());
-                        listener.onPlayerListUpdate(playerList);
+                        listener.onConnectionFailed(reason);
                     }
-                    break;
+                }
+            }
+            case CONNECT_REJECT -> {
+                cleanup(null);
+                if (listener != null) {
+                    listener.onConnectionFailed(((Messages.ConnectReject) msg).reason());
+                }
+            }
+            case PLAYER_LIST -> {
+                if (listener != null) {
+                    listener.onPlayerListUpdate(((Messages.PlayerList) msg).players());
+                }
+            }
+            case CHAT_MESSAGE -> {
+                if (listener != null) {
+                    Messages.ChatMessage chat = (Messages.ChatMessage) msg;
+                    listener.onChatMessage(chat.playerId(), chat.playerName(), chat.message());
+                }
+            }
+            case GAME_START -> {
+                long seed = ((Messages.GameStart) msg).seed();
+                clearGameState();
+                synchronized (stateLock) {
+                    desync.start(seed);
+                }
+                inMatch = true;
+                if (listener != null) {
+                    listener.onGameStart(seed);
+                }
+            }
+            case RETURN_TO_LOBBY -> {
+                synchronized (stateLock) {
+                    desync.stop();
+                }
+                inMatch = false;
+                if (listener != null) {
+                    listener.onReturnToLobby();
+                }
+            }
+            case PONG -> {
+                long timestamp = ((Messages.Pong) msg).timestamp();
+                currentPing = (int) (System.currentTimeMillis() - timestamp);
+                // Mesure fine si c'est la réponse au dernier ping
+                stats.recordRtt(timestamp == lastPingTime
+                        ? (System.nanoTime() - lastPingNanos) / 1000 : currentPing * 1000L);
+                if (listener != null) {
+                    listener.onPingUpdate(currentPing);
+                }
+            }
+            case RESYNC -> applyResync((Messages.Resync) msg);
+            case HAZARD_SPAWN -> addHazards(((Messages.HazardSpawn) msg).hazards());
+            case DISCONNECT -> {
+                String reason = ((Messages.Disconnect) msg).reason();
+                cleanup(reason != null ? reason : "Serveur déconnecté");
+            }
+            default -> {
+                // Messages destinés au serveur
+            }
+        }
+    }
 
-                case "CHAT_MESSAGE":
-                    if (listener != null) {
-                        int senderId = JsonUtils.getInt(msg, "playerId", -1);
-                        String senderName = JsonUtils.getString(msg, "playerName", "");
-                        String message = JsonUtils.getString(msg, "message", "");
-                        listener.onChatMessage(senderId, senderName, message);
-                    }
-                    break;
+    /**
+     * Décode un GAME_STATE en Messages.GameState directement depuis les octets
+     * reçus, sans String ni Map intermédiaires (thread UDP uniquement : le
+     * lecteur est réutilisé)
+     */
+    private void processUdpMessage(byte[] data, int length) {
+        Messages.GameState state;
+        try {
+            Messages.UdpMessage msg = Messages.decodeUdp(udpReader.reset(data, 0, length));
+            if (!(msg instanceof Messages.GameState)) {
+                return;
+            }
+            state = (Messages.GameState) msg;
+        } catch (Exception e) {
+            return; // Ignorer les paquets malformés
+        }
+        synchronized (stateLock) {
+            applyGameState(state);
+        }
+    }
 
-                case "GAME_START":
-                    long seed = (long) JsonUtils.getDouble(msg, "seed", 0);
-                    if (listener != null) {
-                        listener.onGameStart(seed);
-                    }
-                    break;
+    /**
+     * Applique un état reçu (GAME_STATE ou image d'un RESYNC), sous stateLock
+     */
+    private void applyGameState(Messages.GameState state) {
+        try {
+            // Ignorer les états plus vieux (comptés comme en retard ou en double)
+            if (stats.recordSequence(state.tick()) != ConnectionStats.Arrival.NEWEST) {
+                return;
+            }
 
-                case "RETURN_TO_LOBBY":
-                    if (listener != null) {
-                        listener.onReturnToLobby();
-                    }
-                    break;
+            applyPlayers(state.players());
+            if (protocolVersion >= 6) {
+                // Image d'un RESYNC : dangers présents
+                addHazards(state.hazards());
+                stateTick = state.simTick();
+                pruneHazards(stateTick);
+            } else {
+                applyHoles(state.holes());
+                applyObstacles(state.obstacles());
+            }
 
-                case "PONG":
-                    long timestamp = (long) JsonUtils.getDouble(msg, "timestamp", 0);
-                    currentPing = (int) (System.currentTimeMillis() - timestamp);
-                    if (listener != null) {
-                        listener.onPingUpdate(currentPing);
-                    }
-                    break;
+            lastStateTime = state.time();
+            finishLineX = state.finishLine();
+            winnerId = state.winner();
 
-                case "DISCONNECT":
-                    String reason = JsonUtils.getString(msg, "reason", "Serveur déconnecté");
-                    cleanup(reason);
-                    break;
+            if (state.hashTick() >= 0) {
+                checkDesync(state);
+            }
+
+            if (listener != null) {
+                listener.onGameStateUpdate();
             }
         } catch (Exception e) {
-            System.err.println("[CLIENT] Erreur traitement TCP: " + e.getMessage());
+            // Un état incohérent ne doit pas arrêter le thread de réception
+            System.err.println("[CLIENT] État ignoré: " + e);
         }
     }
 
-    // ==================== RÉCEPTION UDP ====================
-    private void udpReadLoop() {
-        byte[] buffer = new byte[2048];
-
-        while (running) {
-            try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                udpSocket.receive(packet);
-
-                String json = new String(packet.getData(), 0, packet.getLength(), "UTF-8");
-                processUdpMessage(json);
+    /**
+     * Compare l'empreinte reçue à la copie locale ; la première divergence
+     * de la manche est journalisée et signalée au serveur
+     */
+    private void checkDesync(Messages.GameState state) {
+        Messages.DesyncReport report;
+        synchronized (hazards) {
+            report = desync.check(state, hazards);
+        }
+        if (report == null) {
+            return;
+        }
+        System.err.println("[DESYNC] Divergence au tick " + report.tick() + " (dernier tick identique : "
+                + report.lastMatchTick() + ")\n" + report.dump());
+        if (protocolVersion >= 3) {
+            send(report);
+        }
+    }
 
-            } catch (SocketTimeoutException e) {
-                // Normal
-            } catch (Exception e) {
-                if (running) {
-                    System.err.println("[CLIENT] Erreur UDP: " + e.getMessage());
+    private void applyPlayers(List<Messages.PlayerState> states) {
+        synchronized (players) {
+            players.clear();
+            for (Messages.PlayerState ps : states) {
+                if (ps.id() == playerId) {
+                    stats.acknowledgeInputs(ps.lastInput());
                 }
+
+                // Nom et couleur ne changent pas pendant la partie
+                playerNames.putIfAbsent(ps.id(), ps.name());
+                playerColors.putIfAbsent(ps.id(), ps.color());
+
+                SimPlayer p = new SimPlayer(ps.id());
+                p.setX((int) ps.x());
+                p.setY((int) ps.y());
+                p.setVelocityY(ps.vy());
+                p.setGravity("UP".equals(ps.gravity()) ? Gravity.UP : Gravity.DOWN);
+                p.setAlive(ps.alive());
+                p.setScore(ps.score());
+                players.add(p);
             }
         }
     }
 
-    private void processUdpMessage(String json) {
-        try {
-            Map<String, Object> msg = JsonUtils.parse(json);
-            String type = JsonUtils.getString(msg, "type", "");
-
-            if ("GAME_STATE".equals(type)) {
-                long tick = (long) JsonUtils.getDouble(msg, "tick", 0);
-
-                // Ignorer les états plus vieux
-                if (tick <= lastTick) {
-                    return;
-                }
-                lastTick = tick;
-
-                // Mettre à jour les joueurs
-                synchronized (players) {
-                    players.clear();
-                    for (Object obj : JsonUtils.getArray(msg, "players")) {
-                        if (obj instanceof Map) {
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> ps = (Map<String, Object>) obj;
-
-                            int id = JsonUtils.getInt(ps, "id", 0);
-                            double x = JsonUtils.getDouble(ps, "x", 0);
-                            double y = JsonUtils.getDouble(ps, "y", 0);
-                            double vy = JsonUtils.getDouble(ps, "vy", 0);
-                            String gravStr = JsonUtils.getString(ps, "gravity", "DOWN");
-                            boolean alive = JsonUtils.getBoolean(ps, "alive", true);
-                            int score = JsonUtils.getInt(ps, "score", 0);
-
-                            String name = JsonUtils.getString(ps, "name", "Player" + id);
-                            String colorHex = JsonUtils.getString(ps, "color", null);
-                            Color color = colorHex != null ? Color.decode(colorHex) : getPlayerColor(id);
-
-                            Player p = new Player(id, name, color);
-                            p.setX((int) x);
-                            p.setY((int) y);
-                            p.setVelocityY(vy);
-                            p.setGravity(Gravity.valueOf(gravStr));
-                            if (!alive) {
-                                p.die();
-                            }
-                            p.setScore(score);
-                            players.add(p);
-                        }
-                    }
-                }
+    private void applyHoles(List<Messages.HoleState> states) {
+        synchronized (holes) {
+            holes.clear();
+            for (Messages.HoleState hs : states) {
+                holes.add(new SimHole((int) hs.x(), hs.width()));
+            }
+        }
+    }
 
-                // Mettre à jour les trous
-                synchronized (holes) {
-                    holes.clear();
-                    for (Object obj : JsonUtils.getArray(msg, "holes")) {
-                        if (obj instanceof Map) {
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> hs = (Map<String, Object>) obj;
-
-                            int hx = JsonUtils.getInt(hs, "x", 0);
-                            int width = JsonUtils.getInt(hs, "width", 80);
-                            holes.add(new Hole(hx, width));
-                        }
-                    }
-                }
+    private void applyObstacles(List<Messages.ObstacleState> states) {
+        synchronized (obstacles) {
+            obstacles.clear();
+            for (Messages.ObstacleState os : states) {
+                obstacles.add(new SimObstacle((int) os.x(), (int) os.y(), os.width(), os.height()));
+            }
+        }
+    }
 
-                // Mettre à jour les obstacles
-                synchronized (obstacles) {
-                    obstacles.clear();
-                    for (Object obj : JsonUtils.getArray(msg, "obstacles")) {
-                        if (obj instanceof Map) {
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> os = (Map<String, Object>) obj;
-
-                            int ox = JsonUtils.getInt(os, "x", 0);
-                            int oy = JsonUtils.getInt(os, "y", 0);
-                            int ow = JsonUtils.getInt(os, "width", 40);
-                            int oh = JsonUtils.getInt(os, "height", 100);
-                            obstacles.add(new Obstacle(ox, oy, ow, oh));
-                        }
-                    }
+    /**
+     * Dangers annoncés (HAZARD_SPAWN, ou image d'un RESYNC qui peut en
+     * répéter certains)
+     */
+    private void addHazards(List<Messages.Hazard> spawned) {
+        if (spawned.isEmpty()) {
+            return;
+        }
+        synchronized (hazards) {
+            for (Messages.Hazard h : spawned) {
+                if (indexOfHazard(h.id()) < 0) {
+                    hazards.add(h);
                 }
+            }
+        }
+    }
 
-                if (listener != null) {
-                    listener.onGameStateUpdate();
-                }
+    private int indexOfHazard(int id) {
+        for (int i = 0; i < hazards.size(); i++) {
+            if (hazards.get(i).id() == id) {
+                return i;
             }
-        } catch (Exception e) {
-            // Ignorer les paquets malformés
+        }
+        return -1;
+    }
+
+    /**
+     * Oublie les dangers sortis de l'écran à gauche au tick donné
+     */
+    private void pruneHazards(long tick) {
+        synchronized (hazards) {
+            hazards.removeIf(h -> h.xAt(tick) + h.width() < 0);
         }
     }
 
-    private Color getPlayerColor(int id) {
-        Color[] colors = {
-            GameConfig.NEON_CYAN,
-            GameConfig.NEON_PINK,
-            GameConfig.NEON_PURPLE,
-            GameConfig.NEON_GREEN
-        };
-        return colors[id % colors.length];
+    /**
+     * Oublie l'état de la manche précédente (nouvelle manche)
+     */
+    private void clearGameState() {
+        synchronized (players) {
+            players.clear();
+        }
+        synchronized (holes) {
+            holes.clear();
+        }
+        synchronized (obstacles) {
+            obstacles.clear();
+        }
+        synchronized (hazards) {
+            hazards.clear();
+        }
+        finishLineX = -1;
+        winnerId = -1;
     }
 
     // ==================== ENVOI ====================
     /**
-     * Envoie une action au serveur (UDP)
+     * Envoie une action au serveur (UDP), précédée de l'en-tête de routage
+     * si le serveur a donné un jeton
      */
     public void sendInput(String action) {
-        if (!connected || udpSocket == null) {
+        if (!connected || transport == null) {
             return;
         }
 
         try {
-            String json = JsonUtils.builder()
-                    .put("type", "INPUT")
-                    .put("playerId", playerId)
-                    .put("sequence", ++inputSequence)
-                    .put("action", action)
-                    .put("timestamp", System.currentTimeMillis())
-                    .build();
-
-            byte[] data = json.getBytes("UTF-8");
-            DatagramPacket packet = new DatagramPacket(
-                    data, data.length,
-                    InetAddress.getByName(serverAddress),
-                    NetworkProtocol.UDP_PORT
-            );
-            udpSocket.send(packet);
+            long sequence = ++inputSequence;
+            Messages.Input input = new Messages.Input(playerId, sequence, action, System.currentTimeMillis());
+            long token = udpToken;
+            byte[] data = token != 0 ? Messages.toRoutedBytes(token, input) : Messages.toBytes(input);
+            if (NetworkProtocol.PlayerAction.GRAVITY_SWITCH.name().equals(action)) {
+                stats.markInputSent(sequence);
+            }
+            stats.onDatagramSent(data.length);
+            transport.sendDatagram(data, data.length);
 
         } catch (Exception e) {
             System.err.println("[CLIENT] Erreur envoi input: " + e.getMessage());
@@ -478,10 +890,8 @@ public class GameClient {
             return;
         }
 
-        tcpWriter.println(JsonUtils.builder()
-                .put("type", NetworkProtocol.TcpMessageType.CHAT_MESSAGE.name())
-                .put("message", message)
-                .build());
+        // Identité renseignée par le serveur
+        send(new Messages.ChatMessage(playerId, playerName, message, System.currentTimeMillis()));
     }
 
     /**
@@ -492,10 +902,13 @@ public class GameClient {
             return;
         }
 
-        tcpWriter.println(JsonUtils.builder()
-                .put("type", NetworkProtocol.TcpMessageType.PLAYER_READY.name())
-                .put("ready", ready)
-                .build());
+        send(new Messages.PlayerReady(ready));
+    }
+
+    private void send(Messages.TcpMessage message) {
+        String json = Messages.toJson(message);
+        stats.onMessageSent(json.length() + 1);
+        transport.sendMessage(json);
     }
 
     // ==================== PING ====================
@@ -506,10 +919,8 @@ public class GameClient {
 
                 if (connected) {
                     lastPingTime = System.currentTimeMillis();
-                    tcpWriter.println(JsonUtils.builder()
-                            .put("type", "PING")
-                            .put("timestamp", lastPingTime)
-                            .build());
+                    lastPingNanos = System.nanoTime();
+                    send(new Messages.Ping(lastPingTime));
                 }
             } catch (Exception e) {
                 if (running) {
@@ -532,23 +943,150 @@ public class GameClient {
         return playerId;
     }
 
+    public int getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * Version du protocole retenue avec le serveur, -1 avant la connexion
+     */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
     public int getPing() {
         return currentPing;
     }
 
-    public List<Player> getPlayers() {
+    /**
+     * Premier tick de la manche en cours où la simulation locale a divergé
+     * de celle du serveur, -1 si aucun
+     */
+    public long getDesyncTick() {
+        return desync.getDivergentTick();
+    }
+
+    /**
+     * Statistiques de la connexion courante (ou de la dernière)
+     */
+    public ConnectionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Octets reçus du serveur (messages et datagrammes)
+     */
+    public long getBytesReceived() {
+        return stats.getBytesReceived();
+    }
+
+    public long getStatesReceived() {
+        return stats.getNewest();
+    }
+
+    /**
+     * États jamais reçus (trous dans la numérotation des ticks)
+     */
+    public long getStatesMissed() {
+        return stats.getMissed();
+    }
+
+    /**
+     * États arrivés après un plus récent, ou en double (ignorés)
+     */
+    public long getStatesOutOfOrder() {
+        return stats.getLate() + stats.getDuplicates();
+    }
+
+    /**
+     * Horloge du serveur (ms) à l'envoi du dernier état appliqué
+     */
+    public long getLastStateTime() {
+        return lastStateTime;
+    }
+
+    /**
+     * Émulateur de liaison en place, ou null si la liaison n'est pas émulée
+     */
+    public LinkEmulator getLinkEmulator() {
+        Transport current = transport;
+        if (current instanceof PacketCapture capture) {
+            current = capture.getInner();
+        }
+        return current instanceof LinkEmulator ? (LinkEmulator) current : null;
+    }
+
+    public List<SimPlayer> getPlayers() {
         synchronized (players) {
             return new ArrayList<>(players);
         }
     }
 
-    public List<Hole> getHoles() {
+    public String getPlayerName(int id) {
+        synchronized (players) {
+            return playerNames.getOrDefault(id, "Player" + id);
+        }
+    }
+
+    public String getPlayerColorHex(int id) {
+        synchronized (players) {
+            return playerColors.getOrDefault(id, NetworkProtocol.playerColor(id));
+        }
+    }
+
+    /**
+     * La ligne d'arrivée est apparue
+     */
+    public boolean isFinishLineActive() {
+        return finishLineX >= 0;
+    }
+
+    public double getFinishLineX() {
+        return finishLineX;
+    }
+
+    /**
+     * Identifiant du vainqueur de la manche, -1 si aucun
+     */
+    public int getWinnerId() {
+        return winnerId;
+    }
+
+    /**
+     * Trous au tick du dernier état (calculés depuis leurs annonces en
+     * protocole 6)
+     */
+    public List<SimHole> getHoles() {
+        if (protocolVersion >= 6) {
+            long tick = stateTick;
+            List<SimHole> result = new ArrayList<>();
+            synchronized (hazards) {
+                for (Messages.Hazard h : hazards) {
+                    if (h.isHole()) {
+                        result.add(new SimHole(h.id(), h.xAt(tick), h.width()));
+                    }
+                }
+            }
+            return result;
+        }
         synchronized (holes) {
             return new ArrayList<>(holes);
         }
     }
 
-    public List<Obstacle> getObstacles() {
+    public List<SimObstacle> getObstacles() {
+        if (protocolVersion >= 6) {
+            long tick = stateTick;
+            List<SimObstacle> result = new ArrayList<>();
+            synchronized (hazards) {
+                for (Messages.Hazard h : hazards) {
+                    if (!h.isHole()) {
+                        result.add(new SimObstacle(h.id(), h.xAt(tick), h.y(), h.width(), h.height()));
+                    }
+                }
+            }
+            return result;
+        }
         synchronized (obstacles) {
             return new ArrayList<>(obstacles);
         }
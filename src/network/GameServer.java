@@ -1,54 +1,97 @@
 package network;
 
-import core.GameConfig;
-import entity.Hole;
-import entity.Obstacle;
-import entity.Player;
-import java.awt.Color;
 import java.io.*;
 import java.net.*;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Serveur de jeu autoritaire - Gère les connexions TCP des clients - Reçoit les
  * inputs UDP des clients - Diffuse l'état du jeu en UDP - Le serveur fait
  * autorité sur l'état du jeu
+ *
+ * Le serveur héberge une ou plusieurs salles (Room), chacune avec sa propre
+ * partie simulée à cadence fixe par un pool de threads partagé. En mode
+ * hébergé (depuis l'interface), il n'y a qu'une salle : le joueur hôte s'y
+ * connecte comme un client ordinaire, par un LoopbackTransport (connectLocal).
+ * En mode dédié, les salles sont créées à la demande. Cette classe ne doit
+ * charger ni Swing ni AWT.
+ *
+ * Un joueur distant dont la connexion tombe en pleine manche garde sa place
+ * pendant NetworkProtocol.RECONNECT_GRACE : il reste dans la simulation, et
+ * le jeton de session reçu dans son CONNECT_ACCEPT lui permet de la
+ * reprendre (même identifiant, même salle). Il reçoit alors une image
+ * complète de la manche (RESYNC) et rejoue aussitôt.
+ *
+ * Les datagrammes d'un client distant (protocole 5) portent en tête le jeton
+ * de routage reçu dans son CONNECT_ACCEPT : le client est retrouvé par un
+ * accès à la table routes avant tout décodage, et un jeton inconnu est
+ * écarté sans lire le JSON. Seul un datagramme au bon jeton peut changer
+ * l'adresse UDP d'un client.
  */
 public class GameServer {
 
     // Sockets
     private ServerSocket tcpServer;
     private DatagramSocket udpSocket;
+    private final int tcpPort;
+    private final int udpPort;
 
     // État
     private volatile boolean running;
     private String serverName;
+    private final boolean dedicated;
     private final Map<Integer, ClientHandler> clients = new ConcurrentHashMap<>();
-    private int nextPlayerId = 0;
-    private long currentTick = 0;
+    private final AtomicInteger nextPlayerId = new AtomicInteger(0);
+
+    // Sessions reprenables (protocole 4) : jeton → dernier handler du
+    // joueur, connecté ou en attente de son retour (modifiées sous le verrou
+    // de rooms)
+    private final Map<Long, ClientHandler> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom sessionRandom = new SecureRandom();
+
+    // Routage des datagrammes : indice tiré du jeton → client (lue sans
+    // verrou par le thread de réception UDP, modifiée sous son propre verrou)
+    private static final int ROUTE_MASK = (1 << NetworkProtocol.UDP_ROUTE_SLOT_BITS) - 1;
+
+    // Rapports de désynchronisation : le texte vient du client, sa taille et
+    // leur fréquence sont bornées avant d'arriver dans le journal
+    private static final int MAX_DESYNC_DUMP = 4096;
+    private static final long DESYNC_REPORT_INTERVAL = 10_000; // ms entre deux rapports journalisés par client
+    private final AtomicReferenceArray<ClientHandler> routes = new AtomicReferenceArray<>(ROUTE_MASK + 1);
+    private int routeCursor;
+
+    // Salles
+    private final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRoomId = new AtomicInteger(0);
+    private int maxRooms = 1;
+    private Room defaultRoom;
+
+    // Pool de ticks partagé par toutes les salles
+    private ScheduledThreadPoolExecutor tickPool;
+
+    // Mesures de santé (JMX, MetricsHttpServer)
+    private final ServerMetrics metrics = new ServerMetrics(this);
+
+    // Matchmaker auquel le serveur rapporte sa charge (optionnel)
+    private InetSocketAddress matchmakerAddress;
 
     // Découverte LAN
     private LANDiscovery lanDiscovery;
 
-    // État du jeu (le serveur est autoritaire)
-    private boolean gameStarted;
-    private final List<Player> players = new ArrayList<>();
-    private final List<Hole> holes = new ArrayList<>();
-    private final List<Obstacle> obstacles = new ArrayList<>();
-    private long gameSeed;
+    // Encodage des messages diffusés (liste des joueurs, chat), réutilisé
+    // sous son propre verrou
+    private final JsonWriter broadcastWriter = new JsonWriter();
+
+    // Décodage des datagrammes (thread de réception UDP uniquement)
+    private final JsonReader udpReader = new JsonReader();
 
     // Callbacks
     private ServerListener listener;
 
-    // Couleurs disponibles pour les joueurs
-    private static final Color[] PLAYER_COLORS = {
-        GameConfig.NEON_CYAN,
-        GameConfig.NEON_PINK,
-        GameConfig.NEON_PURPLE,
-        GameConfig.NEON_GREEN
-    };
-
     /**
      * Interface de callback pour les événements serveur
      */
@@ -68,7 +111,42 @@ public class GameServer {
     }
 
     public GameServer(String serverName) {
+        this(serverName, false);
+    }
+
+    /**
+     * @param dedicated true pour un serveur sans joueur hôte qui simule la
+     * partie lui-même
+     */
+    public GameServer(String serverName, boolean dedicated) {
+        this(serverName, dedicated, NetworkProtocol.TCP_PORT, NetworkProtocol.UDP_PORT);
+    }
+
+    /**
+     * @param tcpPort port TCP d'écoute (0 = port libre choisi par le système)
+     * @param udpPort port UDP de jeu (0 = port libre choisi par le système)
+     */
+    public GameServer(String serverName, boolean dedicated, int tcpPort, int udpPort) {
         this.serverName = serverName;
+        this.dedicated = dedicated;
+        this.tcpPort = tcpPort;
+        this.udpPort = udpPort;
+    }
+
+    /**
+     * Nombre maximum de salles simultanées (mode dédié, 1 par défaut)
+     */
+    public void setMaxRooms(int maxRooms) {
+        this.maxRooms = Math.max(1, maxRooms);
+    }
+
+    /**
+     * Enregistre le serveur auprès d'un matchmaker (à appeler avant start).
+     * Le serveur n'est alors plus annoncé directement sur le LAN : les
+     * clients passent par le matchmaker.
+     */
+    public void setMatchmaker(InetSocketAddress matchmakerAddress) {
+        this.matchmakerAddress = matchmakerAddress;
     }
 
     // ==================== DÉMARRAGE/ARRÊT ====================
@@ -78,15 +156,28 @@ public class GameServer {
     public boolean start() {
         try {
             // Démarrer le serveur TCP
-            tcpServer = new ServerSocket(NetworkProtocol.TCP_PORT);
+            tcpServer = new ServerSocket(tcpPort);
             tcpServer.setSoTimeout(1000); // Pour pouvoir arrêter proprement
 
             // Démarrer le socket UDP
-            udpSocket = new DatagramSocket(NetworkProtocol.UDP_PORT);
+            udpSocket = new DatagramSocket(udpPort);
             udpSocket.setSoTimeout(100);
 
             running = true;
-            gameStarted = false;
+
+            // Un thread de tick par cœur, partagé par toutes les salles
+            // (un seul suffit pour la salle unique d'une partie hébergée)
+            int threads = dedicated ? Runtime.getRuntime().availableProcessors() : 1;
+            AtomicInteger threadIndex = new AtomicInteger();
+            tickPool = new ScheduledThreadPoolExecutor(threads,
+                    r -> new Thread(r, "Server-Tick-" + threadIndex.incrementAndGet()));
+            tickPool.setRemoveOnCancelPolicy(true);
+
+            if (!dedicated) {
+                // Une seule salle, que l'hôte rejoint avec connectLocal
+                maxRooms = 1;
+                defaultRoom = createRoom();
+            }
 
             // Thread d'acceptation TCP
             new Thread(this::acceptLoop, "Server-Accept").start();
@@ -94,14 +185,25 @@ public class GameServer {
             // Thread de réception UDP
             new Thread(this::udpReceiveLoop, "Server-UDP-Recv").start();
 
-            // Démarrer l'annonce LAN
-            lanDiscovery = new LANDiscovery();
-            lanDiscovery.startServerBroadcast(serverName);
+            if (matchmakerAddress != null) {
+                // Rapporter la charge au matchmaker
+                Thread heartbeat = new Thread(this::matchmakerHeartbeatLoop, "Server-Matchmaker");
+                heartbeat.setDaemon(true);
+                heartbeat.start();
+            } else {
+                // Démarrer l'annonce LAN
+                lanDiscovery = new LANDiscovery();
+                lanDiscovery.setProbePort(getUdpPort());
+                lanDiscovery.startServerBroadcast(serverName, getTcpPort());
+                updateLanInfo();
+            }
 
-            // Ajouter le joueur hôte (id=0)
-            addHostPlayer();
+            if (dedicated) {
+                metrics.register();
+            }
 
-            System.out.println("[SERVER] Serveur démarré sur le port " + NetworkProtocol.TCP_PORT);
+            System.out.println("[SERVER] Serveur démarré sur le port " + getTcpPort()
+                    + (dedicated ? " (" + maxRooms + " salle(s) max)" : ""));
             return true;
 
         } catch (Exception e) {
@@ -118,19 +220,35 @@ public class GameServer {
      * Arrête le serveur
      */
     public void stop() {
+        boolean wasRunning = running;
         running = false;
 
+        if (tickPool != null) {
+            tickPool.shutdownNow();
+        }
+        metrics.unregister();
+
+        // Se désinscrire du matchmaker sans attendre l'expiration
+        if (wasRunning && matchmakerAddress != null) {
+            sendToMatchmaker(JsonUtils.builder()
+                    .put("type", "MM_UNREGISTER")
+                    .put("tcpPort", getTcpPort())
+                    .build());
+        }
+
         // Notifier tous les clients
-        broadcastTcp(JsonUtils.builder()
-                .put("type", NetworkProtocol.TcpMessageType.DISCONNECT.name())
-                .put("reason", "Serveur fermé")
-                .build());
+        String json = Messages.toJson(new Messages.Disconnect("Serveur fermé"));
+        for (ClientHandler handler : clients.values()) {
+            handler.sendMessage(json);
+        }
 
         // Fermer toutes les connexions
         for (ClientHandler client : clients.values()) {
-            client.close();
+            client.transport.close();
+            releaseRoute(client);
         }
         clients.clear();
+        sessions.clear();
 
         // Fermer les sockets
         try {
@@ -151,6 +269,153 @@ public class GameServer {
         System.out.println("[SERVER] Serveur arrêté");
     }
 
+    // ==================== SALLES ====================
+    private Room createRoom() {
+        Room room = new Room(nextRoomId.getAndIncrement());
+        rooms.put(room.getRoomId(), room);
+        if (tickPool != null) {
+            room.tickTask = tickPool.scheduleAtFixedRate(() -> tickRoom(room), 0,
+                    1_000_000_000L / NetworkProtocol.TICK_RATE, TimeUnit.NANOSECONDS);
+        }
+        if (dedicated) {
+            System.out.println("[SERVER] Salle " + room.getRoomId() + " créée");
+        }
+        return room;
+    }
+
+    private void removeRoom(Room room) {
+        if (rooms.remove(room.getRoomId()) == null) {
+            return;
+        }
+        if (room.tickTask != null) {
+            room.tickTask.cancel(false);
+        }
+        System.out.println("[SERVER] Salle " + room.getRoomId() + " fermée");
+    }
+
+    /**
+     * Choisit la salle d'un nouveau joueur : la salle demandée si elle existe,
+     * sinon la première salle en attente qui a de la place, sinon une nouvelle
+     * salle si la limite le permet. Appelé sous le verrou de rooms.
+     *
+     * @return la salle, ou null si aucune n'est disponible
+     */
+    private Room findRoomFor(int requestedRoomId) {
+        if (!dedicated) {
+            return defaultRoom;
+        }
+        Room requested = rooms.get(requestedRoomId);
+        if (requested != null) {
+            return requested;
+        }
+        for (Room room : rooms.values()) {
+            if (room.isJoinable()) {
+                return room;
+            }
+        }
+        if (rooms.size() < maxRooms) {
+            return createRoom();
+        }
+        return null;
+    }
+
+    /**
+     * Un tick d'une salle sur le pool partagé : simule puis diffuse l'état
+     */
+    private void tickRoom(Room room) {
+        if (!running) {
+            return;
+        }
+        long start = System.nanoTime();
+        room.recordTickStart(start);
+        try {
+            byte[] snapshot = room.tick();
+            if (snapshot == null) {
+                return;
+            }
+            sendToRoom(room, snapshot);
+
+            // Dangers apparus pendant le tick, annoncés une seule fois
+            String spawn = room.takeSpawns();
+            if (spawn != null) {
+                for (int playerId : room.getPlayerIds()) {
+                    ClientHandler handler = clients.get(playerId);
+                    if (handler != null && handler.protocol >= 6) {
+                        handler.sendMessage(spawn);
+                    }
+                }
+            }
+
+            // Coût du tick complet (simulation + envoi) pour le matchmaker
+            metrics.onTick(System.nanoTime() - start);
+
+            // Serveur dédié : enchaîner les manches (en partie hébergée,
+            // c'est l'hôte qui relance ou renvoie au lobby)
+            if (dedicated && room.isMatchOver()) {
+                int winnerId = room.getWinnerId();
+                System.out.println("[SERVER] Salle " + room.getRoomId() + ": manche terminée"
+                        + (winnerId >= 0 ? ", vainqueur: " + room.getPlayerName(winnerId) : ", aucun survivant"));
+                returnToLobby(room);
+            }
+        } catch (Exception e) {
+            // Une exception annulerait la tâche planifiée
+            System.err.println("[SERVER] Erreur tick salle " + room.getRoomId() + ": " + e.getMessage());
+        }
+    }
+
+    // ==================== MATCHMAKER ====================
+    private void matchmakerHeartbeatLoop() {
+        long lastTicks = 0;
+        long lastOverruns = 0;
+
+        while (running) {
+            int players = 0;
+            int joinable = 0;
+            for (Room room : rooms.values()) {
+                players += room.getPlayerCount();
+                if (room.isJoinable()) {
+                    joinable++;
+                }
+            }
+
+            // Proportion de ticks en retard depuis le dernier heartbeat
+            long ticks = metrics.getTicksRun();
+            long overruns = metrics.getTicksOverrun();
+            double overrunRatio = ticks > lastTicks
+                    ? (double) (overruns - lastOverruns) / (ticks - lastTicks) : 0;
+            lastTicks = ticks;
+            lastOverruns = overruns;
+
+            sendToMatchmaker(JsonUtils.builder()
+                    .put("type", "MM_HEARTBEAT")
+                    .put("serverName", serverName)
+                    .put("tcpPort", getTcpPort())
+                    .put("players", players)
+                    .put("rooms", rooms.size())
+                    .put("maxRooms", maxRooms)
+                    .put("joinableRooms", joinable)
+                    .put("overrunRatio", overrunRatio)
+                    .build());
+
+            try {
+                Thread.sleep(NetworkProtocol.MATCHMAKER_HEARTBEAT_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sendToMatchmaker(String json) {
+        try {
+            byte[] data = json.getBytes("UTF-8");
+            udpSocket.send(new DatagramPacket(data, data.length, matchmakerAddress));
+        } catch (Exception e) {
+            if (running) {
+                System.err.println("[SERVER] Erreur envoi matchmaker: " + e.getMessage());
+            }
+        }
+    }
+
     // ==================== GESTION DES CONNEXIONS ====================
     private void acceptLoop() {
         while (running) {
@@ -178,160 +443,416 @@ public class GameServer {
             );
 
             String requestJson = reader.readLine();
-            Map<String, Object> request = JsonUtils.parse(requestJson);
-
-            String type = JsonUtils.getString(request, "type", "");
-            if (!NetworkProtocol.TcpMessageType.CONNECT_REQUEST.name().equals(type)) {
+            if (requestJson == null
+                    || !(Messages.decodeTcp(requestJson) instanceof Messages.ConnectRequest request)) {
                 socket.close();
                 return;
             }
 
-            String playerName = JsonUtils.getString(request, "playerName", "Joueur");
+            // Les datagrammes du client arrivent sur le socket UDP partagé
+            SocketTransport transport = new SocketTransport(socket, reader, writer, udpSocket, false,
+                    "Client-" + socket.getPort());
+            acceptClient(transport, request, false);
 
-            // Vérifier si la partie est pleine
-            if (clients.size() >= NetworkProtocol.MAX_PLAYERS - 1) { // -1 car l'hôte compte
-                writer.println(JsonUtils.builder()
-                        .put("type", NetworkProtocol.TcpMessageType.CONNECT_REJECT.name())
-                        .put("reason", "Partie pleine")
-                        .build());
+        } catch (Exception e) {
+            System.err.println("[SERVER] Erreur nouvelle connexion: " + e.getMessage());
+            try {
                 socket.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /**
+     * Connecte le joueur hôte à son propre serveur, sans socket. L'hôte
+     * devient un client comme les autres (id 0) : ses inputs passent par
+     * processInput et il reçoit les mêmes messages et états.
+     *
+     * @param transport extrémité serveur d'un LoopbackTransport
+     * @param request demande de connexion du joueur hôte
+     */
+    public void connectLocal(Transport transport, Messages.ConnectRequest request) {
+        acceptClient(transport, request, true);
+    }
+
+    /**
+     * Accepte ou refuse une demande de connexion, quel que soit le transport
+     */
+    private void acceptClient(Transport transport, Messages.ConnectRequest request, boolean host) {
+        String playerName = request.playerName();
+
+        // Version du protocole : la plus récente que les deux côtés comprennent
+        int protocol = NetworkProtocol.negotiate(request.minProtocol(), request.protocol());
+        if (protocol < 0) {
+            reject(transport, "Version incompatible (client en protocole " + request.minProtocol() + "-"
+                    + request.protocol() + ", serveur en " + NetworkProtocol.MIN_PROTOCOL_VERSION + "-"
+                    + NetworkProtocol.PROTOCOL_VERSION + ")");
+            return;
+        }
+
+        // Reprise de session après une coupure
+        if (request.session() != 0) {
+            resumeClient(transport, request, protocol);
+            return;
+        }
+
+        Room room;
+        int playerId;
+        ClientHandler handler;
+        synchronized (rooms) {
+            room = findRoomFor(request.room());
+
+            // Vérifier si la partie est pleine (l'hôte compte comme un joueur)
+            if (room == null || room.getPlayerCount() >= NetworkProtocol.MAX_PLAYERS) {
+                reject(transport, "Partie pleine");
                 return;
             }
 
             // Vérifier si la partie a commencé
-            if (gameStarted) {
-                writer.println(JsonUtils.builder()
-                        .put("type", NetworkProtocol.TcpMessageType.CONNECT_REJECT.name())
-                        .put("reason", "Partie déjà en cours")
-                        .build());
-                socket.close();
+            if (room.isGameStarted()) {
+                reject(transport, "Partie déjà en cours");
                 return;
             }
 
-            // Accepter la connexion
-            int playerId = ++nextPlayerId;
+            // Accepter la connexion (identifiant unique sur tout le serveur,
+            // 0 est réservé à l'hôte)
+            playerId = host ? 0 : nextPlayerId.incrementAndGet();
+
+            // Créer le handler client (l'hôte, dans le même processus, ne
+            // perd jamais sa connexion : pas de jeton)
+            long session = !host && protocol >= 4 ? newSessionToken() : 0;
+            handler = new ClientHandler(transport, playerId, playerName, room, host, protocol, session);
+            if (!assignRoute(handler)) {
+                if (dedicated && room.getPlayerCount() == 0) {
+                    removeRoom(room); // Créée pour ce joueur
+                }
+                reject(transport, "Serveur plein");
+                return;
+            }
 
             // Créer le joueur
-            Player newPlayer = new Player(playerId, playerName, PLAYER_COLORS[playerId % PLAYER_COLORS.length]);
-            synchronized (players) {
-                players.add(newPlayer);
-            }
+            room.addPlayer(playerId, playerName);
+        }
 
-            // Créer le handler client
-            ClientHandler handler = new ClientHandler(socket, playerId, playerName, reader, writer);
-            clients.put(playerId, handler);
+        long session = handler.session;
+        clients.put(playerId, handler);
+        if (session != 0) {
+            sessions.put(session, handler);
+        }
 
-            // Envoyer l'acceptation
-            writer.println(JsonUtils.builder()
-                    .put("type", NetworkProtocol.TcpMessageType.CONNECT_ACCEPT.name())
-                    .put("playerId", playerId)
-                    .put("serverName", serverName)
-                    .putArray("players", buildPlayerList())
-                    .build());
+        // Envoyer l'acceptation
+        handler.sendMessage(buildAccept(handler));
 
-            // Démarrer le thread de lecture
-            new Thread(() -> clientReadLoop(handler), "Client-" + playerId).start();
+        startReceiving(handler);
 
-            // Notifier tous les clients de la nouvelle liste
-            broadcastPlayerList();
+        // Notifier tous les clients de la nouvelle liste
+        broadcastPlayerList(room);
 
-            // Mettre à jour l'annonce LAN
-            lanDiscovery.updateServerInfo(clients.size() + 1, gameStarted);
+        // Mettre à jour l'annonce LAN
+        updateLanInfo();
 
-            if (listener != null) {
-                listener.onPlayerConnected(playerId, playerName);
+        if (listener != null) {
+            listener.onPlayerConnected(playerId, playerName);
+        }
+
+        System.out.println("[SERVER] Joueur connecté: " + playerName + " (id=" + playerId
+                + (dedicated ? ", salle " + room.getRoomId() : "") + ")");
+    }
+
+    /**
+     * Reprend la place d'un joueur coupé en pleine manche : nouveau handler
+     * sur le nouveau transport, même identifiant, même salle, et une image
+     * complète de la manche pour repartir du tick courant. Si l'ancienne
+     * connexion n'a pas encore été vue fermée (coupure détectée d'abord par
+     * le client), elle est fermée ici.
+     *
+     * L'image est prise et envoyée, et le handler publié, sous le verrou de
+     * la salle : aucun tick ne passe entre les deux, si bien que le joueur
+     * reçoit toutes les annonces de dangers (HAZARD_SPAWN) postérieures à
+     * l'image, et rien avant son CONNECT_ACCEPT.
+     */
+    private void resumeClient(Transport transport, Messages.ConnectRequest request, int protocol) {
+        ClientHandler handler;
+        Messages.Resync keyframe;
+        String resync;
+        synchronized (rooms) {
+            ClientHandler previous = sessions.get(request.session());
+            Room room = previous != null ? previous.room : null;
+            if (room == null || protocol < 4 || !room.isGameStarted()) {
+                // Jeton inconnu, expiré, ou manche terminée entre-temps
+                reject(transport, "Session expirée");
+                return;
             }
 
-            System.out.println("[SERVER] Joueur connecté: " + playerName + " (id=" + playerId + ")");
+            // La place de l'ancienne connexion dans la table de routage est
+            // reprise par la nouvelle (le client l'a abandonnée)
+            handler = new ClientHandler(transport, previous.playerId, previous.playerName, room,
+                    false, protocol, previous.session);
+            handler.ready = previous.ready;
+            releaseRoute(previous);
+            if (!assignRoute(handler)) {
+                // L'ancienne connexion reste en attente de reprise
+                reject(transport, "Serveur plein");
+                return;
+            }
 
-        } catch (Exception e) {
-            System.err.println("[SERVER] Erreur nouvelle connexion: " + e.getMessage());
-            try {
-                socket.close();
-            } catch (Exception ignored) {
+            if (previous.graceTimer != null) {
+                previous.graceTimer.cancel(false);
+            }
+            if (clients.remove(previous.playerId, previous)) {
+                previous.transport.close();
             }
+            synchronized (room) {
+                keyframe = room.buildKeyframe();
+                resync = Messages.toJson(keyframe);
+                handler.sendMessage(buildAccept(handler));
+                handler.sendMessage(resync);
+                clients.put(handler.playerId, handler);
+            }
+            sessions.put(handler.session, handler);
         }
+
+        startReceiving(handler);
+
+        broadcastPlayerList(handler.room);
+        if (listener != null) {
+            listener.onPlayerConnected(handler.playerId, handler.playerName);
+        }
+
+        System.out.println("[SERVER] Joueur reconnecté: " + handler.playerName + " (id=" + handler.playerId
+                + ", tick " + keyframe.tick() + ", image de " + resync.length() + " octets)");
     }
 
-    private void clientReadLoop(ClientHandler handler) {
-        try {
-            String line;
-            while (running && (line = handler.reader.readLine()) != null) {
-                processClientMessage(handler, line);
+    /**
+     * Jeton de session : aléatoire, non nul et inutilisé
+     */
+    private long newSessionToken() {
+        long token;
+        do {
+            token = sessionRandom.nextLong();
+        } while (token == 0 || sessions.containsKey(token));
+        return token;
+    }
+
+    private String buildAccept(ClientHandler handler) {
+        Room room = handler.room;
+        synchronized (broadcastWriter) {
+            broadcastWriter.reset()
+                    .beginObject()
+                    .put("type", NetworkProtocol.TcpMessageType.CONNECT_ACCEPT.name())
+                    .put("playerId", handler.playerId)
+                    .put("serverName", serverName)
+                    .put("roomId", room.getRoomId())
+                    .put("udpPort", getUdpPort())
+                    .put("protocol", handler.protocol);
+            if (handler.session != 0) {
+                broadcastWriter.put("session", handler.session);
             }
-        } catch (Exception e) {
-            if (running) {
-                System.err.println("[SERVER] Erreur lecture client " + handler.playerId + ": " + e.getMessage());
+            if (handler.udpToken != 0) {
+                broadcastWriter.put("udpToken", handler.udpToken);
             }
-        } finally {
-            disconnectClient(handler.playerId);
+            broadcastWriter.name("players");
+            writePlayerList(broadcastWriter, room);
+            return broadcastWriter.endObject().toString();
         }
     }
 
+    /**
+     * Démarre la réception des envois d'un client
+     */
+    private void startReceiving(ClientHandler handler) {
+        handler.transport.start(new Transport.Receiver() {
+            @Override
+            public void onMessage(String json) {
+                handler.stats.onMessageReceived(json.length() + 1);
+                processClientMessage(handler, json);
+            }
+
+            @Override
+            public void onDatagram(byte[] data, int length) {
+                // Seul le transport en mémoire livre ses datagrammes ici,
+                // ceux des sockets passent par udpReceiveLoop
+                handler.stats.onDatagramReceived(length);
+                if (Messages.decodeUdp(data, length) instanceof Messages.Input input) {
+                    processInput(handler, input);
+                }
+            }
+
+            @Override
+            public void onClosed() {
+                // Coupure : la place est gardée si la manche est en cours
+                disconnectClient(handler, true);
+            }
+        });
+    }
+
+    private void reject(Transport transport, String reason) {
+        transport.sendMessage(Messages.toJson(new Messages.ConnectReject(reason)));
+        transport.close();
+    }
+
     private void processClientMessage(ClientHandler handler, String json) {
         try {
-            Map<String, Object> msg = JsonUtils.parse(json);
-            String type = JsonUtils.getString(msg, "type", "");
+            Messages.TcpMessage msg = Messages.decodeTcp(json);
+            if (msg == null) {
+                return;
+            }
 
-            switch (type) {
-                case "CHAT_MESSAGE":
-                    String message = JsonUtils.getString(msg, "message", "");
-                    broadcastChat(handler.playerId, handler.playerName, message);
+            switch (msg.type()) {
+                case CHAT_MESSAGE -> {
+                    // Identité de la connexion, pas celle annoncée par le client
+                    String message = ((Messages.ChatMessage) msg).message();
+                    broadcastChat(handler.room, handler.playerId, handler.playerName, message);
                     if (listener != null) {
                         listener.onChatMessage(handler.playerId, handler.playerName, message);
                     }
-                    break;
-
-                case "PLAYER_READY":
-                    boolean ready = JsonUtils.getBoolean(msg, "ready", false);
-                    handler.ready = ready;
-                    broadcastPlayerList();
-                    break;
-
-                case "PING":
-                    long timestamp = JsonUtils.getInt(msg, "timestamp", 0);
-                    handler.writer.println(JsonUtils.builder()
-                            .put("type", "PONG")
-                            .put("timestamp", timestamp)
-                            .build());
-                    break;
-
-                case "DISCONNECT":
-                    disconnectClient(handler.playerId);
-                    break;
+                }
+                case PLAYER_READY -> {
+                    handler.ready = ((Messages.PlayerReady) msg).ready() || handler.host;
+                    broadcastPlayerList(handler.room);
+                    startIfAllReady(handler.room);
+                }
+                case PING -> handler.sendMessage(
+                        Messages.toJson(new Messages.Pong(((Messages.Ping) msg).timestamp())));
+                case DISCONNECT -> disconnectClient(handler, false);
+                case DESYNC_REPORT -> logDesyncReport(handler, (Messages.DesyncReport) msg);
+                default -> {
+                    // Messages destinés aux clients
+                }
             }
         } catch (Exception e) {
             System.err.println("[SERVER] Erreur traitement message: " + e.getMessage());
         }
     }
 
-    private void disconnectClient(int playerId) {
-        ClientHandler handler = clients.remove(playerId);
-        if (handler != null) {
-            handler.close();
+    /**
+     * Journalise un rapport de désynchronisation : un par client toutes les
+     * DESYNC_REPORT_INTERVAL ms au plus (les autres sont comptés), état
+     * tronqué à MAX_DESYNC_DUMP caractères
+     */
+    private void logDesyncReport(ClientHandler handler, Messages.DesyncReport report) {
+        long now = System.currentTimeMillis();
+        if (now - handler.lastDesyncReport < DESYNC_REPORT_INTERVAL) {
+            handler.ignoredDesyncReports++;
+            return;
+        }
+        handler.lastDesyncReport = now;
+        int ignored = handler.ignoredDesyncReports;
+        handler.ignoredDesyncReports = 0;
+
+        String dump = report.dump() != null ? report.dump() : "";
+        if (dump.length() > MAX_DESYNC_DUMP) {
+            dump = dump.substring(0, MAX_DESYNC_DUMP) + "... (" + (dump.length() - MAX_DESYNC_DUMP)
+                    + " caractères tronqués)";
+        }
+        System.err.println("[SERVER] Désynchronisation signalée par " + handler.playerName
+                + (dedicated ? " (salle " + handler.room.getRoomId() + ")" : "") + " au tick "
+                + report.tick() + ", dernier tick identique " + report.lastMatchTick()
+                + (ignored > 0 ? " (" + ignored + " rapports ignorés depuis le précédent)" : "")
+                + "\n" + dump);
+    }
 
-            // Retirer le joueur
-            synchronized (players) {
-                players.removeIf(p -> p.getPlayerId() == playerId);
+    /**
+     * Ferme la connexion d'un client. Un joueur coupé en pleine manche
+     * (resumable) garde sa place pendant RECONNECT_GRACE s'il a un jeton de
+     * session ; sinon, ou à l'expiration du délai, il quitte sa salle.
+     *
+     * @param resumable false pour un départ volontaire (DISCONNECT)
+     */
+    private void disconnectClient(ClientHandler handler, boolean resumable) {
+        // Le handler a pu être remplacé par une reprise de session
+        if (!clients.remove(handler.playerId, handler)) {
+            return;
+        }
+        handler.transport.close();
+        releaseRoute(handler);
+
+        synchronized (rooms) {
+            if (resumable && running && handler.session != 0 && handler.room.isGameStarted()) {
+                handler.graceTimer = tickPool.schedule(() -> expireSession(handler),
+                        NetworkProtocol.RECONNECT_GRACE, TimeUnit.MILLISECONDS);
+                System.out.println("[SERVER] Connexion perdue: " + handler.playerName + ", place gardée "
+                        + NetworkProtocol.RECONNECT_GRACE / 1000 + " s");
+                broadcastPlayerList(handler.room);
+                return;
             }
+        }
+        removePlayer(handler);
+    }
 
-            broadcastPlayerList();
-            lanDiscovery.updateServerInfo(clients.size() + 1, gameStarted);
+    /**
+     * Délai de reprise écoulé sans retour du joueur
+     */
+    private void expireSession(ClientHandler handler) {
+        synchronized (rooms) {
+            if (sessions.get(handler.session) != handler || clients.containsKey(handler.playerId)) {
+                return; // Session reprise entre-temps
+            }
+        }
+        System.out.println("[SERVER] " + handler.playerName + " n'est pas revenu à temps");
+        removePlayer(handler);
+    }
 
-            if (listener != null) {
-                listener.onPlayerDisconnected(playerId);
+    /**
+     * Libère à la fin de la manche les places gardées dans la salle : il n'y
+     * a plus de partie à reprendre
+     */
+    private void releaseSessions(Room room) {
+        List<ClientHandler> waiting = new ArrayList<>();
+        synchronized (rooms) {
+            for (ClientHandler handler : sessions.values()) {
+                if (handler.room == room && clients.get(handler.playerId) != handler) {
+                    waiting.add(handler);
+                }
+            }
+        }
+        for (ClientHandler handler : waiting) {
+            if (handler.graceTimer != null) {
+                handler.graceTimer.cancel(false);
+            }
+            removePlayer(handler);
+        }
+    }
+
+    /**
+     * Retire définitivement un joueur de sa salle (une salle vide est fermée
+     * en mode dédié)
+     */
+    private void removePlayer(ClientHandler handler) {
+        int playerId = handler.playerId;
+        Room room = handler.room;
+        boolean roomClosed;
+        synchronized (rooms) {
+            if (handler.session != 0 && !sessions.remove(handler.session, handler)) {
+                return; // Déjà retiré, ou session reprise
+            }
+            room.removePlayer(playerId);
+            roomClosed = dedicated && room.getPlayerCount() == 0;
+            if (roomClosed) {
+                removeRoom(room);
             }
+        }
+
+        if (listener != null) {
+            listener.onPlayerDisconnected(playerId);
+        }
 
-            System.out.println("[SERVER] Joueur déconnecté: " + handler.playerName);
+        System.out.println("[SERVER] Joueur déconnecté: " + handler.playerName + "\n" + handler.stats.format());
 
-            // Si la partie est en cours et il n'y a plus de clients connectés
-            // (seulement l'hôte reste), arrêter la partie
-            if (gameStarted && clients.isEmpty()) {
-                System.out.println("[SERVER] Plus aucun joueur connecté, arrêt de la partie");
-                // Notifier via le listener que la partie doit s'arrêter
-                if (listener != null) {
-                    listener.onError("Tous les joueurs ont quitté la partie");
-                }
+        if (roomClosed) {
+            updateLanInfo();
+            return;
+        }
+
+        broadcastPlayerList(room);
+        updateLanInfo();
+
+        // Si la partie est en cours et que seul l'hôte reste, le prévenir
+        if (!dedicated && room.isGameStarted() && room.getPlayerCount() <= 1) {
+            System.out.println("[SERVER] Plus aucun joueur connecté, arrêt de la partie");
+            // Notifier via le listener que la partie doit s'arrêter
+            if (listener != null) {
+                listener.onError("Tous les joueurs ont quitté la partie");
             }
         }
     }
@@ -345,8 +866,7 @@ public class GameServer {
                 DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 udpSocket.receive(packet);
 
-                String json = new String(packet.getData(), 0, packet.getLength(), "UTF-8");
-                processUdpMessage(json, packet.getAddress(), packet.getPort());
+                processUdpMessage(packet.getData(), packet.getLength(), packet.getAddress(), packet.getPort());
 
             } catch (SocketTimeoutException e) {
                 // Normal
@@ -358,250 +878,316 @@ public class GameServer {
         }
     }
 
-    private void processUdpMessage(String json, InetAddress address, int port) {
+    private void processUdpMessage(byte[] data, int length, InetAddress address, int port) {
+        // Datagramme routé : le client est désigné par son jeton
+        long token = Messages.routeToken(data, length);
+        if (token != 0) {
+            processRoutedDatagram(token, data, length, address, port);
+            return;
+        }
+
         try {
-            Map<String, Object> msg = JsonUtils.parse(json);
-            String type = JsonUtils.getString(msg, "type", "");
-
-            if ("INPUT".equals(type)) {
-                int playerId = JsonUtils.getInt(msg, "playerId", -1);
-                String action = JsonUtils.getString(msg, "action", "NONE");
-
-                // Enregistrer l'adresse UDP du client
-                ClientHandler handler = clients.get(playerId);
-                if (handler != null) {
-                    handler.udpAddress = address;
-                    handler.udpPort = port;
-                }
+            Messages.UdpMessage msg = Messages.decodeUdp(udpReader.reset(data, 0, length));
 
-                // Appliquer l'action
-                if ("GRAVITY_SWITCH".equals(action)) {
-                    synchronized (players) {
-                        for (Player p : players) {
-                            if (p.getPlayerId() == playerId && p.isAlive()) {
-                                p.switchGravity();
-                                break;
-                            }
-                        }
-                    }
+            // Sonde de latence du navigateur de serveurs
+            if (msg instanceof Messages.Probe probe) {
+                ServerProber.answerProbe(udpSocket, probe, new InetSocketAddress(address, port));
+                return;
+            }
+            if (!(msg instanceof Messages.Input input)) {
+                if (msg == null) {
+                    metrics.onMalformedDatagram();
                 }
+                return;
             }
+
+            // Client d'avant le routage (protocole 4 ou moins) : désigné par
+            // le playerId du message
+            ClientHandler handler = clients.get(input.playerId());
+
+            // Un client local ne reçoit rien par UDP, et un client qui a un
+            // jeton envoie toujours l'en-tête : refuser qu'on se fasse passer
+            // pour eux
+            if (handler == null || !(handler.transport instanceof SocketTransport) || handler.udpToken != 0) {
+                metrics.onInputRejected();
+                return;
+            }
+
+            // Enregistrer l'adresse UDP du client
+            ((SocketTransport) handler.transport).setDatagramPeer(address, port);
+            handler.stats.onDatagramReceived(length);
+
+            processInput(handler, input);
         } catch (Exception e) {
             // Ignorer les paquets malformés
+            metrics.onMalformedDatagram();
         }
     }
 
     /**
-     * Diffuse l'état du jeu à tous les clients en UDP
+     * Datagramme précédé de l'en-tête de routage : le client est retrouvé
+     * avant tout décodage, un jeton inconnu ne coûte qu'un accès au tableau
      */
-    public void broadcastGameState() {
-        // Diffuser l'état du jeu à chaque tick, même si rien n'a changé
-        if (!running || !gameStarted) {
+    private void processRoutedDatagram(long token, byte[] data, int length, InetAddress address, int port) {
+        ClientHandler handler = routes.get((int) token & ROUTE_MASK);
+        if (handler == null || handler.udpToken != token) {
+            metrics.onUnroutedDatagram();
             return;
         }
 
-        currentTick++;
-
-        // Construire l'état du jeu
-        List<Map<String, Object>> playerStates = new ArrayList<>();
-        synchronized (players) {
-            for (Player p : players) {
-                Map<String, Object> ps = new LinkedHashMap<>();
-                ps.put("id", p.getPlayerId());
-                ps.put("name", p.getPlayerName());
-                ps.put("color", colorToHex(p.getPlayerColor()));
-                ps.put("x", p.getX());
-                ps.put("y", p.getY());
-                ps.put("vy", p.getVelocityY());
-                ps.put("gravity", p.getGravity().name());
-                ps.put("alive", p.isAlive());
-                ps.put("score", p.getScore());
-                playerStates.add(ps);
+        // Adresse apprise au premier datagramme ; elle ne change ensuite que
+        // sur présentation du jeton (NAT qui change de port)
+        SocketTransport transport = (SocketTransport) handler.transport;
+        if (!transport.isDatagramPeer(address, port)) {
+            if (transport.hasDatagramPeer()) {
+                metrics.onDatagramRebind();
             }
+            transport.setDatagramPeer(address, port);
         }
+        handler.stats.onDatagramReceived(length);
 
-        List<Map<String, Object>> holeStates = new ArrayList<>();
-        synchronized (holes) {
-            for (Hole h : holes) {
-                Map<String, Object> hs = new LinkedHashMap<>();
-                hs.put("x", h.getX());
-                hs.put("width", h.getWidth());
-                holeStates.add(hs);
+        try {
+            Messages.UdpMessage msg = Messages.decodeUdp(udpReader.reset(data, NetworkProtocol.UDP_ROUTE_HEADER,
+                    length - NetworkProtocol.UDP_ROUTE_HEADER));
+            if (msg instanceof Messages.Input input) {
+                processInput(handler, input);
+            } else if (msg == null) {
+                metrics.onMalformedDatagram();
             }
+        } catch (Exception e) {
+            metrics.onMalformedDatagram();
         }
+    }
 
-        List<Map<String, Object>> obstacleStates = new ArrayList<>();
-        synchronized (obstacles) {
-            for (Obstacle o : obstacles) {
-                Map<String, Object> os = new LinkedHashMap<>();
-                os.put("x", o.getX());
-                os.put("y", o.getY());
-                os.put("width", o.getWidth());
-                os.put("height", o.getHeight());
-                obstacleStates.add(os);
+    /**
+     * Attribue un jeton de routage à un client distant qui comprend l'en-tête
+     * (protocole 5)
+     *
+     * @return false si la table est pleine : la connexion doit être refusée
+     * (un client en protocole 5 n'est jamais routé par playerId, sans quoi
+     * n'importe qui pourrait envoyer ses inputs ou détourner ses états)
+     */
+    private boolean assignRoute(ClientHandler handler) {
+        if (handler.protocol < 5 || !(handler.transport instanceof SocketTransport)) {
+            return true;
+        }
+        synchronized (routes) {
+            for (int i = 0; i <= ROUTE_MASK; i++) {
+                int slot = (routeCursor + i) & ROUTE_MASK;
+                if (routes.get(slot) != null) {
+                    continue;
+                }
+                long token;
+                do {
+                    token = (sessionRandom.nextLong() << NetworkProtocol.UDP_ROUTE_SLOT_BITS) | slot;
+                } while (token == 0);
+                handler.udpToken = token;
+                routes.set(slot, handler);
+                routeCursor = slot + 1;
+                return true;
             }
         }
+        System.err.println("[SERVER] Table de routage UDP pleine, connexion de " + handler.playerName + " refusée");
+        return false;
+    }
 
-        String json = JsonUtils.builder()
-                .put("type", "GAME_STATE")
-                .put("tick", currentTick)
-                .putArray("players", playerStates)
-                .putArray("holes", holeStates)
-                .putArray("obstacles", obstacleStates)
-                .build();
+    private void releaseRoute(ClientHandler handler) {
+        if (handler.udpToken != 0) {
+            routes.compareAndSet((int) handler.udpToken & ROUTE_MASK, handler, null);
+        }
+    }
 
-        byte[] data;
-        try {
-            data = json.getBytes("UTF-8");
-        } catch (Exception e) {
+    /**
+     * Applique un INPUT d'un client, quel que soit son transport
+     */
+    private void processInput(ClientHandler handler, Messages.Input input) {
+        if (input.playerId() != handler.playerId) {
+            metrics.onInputRejected();
             return;
         }
+        metrics.onInputReceived();
 
-        // Envoyer à tous les clients
-        for (ClientHandler handler : clients.values()) {
-            if (handler.udpAddress != null) {
-                try {
-                    DatagramPacket packet = new DatagramPacket(
-                            data, data.length, handler.udpAddress, handler.udpPort
-                    );
-                    udpSocket.send(packet);
-                } catch (Exception e) {
-                    // Client peut être déconnecté
+        // Un input en double ne doit pas inverser la gravité deux fois ; un
+        // input en retard reste une action du joueur
+        if (handler.stats.recordSequence(input.sequence()) == ConnectionStats.Arrival.DUPLICATE) {
+            metrics.onInputDuplicate();
+            return;
+        }
+        handler.room.applyInput(handler.playerId, input.sequence(),
+                NetworkProtocol.PlayerAction.GRAVITY_SWITCH.name().equals(input.action()));
+    }
+
+    /**
+     * Envoie l'état du tick aux joueurs de la salle : sans les dangers en
+     * protocole 6, avec leurs positions (encodées à la demande) avant
+     */
+    private void sendToRoom(Room room, byte[] data) {
+        int recipients = 0;
+        byte[] legacy = null;
+        int legacyRecipients = 0;
+        for (int playerId : room.getPlayerIds()) {
+            ClientHandler handler = clients.get(playerId);
+            if (handler == null) {
+                continue;
+            }
+            if (handler.protocol >= 6) {
+                handler.sendDatagram(data);
+                recipients++;
+            } else {
+                if (legacy == null) {
+                    legacy = room.legacySnapshot();
                 }
+                handler.sendDatagram(legacy);
+                legacyRecipients++;
             }
         }
+        if (recipients > 0 || legacy == null) {
+            metrics.onSnapshot(data.length, recipients);
+        }
+        if (legacy != null) {
+            metrics.onSnapshot(legacy.length, legacyRecipients);
+        }
     }
 
     // ==================== MESSAGES TCP ====================
-    private void broadcastTcp(String json) {
-        for (ClientHandler handler : clients.values()) {
-            handler.writer.println(json);
+    private void broadcastTcp(Room room, String json) {
+        for (int playerId : room.getPlayerIds()) {
+            ClientHandler handler = clients.get(playerId);
+            if (handler != null) {
+                handler.sendMessage(json);
+            }
         }
     }
 
-    private void broadcastPlayerList() {
-        String json = JsonUtils.builder()
-                .put("type", NetworkProtocol.TcpMessageType.PLAYER_LIST.name())
-                .putArray("players", buildPlayerList())
-                .build();
-        broadcastTcp(json);
+    private void broadcastPlayerList(Room room) {
+        String json;
+        synchronized (broadcastWriter) {
+            broadcastWriter.reset()
+                    .beginObject()
+                    .put("type", NetworkProtocol.TcpMessageType.PLAYER_LIST.name())
+                    .name("players");
+            writePlayerList(broadcastWriter, room);
+            json = broadcastWriter.endObject().toString();
+        }
+        // Une seule chaîne, partagée par tous les joueurs de la salle
+        broadcastTcp(room, json);
     }
 
-    private void broadcastChat(int senderId, String senderName, String message) {
-        String json = JsonUtils.builder()
-                .put("type", NetworkProtocol.TcpMessageType.CHAT_MESSAGE.name())
-                .put("playerId", senderId)
-                .put("playerName", senderName)
-                .put("message", message)
-                .put("timestamp", System.currentTimeMillis())
-                .build();
-        broadcastTcp(json);
+    private void broadcastChat(Room room, int senderId, String senderName, String message) {
+        String json;
+        synchronized (broadcastWriter) {
+            json = broadcastWriter.reset()
+                    .beginObject()
+                    .put("type", NetworkProtocol.TcpMessageType.CHAT_MESSAGE.name())
+                    .put("playerId", senderId)
+                    .put("playerName", senderName)
+                    .put("message", message)
+                    .put("timestamp", System.currentTimeMillis())
+                    .endObject()
+                    .toString();
+        }
+        broadcastTcp(room, json);
     }
 
-    private List<Map<String, Object>> buildPlayerList() {
-        List<Map<String, Object>> list = new ArrayList<>();
-
-        // Ajouter l'hôte (id=0)
-        Map<String, Object> host = new LinkedHashMap<>();
-        host.put("id", 0);
-        host.put("name", serverName.replace("Partie de ", ""));
-        host.put("color", colorToHex(PLAYER_COLORS[0]));
-        host.put("ready", true); // L'hôte est toujours prêt
-        host.put("isHost", true);
-        list.add(host);
+    private void writePlayerList(JsonWriter w, Room room) {
+        w.beginArray();
 
-        // Ajouter les clients
-        for (ClientHandler handler : clients.values()) {
-            Map<String, Object> player = new LinkedHashMap<>();
-            player.put("id", handler.playerId);
-            player.put("name", handler.playerName);
-            player.put("color", colorToHex(PLAYER_COLORS[handler.playerId % PLAYER_COLORS.length]));
-            player.put("ready", handler.ready);
-            player.put("isHost", false);
-            list.add(player);
+        // Les joueurs de la salle, hôte compris (id=0, toujours prêt), par
+        // identifiant croissant
+        int[] ids = room.getPlayerIds().stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int playerId : ids) {
+            ClientHandler handler = clients.get(playerId);
+            if (handler == null) {
+                continue;
+            }
+            Messages.PlayerEntry.write(w, handler.playerId, handler.playerName,
+                    NetworkProtocol.playerColor(handler.playerId), handler.ready, handler.host);
         }
 
-        return list;
+        w.endArray();
     }
 
-    private String colorToHex(Color c) {
-        return String.format("#%02X%02X%02X", c.getRed(), c.getGreen(), c.getBlue());
-    }
-
-    // ==================== CONTRÔLE DU JEU ====================
-    private void addHostPlayer() {
-        // Le joueur hôte a l'id 0
-        String hostName = serverName.replace("Partie de ", "");
-        Player hostPlayer = new Player(0, hostName, PLAYER_COLORS[0]);
-        synchronized (players) {
-            players.add(hostPlayer);
+    /**
+     * Met à jour l'annonce LAN : nombre de joueurs de la salle qu'un nouveau
+     * venu rejoindrait
+     */
+    private void updateLanInfo() {
+        if (lanDiscovery == null) {
+            return;
+        }
+        if (!dedicated) {
+            lanDiscovery.updateServerInfo(defaultRoom.getPlayerCount(), defaultRoom.isGameStarted());
+            return;
+        }
+        for (Room room : rooms.values()) {
+            if (room.isJoinable()) {
+                lanDiscovery.updateServerInfo(room.getPlayerCount(), false);
+                return;
+            }
         }
+        // Pas de salle en attente : une nouvelle salle peut-elle être ouverte ?
+        lanDiscovery.updateServerInfo(0, rooms.size() >= maxRooms);
     }
 
+    // ==================== CONTRÔLE DU JEU ====================
     /**
-     * Démarre la partie
+     * Démarre la partie (hôte)
      */
     public void startGame() {
-        if (gameStarted) {
+        if (defaultRoom != null) {
+            startGame(defaultRoom);
+        }
+    }
+
+    private void startGame(Room room) {
+        if (room.isGameStarted()) {
             return;
         }
 
-        gameStarted = true;
-        gameSeed = System.currentTimeMillis();
+        long gameSeed = System.currentTimeMillis();
+        room.startMatch(gameSeed);
 
         // Notifier tous les clients
-        String json = JsonUtils.builder()
-                .put("type", NetworkProtocol.TcpMessageType.GAME_START.name())
-                .put("seed", gameSeed)
-                .put("countdown", 3)
-                .build();
-        broadcastTcp(json);
+        broadcastTcp(room, Messages.toJson(new Messages.GameStart(gameSeed, 3)));
 
-        lanDiscovery.updateServerInfo(clients.size() + 1, true);
+        updateLanInfo();
 
         if (listener != null) {
             listener.onGameStart();
         }
 
-        System.out.println("[SERVER] Partie démarrée (seed=" + gameSeed + ")");
+        System.out.println("[SERVER] Partie démarrée (seed=" + gameSeed
+                + (dedicated ? ", salle " + room.getRoomId() : "") + ")");
     }
 
     /**
-     * Retourne tous les joueurs au lobby
+     * Retourne tous les joueurs au lobby (hôte)
      */
     public void returnToLobby() {
+        if (defaultRoom != null) {
+            returnToLobby(defaultRoom);
+        }
+    }
+
+    private void returnToLobby(Room room) {
         if (!running) {
             return;
         }
 
-        gameStarted = false;
-
-        // Reset des joueurs
-        synchronized (players) {
-            for (Player p : players) {
-                p.reset();
-            }
-        }
+        // Les joueurs coupés pendant la manche ne reviendront pas la finir
+        releaseSessions(room);
 
-        // Vider les obstacles et trous
-        synchronized (holes) {
-            holes.clear();
-        }
-        synchronized (obstacles) {
-            obstacles.clear();
-        }
+        // Reset des joueurs, trous et obstacles
+        room.returnToLobby();
 
         // Notifier tous les clients
-        String json = JsonUtils.builder()
-                .put("type", "RETURN_TO_LOBBY")
-                .put("message", "L'hôte a renvoyé tout le monde au lobby")
-                .build();
-        broadcastTcp(json);
+        broadcastTcp(room, Messages.toJson(new Messages.ReturnToLobby(
+                dedicated ? "Fin de la manche" : "L'hôte a renvoyé tout le monde au lobby")));
 
         // Renvoyer la liste des joueurs
-        broadcastPlayerList();
+        broadcastPlayerList(room);
 
-        lanDiscovery.updateServerInfo(clients.size() + 1, false);
+        updateLanInfo();
 
         // Notifier le listener local (pour l'hôte)
         if (listener != null) {
@@ -609,14 +1195,26 @@ public class GameServer {
         }
 
         System.out.println("[SERVER] Retour au lobby");
+
+        // Serveur dédié : les joueurs restés prêts enchaînent une nouvelle manche
+        startIfAllReady(room);
     }
 
     /**
-     * Envoie un message chat depuis l'hôte
+     * Serveur dédié : lance la partie dès que tous les joueurs de la salle
+     * sont prêts (il n'y a pas d'hôte pour appuyer sur "Lancer")
      */
-    public void sendHostChat(String message) {
-        String hostName = serverName.replace("Partie de ", "");
-        broadcastChat(0, hostName, message);
+    private void startIfAllReady(Room room) {
+        if (!dedicated || room.isGameStarted() || room.getPlayerCount() == 0) {
+            return;
+        }
+        for (int playerId : room.getPlayerIds()) {
+            ClientHandler handler = clients.get(playerId);
+            if (handler == null || !handler.ready) {
+                return;
+            }
+        }
+        startGame(room);
     }
 
     // ==================== ACCESSEURS ====================
@@ -624,86 +1222,112 @@ public class GameServer {
         this.listener = listener;
     }
 
-    public List<Player> getPlayers() {
-        synchronized (players) {
-            return new ArrayList<>(players);
-        }
+    public boolean isRunning() {
+        return running;
     }
 
-    public List<Hole> getHoles() {
-        return holes;
+    public boolean isGameStarted() {
+        return defaultRoom != null && defaultRoom.isGameStarted();
     }
 
-    public List<Obstacle> getObstacles() {
-        return obstacles;
+    /**
+     * Statistiques de la connexion d'un joueur, null s'il n'est pas connecté
+     */
+    public ConnectionStats getConnectionStats(int playerId) {
+        ClientHandler handler = clients.get(playerId);
+        return handler != null ? handler.stats : null;
+    }
+
+    public int getPlayerCount() {
+        return clients.size(); // inclut l'hôte
+    }
+
+    public boolean isDedicated() {
+        return dedicated;
     }
 
     /**
-     * Remplace l'état autoritatif du serveur avec l'état simulé localement
-     * (hôte). Utilisé lorsque l'hôte fait tourner la simulation et veut
-     * diffuser son état.
+     * Ticks exécutés depuis le démarrage, toutes salles confondues
      */
-    public void updateAuthoritativeState(List<Player> newPlayers,
-            List<Hole> newHoles,
-            List<Obstacle> newObstacles) {
-        if (!running || !gameStarted) {
-            return;
-        }
+    public long getTicksRun() {
+        return metrics.getTicksRun();
+    }
 
-        synchronized (players) {
-            players.clear();
-            players.addAll(newPlayers);
-        }
+    /**
+     * Ticks ayant dépassé leur budget de 1/TICK_RATE s
+     */
+    public long getTicksOverrun() {
+        return metrics.getTicksOverrun();
+    }
 
-        synchronized (holes) {
-            holes.clear();
-            holes.addAll(newHoles);
-        }
+    /**
+     * Durée cumulée des ticks (simulation + envoi), en nanosecondes
+     */
+    public long getTickNanos() {
+        return metrics.getTickNanos();
+    }
 
-        synchronized (obstacles) {
-            obstacles.clear();
-            obstacles.addAll(newObstacles);
-        }
+    /**
+     * Mesures de santé du serveur (enregistrées en JMX en mode dédié)
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
     }
 
-    public boolean isRunning() {
-        return running;
+    public Collection<Room> getRooms() {
+        return rooms.values();
     }
 
-    public boolean isGameStarted() {
-        return gameStarted;
+    public int getMaxRooms() {
+        return maxRooms;
     }
 
-    public int getPlayerCount() {
-        return clients.size() + 1; // +1 pour l'hôte
+    public int getTcpPort() {
+        return tcpServer != null ? tcpServer.getLocalPort() : tcpPort;
+    }
+
+    public int getUdpPort() {
+        return udpSocket != null ? udpSocket.getLocalPort() : udpPort;
     }
 
     // ==================== CLASSE INTERNE ====================
     private static class ClientHandler {
 
-        final Socket socket;
+        final Transport transport;
         final int playerId;
         final String playerName;
-        final BufferedReader reader;
-        final PrintWriter writer;
-        boolean ready = false;
-        InetAddress udpAddress;
-        int udpPort;
-
-        ClientHandler(Socket socket, int playerId, String playerName,
-                BufferedReader reader, PrintWriter writer) {
-            this.socket = socket;
+        final Room room;
+        final boolean host;
+        final int protocol; // Version du protocole négociée
+        final long session; // Jeton de reprise, 0 si aucun
+        long udpToken; // Jeton de routage UDP, 0 si aucun (fixé avant la publication dans clients)
+        final ConnectionStats stats = new ConnectionStats();
+        volatile boolean ready;
+        ScheduledFuture<?> graceTimer; // Attente du retour du joueur (sous le verrou de rooms)
+        // Rapports de désynchronisation (thread de réception TCP du client)
+        long lastDesyncReport = Long.MIN_VALUE / 2;
+        int ignoredDesyncReports;
+
+        ClientHandler(Transport transport, int playerId, String playerName, Room room, boolean host, int protocol,
+                long session) {
+            this.transport = transport;
             this.playerId = playerId;
             this.playerName = playerName;
-            this.reader = reader;
-            this.writer = writer;
+            this.room = room;
+            this.host = host;
+            this.protocol = protocol;
+            this.session = session;
+            this.ready = host; // L'hôte est toujours prêt
         }
 
-        void close() {
-            try {
-                socket.close();
-            } catch (Exception ignored) {
-            }
+        void sendMessage(String json) {
+            stats.onMessageSent(json.length() + 1);
+            transport.sendMessage(json);
+        }
+
+        void sendDatagram(byte[] data) {
+            stats.onDatagramSent(data.length);
+            transport.sendDatagram(data, data.length);
         }
     }
 }
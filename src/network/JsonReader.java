@@ -0,0 +1,565 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Lecteur JSON en flux (pull) directement sur des octets UTF-8
+ *
+ * Contrairement à JsonUtils.parse, aucun String intermédiaire ni Map n'est
+ * construit : l'appelant parcourt le message champ par champ et ne garde que
+ * ce qui l'intéresse. Les clés et valeurs connues du protocole
+ * (NetworkProtocol.JSON_KEYS, types de messages, couleurs...) sont renvoyées
+ * sous forme de constantes partagées, les nombres sont décodés sans passer
+ * par une sous-chaîne.
+ *
+ * Usage:
+ *   JsonReader reader = new JsonReader();
+ *   reader.reset(data, 0, length);
+ *   reader.beginObject();
+ *   while (reader.hasNext()) {
+ *       switch (reader.nextKey()) {
+ *           case "tick": tick = reader.nextLong(); break;
+ *           default: reader.skipValue();
+ *       }
+ *   }
+ *   reader.endObject();
+ *
+ * Comme JsonUtils, le lecteur est tolérant : virgules et deux-points sont
+ * traités comme des séparateurs. Un message invalide lève une
+ * IllegalStateException. Une instance n'est pas thread-safe, chaque thread
+ * de réception garde la sienne.
+ */
+public final class JsonReader {
+
+    /**
+     * Nature du prochain élément
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END
+    }
+
+    // ==================== CHAÎNES INTERNÉES ====================
+    private static final int INTERN_SIZE = 512;
+    private static final String[] INTERN_STRINGS = new String[INTERN_SIZE];
+    private static final byte[][] INTERN_BYTES = new byte[INTERN_SIZE][];
+    private static final int[] INTERN_HASHES = new int[INTERN_SIZE];
+
+    static {
+        for (String key : NetworkProtocol.JSON_KEYS) {
+            intern(key);
+        }
+        for (String value : NetworkProtocol.JSON_VALUES) {
+            intern(value);
+        }
+        for (NetworkProtocol.TcpMessageType type : NetworkProtocol.TcpMessageType.values()) {
+            intern(type.name());
+        }
+        for (NetworkProtocol.UdpMessageType type : NetworkProtocol.UdpMessageType.values()) {
+            intern(type.name());
+        }
+        for (String color : NetworkProtocol.PLAYER_COLORS) {
+            intern(color);
+        }
+        intern(NetworkProtocol.DISCOVERY_MAGIC);
+    }
+
+    private static void intern(String s) {
+        // Le hash de String.hashCode est celui calculé octet par octet sur
+        // de l'ASCII
+        int hash = s.hashCode();
+        int slot = slot(hash);
+        while (INTERN_STRINGS[slot] != null) {
+            if (INTERN_STRINGS[slot].equals(s)) {
+                return;
+            }
+            slot = (slot + 1) & (INTERN_SIZE - 1);
+        }
+        INTERN_STRINGS[slot] = s;
+        INTERN_BYTES[slot] = s.getBytes(StandardCharsets.US_ASCII);
+        INTERN_HASHES[slot] = hash;
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (INTERN_SIZE - 1);
+    }
+
+    /**
+     * Puissances de 10 représentables exactement en double
+     */
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private byte[] buf = new byte[0];
+    private int pos;
+    private int limit;
+
+    // Copie du contenu d'un ByteBuffer sans tableau accessible
+    private byte[] copy = new byte[0];
+
+    // Tampon des chaînes contenant des échappements
+    private final StringBuilder scratch = new StringBuilder();
+
+    // ==================== ENTRÉE ====================
+    /**
+     * Lit length octets de data à partir de offset. Le tableau n'est pas
+     * copié : il ne doit pas changer pendant la lecture.
+     */
+    public JsonReader reset(byte[] data, int offset, int length) {
+        this.buf = data;
+        this.pos = offset;
+        this.limit = offset + length;
+        return this;
+    }
+
+    /**
+     * Lit les octets restants du buffer (sa position n'est pas modifiée)
+     */
+    public JsonReader reset(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return reset(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        int length = buffer.remaining();
+        if (copy.length < length) {
+            copy = new byte[Math.max(length, copy.length * 2)];
+        }
+        buffer.duplicate().get(copy, 0, length);
+        return reset(copy, 0, length);
+    }
+
+    // ==================== STRUCTURE ====================
+    public Token peek() {
+        skipSeparators();
+        if (pos >= limit) {
+            return Token.END;
+        }
+        switch (buf[pos]) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '}':
+                return Token.END_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case ']':
+                return Token.END_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                return Token.NUMBER;
+        }
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    public void endObject() {
+        expect('}');
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    public void endArray() {
+        expect(']');
+    }
+
+    /**
+     * Il reste un élément dans l'objet ou le tableau courant
+     */
+    public boolean hasNext() {
+        skipSeparators();
+        return pos < limit && buf[pos] != '}' && buf[pos] != ']';
+    }
+
+    // ==================== VALEURS ====================
+    /**
+     * Nom du champ suivant, interné s'il fait partie du protocole
+     */
+    public String nextKey() {
+        skipSeparators();
+        if (pos >= limit || buf[pos] != '"') {
+            throw error("clé attendue");
+        }
+        return readString();
+    }
+
+    /**
+     * Chaîne suivante (internée si connue). Un nombre ou un booléen est
+     * renvoyé sous sa forme texte, null pour null.
+     */
+    public String nextString() {
+        switch (peek()) {
+            case STRING:
+                return readString();
+            case NULL:
+                nextNull();
+                return null;
+            case NUMBER:
+            case BOOLEAN:
+                int start = pos;
+                skipLiteral();
+                return new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+            default:
+                throw error("chaîne attendue");
+        }
+    }
+
+    public int nextInt() {
+        return (int) nextLong();
+    }
+
+    public long nextLong() {
+        skipSeparators();
+        int start = pos;
+        boolean negative = false;
+        if (pos < limit && buf[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < limit && buf[pos] >= '0' && buf[pos] <= '9') {
+            value = value * 10 + (buf[pos++] - '0');
+            digits++;
+        }
+        if (digits == 0 || (pos < limit && isFractionPart(buf[pos]))) {
+            // Nombre décimal ou entre guillemets
+            pos = start;
+            return (long) nextDouble();
+        }
+        if (digits > 18) {
+            // Peut déborder : laisser Long.parseLong vérifier
+            try {
+                return Long.parseLong(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw error("nombre attendu");
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    public double nextDouble() {
+        skipSeparators();
+        if (pos < limit && buf[pos] == '"') {
+            String text = readString();
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw error("nombre attendu");
+            }
+        }
+
+        int start = pos;
+        boolean negative = false;
+        if (pos < limit && buf[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        while (pos < limit && buf[pos] >= '0' && buf[pos] <= '9') {
+            mantissa = mantissa * 10 + (buf[pos++] - '0');
+            digits++;
+        }
+        if (pos < limit && buf[pos] == '.') {
+            pos++;
+            while (pos < limit && buf[pos] >= '0' && buf[pos] <= '9') {
+                mantissa = mantissa * 10 + (buf[pos++] - '0');
+                digits++;
+                exponent--;
+            }
+        }
+        if (digits == 0) {
+            throw error("nombre attendu");
+        }
+        if (pos < limit && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos++;
+            boolean negativeExp = false;
+            if (pos < limit && (buf[pos] == '-' || buf[pos] == '+')) {
+                negativeExp = buf[pos] == '-';
+                pos++;
+            }
+            int exp = 0;
+            while (pos < limit && buf[pos] >= '0' && buf[pos] <= '9') {
+                exp = Math.min(exp * 10 + (buf[pos++] - '0'), 10_000);
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        // Mantisse exacte en double et puissance de 10 exacte : le résultat
+        // est correctement arrondi (cas de loin le plus courant). Sinon,
+        // laisser Double.parseDouble faire le calcul exact.
+        if (digits <= 18 && mantissa <= (1L << 53) && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw error("nombre attendu"); // Exposant sans chiffres ("1e")
+        }
+    }
+
+    public boolean nextBoolean() {
+        skipSeparators();
+        if (matches("true")) {
+            pos += 4;
+            return true;
+        }
+        if (matches("false")) {
+            pos += 5;
+            return false;
+        }
+        if (pos < limit && buf[pos] == '"') {
+            return Boolean.parseBoolean(readString());
+        }
+        throw error("booléen attendu");
+    }
+
+    public void nextNull() {
+        skipSeparators();
+        if (!matches("null")) {
+            throw error("null attendu");
+        }
+        pos += 4;
+    }
+
+    /**
+     * Saute la valeur suivante, quelle que soit sa profondeur
+     */
+    public void skipValue() {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                case BEGIN_ARRAY:
+                    depth++;
+                    pos++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    pos++;
+                    break;
+                case STRING:
+                    skipString();
+                    break;
+                case END:
+                    throw error("fin de message inattendue");
+                default:
+                    skipLiteral();
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Valeur suivante sous la même forme que JsonUtils.parse (Map, List,
+     * String, Long, Double, Boolean ou null), pour les messages rares dont
+     * l'appelant a besoin en entier
+     */
+    public Object readValue() {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                return readObject();
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<>();
+                beginArray();
+                while (hasNext()) {
+                    list.add(readValue());
+                }
+                endArray();
+                return list;
+            case STRING:
+                return readString();
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return null;
+            case NUMBER:
+                int start = pos;
+                skipLiteral();
+                boolean isFloat = false;
+                for (int i = start; i < pos; i++) {
+                    isFloat |= isFractionPart(buf[i]);
+                }
+                pos = start;
+                if (isFloat) {
+                    return nextDouble();
+                }
+                return nextLong();
+            default:
+                throw error("valeur attendue");
+        }
+    }
+
+    public Map<String, Object> readObject() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        beginObject();
+        while (hasNext()) {
+            String key = nextKey();
+            map.put(key, readValue());
+        }
+        endObject();
+        return map;
+    }
+
+    // ==================== INTERNE ====================
+    private String readString() {
+        int start = ++pos; // guillemet ouvrant
+        int hash = 0;
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (b == '"') {
+                int length = pos - start;
+                pos++;
+                String known = lookup(hash, start, length);
+                return known != null ? known : new String(buf, start, length, StandardCharsets.US_ASCII);
+            }
+            if (b == '\\' || b < 0) {
+                // Échappement ou caractère non ASCII : chemin lent
+                pos = start;
+                return readComplexString();
+            }
+            hash = 31 * hash + b;
+            pos++;
+        }
+        throw error("chaîne non terminée");
+    }
+
+    private String readComplexString() {
+        scratch.setLength(0);
+        int runStart = pos;
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (b == '"') {
+                appendUtf8(runStart, pos);
+                pos++;
+                return scratch.toString();
+            }
+            if (b == '\\' && pos + 1 < limit) {
+                appendUtf8(runStart, pos);
+                byte escaped = buf[pos + 1];
+                pos += 2;
+                switch (escaped) {
+                    case 'n': scratch.append('\n'); break;
+                    case 'r': scratch.append('\r'); break;
+                    case 't': scratch.append('\t'); break;
+                    case 'b': scratch.append('\b'); break;
+                    case 'f': scratch.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > limit) {
+                            throw error("échappement invalide");
+                        }
+                        try {
+                            scratch.append((char) Integer.parseInt(
+                                    new String(buf, pos, 4, StandardCharsets.US_ASCII), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("échappement invalide");
+                        }
+                        pos += 4;
+                        break;
+                    default: scratch.append((char) escaped);
+                }
+                runStart = pos;
+                continue;
+            }
+            pos++;
+        }
+        throw error("chaîne non terminée");
+    }
+
+    private void appendUtf8(int from, int to) {
+        if (to > from) {
+            scratch.append(new String(buf, from, to - from, StandardCharsets.UTF_8));
+        }
+    }
+
+    private String lookup(int hash, int start, int length) {
+        int slot = slot(hash);
+        while (INTERN_STRINGS[slot] != null) {
+            if (INTERN_HASHES[slot] == hash && Arrays.equals(
+                    INTERN_BYTES[slot], 0, INTERN_BYTES[slot].length, buf, start, start + length)) {
+                return INTERN_STRINGS[slot];
+            }
+            slot = (slot + 1) & (INTERN_SIZE - 1);
+        }
+        return null;
+    }
+
+    private void skipString() {
+        pos++; // guillemet ouvrant
+        while (pos < limit) {
+            byte b = buf[pos++];
+            if (b == '\\') {
+                pos++;
+            } else if (b == '"') {
+                return;
+            }
+        }
+        throw error("chaîne non terminée");
+    }
+
+    private void skipLiteral() {
+        int start = pos;
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (b == ',' || b == ':' || b == '}' || b == ']' || b <= ' ') {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw error("valeur attendue");
+        }
+    }
+
+    private void skipSeparators() {
+        while (pos < limit) {
+            byte b = buf[pos];
+            if (b != ',' && b != ':' && b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean matches(String literal) {
+        if (pos + literal.length() > limit) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (buf[pos + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isFractionPart(byte b) {
+        return b == '.' || b == 'e' || b == 'E';
+    }
+
+    private void expect(char c) {
+        skipSeparators();
+        if (pos >= limit || buf[pos] != c) {
+            throw error("'" + c + "' attendu");
+        }
+        pos++;
+    }
+
+    private IllegalStateException error(String what) {
+        return new IllegalStateException("JSON invalide: " + what + " à l'octet " + pos);
+    }
+}
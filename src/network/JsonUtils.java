@@ -346,10 +346,10 @@ public class JsonUtils {
         }
         
         Boolean parseBoolean() {
-            if (json.substring(pos).startsWith("true")) {
+            if (json.startsWith("true", pos)) {
                 pos += 4;
                 return true;
-            } else if (json.substring(pos).startsWith("false")) {
+            } else if (json.startsWith("false", pos)) {
                 pos += 5;
                 return false;
             }
@@ -357,7 +357,7 @@ public class JsonUtils {
         }
         
         Object parseNull() {
-            if (json.substring(pos).startsWith("null")) {
+            if (json.startsWith("null", pos)) {
                 pos += 4;
             }
             return null;
@@ -0,0 +1,350 @@
+package network;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Écriture JSON en flux directement dans un tampon d'octets UTF-8 réutilisable
+ *
+ * Pendant de JsonReader pour les messages diffusés souvent (GAME_STATE,
+ * PLAYER_LIST, chat, annonces LAN) : les champs sont écrits au fil de l'eau,
+ * sans Map intermédiaire, sans boxing des nombres et avec un échappement en
+ * une seule passe. Après le premier message, le tampon a atteint sa taille et
+ * plus rien n'est alloué hormis le résultat (toByteArray ou toString), ou
+ * rien du tout si l'appelant envoie directement buffer()/size().
+ *
+ * Usage:
+ *   writer.reset()
+ *       .beginObject()
+ *       .put("type", "INPUT")
+ *       .put("playerId", 1)
+ *       .endObject();
+ *   socket.send(new DatagramPacket(writer.buffer(), writer.size(), address));
+ *
+ * Une instance n'est pas thread-safe : chaque émetteur garde la sienne (ou la
+ * protège par un verrou).
+ */
+public final class JsonWriter {
+
+    private static final long[] POW10 = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+    };
+
+    /**
+     * Au-delà, v * 10^décimales ne tient plus exactement dans un long
+     */
+    private static final double MAX_FIXED = 1e15;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buf;
+    private int size;
+
+    // Bit n : le conteneur de profondeur n a déjà un élément (virgule)
+    private long hasElements;
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter() {
+        this(256);
+    }
+
+    public JsonWriter(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    /**
+     * Vide le tampon (sa capacité est conservée)
+     */
+    public JsonWriter reset() {
+        size = 0;
+        hasElements = 0;
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    // ==================== STRUCTURE ====================
+    public JsonWriter beginObject() {
+        beforeValue();
+        return open('{');
+    }
+
+    public JsonWriter endObject() {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        return open('[');
+    }
+
+    public JsonWriter endArray() {
+        return close(']');
+    }
+
+    /**
+     * Nom du champ suivant
+     */
+    public JsonWriter name(String key) {
+        beforeValue();
+        writeString(key);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    // ==================== VALEURS ====================
+    public JsonWriter value(String s) {
+        beforeValue();
+        if (s == null) {
+            writeAscii("null");
+        } else {
+            writeString(s);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long v) {
+        beforeValue();
+        writeLong(v);
+        return this;
+    }
+
+    public JsonWriter value(boolean v) {
+        beforeValue();
+        writeAscii(v ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Décimal exact, sous la même forme que Double.toString (alloue pour
+     * les valeurs non entières : préférer value(v, décimales) dans les
+     * messages fréquents). NaN et les infinis n'existent pas en JSON : ils
+     * sont écrits null.
+     */
+    public JsonWriter value(double v) {
+        beforeValue();
+        if (!Double.isFinite(v)) {
+            writeAscii("null");
+        } else if (v == (long) v && Math.abs(v) < MAX_FIXED) {
+            writeLong((long) v);
+            writeAscii(".0");
+        } else {
+            writeAscii(Double.toString(v));
+        }
+        return this;
+    }
+
+    /**
+     * Décimal arrondi à decimals chiffres (de 1 à 6), zéros de fin omis,
+     * sans allocation. NaN et les infinis sont écrits null.
+     *
+     * @throws IllegalArgumentException si decimals est hors de 1..6
+     */
+    public JsonWriter value(double v, int decimals) {
+        if (decimals < 1 || decimals >= POW10.length) {
+            throw new IllegalArgumentException("Décimales de 1 à " + (POW10.length - 1) + ": " + decimals);
+        }
+        beforeValue();
+        if (!Double.isFinite(v)) {
+            writeAscii("null");
+            return this;
+        }
+        if (Math.abs(v) >= MAX_FIXED / POW10[decimals]) {
+            writeAscii(Double.toString(v));
+            return this;
+        }
+        long scaled = Math.round(Math.abs(v) * POW10[decimals]);
+        if (v < 0 && scaled != 0) {
+            write('-');
+        }
+        writeLong(scaled / POW10[decimals]);
+        write('.');
+
+        // Partie décimale sans les zéros de fin (au moins un chiffre)
+        long fraction = scaled % POW10[decimals];
+        int digits = decimals;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (int d = digits - 1; d >= 0; d--) {
+            write('0' + (int) (fraction / POW10[d] % 10));
+        }
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    // Raccourcis nom + valeur, dans l'esprit de JsonUtils.JsonBuilder
+    public JsonWriter put(String key, String value) {
+        return name(key).value(value);
+    }
+
+    public JsonWriter put(String key, long value) {
+        return name(key).value(value);
+    }
+
+    public JsonWriter put(String key, boolean value) {
+        return name(key).value(value);
+    }
+
+    public JsonWriter put(String key, double value) {
+        return name(key).value(value);
+    }
+
+    public JsonWriter put(String key, double value, int decimals) {
+        return name(key).value(value, decimals);
+    }
+
+    // ==================== RÉSULTAT ====================
+    /**
+     * Tampon interne (valide jusqu'au prochain reset), à envoyer avec size()
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copie du message, pour un envoi qui garde le tableau (datagrammes
+     * différés ou transport en mémoire)
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    /**
+     * Message sous forme de texte, pour Transport.sendMessage
+     */
+    @Override
+    public String toString() {
+        return new String(buf, 0, size, StandardCharsets.UTF_8);
+    }
+
+    // ==================== INTERNE ====================
+    private void beforeValue() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        long bit = 1L << depth;
+        if ((hasElements & bit) != 0) {
+            write(',');
+        }
+        hasElements |= bit;
+    }
+
+    private JsonWriter open(char c) {
+        write(c);
+        depth++;
+        hasElements &= ~(1L << depth);
+        return this;
+    }
+
+    private JsonWriter close(char c) {
+        depth--;
+        write(c);
+        return this;
+    }
+
+    /**
+     * Chaîne entre guillemets, échappée et encodée en UTF-8 en une passe
+     */
+    private void writeString(String s) {
+        int length = s.length();
+        // Au pire 6 octets par caractère (échappement unicode), réservés d'avance
+        ensure(length * 6 + 2);
+        buf[size++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buf[size++] = (byte) c;
+            } else if (c < 0x80) {
+                writeEscape(c);
+            } else if (c < 0x800) {
+                buf[size++] = (byte) (0xC0 | (c >> 6));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[size++] = (byte) (0xF0 | (cp >> 18));
+                buf[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[size++] = '?'; // Demi-paire isolée, comme String.getBytes
+            } else {
+                buf[size++] = (byte) (0xE0 | (c >> 12));
+                buf[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        write('"');
+    }
+
+    private void writeEscape(char c) {
+        buf[size++] = '\\';
+        switch (c) {
+            case '"': buf[size++] = '"'; break;
+            case '\\': buf[size++] = '\\'; break;
+            case '\n': buf[size++] = 'n'; break;
+            case '\r': buf[size++] = 'r'; break;
+            case '\t': buf[size++] = 't'; break;
+            default:
+                buf[size++] = 'u';
+                buf[size++] = '0';
+                buf[size++] = '0';
+                buf[size++] = HEX[c >> 4];
+                buf[size++] = HEX[c & 0xF];
+        }
+    }
+
+    private void writeLong(long v) {
+        if (v == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[size++] = '-';
+            v = -v;
+        }
+        // Chiffres écrits à l'envers puis retournés
+        int start = size;
+        do {
+            buf[size++] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte tmp = buf[i];
+            buf[i] = buf[j];
+            buf[j] = tmp;
+        }
+    }
+
+    private void writeAscii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[size++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void write(int b) {
+        ensure(1);
+        buf[size++] = (byte) b;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
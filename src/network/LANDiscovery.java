@@ -7,44 +7,121 @@ import java.util.concurrent.*;
 
 /**
  * Découverte automatique de serveurs sur le réseau local (LAN)
- * Utilise des broadcasts UDP pour annoncer/découvrir les parties
+ *
+ * Deux mécanismes complémentaires :
+ * - requête/réponse : un client diffuse une requête DISCOVERY_QUERY à
+ *   l'ouverture de la liste et à chaque actualisation, et chaque serveur lui
+ *   répond aussitôt en unicast ; la liste se remplit en quelques millisecondes
+ * - annonce périodique (lente) : les serveurs se signalent toutes les
+ *   DISCOVERY_INTERVAL ms, immédiatement quand leur état change, et envoient
+ *   un BYE à l'arrêt pour disparaître sans attendre l'expiration
+ *
+ * Requêtes, annonces et BYE partent vers les groupes multicast
+ * DISCOVERY_MULTICAST_V4/V6 sur chaque interface, et en broadcast pour les
+ * réseaux qui filtrent le multicast. Le port des annonces est ouvert avec
+ * SO_REUSEADDR/SO_REUSEPORT : autant de clients que voulu peuvent écouter
+ * sur une même machine. Les réponses aux requêtes arrivent sur un socket
+ * propre à chaque client (un port partagé ne livrerait l'unicast qu'à un
+ * seul d'entre eux).
+ *
+ * Un serveur reçu par plusieurs chemins (IPv4, IPv6, broadcast) n'apparaît
+ * qu'une fois grâce à son identifiant "serverId". Les interfaces et adresses
+ * de broadcast sont mises en cache et relues seulement périodiquement ou
+ * après une erreur d'envoi.
  */
 public class LANDiscovery {
-    
-    private DatagramSocket socket;
+
+    /**
+     * Délai minimal entre deux annonces déclenchées par un changement d'état
+     */
+    private static final long MIN_ANNOUNCE_GAP = 250;
+
+    /**
+     * Attente maximale dans receive(), pour réagir aux changements d'état
+     */
+    private static final int POLL_INTERVAL = 250;
+
+    // Cache des interfaces, partagé par toutes les instances
+    private static List<InetAddress> cachedBroadcasts;
+    private static List<NetworkInterface> cachedMulticastInterfaces;
+    private static long cachedInterfacesTime;
+
+    private MulticastSocket socket;
     private volatile boolean running;
     private Thread discoveryThread;
-    
+
     // Pour le serveur: annonce sa présence
     private boolean isServer;
     private String serverName;
-    private int playerCount;
-    private int maxPlayers;
-    private boolean inGame;
-    
+    private final String serverId = Long.toHexString(new Random().nextLong());
+    private int tcpPort = NetworkProtocol.TCP_PORT;
+    private int probePort;
+    private final JsonWriter announceWriter = new JsonWriter();
+    private volatile int playerCount;
+    private volatile int maxPlayers;
+    private volatile boolean inGame;
+    private volatile boolean announceRequested;
+
     // Pour les clients: liste des serveurs trouvés
     private final Map<String, ServerInfo> discoveredServers = new ConcurrentHashMap<>();
     private DiscoveryListener listener;
-    
+    private volatile boolean queryRequested;
+    private volatile boolean listeningAnnounces;
+    private MulticastSocket querySocket;
+    private Thread queryThread;
+    private ServerProber prober;
+
     /**
-     * Informations sur un serveur découvert
+     * Informations sur un serveur découvert. Un même objet est mis à jour à
+     * chaque annonce, et complété par les mesures de ServerProber.
      */
     public static class ServerInfo {
         public String address;
         public int tcpPort;
+        public int probePort;
         public String serverName;
         public int playerCount;
         public int maxPlayers;
         public boolean inGame;
         public long lastSeen;
-        
+
+        // Mesures de ServerProber (-1 tant qu'aucune réponse n'est arrivée)
+        public volatile double rttMs = -1;
+        public volatile double jitterMs;
+        public volatile double lossRate;
+        long nextProbeAt;
+
+        /**
+         * Les serveurs joignables d'abord, puis par qualité de liaison
+         */
+        public static final Comparator<ServerInfo> BY_QUALITY = Comparator
+                .comparing((ServerInfo s) -> !s.isJoinable())
+                .thenComparingDouble(ServerInfo::getQualityScore)
+                .thenComparing(s -> s.serverName);
+
+        public boolean isJoinable() {
+            return !inGame && playerCount < maxPlayers;
+        }
+
+        /**
+         * Coût de la liaison en ms équivalentes (plus petit = meilleur) : RTT,
+         * pénalisé par la gigue et les pertes. Infini tant que le serveur n'a
+         * pas répondu.
+         */
+        public double getQualityScore() {
+            if (rttMs < 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return rttMs + 2 * jitterMs + lossRate * 1000;
+        }
+
         @Override
         public String toString() {
-            return serverName + " (" + playerCount + "/" + maxPlayers + ")" + 
+            return serverName + " (" + playerCount + "/" + maxPlayers + ")" +
                    (inGame ? " [En cours]" : " [En attente]");
         }
     }
-    
+
     /**
      * Interface de callback pour les événements de découverte
      */
@@ -52,67 +129,104 @@ public class LANDiscovery {
         void onServerFound(ServerInfo server);
         void onServerLost(String address);
     }
-    
+
     public LANDiscovery() {
         this.maxPlayers = NetworkProtocol.MAX_PLAYERS;
     }
-    
+
     // ==================== MODE SERVEUR ====================
-    
+
     /**
      * Démarre l'annonce du serveur sur le LAN
      */
     public void startServerBroadcast(String serverName) {
+        startServerBroadcast(serverName, NetworkProtocol.TCP_PORT);
+    }
+
+    /**
+     * Démarre l'annonce du serveur sur le LAN en indiquant son port TCP réel
+     */
+    public void startServerBroadcast(String serverName, int tcpPort) {
         this.isServer = true;
+        this.tcpPort = tcpPort;
         this.serverName = serverName;
         this.playerCount = 1;
         this.inGame = false;
-        
+
         running = true;
-        discoveryThread = new Thread(this::serverBroadcastLoop, "LAN-Broadcast");
+        discoveryThread = new Thread(this::serverLoop, "LAN-Broadcast");
         discoveryThread.setDaemon(true);
         discoveryThread.start();
-        
+
         System.out.println("[LAN] Annonce serveur démarrée: " + serverName);
     }
-    
-    private void serverBroadcastLoop() {
+
+    /**
+     * Port UDP sur lequel le serveur répond aux sondes de latence (son port
+     * de jeu), annoncé aux clients. À appeler avant startServerBroadcast.
+     */
+    public void setProbePort(int probePort) {
+        this.probePort = probePort;
+    }
+
+    private void serverLoop() {
         try {
-            socket = new DatagramSocket();
+            socket = openQuerySocket();
             socket.setBroadcast(true);
-            
+
+            byte[] buffer = new byte[512];
+            long lastAnnounce = 0;
+            String lastQuery = null;
+
             while (running) {
+                long now = System.currentTimeMillis();
+                if (now - lastAnnounce >= NetworkProtocol.DISCOVERY_INTERVAL
+                        || (announceRequested && now - lastAnnounce >= MIN_ANNOUNCE_GAP)) {
+                    announceRequested = false;
+                    lastAnnounce = now;
+                    JsonWriter announce = buildServerInfo("ANNOUNCE");
+                    sendToAll(socket, announce.buffer(), announce.size(), NetworkProtocol.DISCOVERY_PORT);
+                }
+
                 try {
-                    // Construire le message de découverte
-                    String json = JsonUtils.builder()
-                        .put("magic", NetworkProtocol.DISCOVERY_MAGIC)
-                        .put("serverName", serverName)
-                        .put("playerCount", playerCount)
-                        .put("maxPlayers", maxPlayers)
-                        .put("tcpPort", NetworkProtocol.TCP_PORT)
-                        .put("inGame", inGame)
-                        .build();
-                    
-                    byte[] data = json.getBytes("UTF-8");
-                    
-                    // Envoyer sur l'adresse broadcast
-                    InetAddress broadcast = InetAddress.getByName("255.255.255.255");
-                    DatagramPacket packet = new DatagramPacket(
-                        data, data.length, broadcast, NetworkProtocol.DISCOVERY_PORT
-                    );
-                    socket.send(packet);
-                    
-                    // Aussi envoyer sur les broadcasts de chaque interface
-                    broadcastToAllInterfaces(data);
-                    
-                } catch (Exception e) {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+
+                    // Sonde d'un client qui ne connaît pas le port de jeu
+                    if (ServerProber.answerProbe(socket, packet.getData(), packet.getLength(),
+                            packet.getSocketAddress())) {
+                        continue;
+                    }
+                    Map<String, Object> query = JsonUtils.parse(
+                            new String(packet.getData(), 0, packet.getLength(), "UTF-8"));
+                    if (!NetworkProtocol.DISCOVERY_MAGIC.equals(JsonUtils.getString(query, "magic", ""))
+                            || !"QUERY".equals(JsonUtils.getString(query, "type", ""))) {
+                        continue;
+                    }
+
+                    // Une même requête arrive par chaque adresse de broadcast
+                    String queryKey = packet.getSocketAddress() + "#" + JsonUtils.getInt(query, "nonce", 0);
+                    if (queryKey.equals(lastQuery)) {
+                        continue;
+                    }
+                    lastQuery = queryKey;
+
+                    JsonWriter reply = buildServerInfo("REPLY");
+                    socket.send(new DatagramPacket(reply.buffer(), reply.size(), packet.getSocketAddress()));
+
+                } catch (SocketTimeoutException e) {
+                    // Normal, permet d'annoncer et de vérifier running
+                } catch (IOException e) {
                     if (running) {
-                        System.err.println("[LAN] Erreur broadcast: " + e.getMessage());
+                        System.err.println("[LAN] Erreur réponse: " + e.getMessage());
                     }
                 }
-                
-                Thread.sleep(NetworkProtocol.DISCOVERY_INTERVAL);
             }
+
+            // Prévenir les clients plutôt que de les laisser expirer (envoyé
+            // ici pour ne pas être suivi d'une dernière annonce)
+            JsonWriter bye = buildServerInfo("BYE");
+            sendToAll(socket, bye.buffer(), bye.size(), NetworkProtocol.DISCOVERY_PORT);
         } catch (Exception e) {
             System.err.println("[LAN] Erreur serveur broadcast: " + e.getMessage());
         } finally {
@@ -121,147 +235,469 @@ public class LANDiscovery {
             }
         }
     }
-    
-    private void broadcastToAllInterfaces(byte[] data) throws Exception {
-        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
-        while (interfaces.hasMoreElements()) {
-            NetworkInterface ni = interfaces.nextElement();
-            if (ni.isLoopback() || !ni.isUp()) continue;
-            
-            for (InterfaceAddress addr : ni.getInterfaceAddresses()) {
-                InetAddress broadcast = addr.getBroadcast();
-                if (broadcast != null) {
-                    try {
-                        DatagramPacket packet = new DatagramPacket(
-                            data, data.length, broadcast, NetworkProtocol.DISCOVERY_PORT
-                        );
-                        socket.send(packet);
-                    } catch (Exception ignored) {}
+
+    /**
+     * Ouvre le port des requêtes, partagé par tous les serveurs de la
+     * machine. Si c'est impossible, le serveur ne fait plus que s'annoncer.
+     */
+    private MulticastSocket openQuerySocket() throws IOException {
+        MulticastSocket s = openSharedSocket(NetworkProtocol.DISCOVERY_QUERY_PORT);
+        if (s == null) {
+            System.err.println("[LAN] Port " + NetworkProtocol.DISCOVERY_QUERY_PORT
+                    + " indisponible, annonces seulement");
+            s = new MulticastSocket();
+        }
+        s.setSoTimeout(POLL_INTERVAL);
+        return s;
+    }
+
+    /**
+     * Socket lié à un port que plusieurs processus de la machine peuvent
+     * ouvrir en même temps, abonné aux groupes de découverte
+     *
+     * @return null si le port est pris par un socket exclusif
+     */
+    private static MulticastSocket openSharedSocket(int port) throws IOException {
+        MulticastSocket s = new MulticastSocket(null);
+        try {
+            s.setReuseAddress(true);
+            if (s.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                s.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            s.bind(new InetSocketAddress(port));
+        } catch (SocketException e) {
+            s.close();
+            return null;
+        }
+        s.setBroadcast(true);
+        joinGroups(s);
+        return s;
+    }
+
+    /**
+     * Abonne le socket aux groupes IPv4/IPv6 sur chaque interface qui
+     * possède une adresse de la famille correspondante
+     */
+    private static void joinGroups(MulticastSocket s) {
+        for (NetworkInterface ni : getMulticastInterfaces()) {
+            for (InetAddress group : groupsFor(ni)) {
+                try {
+                    s.joinGroup(new InetSocketAddress(group, 0), ni);
+                } catch (IOException e) {
+                    // Famille non routée sur cette interface : le broadcast prend le relais
                 }
             }
         }
     }
-    
+
+    /**
+     * Encode l'annonce dans announceWriter (thread serveur uniquement), à
+     * envoyer avec buffer()/size() sans copie
+     */
+    private JsonWriter buildServerInfo(String type) {
+        return announceWriter.reset()
+            .beginObject()
+            .put("magic", NetworkProtocol.DISCOVERY_MAGIC)
+            .put("type", type)
+            .put("serverId", serverId)
+            .put("serverName", serverName)
+            .put("playerCount", playerCount)
+            .put("maxPlayers", maxPlayers)
+            .put("tcpPort", tcpPort)
+            .put("probePort", probePort > 0 ? probePort : NetworkProtocol.DISCOVERY_QUERY_PORT)
+            .put("inGame", inGame)
+            .endObject();
+    }
+
     public void updateServerInfo(int playerCount, boolean inGame) {
+        if (this.playerCount != playerCount || this.inGame != inGame) {
+            announceRequested = true;
+        }
         this.playerCount = playerCount;
         this.inGame = inGame;
     }
-    
+
+    /**
+     * Variante pour un point d'entrée qui agrège plusieurs parties
+     * (matchmaker) : la capacité annoncée n'est plus celle d'une seule salle
+     */
+    public void updateServerInfo(int playerCount, int maxPlayers, boolean inGame) {
+        if (this.maxPlayers != maxPlayers) {
+            announceRequested = true;
+        }
+        this.maxPlayers = maxPlayers;
+        updateServerInfo(playerCount, inGame);
+    }
+
     // ==================== MODE CLIENT ====================
-    
+
     /**
      * Démarre l'écoute des serveurs sur le LAN
      */
     public void startClientDiscovery(DiscoveryListener listener) {
         this.isServer = false;
         this.listener = listener;
-        
+        this.queryRequested = true;
+
         running = true;
         discoveryThread = new Thread(this::clientDiscoveryLoop, "LAN-Discovery");
         discoveryThread.setDaemon(true);
         discoveryThread.start();
-        
+
+        queryThread = new Thread(this::clientQueryLoop, "LAN-Query");
+        queryThread.setDaemon(true);
+        queryThread.start();
+
+        prober = new ServerProber(discoveredServers::values);
+        prober.start();
+
         System.out.println("[LAN] Recherche de serveurs démarrée...");
     }
-    
+
+    /**
+     * Vide la liste et interroge à nouveau les serveurs : seuls ceux qui
+     * répondent réapparaissent
+     */
+    public void refresh() {
+        discoveredServers.clear();
+        queryRequested = true;
+    }
+
+    /**
+     * Écoute des annonces (multicast et broadcast) sur le port partagé
+     */
     private void clientDiscoveryLoop() {
         try {
-            socket = new DatagramSocket(NetworkProtocol.DISCOVERY_PORT);
-            socket.setSoTimeout(1000); // Timeout pour vérifier running régulièrement
-            
+            socket = openSharedSocket(NetworkProtocol.DISCOVERY_PORT);
+            if (socket == null) {
+                // Un ancien client garde le port pour lui seul
+                System.err.println("[LAN] Port " + NetworkProtocol.DISCOVERY_PORT
+                        + " déjà utilisé, recherche par requêtes seulement");
+                while (running) {
+                    Thread.sleep(POLL_INTERVAL);
+                    cleanupOldServers();
+                }
+                return;
+            }
+            listeningAnnounces = true;
+            receiveLoop(socket);
+        } catch (InterruptedException e) {
+            // Arrêt
+        } catch (Exception e) {
+            if (running) {
+                System.err.println("[LAN] Erreur découverte: " + e.getMessage());
+            }
+        } finally {
+            if (socket != null && !socket.isClosed()) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Envoi des requêtes et réception des réponses, sur un port propre à ce
+     * client
+     */
+    private void clientQueryLoop() {
+        try {
+            querySocket = new MulticastSocket();
+            querySocket.setBroadcast(true);
+            querySocket.setSoTimeout(POLL_INTERVAL);
+
             byte[] buffer = new byte[1024];
-            
+            long lastQuery = 0;
+
             while (running) {
+                // Sans le port des annonces, interroger régulièrement
+                long now = System.currentTimeMillis();
+                if (queryRequested || (!listeningAnnounces && now - lastQuery >= NetworkProtocol.DISCOVERY_INTERVAL)) {
+                    queryRequested = false;
+                    lastQuery = now;
+                    sendQuery();
+                }
+
                 try {
                     DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                    socket.receive(packet);
-                    
-                    String json = new String(packet.getData(), 0, packet.getLength(), "UTF-8");
-                    processDiscoveryPacket(json, packet.getAddress().getHostAddress());
-                    
+                    querySocket.receive(packet);
+                    processDiscoveryPacket(new String(packet.getData(), 0, packet.getLength(), "UTF-8"),
+                            packet.getAddress());
                 } catch (SocketTimeoutException e) {
                     // Normal, permet de vérifier running
-                    cleanupOldServers();
                 }
             }
-        } catch (BindException e) {
-            System.err.println("[LAN] Port " + NetworkProtocol.DISCOVERY_PORT + " déjà utilisé");
         } catch (Exception e) {
             if (running) {
-                System.err.println("[LAN] Erreur découverte: " + e.getMessage());
+                System.err.println("[LAN] Erreur requêtes: " + e.getMessage());
             }
         } finally {
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
+            if (querySocket != null && !querySocket.isClosed()) {
+                querySocket.close();
+            }
+        }
+    }
+
+    private void receiveLoop(DatagramSocket s) throws IOException {
+        s.setSoTimeout(POLL_INTERVAL);
+        byte[] buffer = new byte[1024];
+
+        while (running) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                s.receive(packet);
+
+                String json = new String(packet.getData(), 0, packet.getLength(), "UTF-8");
+                processDiscoveryPacket(json, packet.getAddress());
+
+            } catch (SocketTimeoutException e) {
+                // Normal, permet de vérifier running
             }
+            cleanupOldServers();
         }
     }
-    
-    private void processDiscoveryPacket(String json, String sourceAddress) {
+
+    private void sendQuery() {
+        try {
+            byte[] data = JsonUtils.builder()
+                .put("magic", NetworkProtocol.DISCOVERY_MAGIC)
+                .put("type", "QUERY")
+                .put("nonce", ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE))
+                .build()
+                .getBytes("UTF-8");
+            sendToAll(querySocket, data, data.length, NetworkProtocol.DISCOVERY_QUERY_PORT);
+        } catch (Exception e) {
+            System.err.println("[LAN] Erreur requête: " + e.getMessage());
+        }
+    }
+
+    private void processDiscoveryPacket(String json, InetAddress source) {
         try {
             Map<String, Object> data = JsonUtils.parse(json);
-            
+
             String magic = JsonUtils.getString(data, "magic", "");
             if (!NetworkProtocol.DISCOVERY_MAGIC.equals(magic)) {
                 return; // Pas notre protocole
             }
-            
-            ServerInfo info = new ServerInfo();
-            info.address = sourceAddress;
-            info.tcpPort = JsonUtils.getInt(data, "tcpPort", NetworkProtocol.TCP_PORT);
+
+            String sourceAddress = source.getHostAddress();
+            int port = JsonUtils.getInt(data, "tcpPort", NetworkProtocol.TCP_PORT);
+            // Un même serveur peut arriver par IPv4, IPv6 et broadcast
+            String key = JsonUtils.getString(data, "serverId", sourceAddress + ":" + port);
+
+            // Serveur arrêté proprement
+            if ("BYE".equals(JsonUtils.getString(data, "type", ""))) {
+                ServerInfo removed = discoveredServers.remove(key);
+                if (removed != null && listener != null) {
+                    listener.onServerLost(removed.address + ":" + removed.tcpPort);
+                }
+                return;
+            }
+
+            // Mettre à jour l'entrée existante pour garder ses mesures
+            ServerInfo info = discoveredServers.get(key);
+            boolean isNew = info == null;
+            if (isNew) {
+                info = new ServerInfo();
+                info.address = sourceAddress;
+            } else if (!(source instanceof Inet6Address) || info.address.contains(":")) {
+                // Garder l'adresse IPv4 quand elle est connue (plus simple à
+                // afficher, sans identifiant d'interface)
+                info.address = sourceAddress;
+            }
+            info.tcpPort = port;
+            info.probePort = JsonUtils.getInt(data, "probePort", NetworkProtocol.DISCOVERY_QUERY_PORT);
             info.serverName = JsonUtils.getString(data, "serverName", "Serveur inconnu");
             info.playerCount = JsonUtils.getInt(data, "playerCount", 1);
             info.maxPlayers = JsonUtils.getInt(data, "maxPlayers", NetworkProtocol.MAX_PLAYERS);
             info.inGame = JsonUtils.getBoolean(data, "inGame", false);
             info.lastSeen = System.currentTimeMillis();
-            
-            String key = sourceAddress + ":" + info.tcpPort;
-            boolean isNew = !discoveredServers.containsKey(key);
-            discoveredServers.put(key, info);
-            
-            if (isNew && listener != null) {
+
+            if (isNew && discoveredServers.putIfAbsent(key, info) == null && listener != null) {
                 listener.onServerFound(info);
             }
-            
+
         } catch (Exception e) {
             // Paquet malformé, ignorer
         }
     }
-    
+
     private void cleanupOldServers() {
         long now = System.currentTimeMillis();
         long timeout = NetworkProtocol.DISCOVERY_INTERVAL * 3; // 3 cycles sans réponse = mort
-        
+
         Iterator<Map.Entry<String, ServerInfo>> it = discoveredServers.entrySet().iterator();
         while (it.hasNext()) {
             Map.Entry<String, ServerInfo> entry = it.next();
             if (now - entry.getValue().lastSeen > timeout) {
                 it.remove();
                 if (listener != null) {
-                    listener.onServerLost(entry.getKey());
+                    listener.onServerLost(entry.getValue().address + ":" + entry.getValue().tcpPort);
+                }
+            }
+        }
+    }
+
+    // ==================== ENVOI ====================
+
+    /**
+     * Envoie vers les groupes multicast de chaque interface, puis en
+     * broadcast (global et par interface) pour les réseaux sans multicast
+     */
+    private static void sendToAll(MulticastSocket s, byte[] data, int length, int port) {
+        boolean failed = false;
+        // Un seul paquet, réadressé pour chaque destination
+        DatagramPacket packet = new DatagramPacket(data, length);
+        packet.setPort(port);
+        for (NetworkInterface ni : getMulticastInterfaces()) {
+            for (InetAddress group : groupsFor(ni)) {
+                try {
+                    s.setNetworkInterface(ni);
+                    packet.setAddress(group);
+                    s.send(packet);
+                } catch (IOException e) {
+                    // Famille sans route sur cette interface : pas une raison
+                    // de relire les interfaces à chaque envoi
                 }
             }
         }
+        for (InetAddress broadcast : getBroadcastAddresses()) {
+            try {
+                packet.setAddress(broadcast);
+                s.send(packet);
+            } catch (IOException e) {
+                failed = true;
+            }
+        }
+        // Une interface a pu disparaître : relire la liste au prochain envoi
+        if (failed) {
+            invalidateInterfaces();
+        }
+    }
+
+    /**
+     * Groupes de découverte utilisables sur une interface, selon les
+     * familles d'adresses qu'elle porte
+     */
+    private static List<InetAddress> groupsFor(NetworkInterface ni) {
+        List<InetAddress> groups = new ArrayList<>(2);
+        boolean v4 = false;
+        boolean v6 = false;
+        for (InterfaceAddress addr : ni.getInterfaceAddresses()) {
+            v4 |= addr.getAddress() instanceof Inet4Address;
+            v6 |= addr.getAddress() instanceof Inet6Address;
+        }
+        try {
+            if (v4) {
+                groups.add(InetAddress.getByName(NetworkProtocol.DISCOVERY_MULTICAST_V4));
+            }
+            if (v6) {
+                groups.add(InetAddress.getByName(NetworkProtocol.DISCOVERY_MULTICAST_V6));
+            }
+        } catch (UnknownHostException e) {
+            // Adresses littérales, impossible
+        }
+        return groups;
     }
-    
+
+    private static synchronized List<InetAddress> getBroadcastAddresses() {
+        refreshInterfaces();
+        return cachedBroadcasts;
+    }
+
+    private static synchronized List<NetworkInterface> getMulticastInterfaces() {
+        refreshInterfaces();
+        return cachedMulticastInterfaces;
+    }
+
+    /**
+     * Relit les interfaces au plus toutes les DISCOVERY_INTERFACE_REFRESH ms
+     * (l'énumération est coûteuse)
+     */
+    private static synchronized void refreshInterfaces() {
+        long now = System.currentTimeMillis();
+        if (cachedBroadcasts != null && now - cachedInterfacesTime < NetworkProtocol.DISCOVERY_INTERFACE_REFRESH) {
+            return;
+        }
+
+        Set<InetAddress> addresses = new LinkedHashSet<>();
+        List<NetworkInterface> multicast = new ArrayList<>();
+        try {
+            addresses.add(InetAddress.getByName("255.255.255.255"));
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                NetworkInterface ni = interfaces.nextElement();
+                if (ni.isLoopback() || !ni.isUp()) continue;
+
+                if (ni.supportsMulticast()) {
+                    multicast.add(ni);
+                }
+                for (InterfaceAddress addr : ni.getInterfaceAddresses()) {
+                    if (addr.getBroadcast() != null) {
+                        addresses.add(addr.getBroadcast());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[LAN] Erreur interfaces: " + e.getMessage());
+        }
+
+        List<InetAddress> list = new ArrayList<>(addresses);
+        if (!list.equals(cachedBroadcasts) || !multicast.equals(cachedMulticastInterfaces)) {
+            List<String> names = new ArrayList<>();
+            for (NetworkInterface ni : multicast) {
+                names.add(ni.getName());
+            }
+            System.out.println("[LAN] Broadcast: " + list + ", multicast: " + names);
+        }
+        cachedBroadcasts = list;
+        cachedMulticastInterfaces = multicast;
+        cachedInterfacesTime = now;
+    }
+
+    private static synchronized void invalidateInterfaces() {
+        cachedInterfacesTime = 0;
+    }
+
     // ==================== COMMUN ====================
-    
+
     public void stop() {
         running = false;
+        if (isServer && discoveryThread != null) {
+            // Laisser le thread d'annonce envoyer son BYE
+            try {
+                discoveryThread.join(POLL_INTERVAL * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         if (socket != null && !socket.isClosed()) {
             socket.close();
         }
+        if (querySocket != null && !querySocket.isClosed()) {
+            querySocket.close();
+        }
+        if (prober != null) {
+            prober.stop();
+        }
         if (discoveryThread != null) {
             discoveryThread.interrupt();
         }
         discoveredServers.clear();
         System.out.println("[LAN] Découverte arrêtée");
     }
-    
+
     public Collection<ServerInfo> getDiscoveredServers() {
         return new ArrayList<>(discoveredServers.values());
     }
-    
+
+    /**
+     * Serveurs triés du meilleur au moins bon (voir ServerInfo.BY_QUALITY)
+     */
+    public List<ServerInfo> getRankedServers() {
+        List<ServerInfo> ranked = new ArrayList<>(discoveredServers.values());
+        ranked.sort(ServerInfo.BY_QUALITY);
+        return ranked;
+    }
+
     public boolean isRunning() {
         return running;
     }
@@ -0,0 +1,369 @@
+package network;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Émulateur de liaison réseau, intercalé entre un Transport réel et le code
+ * du protocole
+ *
+ * Enveloppe n'importe quel Transport et dégrade séparément chaque sens selon
+ * un LinkProfile : délai et gigue (loi au choix), pertes isolées et en
+ * rafale, duplication, réordonnancement et débit limité. Les tirages
+ * utilisent un Random initialisé par une graine : une même suite d'envois
+ * subit toujours les mêmes dégradations, ce qui rend comparables les mesures
+ * d'interpolation, de prédiction ou de redondance entre deux versions.
+ *
+ * Côté client, le sens "sortant" correspond à la montée (client -> serveur)
+ * et le sens "entrant" à la descente (serveur -> client) : envelopper le
+ * transport du client suffit donc à émuler toute la liaison.
+ *
+ * Les livraisons retardées sont faites par un thread dédié à l'émulateur.
+ * Les messages fiables d'un sens attendent dans une file unique, vidée dans
+ * l'ordre par une seule tâche : deux messages ne se doublent jamais.
+ */
+public class LinkEmulator implements Transport {
+
+    /**
+     * En-têtes IP + UDP comptés dans le débit de chaque datagramme
+     */
+    private static final int DATAGRAM_OVERHEAD = 28;
+
+    /**
+     * En-têtes IP + TCP comptés dans le débit de chaque message
+     */
+    private static final int MESSAGE_OVERHEAD = 40;
+
+    /**
+     * Paramètre de forme de la loi de Pareto (gigue moyenne = jitter)
+     */
+    private static final double PARETO_ALPHA = 2.0;
+
+    private final Transport inner;
+    private final Lane outbound;
+    private final Lane inbound;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Compteurs d'un sens de la liaison
+     */
+    public static class Stats {
+
+        public long datagrams;
+        public long messages;
+        public long lost;
+        public long burstLost;
+        public long queueDropped;
+        public long duplicated;
+        public long reordered;
+
+        @Override
+        public String toString() {
+            return datagrams + " datagrammes, " + messages + " messages, " + lost + " perdus ("
+                    + burstLost + " en rafale, " + queueDropped + " file pleine), " + duplicated
+                    + " dupliqués, " + reordered + " réordonnés";
+        }
+    }
+
+    /**
+     * @param inner transport réel
+     * @param outbound dégradations des envois
+     * @param inbound dégradations des réceptions
+     * @param seed graine des tirages aléatoires
+     */
+    public LinkEmulator(Transport inner, LinkProfile outbound, LinkProfile inbound, long seed) {
+        this.inner = inner;
+        this.outbound = new Lane(outbound, seed);
+        this.inbound = new Lane(inbound, seed * 31 + 17);
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "LinkEmulator");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler = executor;
+    }
+
+    /**
+     * Enveloppe le transport seulement si l'un des deux sens est dégradé
+     */
+    public static Transport wrap(Transport inner, LinkProfile outbound, LinkProfile inbound, long seed) {
+        boolean outboundPerfect = outbound == null || outbound.isPerfect();
+        boolean inboundPerfect = inbound == null || inbound.isPerfect();
+        if (outboundPerfect && inboundPerfect) {
+            return inner;
+        }
+        return new LinkEmulator(inner,
+                outbound != null ? outbound : LinkProfile.perfect(),
+                inbound != null ? inbound : LinkProfile.perfect(),
+                seed);
+    }
+
+    // ==================== TRANSPORT ====================
+    @Override
+    public void start(Receiver target) {
+        inner.start(new Receiver() {
+            @Override
+            public void onMessage(String json) {
+                inbound.message(json.length(), () -> target.onMessage(json));
+            }
+
+            @Override
+            public void onDatagram(byte[] data, int length) {
+                // Le tampon n'est valable que pendant l'appel
+                byte[] copy = Arrays.copyOf(data, length);
+                inbound.datagram(length, () -> target.onDatagram(copy, length));
+            }
+
+            @Override
+            public void onClosed() {
+                // Après les messages encore en transit
+                inbound.message(0, target::onClosed);
+            }
+        });
+    }
+
+    @Override
+    public void sendMessage(String json) {
+        outbound.message(json.length(), () -> inner.sendMessage(json));
+    }
+
+    @Override
+    public void sendDatagram(byte[] data, int length) {
+        outbound.datagram(length, () -> inner.sendDatagram(data, length));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        inner.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return inner.isOpen();
+    }
+
+    // ==================== STATISTIQUES ====================
+    public Stats getOutboundStats() {
+        return outbound.snapshot();
+    }
+
+    public Stats getInboundStats() {
+        return inbound.snapshot();
+    }
+
+    // ==================== UN SENS DE LA LIAISON ====================
+    /**
+     * État d'un sens : générateur, état de rafale, occupation du débit et
+     * compteurs. Les tirages se font sous le verrou du sens pour que leur
+     * ordre ne dépende que de l'ordre des envois.
+     */
+    private final class Lane {
+
+        private final LinkProfile profile;
+        private final Random random;
+        private final boolean perfect;
+        private boolean inBurst;
+        private long linkFreeAt = Long.MIN_VALUE;
+        private long lastMessageDue = Long.MIN_VALUE;
+        private final ArrayDeque<PendingMessage> pendingMessages = new ArrayDeque<>();
+        private boolean drainScheduled;
+        private final Stats stats = new Stats();
+
+        Lane(LinkProfile profile, long seed) {
+            this.profile = profile;
+            this.random = new Random(seed);
+            this.perfect = profile.isPerfect();
+        }
+
+        /**
+         * Message fiable : retardé et limité en débit, mais ni perdu ni
+         * réordonné
+         */
+        void message(int size, Runnable delivery) {
+            if (perfect) {
+                delivery.run();
+                return;
+            }
+            long due;
+            synchronized (this) {
+                stats.messages++;
+                long now = System.nanoTime();
+                due = Math.max(transmit(now, size + MESSAGE_OVERHEAD, false) + sampleDelay(), lastMessageDue);
+                lastMessageDue = due;
+                pendingMessages.addLast(new PendingMessage(due, delivery));
+                if (drainScheduled) {
+                    return;
+                }
+                drainScheduled = true;
+            }
+            deliverAt(due, this::drainMessages);
+        }
+
+        /**
+         * Livre dans l'ordre d'envoi les messages arrivés à échéance, puis se
+         * replanifie pour le suivant. Les échéances ne décroissent pas : la
+         * file est aussi rangée par échéance.
+         */
+        private void drainMessages() {
+            while (true) {
+                PendingMessage next;
+                synchronized (this) {
+                    next = pendingMessages.peekFirst();
+                    if (next == null) {
+                        drainScheduled = false;
+                        return;
+                    }
+                    if (next.due() > System.nanoTime()) {
+                        deliverAt(next.due(), this::drainMessages);
+                        return;
+                    }
+                    pendingMessages.pollFirst();
+                }
+                try {
+                    next.delivery().run();
+                } catch (Exception e) {
+                    System.err.println("[LINK] Erreur livraison: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Datagramme : subit toutes les dégradations du profil
+         */
+        void datagram(int size, Runnable delivery) {
+            if (perfect) {
+                delivery.run();
+                return;
+            }
+            long due;
+            long duplicateDue = -1;
+            synchronized (this) {
+                stats.datagrams++;
+
+                // Modèle de Gilbert-Elliott : tout est perdu pendant une rafale
+                if (inBurst) {
+                    inBurst = random.nextDouble() >= profile.burstExitRate;
+                } else {
+                    inBurst = random.nextDouble() < profile.burstEnterRate;
+                }
+                if (inBurst) {
+                    stats.lost++;
+                    stats.burstLost++;
+                    return;
+                }
+                if (random.nextDouble() < profile.lossRate) {
+                    stats.lost++;
+                    return;
+                }
+
+                long now = System.nanoTime();
+                long sentAt = transmit(now, size + DATAGRAM_OVERHEAD, true);
+                if (sentAt < 0) {
+                    stats.lost++;
+                    stats.queueDropped++;
+                    return;
+                }
+
+                due = sentAt + sampleDelay();
+                if (random.nextDouble() < profile.reorderRate) {
+                    stats.reordered++;
+                    due += millisToNanos(profile.reorderDelayMs);
+                }
+                if (random.nextDouble() < profile.duplicateRate) {
+                    stats.duplicated++;
+                    duplicateDue = sentAt + sampleDelay();
+                }
+            }
+            deliverAt(due, delivery);
+            if (duplicateDue >= 0) {
+                deliverAt(duplicateDue, delivery);
+            }
+        }
+
+        /**
+         * Occupe le lien le temps d'émettre size octets
+         *
+         * @return l'instant où le dernier octet est parti, ou -1 si la file
+         * d'attente est trop longue et que le paquet peut être abandonné
+         */
+        private long transmit(long now, int size, boolean droppable) {
+            if (profile.bandwidthKbps <= 0) {
+                return now;
+            }
+            long start = Math.max(now, linkFreeAt);
+            if (droppable && start - now > millisToNanos(profile.maxQueueMs)) {
+                return -1;
+            }
+            linkFreeAt = start + size * 8L * 1_000_000L / profile.bandwidthKbps;
+            return linkFreeAt;
+        }
+
+        /**
+         * Délai de propagation : délai de base plus gigue, jamais négatif
+         */
+        private long sampleDelay() {
+            double jitter = 0;
+            if (profile.jitterMs > 0) {
+                switch (profile.distribution) {
+                    case NORMAL:
+                        jitter = random.nextGaussian() * profile.jitterMs;
+                        break;
+                    case PARETO:
+                        double scale = profile.jitterMs * (PARETO_ALPHA - 1);
+                        jitter = scale * (Math.pow(1 - random.nextDouble(), -1 / PARETO_ALPHA) - 1);
+                        break;
+                    default:
+                        jitter = (random.nextDouble() * 2 - 1) * profile.jitterMs;
+                        break;
+                }
+            }
+            return millisToNanos(Math.max(0, profile.delayMs + jitter));
+        }
+
+        synchronized Stats snapshot() {
+            Stats copy = new Stats();
+            copy.datagrams = stats.datagrams;
+            copy.messages = stats.messages;
+            copy.lost = stats.lost;
+            copy.burstLost = stats.burstLost;
+            copy.queueDropped = stats.queueDropped;
+            copy.duplicated = stats.duplicated;
+            copy.reordered = stats.reordered;
+            return copy;
+        }
+    }
+
+    /**
+     * Message fiable en attente de livraison
+     */
+    private record PendingMessage(long due, Runnable delivery) {
+    }
+
+    private void deliverAt(long dueNanos, Runnable delivery) {
+        if (scheduler.isShutdown()) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> {
+                try {
+                    delivery.run();
+                } catch (Exception e) {
+                    System.err.println("[LINK] Erreur livraison: " + e.getMessage());
+                }
+            }, dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // Émulateur fermé entre-temps
+        }
+    }
+
+    private static long millisToNanos(double millis) {
+        return (long) (millis * 1_000_000);
+    }
+}
@@ -0,0 +1,128 @@
+package network;
+
+import java.util.Locale;
+
+/**
+ * Caractéristiques d'un sens de liaison émulé (voir LinkEmulator)
+ *
+ * Se construit depuis une chaîne de la forme
+ * "delay=80,jitter=20,dist=normal,loss=0.02,burst=0.05:0.4,dup=0.01,reorder=0.02,bw=512"
+ * - delay : délai de base en ms - jitter : amplitude de la gigue en ms - dist :
+ * loi de la gigue (uniform, normal, pareto) - loss : probabilité de perte
+ * isolée - burst : pertes en rafale (modèle de Gilbert-Elliott), probabilité
+ * d'entrer dans une rafale : probabilité d'en sortir ; tout est perdu pendant
+ * la rafale - dup : probabilité de dupliquer un datagramme - reorder :
+ * probabilité de retarder un datagramme pour qu'il double les suivants - bw :
+ * débit maximal en kbit/s (0 = illimité) - queue : attente maximale en ms dans
+ * la file du débit avant abandon
+ *
+ * Les messages fiables (TCP) ne subissent que le délai, la gigue et le débit :
+ * ils ne sont jamais perdus, dupliqués ni réordonnés.
+ */
+public class LinkProfile {
+
+    /**
+     * Loi de la gigue
+     */
+    public enum JitterDistribution {
+        UNIFORM, // Uniforme dans [-jitter, +jitter]
+        NORMAL, // Gaussienne d'écart-type jitter
+        PARETO // Queue lourde : rares retards très longs
+    }
+
+    public double delayMs;
+    public double jitterMs;
+    public JitterDistribution distribution = JitterDistribution.UNIFORM;
+    public double lossRate;
+    public double burstEnterRate;
+    public double burstExitRate = 1.0;
+    public double duplicateRate;
+    public double reorderRate;
+    public double reorderDelayMs = 50;
+    public int bandwidthKbps;
+    public double maxQueueMs = 500;
+
+    /**
+     * Liaison parfaite (aucune dégradation)
+     */
+    public static LinkProfile perfect() {
+        return new LinkProfile();
+    }
+
+    /**
+     * Lit un profil "cle=valeur,cle=valeur"
+     *
+     * @throws IllegalArgumentException si une clé ou une valeur est invalide
+     */
+    public static LinkProfile parse(String spec) {
+        LinkProfile profile = new LinkProfile();
+        if (spec == null || spec.trim().isEmpty()) {
+            return profile;
+        }
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Paramètre de liaison invalide: " + part);
+            }
+            String key = kv[0].trim().toLowerCase(Locale.ROOT);
+            String value = kv[1].trim();
+            try {
+                switch (key) {
+                    case "delay":
+                        profile.delayMs = Double.parseDouble(value);
+                        break;
+                    case "jitter":
+                        profile.jitterMs = Double.parseDouble(value);
+                        break;
+                    case "dist":
+                        profile.distribution = JitterDistribution.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "loss":
+                        profile.lossRate = Double.parseDouble(value);
+                        break;
+                    case "burst":
+                        String[] rates = value.split(":");
+                        profile.burstEnterRate = Double.parseDouble(rates[0]);
+                        profile.burstExitRate = rates.length > 1 ? Double.parseDouble(rates[1]) : 0.5;
+                        break;
+                    case "dup":
+                        profile.duplicateRate = Double.parseDouble(value);
+                        break;
+                    case "reorder":
+                        profile.reorderRate = Double.parseDouble(value);
+                        break;
+                    case "reorderdelay":
+                        profile.reorderDelayMs = Double.parseDouble(value);
+                        break;
+                    case "bw":
+                        profile.bandwidthKbps = Integer.parseInt(value);
+                        break;
+                    case "queue":
+                        profile.maxQueueMs = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Paramètre de liaison inconnu: " + key);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valeur invalide pour " + key + ": " + value);
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * La liaison ne dégrade rien (l'émulateur peut être court-circuité)
+     */
+    public boolean isPerfect() {
+        return delayMs <= 0 && jitterMs <= 0 && lossRate <= 0 && burstEnterRate <= 0
+                && duplicateRate <= 0 && reorderRate <= 0 && bandwidthKbps <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "delay=%.0f,jitter=%.0f,dist=%s,loss=%.3f,burst=%.3f:%.3f,dup=%.3f,reorder=%.3f,bw=%d",
+                delayMs, jitterMs, distribution.name().toLowerCase(Locale.ROOT), lossRate,
+                burstEnterRate, burstExitRate, duplicateRate, reorderRate, bandwidthKbps);
+    }
+}
@@ -0,0 +1,114 @@
+package network;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Transport en mémoire entre deux extrémités d'un même processus
+ *
+ * Utilisé par le joueur hôte pour se connecter à son propre serveur comme un
+ * client ordinaire, sans socket : les messages et les datagrammes sont
+ * déposés tels quels (sans copie) dans la file du pair, qui les livre dans
+ * l'ordre depuis son propre thread. L'émetteur n'exécute donc jamais le code
+ * de réception du pair (le tick serveur n'attend pas l'interface).
+ */
+public class LoopbackTransport implements Transport {
+
+    private static final Object CLOSED = new Object();
+
+    private final String name;
+    private final BlockingQueue<Object> inbox = new LinkedBlockingQueue<>();
+    private LoopbackTransport peer;
+    private volatile boolean open = true;
+
+    /**
+     * Datagramme en attente de livraison (référence, pas de copie)
+     */
+    private static final class Datagram {
+
+        final byte[] data;
+        final int length;
+
+        Datagram(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private LoopbackTransport(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Crée deux extrémités reliées
+     *
+     * @return [extrémité client, extrémité serveur]
+     */
+    public static LoopbackTransport[] createPair(String name) {
+        LoopbackTransport client = new LoopbackTransport(name + "-Client");
+        LoopbackTransport server = new LoopbackTransport(name + "-Server");
+        client.peer = server;
+        server.peer = client;
+        return new LoopbackTransport[]{client, server};
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        Thread thread = new Thread(() -> deliveryLoop(receiver), "Loopback-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void deliveryLoop(Receiver receiver) {
+        try {
+            while (open) {
+                Object item = inbox.take();
+                if (item == CLOSED) {
+                    if (open) {
+                        open = false;
+                        receiver.onClosed();
+                    }
+                    return;
+                }
+                if (item instanceof Datagram) {
+                    Datagram datagram = (Datagram) item;
+                    receiver.onDatagram(datagram.data, datagram.length);
+                } else {
+                    receiver.onMessage((String) item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void sendMessage(String json) {
+        if (open) {
+            peer.inbox.offer(json);
+        }
+    }
+
+    @Override
+    public void sendDatagram(byte[] data, int length) {
+        if (open) {
+            peer.inbox.offer(new Datagram(data, length));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        // Réveiller notre thread de livraison et prévenir le pair
+        inbox.offer(CLOSED);
+        peer.inbox.offer(CLOSED);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+}
@@ -0,0 +1,369 @@
+package network;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Matchmaker : point d'entrée unique devant plusieurs serveurs dédiés
+ *
+ * Les GameServer lancés avec --matchmaker s'enregistrent ici en UDP et
+ * envoient régulièrement leur charge (joueurs, salles, ticks en retard). Le
+ * matchmaker s'annonce sur le LAN comme une partie ordinaire : quand un client
+ * s'y connecte en TCP, il reçoit un CONNECT_REDIRECT vers le serveur le moins
+ * chargé, auquel GameClient se reconnecte automatiquement.
+ *
+ * Usage: java -cp bin Main --matchmaker [--port 25568] [--name "Nom"]
+ */
+public class Matchmaker {
+
+    /**
+     * Un serveur est oublié s'il n'a rien envoyé pendant ce délai
+     */
+    private static final long NODE_TIMEOUT = NetworkProtocol.MATCHMAKER_HEARTBEAT_INTERVAL * 3L;
+
+    /**
+     * Au-delà de cette proportion de ticks en retard, un serveur n'est choisi
+     * que si tous les autres sont aussi surchargés
+     */
+    private static final double MAX_OVERRUN_RATIO = 0.05;
+
+    private final String name;
+    private final int port;
+    private ServerSocket tcpServer;
+    private DatagramSocket udpSocket;
+    private volatile boolean running;
+    private LANDiscovery lanDiscovery;
+
+    // Un thread par client en cours de redirection : un client lent ou muet
+    // (jusqu'à CONNECTION_TIMEOUT) ne retarde pas les autres
+    private ExecutorService clientPool;
+    private final AtomicInteger clientThreadIndex = new AtomicInteger();
+
+    private final Map<String, NodeInfo> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * État d'un serveur enregistré, tel que rapporté par son dernier
+     * heartbeat
+     */
+    public static class NodeInfo {
+
+        public String address;
+        public int tcpPort;
+        public String serverName;
+        public int players;
+        public int rooms;
+        public int maxRooms;
+        public int joinableRooms;
+        public double overrunRatio;
+        public long lastSeen;
+
+        /**
+         * Le serveur peut placer un nouveau joueur
+         */
+        boolean canAccept() {
+            return joinableRooms > 0 || rooms < maxRooms;
+        }
+
+        /**
+         * Charge entre 0 (vide) et 1 (plein), pénalisée par les retards de tick
+         */
+        double load() {
+            int capacity = Math.max(1, maxRooms * NetworkProtocol.MAX_PLAYERS);
+            return (double) players / capacity + overrunRatio;
+        }
+
+        @Override
+        public String toString() {
+            return serverName + " @" + address + ":" + tcpPort + " (" + players + " joueurs, "
+                    + rooms + "/" + maxRooms + " salles, " + String.format("%.1f", overrunRatio * 100) + "% retard)";
+        }
+    }
+
+    public Matchmaker(String name, int port) {
+        this.name = name;
+        this.port = port;
+    }
+
+    // ==================== DÉMARRAGE/ARRÊT ====================
+    public boolean start() {
+        try {
+            tcpServer = new ServerSocket(port);
+            tcpServer.setSoTimeout(1000);
+
+            udpSocket = new DatagramSocket(port);
+            udpSocket.setSoTimeout(1000);
+
+            running = true;
+
+            clientPool = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "Matchmaker-Client-" + clientThreadIndex.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            new Thread(this::acceptLoop, "Matchmaker-Accept").start();
+            new Thread(this::heartbeatLoop, "Matchmaker-UDP").start();
+
+            lanDiscovery = new LANDiscovery();
+            lanDiscovery.setProbePort(udpSocket.getLocalPort());
+            lanDiscovery.startServerBroadcast(name, getPort());
+            updateLanInfo();
+
+            System.out.println("[MATCHMAKER] Démarré sur le port " + getPort() + " (TCP clients, UDP serveurs)");
+            return true;
+
+        } catch (Exception e) {
+            System.err.println("[MATCHMAKER] Erreur démarrage: " + e.getMessage());
+            stop();
+            return false;
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (tcpServer != null) {
+                tcpServer.close();
+            }
+            if (udpSocket != null) {
+                udpSocket.close();
+            }
+        } catch (Exception ignored) {
+        }
+        if (clientPool != null) {
+            clientPool.shutdownNow();
+        }
+        if (lanDiscovery != null) {
+            lanDiscovery.stop();
+        }
+        System.out.println("[MATCHMAKER] Arrêté");
+    }
+
+    // ==================== ENREGISTREMENT DES SERVEURS ====================
+    private void heartbeatLoop() {
+        byte[] buffer = new byte[1024];
+
+        while (running) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                udpSocket.receive(packet);
+
+                if (ServerProber.answerProbe(udpSocket, packet.getData(), packet.getLength(),
+                        packet.getSocketAddress())) {
+                    continue;
+                }
+                String json = new String(packet.getData(), 0, packet.getLength(), "UTF-8");
+                processHeartbeat(json, packet.getAddress().getHostAddress());
+
+            } catch (SocketTimeoutException e) {
+                // Normal, permet de purger les serveurs muets
+            } catch (Exception e) {
+                if (running) {
+                    System.err.println("[MATCHMAKER] Erreur UDP: " + e.getMessage());
+                }
+            }
+            expireNodes();
+        }
+    }
+
+    private void processHeartbeat(String json, String sourceAddress) {
+        try {
+            Map<String, Object> msg = JsonUtils.parse(json);
+            String type = JsonUtils.getString(msg, "type", "");
+            int tcpPort = JsonUtils.getInt(msg, "tcpPort", NetworkProtocol.TCP_PORT);
+            // Un serveur derrière une autre interface peut préciser son adresse
+            String address = JsonUtils.getString(msg, "address", sourceAddress);
+            String key = address + ":" + tcpPort;
+
+            if ("MM_UNREGISTER".equals(type)) {
+                NodeInfo removed = nodes.remove(key);
+                if (removed != null) {
+                    System.out.println("[MATCHMAKER] Serveur retiré: " + removed);
+                    updateLanInfo();
+                }
+                return;
+            }
+            if (!"MM_HEARTBEAT".equals(type)) {
+                return;
+            }
+
+            NodeInfo node = new NodeInfo();
+            node.address = address;
+            node.tcpPort = tcpPort;
+            node.serverName = JsonUtils.getString(msg, "serverName", "Serveur");
+            node.players = JsonUtils.getInt(msg, "players", 0);
+            node.rooms = JsonUtils.getInt(msg, "rooms", 0);
+            node.maxRooms = JsonUtils.getInt(msg, "maxRooms", 1);
+            node.joinableRooms = JsonUtils.getInt(msg, "joinableRooms", 0);
+            node.overrunRatio = JsonUtils.getDouble(msg, "overrunRatio", 0);
+            node.lastSeen = System.currentTimeMillis();
+
+            if (nodes.put(key, node) == null) {
+                System.out.println("[MATCHMAKER] Serveur enregistré: " + node);
+            }
+            updateLanInfo();
+
+        } catch (Exception e) {
+            // Paquet malformé, ignorer
+        }
+    }
+
+    private void expireNodes() {
+        long now = System.currentTimeMillis();
+        boolean changed = nodes.values().removeIf(node -> {
+            if (now - node.lastSeen > NODE_TIMEOUT) {
+                System.out.println("[MATCHMAKER] Serveur injoignable, retiré: " + node);
+                return true;
+            }
+            return false;
+        });
+        if (changed) {
+            updateLanInfo();
+        }
+    }
+
+    // ==================== REDIRECTION DES CLIENTS ====================
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = tcpServer.accept();
+                try {
+                    clientPool.execute(() -> handleClient(socket));
+                } catch (RejectedExecutionException e) {
+                    socket.close(); // Arrêt en cours
+                }
+            } catch (SocketTimeoutException e) {
+                // Normal, permet de vérifier running
+            } catch (Exception e) {
+                if (running) {
+                    System.err.println("[MATCHMAKER] Erreur accept: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handleClient(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(NetworkProtocol.CONNECTION_TIMEOUT);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), "UTF-8"));
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), "UTF-8"), true);
+
+            // La version du protocole est négociée par le serveur choisi
+            String requestJson = reader.readLine();
+            if (requestJson == null
+                    || !(Messages.decodeTcp(requestJson) instanceof Messages.ConnectRequest request)) {
+                return;
+            }
+
+            NodeInfo node = selectNode();
+            if (node == null) {
+                writer.println(Messages.toJson(new Messages.ConnectReject("Aucun serveur disponible")));
+                return;
+            }
+
+            // Si la cible est sur la machine du matchmaker, renvoyer l'adresse
+            // par laquelle le client nous a joints
+            String address = InetAddress.getByName(node.address).isLoopbackAddress()
+                    ? s.getLocalAddress().getHostAddress()
+                    : node.address;
+
+            writer.println(Messages.toJson(new Messages.ConnectRedirect(address, node.tcpPort, node.serverName)));
+
+            System.out.println("[MATCHMAKER] " + request.playerName()
+                    + " redirigé vers " + node.serverName + " (" + address + ":" + node.tcpPort + ")");
+
+        } catch (Exception e) {
+            System.err.println("[MATCHMAKER] Erreur client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Choisit le serveur le moins chargé parmi ceux qui ont de la place, en
+     * écartant ceux dont les ticks prennent du retard s'il existe une autre
+     * option
+     *
+     * @return le serveur choisi, ou null si aucun ne peut accueillir un joueur
+     */
+    private synchronized NodeInfo selectNode() {
+        NodeInfo best = null;
+        boolean bestOverloaded = true;
+        for (NodeInfo node : nodes.values()) {
+            if (!node.canAccept()) {
+                continue;
+            }
+            boolean overloaded = node.overrunRatio > MAX_OVERRUN_RATIO;
+            if (best == null
+                    || (bestOverloaded && !overloaded)
+                    || (bestOverloaded == overloaded && node.load() < best.load())) {
+                best = node;
+                bestOverloaded = overloaded;
+            }
+        }
+        if (best != null) {
+            // Compter le joueur tout de suite pour répartir une rafale de
+            // connexions avant le prochain heartbeat
+            best.players++;
+        }
+        return best;
+    }
+
+    private void updateLanInfo() {
+        if (lanDiscovery == null) {
+            return;
+        }
+        int players = 0;
+        int capacity = 0;
+        boolean full = true;
+        for (NodeInfo node : nodes.values()) {
+            players += node.players;
+            capacity += node.maxRooms * NetworkProtocol.MAX_PLAYERS;
+            if (node.canAccept()) {
+                full = false;
+            }
+        }
+        lanDiscovery.updateServerInfo(players, capacity, full);
+    }
+
+    // ==================== ACCESSEURS ====================
+    public int getPort() {
+        return tcpServer != null ? tcpServer.getLocalPort() : port;
+    }
+
+    public Collection<NodeInfo> getNodes() {
+        return nodes.values();
+    }
+
+    // ==================== POINT D'ENTRÉE ====================
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        String name = "Matchmaker";
+        int port = NetworkProtocol.MATCHMAKER_PORT;
+        try {
+            for (int i = 0; i + 1 < args.length; i++) {
+                switch (args[i]) {
+                    case "--name":
+                        name = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("[MATCHMAKER] Argument invalide: " + e.getMessage());
+            System.exit(1);
+        }
+
+        Matchmaker matchmaker = new Matchmaker(name, port);
+        if (!matchmaker.start()) {
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(matchmaker::stop, "Matchmaker-Shutdown"));
+    }
+}
@@ -0,0 +1,1293 @@
+package network;
+
+import core.GameConfig;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Schéma typé des messages du protocole
+ *
+ * Chaque valeur de NetworkProtocol.TcpMessageType et UdpMessageType a ici
+ * son record et son codec : writeFields vers un JsonWriter, decode depuis un
+ * JsonReader. Client, serveur et matchmaker partagent ces records, si bien
+ * qu'un champ ajouté ou renommé casse la compilation des deux côtés à la
+ * fois ; un type ajouté à une enum sans codec aussi (switch exhaustifs de
+ * decodeTcp et decodeUdp).
+ *
+ * Le décodage ne construit pas de Map et ne repose pas sur des exceptions :
+ * un champ absent garde sa valeur par défaut, un champ inconnu est sauté
+ * (pair plus récent). Seul un JSON mal formé lève une
+ * IllegalStateException. Le champ "type" est toujours écrit en premier.
+ */
+public final class Messages {
+
+    private Messages() {
+    }
+
+    /**
+     * Un message du protocole
+     */
+    public interface Message {
+
+        /**
+         * Écrit les champs du message, "type" excepté
+         */
+        void writeFields(JsonWriter w);
+    }
+
+    /**
+     * Message fiable (TCP ou transport en mémoire)
+     */
+    public interface TcpMessage extends Message {
+
+        NetworkProtocol.TcpMessageType type();
+    }
+
+    /**
+     * Datagramme temps réel
+     */
+    public interface UdpMessage extends Message {
+
+        NetworkProtocol.UdpMessageType type();
+    }
+
+    // ==================== ENCODAGE ====================
+    /**
+     * Écrit le message complet dans w (sans le vider au préalable)
+     */
+    public static JsonWriter write(JsonWriter w, TcpMessage message) {
+        w.beginObject().put("type", message.type().name());
+        message.writeFields(w);
+        return w.endObject();
+    }
+
+    public static JsonWriter write(JsonWriter w, UdpMessage message) {
+        w.beginObject().put("type", message.type().name());
+        message.writeFields(w);
+        return w.endObject();
+    }
+
+    /**
+     * Message sous forme de ligne JSON, pour Transport.sendMessage
+     */
+    public static String toJson(TcpMessage message) {
+        return write(new JsonWriter(), message).toString();
+    }
+
+    /**
+     * Datagramme encodé (tableau neuf, que le transport peut garder)
+     */
+    public static byte[] toBytes(UdpMessage message) {
+        return write(new JsonWriter(), message).toByteArray();
+    }
+
+    /**
+     * Datagramme précédé de l'en-tête de routage (protocole 5) : marqueur
+     * puis jeton, à un emplacement fixe que le serveur lit sans décoder le
+     * JSON qui suit
+     */
+    public static byte[] toRoutedBytes(long token, UdpMessage message) {
+        JsonWriter w = write(new JsonWriter(), message);
+        byte[] data = new byte[NetworkProtocol.UDP_ROUTE_HEADER + w.size()];
+        System.arraycopy(w.buffer(), 0, data, NetworkProtocol.UDP_ROUTE_HEADER, w.size());
+        data[0] = NetworkProtocol.UDP_ROUTE_MARKER;
+        for (int i = 0; i < 8; i++) {
+            data[1 + i] = (byte) (token >>> (56 - 8 * i));
+        }
+        return data;
+    }
+
+    /**
+     * Jeton de l'en-tête de routage d'un datagramme
+     *
+     * @return le jeton, ou 0 si le datagramme n'a pas d'en-tête
+     */
+    public static long routeToken(byte[] data, int length) {
+        if (length <= NetworkProtocol.UDP_ROUTE_HEADER || data[0] != NetworkProtocol.UDP_ROUTE_MARKER) {
+            return 0;
+        }
+        long token = 0;
+        for (int i = 1; i < NetworkProtocol.UDP_ROUTE_HEADER; i++) {
+            token = (token << 8) | (data[i] & 0xFF);
+        }
+        return token;
+    }
+
+    // ==================== DÉCODAGE ====================
+    private static final Map<String, NetworkProtocol.TcpMessageType> TCP_TYPES = new HashMap<>();
+    private static final Map<String, NetworkProtocol.UdpMessageType> UDP_TYPES = new HashMap<>();
+
+    static {
+        for (NetworkProtocol.TcpMessageType type : NetworkProtocol.TcpMessageType.values()) {
+            TCP_TYPES.put(type.name(), type);
+        }
+        for (NetworkProtocol.UdpMessageType type : NetworkProtocol.UdpMessageType.values()) {
+            UDP_TYPES.put(type.name(), type);
+        }
+    }
+
+    /**
+     * Décode une ligne reçue par un transport
+     *
+     * @return le message, ou null si son type est inconnu
+     */
+    public static TcpMessage decodeTcp(String json) {
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        return decodeTcp(new JsonReader().reset(data, 0, data.length));
+    }
+
+    public static TcpMessage decodeTcp(JsonReader r) {
+        NetworkProtocol.TcpMessageType type = TCP_TYPES.get(readType(r));
+        if (type == null) {
+            return null;
+        }
+        TcpMessage message = switch (type) {
+            case CONNECT_REQUEST -> ConnectRequest.decode(r);
+            case CONNECT_ACCEPT -> ConnectAccept.decode(r);
+            case CONNECT_REJECT -> ConnectReject.decode(r);
+            case CONNECT_REDIRECT -> ConnectRedirect.decode(r);
+            case DISCONNECT -> Disconnect.decode(r);
+            case PLAYER_LIST -> PlayerList.decode(r);
+            case PLAYER_READY -> PlayerReady.decode(r);
+            case GAME_START -> GameStart.decode(r);
+            case RETURN_TO_LOBBY -> ReturnToLobby.decode(r);
+            case CHAT_MESSAGE -> ChatMessage.decode(r);
+            case PING -> Ping.decode(r);
+            case PONG -> Pong.decode(r);
+            case DESYNC_REPORT -> DesyncReport.decode(r);
+            case RESYNC -> Resync.decode(r);
+            case HAZARD_SPAWN -> HazardSpawn.decode(r);
+        };
+        r.endObject();
+        return message;
+    }
+
+    /**
+     * Décode un datagramme
+     *
+     * @return le message, ou null si ce n'est pas un datagramme du jeu
+     * (découverte LAN, matchmaker...)
+     */
+    public static UdpMessage decodeUdp(byte[] data, int length) {
+        return decodeUdp(new JsonReader().reset(data, 0, length));
+    }
+
+    public static UdpMessage decodeUdp(JsonReader r) {
+        NetworkProtocol.UdpMessageType type = UDP_TYPES.get(readType(r));
+        if (type == null) {
+            return null;
+        }
+        UdpMessage message = switch (type) {
+            case INPUT -> Input.decode(r);
+            case GAME_STATE -> GameState.decode(r);
+            case PLAYER_STATE -> PlayerState.decode(r);
+            case PROBE -> Probe.decode(r);
+            case PROBE_REPLY -> ProbeReply.decode(r);
+            case PEER_INPUT -> PeerInput.decode(r);
+        };
+        r.endObject();
+        return message;
+    }
+
+    /**
+     * Ouvre l'objet et lit son type (premier champ), null s'il manque
+     */
+    private static String readType(JsonReader r) {
+        if (r.peek() != JsonReader.Token.BEGIN_OBJECT) {
+            return null;
+        }
+        r.beginObject();
+        if (!r.hasNext() || !"type".equals(r.nextKey())) {
+            return null;
+        }
+        return r.nextString();
+    }
+
+    /**
+     * Chaîne suivante, ou la valeur par défaut pour null
+     */
+    private static String string(JsonReader r, String defaultValue) {
+        String s = r.nextString();
+        return s != null ? s : defaultValue;
+    }
+
+    // ==================== CONNEXION ====================
+    /**
+     * Client → Serveur (ou matchmaker). Le client annonce l'intervalle de
+     * versions du protocole qu'il comprend ; un client d'avant la
+     * négociation n'envoie rien et parle la version 1.
+     *
+     * @param room salle demandée (serveur dédié), -1 pour n'importe laquelle
+     * @param session jeton d'une session à reprendre (protocole 4), 0 pour
+     * une nouvelle connexion
+     */
+    public record ConnectRequest(String playerName, String gameVersion, int minProtocol, int protocol, int room,
+            long session) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.CONNECT_REQUEST;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("playerName", playerName)
+                    .put("version", gameVersion)
+                    .put("minProtocol", minProtocol)
+                    .put("protocol", protocol);
+            if (room >= 0) {
+                w.put("room", room);
+            }
+            if (session != 0) {
+                w.put("session", session);
+            }
+        }
+
+        static ConnectRequest decode(JsonReader r) {
+            String playerName = "Joueur";
+            String gameVersion = "";
+            int minProtocol = 1;
+            int protocol = 1;
+            int room = -1;
+            long session = 0;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "playerName" -> playerName = string(r, playerName);
+                    case "version" -> gameVersion = string(r, gameVersion);
+                    case "minProtocol" -> minProtocol = r.nextInt();
+                    case "protocol" -> protocol = r.nextInt();
+                    case "room" -> room = r.nextInt();
+                    case "session" -> session = r.nextLong();
+                    default -> r.skipValue();
+                }
+            }
+            return new ConnectRequest(playerName, gameVersion, minProtocol, protocol, room, session);
+        }
+    }
+
+    /**
+     * Serveur → Client
+     *
+     * @param protocol version du protocole retenue pour la connexion
+     * @param session jeton qui permet de reprendre la place du joueur après
+     * une coupure (protocole 4), 0 si la reprise n'est pas possible
+     * @param udpToken jeton de l'en-tête de routage des datagrammes
+     * (protocole 5), 0 pour des datagrammes sans en-tête
+     */
+    public record ConnectAccept(int playerId, String serverName, int roomId, int udpPort, int protocol,
+            long session, long udpToken, List<PlayerEntry> players) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.CONNECT_ACCEPT;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("playerId", playerId)
+                    .put("serverName", serverName)
+                    .put("roomId", roomId)
+                    .put("udpPort", udpPort)
+                    .put("protocol", protocol);
+            if (session != 0) {
+                w.put("session", session);
+            }
+            if (udpToken != 0) {
+                w.put("udpToken", udpToken);
+            }
+            w.name("players");
+            PlayerEntry.writeList(w, players);
+        }
+
+        static ConnectAccept decode(JsonReader r) {
+            int playerId = -1;
+            String serverName = "Serveur";
+            int roomId = 0;
+            int udpPort = NetworkProtocol.UDP_PORT;
+            int protocol = 1; // Serveur d'avant la négociation
+            long session = 0;
+            long udpToken = 0;
+            List<PlayerEntry> players = List.of();
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "playerId" -> playerId = r.nextInt();
+                    case "serverName" -> serverName = string(r, serverName);
+                    case "roomId" -> roomId = r.nextInt();
+                    case "udpPort" -> udpPort = r.nextInt();
+                    case "protocol" -> protocol = r.nextInt();
+                    case "session" -> session = r.nextLong();
+                    case "udpToken" -> udpToken = r.nextLong();
+                    case "players" -> players = PlayerEntry.readList(r);
+                    default -> r.skipValue();
+                }
+            }
+            return new ConnectAccept(playerId, serverName, roomId, udpPort, protocol, session, udpToken, players);
+        }
+    }
+
+    public record ConnectReject(String reason) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.CONNECT_REJECT;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("reason", reason);
+        }
+
+        static ConnectReject decode(JsonReader r) {
+            String reason = "Connexion refusée";
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "reason" -> reason = string(r, reason);
+                    default -> r.skipValue();
+                }
+            }
+            return new ConnectReject(reason);
+        }
+    }
+
+    /**
+     * Matchmaker → Client : se connecter à ce serveur
+     */
+    public record ConnectRedirect(String address, int tcpPort, String serverName) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.CONNECT_REDIRECT;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("address", address)
+                    .put("tcpPort", tcpPort)
+                    .put("serverName", serverName);
+        }
+
+        static ConnectRedirect decode(JsonReader r) {
+            String address = null;
+            int tcpPort = NetworkProtocol.TCP_PORT;
+            String serverName = "Serveur";
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "address" -> address = r.nextString();
+                    case "tcpPort" -> tcpPort = r.nextInt();
+                    case "serverName" -> serverName = string(r, serverName);
+                    default -> r.skipValue();
+                }
+            }
+            return new ConnectRedirect(address, tcpPort, serverName);
+        }
+    }
+
+    /**
+     * @param reason null quand le client part de lui-même
+     */
+    public record Disconnect(String reason) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.DISCONNECT;
+        }
+
+        public void writeFields(JsonWriter w) {
+            if (reason != null) {
+                w.put("reason", reason);
+            }
+        }
+
+        static Disconnect decode(JsonReader r) {
+            String reason = null;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "reason" -> reason = r.nextString();
+                    default -> r.skipValue();
+                }
+            }
+            return new Disconnect(reason);
+        }
+    }
+
+    // ==================== LOBBY ====================
+    /**
+     * Un joueur du lobby (PLAYER_LIST et CONNECT_ACCEPT)
+     */
+    public record PlayerEntry(int id, String name, String color, boolean ready, boolean isHost) {
+
+        static void writeList(JsonWriter w, List<PlayerEntry> players) {
+            w.beginArray();
+            for (PlayerEntry p : players) {
+                p.write(w);
+            }
+            w.endArray();
+        }
+
+        /**
+         * Écrit l'entrée sans créer le record (diffusions du serveur)
+         */
+        public static void write(JsonWriter w, int id, String name, String color, boolean ready, boolean isHost) {
+            w.beginObject()
+                    .put("id", id)
+                    .put("name", name)
+                    .put("color", color)
+                    .put("ready", ready)
+                    .put("isHost", isHost)
+                    .endObject();
+        }
+
+        void write(JsonWriter w) {
+            write(w, id, name, color, ready, isHost);
+        }
+
+        static List<PlayerEntry> readList(JsonReader r) {
+            List<PlayerEntry> players = new ArrayList<>();
+            r.beginArray();
+            while (r.hasNext()) {
+                int id = 0;
+                String name = "Joueur";
+                String color = null;
+                boolean ready = false;
+                boolean isHost = false;
+                r.beginObject();
+                while (r.hasNext()) {
+                    switch (r.nextKey()) {
+                        case "id" -> id = r.nextInt();
+                        case "name" -> name = string(r, name);
+                        case "color" -> color = r.nextString();
+                        case "ready" -> ready = r.nextBoolean();
+                        case "isHost" -> isHost = r.nextBoolean();
+                        default -> r.skipValue();
+                    }
+                }
+                r.endObject();
+                players.add(new PlayerEntry(id, name, color != null ? color : NetworkProtocol.playerColor(id),
+                        ready, isHost));
+            }
+            r.endArray();
+            return players;
+        }
+    }
+
+    public record PlayerList(List<PlayerEntry> players) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.PLAYER_LIST;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.name("players");
+            PlayerEntry.writeList(w, players);
+        }
+
+        static PlayerList decode(JsonReader r) {
+            List<PlayerEntry> players = List.of();
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "players" -> players = PlayerEntry.readList(r);
+                    default -> r.skipValue();
+                }
+            }
+            return new PlayerList(players);
+        }
+    }
+
+    public record PlayerReady(boolean ready) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.PLAYER_READY;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("ready", ready);
+        }
+
+        static PlayerReady decode(JsonReader r) {
+            boolean ready = false;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "ready" -> ready = r.nextBoolean();
+                    default -> r.skipValue();
+                }
+            }
+            return new PlayerReady(ready);
+        }
+    }
+
+    public record GameStart(long seed, int countdown) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.GAME_START;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("seed", seed)
+                    .put("countdown", countdown);
+        }
+
+        static GameStart decode(JsonReader r) {
+            long seed = 0;
+            int countdown = 3;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "seed" -> seed = r.nextLong();
+                    case "countdown" -> countdown = r.nextInt();
+                    default -> r.skipValue();
+                }
+            }
+            return new GameStart(seed, countdown);
+        }
+    }
+
+    public record ReturnToLobby(String message) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.RETURN_TO_LOBBY;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("message", message);
+        }
+
+        static ReturnToLobby decode(JsonReader r) {
+            String message = "";
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "message" -> message = string(r, message);
+                    default -> r.skipValue();
+                }
+            }
+            return new ReturnToLobby(message);
+        }
+    }
+
+    /**
+     * Bidirectionnel. Le serveur ignore l'identité envoyée par le client et
+     * rediffuse le message sous celle de la connexion.
+     */
+    public record ChatMessage(int playerId, String playerName, String message, long timestamp)
+            implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.CHAT_MESSAGE;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("playerId", playerId)
+                    .put("playerName", playerName)
+                    .put("message", message)
+                    .put("timestamp", timestamp);
+        }
+
+        static ChatMessage decode(JsonReader r) {
+            int playerId = -1;
+            String playerName = "";
+            String message = "";
+            long timestamp = 0;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "playerId" -> playerId = r.nextInt();
+                    case "playerName" -> playerName = string(r, playerName);
+                    case "message" -> message = string(r, message);
+                    case "timestamp" -> timestamp = r.nextLong();
+                    default -> r.skipValue();
+                }
+            }
+            return new ChatMessage(playerId, playerName, message, timestamp);
+        }
+    }
+
+    // ==================== SYNCHRONISATION ====================
+    /**
+     * @param timestamp horloge de l'émetteur (ms), renvoyée telle quelle
+     * dans le PONG
+     */
+    public record Ping(long timestamp) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.PING;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("timestamp", timestamp);
+        }
+
+        static Ping decode(JsonReader r) {
+            return new Ping(readTimestamp(r));
+        }
+    }
+
+    public record Pong(long timestamp) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.PONG;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("timestamp", timestamp);
+        }
+
+        static Pong decode(JsonReader r) {
+            return new Pong(readTimestamp(r));
+        }
+    }
+
+    /**
+     * Client → Serveur : la copie locale de la simulation a divergé (voir
+     * DesyncDetector). Protocole 3.
+     *
+     * @param tick premier tick de simulation dont l'empreinte diffère
+     * @param lastMatchTick dernier tick vérifié identique (0 si aucun)
+     * @param dump état local et état reçu, lisibles
+     */
+    public record DesyncReport(long tick, long lastMatchTick, long localHash, long serverHash, String dump)
+            implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.DESYNC_REPORT;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("tick", tick)
+                    .put("lastMatchTick", lastMatchTick)
+                    .put("localHash", localHash)
+                    .put("serverHash", serverHash)
+                    .put("dump", dump);
+        }
+
+        static DesyncReport decode(JsonReader r) {
+            long tick = -1;
+            long lastMatchTick = 0;
+            long localHash = 0;
+            long serverHash = 0;
+            String dump = "";
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "tick" -> tick = r.nextLong();
+                    case "lastMatchTick" -> lastMatchTick = r.nextLong();
+                    case "localHash" -> localHash = r.nextLong();
+                    case "serverHash" -> serverHash = r.nextLong();
+                    case "dump" -> dump = string(r, dump);
+                    default -> r.skipValue();
+                }
+            }
+            return new DesyncReport(tick, lastMatchTick, localHash, serverHash, dump);
+        }
+    }
+
+    /**
+     * Serveur → Client : image complète de la manche, envoyée une fois juste
+     * après le CONNECT_ACCEPT d'une reprise de session (protocole 4). L'état
+     * est un GAME_STATE complet, compressé (Deflater) puis encodé en Base64 :
+     * le client l'applique comme un état reçu par UDP et repart de là, sans
+     * rejouer la manche.
+     *
+     * @param seed graine de la manche, pour relancer la vérification des
+     * empreintes
+     * @param tick tick de l'état joint
+     */
+    public record Resync(long seed, long tick, String state) implements TcpMessage {
+
+        // Borne de la décompression : un état réel tient en quelques Ko
+        private static final int MAX_STATE_BYTES = 1 << 20;
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.RESYNC;
+        }
+
+        /**
+         * Compresse un GAME_STATE encodé (Room.buildKeyframe)
+         */
+        public static Resync of(long seed, long tick, byte[] snapshot) {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            deflater.setInput(snapshot);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(snapshot.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            deflater.end();
+            return new Resync(seed, tick, Base64.getEncoder().encodeToString(out.toByteArray()));
+        }
+
+        /**
+         * GAME_STATE décompressé, à décoder avec decodeUdp
+         *
+         * @throws IllegalStateException si l'état est illisible
+         */
+        public byte[] snapshot() {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(Base64.getDecoder().decode(state));
+                ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+                byte[] buffer = new byte[1024];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buffer);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IllegalStateException("état tronqué");
+                    }
+                    out.write(buffer, 0, n);
+                    if (out.size() > MAX_STATE_BYTES) {
+                        throw new IllegalStateException("état trop grand");
+                    }
+                }
+                return out.toByteArray();
+            } catch (IllegalArgumentException | DataFormatException e) {
+                throw new IllegalStateException("état illisible: " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("seed", seed)
+                    .put("tick", tick)
+                    .put("state", state);
+        }
+
+        static Resync decode(JsonReader r) {
+            long seed = 0;
+            long tick = -1;
+            String state = "";
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "seed" -> seed = r.nextLong();
+                    case "tick" -> tick = r.nextLong();
+                    case "state" -> state = string(r, state);
+                    default -> r.skipValue();
+                }
+            }
+            return new Resync(seed, tick, state);
+        }
+    }
+
+    private static long readTimestamp(JsonReader r) {
+        long timestamp = 0;
+        while (r.hasNext()) {
+            switch (r.nextKey()) {
+                case "timestamp" -> timestamp = r.nextLong();
+                default -> r.skipValue();
+            }
+        }
+        return timestamp;
+    }
+
+    // ==================== UDP ====================
+    /**
+     * Client → Serveur : action du joueur ("GRAVITY_SWITCH", ou "NONE" pour
+     * faire connaître le port UDP)
+     */
+    public record Input(int playerId, long sequence, String action, long timestamp) implements UdpMessage {
+
+        public NetworkProtocol.UdpMessageType type() {
+            return NetworkProtocol.UdpMessageType.INPUT;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("playerId", playerId)
+                    .put("sequence", sequence)
+                    .put("action", action)
+                    .put("timestamp", timestamp);
+        }
+
+        static Input decode(JsonReader r) {
+            int playerId = -1;
+            long sequence = 0;
+            String action = "NONE";
+            long timestamp = 0;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "playerId" -> playerId = r.nextInt();
+                    case "sequence" -> sequence = r.nextLong();
+                    case "action" -> action = string(r, action);
+                    case "timestamp" -> timestamp = r.nextLong();
+                    default -> r.skipValue();
+                }
+            }
+            return new Input(playerId, sequence, action, timestamp);
+        }
+    }
+
+    /**
+     * État d'un joueur : élément de GAME_STATE, ou message PLAYER_STATE seul
+     *
+     * @param lastInput numéro du dernier INPUT du joueur appliqué par le
+     * serveur (0 si aucun), pour mesurer la latence des inputs
+     */
+    public record PlayerState(int id, String name, String color, double x, double y, double vy, String gravity,
+            boolean alive, int score, long lastInput) implements UdpMessage {
+
+        public NetworkProtocol.UdpMessageType type() {
+            return NetworkProtocol.UdpMessageType.PLAYER_STATE;
+        }
+
+        public void writeFields(JsonWriter w) {
+            writeFields(w, id, name, color, x, y, vy, gravity, alive, score, lastInput);
+        }
+
+        /**
+         * Écrit les champs sans créer le record (Room, à chaque tick)
+         */
+        public static void writeFields(JsonWriter w, int id, String name, String color, double x, double y,
+                double vy, String gravity, boolean alive, int score, long lastInput) {
+            w.put("id", id)
+                    .put("name", name)
+                    .put("color", color)
+                    .put("x", x, GameState.POSITION_DECIMALS)
+                    .put("y", y, GameState.POSITION_DECIMALS)
+                    .put("vy", vy, GameState.POSITION_DECIMALS)
+                    .put("gravity", gravity)
+                    .put("alive", alive)
+                    .put("score", score);
+            if (lastInput > 0) {
+                w.put("lastInput", lastInput);
+            }
+        }
+
+        static PlayerState decode(JsonReader r) {
+            int id = 0;
+            String name = null;
+            String color = null;
+            double x = 0;
+            double y = 0;
+            double vy = 0;
+            String gravity = "DOWN";
+            boolean alive = true;
+            int score = 0;
+            long lastInput = 0;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "id" -> id = r.nextInt();
+                    case "name" -> name = r.nextString();
+                    case "color" -> color = r.nextString();
+                    case "x" -> x = r.nextDouble();
+                    case "y" -> y = r.nextDouble();
+                    case "vy" -> vy = r.nextDouble();
+                    case "gravity" -> gravity = string(r, gravity);
+                    case "alive" -> alive = r.nextBoolean();
+                    case "score" -> score = r.nextInt();
+                    case "lastInput" -> lastInput = r.nextLong();
+                    default -> r.skipValue();
+                }
+            }
+            return new PlayerState(id, name != null ? name : "Player" + id,
+                    color != null ? color : NetworkProtocol.playerColor(id), x, y, vy, gravity, alive, score,
+                    lastInput);
+        }
+    }
+
+    public record HoleState(double x, int width) {
+
+        public static void write(JsonWriter w, double x, int width) {
+            w.beginObject()
+                    .put("x", x, GameState.POSITION_DECIMALS)
+                    .put("width", width)
+                    .endObject();
+        }
+
+        static HoleState decode(JsonReader r) {
+            double x = 0;
+            int width = 80;
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "x" -> x = r.nextDouble();
+                    case "width" -> width = r.nextInt();
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+            return new HoleState(x, width);
+        }
+    }
+
+    public record ObstacleState(double x, double y, int width, int height) {
+
+        public static void write(JsonWriter w, double x, double y, int width, int height) {
+            w.beginObject()
+                    .put("x", x, GameState.POSITION_DECIMALS)
+                    .put("y", y, GameState.POSITION_DECIMALS)
+                    .put("width", width)
+                    .put("height", height)
+                    .endObject();
+        }
+
+        static ObstacleState decode(JsonReader r) {
+            double x = 0;
+            double y = 0;
+            int width = 40;
+            int height = 100;
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "x" -> x = r.nextDouble();
+                    case "y" -> y = r.nextDouble();
+                    case "width" -> width = r.nextInt();
+                    case "height" -> height = r.nextInt();
+                    default -> r.skipValue();
+                }
+            }
+            r.endObject();
+            return new ObstacleState(x, y, width, height);
+        }
+    }
+
+    /**
+     * Un trou ou un obstacle, décrit une fois pour toutes (protocole 6) : il
+     * est en x au tick de simulation tick, et recule de GameConfig.GAME_SPEED
+     * par tick de simulation ensuite. Il disparaît quand il a quitté l'écran
+     * à gauche.
+     *
+     * @param id numéro d'apparition dans la manche (Simulation)
+     * @param kind "HOLE" ou "OBSTACLE"
+     * @param tick tick de simulation (GameState.simTick) où le danger est en x
+     * @param y ordonnée d'un obstacle (0 pour un trou)
+     * @param height hauteur d'un obstacle (0 pour un trou)
+     */
+    public record Hazard(int id, String kind, long tick, double x, double y, int width, int height) {
+
+        public static final String HOLE = "HOLE";
+        public static final String OBSTACLE = "OBSTACLE";
+
+        public boolean isHole() {
+            return HOLE.equals(kind);
+        }
+
+        /**
+         * Abscisse au tick de simulation t
+         */
+        public double xAt(long t) {
+            return x - GameConfig.GAME_SPEED * (t - tick);
+        }
+
+        public static void writeHole(JsonWriter w, int id, long tick, double x, int width) {
+            w.beginObject()
+                    .put("id", id)
+                    .put("kind", HOLE)
+                    .put("tick", tick)
+                    .put("x", x, GameState.POSITION_DECIMALS)
+                    .put("width", width)
+                    .endObject();
+        }
+
+        public static void writeObstacle(JsonWriter w, int id, long tick, double x, double y, int width, int height) {
+            w.beginObject()
+                    .put("id", id)
+                    .put("kind", OBSTACLE)
+                    .put("tick", tick)
+                    .put("x", x, GameState.POSITION_DECIMALS)
+                    .put("y", y, GameState.POSITION_DECIMALS)
+                    .put("width", width)
+                    .put("height", height)
+                    .endObject();
+        }
+
+        static void writeList(JsonWriter w, List<Hazard> hazards) {
+            w.beginArray();
+            for (Hazard h : hazards) {
+                if (h.isHole()) {
+                    writeHole(w, h.id, h.tick, h.x, h.width);
+                } else {
+                    writeObstacle(w, h.id, h.tick, h.x, h.y, h.width, h.height);
+                }
+            }
+            w.endArray();
+        }
+
+        static List<Hazard> readList(JsonReader r) {
+            List<Hazard> hazards = new ArrayList<>();
+            r.beginArray();
+            while (r.hasNext()) {
+                int id = -1;
+                String kind = OBSTACLE;
+                long tick = 0;
+                double x = 0;
+                double y = 0;
+                int width = 0;
+                int height = 0;
+                r.beginObject();
+                while (r.hasNext()) {
+                    switch (r.nextKey()) {
+                        case "id" -> id = r.nextInt();
+                        case "kind" -> kind = string(r, kind);
+                        case "tick" -> tick = r.nextLong();
+                        case "x" -> x = r.nextDouble();
+                        case "y" -> y = r.nextDouble();
+                        case "width" -> width = r.nextInt();
+                        case "height" -> height = r.nextInt();
+                        default -> r.skipValue();
+                    }
+                }
+                r.endObject();
+                hazards.add(new Hazard(id, kind, tick, x, y, width, height));
+            }
+            r.endArray();
+            return hazards;
+        }
+    }
+
+    /**
+     * Serveur → Clients (protocole 6), par le canal fiable : les dangers
+     * apparus à ce tick. Room l'écrit avec Hazard.writeHole et writeObstacle.
+     */
+    public record HazardSpawn(List<Hazard> hazards) implements TcpMessage {
+
+        public NetworkProtocol.TcpMessageType type() {
+            return NetworkProtocol.TcpMessageType.HAZARD_SPAWN;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.name("hazards");
+            Hazard.writeList(w, hazards);
+        }
+
+        static HazardSpawn decode(JsonReader r) {
+            List<Hazard> hazards = List.of();
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "hazards" -> hazards = Hazard.readList(r);
+                    default -> r.skipValue();
+                }
+            }
+            return new HazardSpawn(hazards);
+        }
+    }
+
+    /**
+     * Serveur → Clients, à chaque tick. Room l'écrit champ par champ
+     * (writeHeader, PlayerState.writeFields, HoleState.write,
+     * ObstacleState.write) pour ne rien allouer.
+     *
+     * @param time horloge du serveur à l'envoi (ms)
+     * @param finishLine -1 tant que la ligne d'arrivée n'est pas apparue
+     * @param winner id du vainqueur, -1 si aucun
+     * @param hashTick tick de simulation des empreintes, -1 si absentes
+     * @param holes positions des trous (protocole 5 ou moins, et RESYNC)
+     * @param hazards dangers présents, décrits comme dans HazardSpawn
+     * (image d'un RESYNC seulement, vide sinon)
+     * @param simTick tick de simulation auquel les dangers sont rapportés
+     * (protocole 6), -1 si absent
+     */
+    public record GameState(long tick, long time, double finishLine, int winner, List<PlayerState> players,
+            List<HoleState> holes, List<ObstacleState> obstacles, long hashTick, long hazardHash, long worldHash,
+            List<Hazard> hazards, long simTick) implements UdpMessage {
+
+        /**
+         * Positions arrondies au centième de pixel
+         */
+        static final int POSITION_DECIMALS = 2;
+
+        public NetworkProtocol.UdpMessageType type() {
+            return NetworkProtocol.UdpMessageType.GAME_STATE;
+        }
+
+        public void writeFields(JsonWriter w) {
+            writeHeader(w, tick, time, finishLine, winner);
+            if (simTick >= 0) {
+                writeSimTick(w, simTick);
+            }
+            if (hashTick >= 0) {
+                writeHashes(w, hashTick, hazardHash, worldHash);
+            }
+            w.name("players").beginArray();
+            for (PlayerState p : players) {
+                w.beginObject();
+                p.writeFields(w);
+                w.endObject();
+            }
+            w.endArray();
+            w.name("holes").beginArray();
+            for (HoleState h : holes) {
+                HoleState.write(w, h.x(), h.width());
+            }
+            w.endArray();
+            w.name("obstacles").beginArray();
+            for (ObstacleState o : obstacles) {
+                ObstacleState.write(w, o.x(), o.y(), o.width(), o.height());
+            }
+            w.endArray();
+            if (!hazards.isEmpty()) {
+                w.name("hazards");
+                Hazard.writeList(w, hazards);
+            }
+        }
+
+        /**
+         * Champs scalaires ; suivent les tableaux "players", "holes" et
+         * "obstacles"
+         */
+        public static void writeHeader(JsonWriter w, long tick, long time, double finishLine, int winner) {
+            w.put("tick", tick)
+                    .put("time", time)
+                    .put("finishLine", finishLine, POSITION_DECIMALS)
+                    .put("winner", winner);
+        }
+
+        /**
+         * Tick de simulation (protocole 6) : contrairement à tick, il cesse
+         * d'avancer une fois la manche terminée, et les dangers restent
+         * immobiles
+         */
+        public static void writeSimTick(JsonWriter w, long simTick) {
+            w.put("simTick", simTick);
+        }
+
+        /**
+         * Empreintes de la simulation du serveur (Simulation.getHazardHash,
+         * getWorldHash) au tick de simulation hashTick, envoyées tous les
+         * NetworkProtocol.HASH_INTERVAL ticks (protocole 3)
+         */
+        public static void writeHashes(JsonWriter w, long hashTick, long hazardHash, long worldHash) {
+            w.put("hashTick", hashTick)
+                    .put("hazardHash", hazardHash)
+                    .put("worldHash", worldHash);
+        }
+
+        static GameState decode(JsonReader r) {
+            long tick = 0;
+            long time = 0;
+            double finishLine = -1;
+            int winner = -1;
+            long hashTick = -1;
+            long hazardHash = 0;
+            long worldHash = 0;
+            List<PlayerState> players = new ArrayList<>(NetworkProtocol.MAX_PLAYERS);
+            List<HoleState> holes = new ArrayList<>();
+            List<ObstacleState> obstacles = new ArrayList<>();
+            List<Hazard> hazards = List.of();
+            long simTick = -1;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "tick" -> tick = r.nextLong();
+                    case "time" -> time = r.nextLong();
+                    case "finishLine" -> finishLine = r.nextDouble();
+                    case "winner" -> winner = r.nextInt();
+                    case "hashTick" -> hashTick = r.nextLong();
+                    case "hazardHash" -> hazardHash = r.nextLong();
+                    case "worldHash" -> worldHash = r.nextLong();
+                    case "simTick" -> simTick = r.nextLong();
+                    case "players" -> {
+                        r.beginArray();
+                        while (r.hasNext()) {
+                            r.beginObject();
+                            players.add(PlayerState.decode(r));
+                            r.endObject();
+                        }
+                        r.endArray();
+                    }
+                    case "holes" -> {
+                        r.beginArray();
+                        while (r.hasNext()) {
+                            holes.add(HoleState.decode(r));
+                        }
+                        r.endArray();
+                    }
+                    case "obstacles" -> {
+                        r.beginArray();
+                        while (r.hasNext()) {
+                            obstacles.add(ObstacleState.decode(r));
+                        }
+                        r.endArray();
+                    }
+                    case "hazards" -> hazards = Hazard.readList(r);
+                    default -> r.skipValue();
+                }
+            }
+            return new GameState(tick, time, finishLine, winner, players, holes, obstacles,
+                    hashTick, hazardHash, worldHash, hazards, simTick);
+        }
+    }
+
+    /**
+     * Sonde de latence du navigateur de serveurs (voir ServerProber)
+     */
+    public record Probe(int seq) implements UdpMessage {
+
+        public NetworkProtocol.UdpMessageType type() {
+            return NetworkProtocol.UdpMessageType.PROBE;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("seq", seq);
+        }
+
+        static Probe decode(JsonReader r) {
+            return new Probe(readSeq(r));
+        }
+    }
+
+    public record ProbeReply(int seq) implements UdpMessage {
+
+        public NetworkProtocol.UdpMessageType type() {
+            return NetworkProtocol.UdpMessageType.PROBE_REPLY;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("seq", seq);
+        }
+
+        static ProbeReply decode(JsonReader r) {
+            return new ProbeReply(readSeq(r));
+        }
+    }
+
+    /**
+     * Pair → Pair (mode rollback) : inputs du joueur pour les ticks
+     * [frame, frame + count[, répétés jusqu'à ce que le destinataire en
+     * accuse réception
+     *
+     * @param inputs bit i = inversion de gravité au tick frame + i (count
+     * inférieur ou égal à 64)
+     * @param ack dernier tick dont le destinataire nous a tout envoyé, -1 si
+     * aucun
+     * @param hashTick tick de la dernière empreinte confirmée, -1 si aucune
+     */
+    public record PeerInput(int playerId, long frame, int count, long inputs, long ack, long hashTick,
+            long worldHash) implements UdpMessage {
+
+        public NetworkProtocol.UdpMessageType type() {
+            return NetworkProtocol.UdpMessageType.PEER_INPUT;
+        }
+
+        public void writeFields(JsonWriter w) {
+            w.put("playerId", playerId)
+                    .put("frame", frame)
+                    .put("count", count)
+                    .put("inputs", inputs)
+                    .put("ack", ack)
+                    .put("hashTick", hashTick)
+                    .put("worldHash", worldHash);
+        }
+
+        static PeerInput decode(JsonReader r) {
+            int playerId = -1;
+            long frame = 0;
+            int count = 0;
+            long inputs = 0;
+            long ack = -1;
+            long hashTick = -1;
+            long worldHash = 0;
+            while (r.hasNext()) {
+                switch (r.nextKey()) {
+                    case "playerId" -> playerId = r.nextInt();
+                    case "frame" -> frame = r.nextLong();
+                    case "count" -> count = r.nextInt();
+                    case "inputs" -> inputs = r.nextLong();
+                    case "ack" -> ack = r.nextLong();
+                    case "hashTick" -> hashTick = r.nextLong();
+                    case "worldHash" -> worldHash = r.nextLong();
+                    default -> r.skipValue();
+                }
+            }
+            return new PeerInput(playerId, frame, count, inputs, ack, hashTick, worldHash);
+        }
+    }
+
+    private static int readSeq(JsonReader r) {
+        int seq = -1;
+        while (r.hasNext()) {
+            switch (r.nextKey()) {
+                case "seq" -> seq = r.nextInt();
+                default -> r.skipValue();
+            }
+        }
+        return seq;
+    }
+}
@@ -0,0 +1,78 @@
+package network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Point d'accès HTTP des mesures d'un serveur dédié (optionnel)
+ *
+ * GET /metrics renvoie ServerMetrics.formatText() au format texte de
+ * Prometheus, lisible aussi avec curl. Les requêtes sont servies par un seul
+ * thread démon, hors des threads de tick et de réception : une collecte ne
+ * ralentit pas la partie.
+ *
+ * Usage: java -cp bin Main --server --metrics-port 9100
+ *        curl http://hote:9100/metrics
+ */
+public final class MetricsHttpServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final ServerMetrics metrics;
+    private HttpServer http;
+
+    public MetricsHttpServer(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Démarre l'écoute sur le port donné (0 = port libre)
+     */
+    public void start(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.createContext("/metrics", this::handle);
+        http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Server-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        http.start();
+        System.out.println("[METRICS] Mesures HTTP sur http://0.0.0.0:" + getPort() + "/metrics");
+    }
+
+    public void stop() {
+        if (http != null) {
+            http.stop(0);
+            http = null;
+        }
+    }
+
+    public int getPort() {
+        return http != null ? http.getAddress().getPort() : -1;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.formatText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package network;
+
+import core.GameConfig;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Relais des événements réseau vers le thread de Swing (EDT)
+ *
+ * Les callbacks de NetworkManager partent des threads de réception (TCP,
+ * UDP, découverte LAN) alors que l'interface modifie ses composants en les
+ * recevant. Le relais les met en file et les rejoue sur l'EDT, par lots :
+ * - un lot au plus par image (GameConfig.FRAME_TIME), de
+ *   MAX_EVENTS_PER_BATCH événements au plus : le travail de l'interface par
+ *   image reste borné, quel que soit le débit du réseau ;
+ * - ping et liste des joueurs ne valent que par leur dernière valeur : une
+ *   seule entrée en attente chacun, mise à jour en place (sa place dans la
+ *   file reste celle du premier événement non livré) ;
+ * - un serveur LAN annoncé plusieurs fois n'est livré qu'une fois, avec sa
+ *   dernière annonce, et plus du tout s'il est perdu entre-temps ;
+ * - au-delà de MAX_QUEUED_CHAT messages de chat en attente, les suivants
+ *   sont ignorés et remplacés par un message système qui les compte.
+ * Les autres événements (mode, début de partie, erreurs...) sont livrés un
+ * par un, dans l'ordre d'arrivée.
+ */
+public final class NetworkEventDispatcher implements NetworkManager.NetworkListener {
+
+    private static final int MAX_EVENTS_PER_BATCH = 16;
+    private static final int MAX_QUEUED_CHAT = 64;
+    private static final long FRAME_NANOS = GameConfig.FRAME_TIME * 1_000_000L;
+
+    private final NetworkManager.NetworkListener target;
+
+    // File des événements, protégée par this
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private boolean scheduled;
+
+    // Dernières valeurs des événements fusionnés
+    private int latestPing;
+    private boolean pingQueued;
+    private List<NetworkManager.PlayerInfo> latestPlayers;
+    private boolean playersQueued;
+    private final Map<String, LANDiscovery.ServerInfo> pendingServers = new HashMap<>();
+    private int chatQueued;
+    private int chatDropped;
+    private long chatDroppedTotal;
+
+    // Livraison (EDT uniquement)
+    private final Timer deferTimer;
+    private long lastBatchNanos = System.nanoTime() - FRAME_NANOS;
+
+    // Statistiques
+    private long coalesced;
+    private volatile long batches;
+
+    // Entrées uniques du ping et de la liste des joueurs dans la file
+    private final Runnable pingEvent;
+    private final Runnable playersEvent;
+
+    public NetworkEventDispatcher(NetworkManager.NetworkListener target) {
+        this.target = target;
+        this.pingEvent = () -> target.onPingUpdate(takePing());
+        this.playersEvent = () -> target.onPlayerListUpdate(takePlayers());
+        this.deferTimer = new Timer(GameConfig.FRAME_TIME, e -> deliver());
+        deferTimer.setRepeats(false);
+    }
+
+    // ==================== RÉCEPTION (threads réseau) ====================
+    @Override
+    public void onModeChanged(NetworkManager.NetworkMode mode) {
+        post(() -> target.onModeChanged(mode));
+    }
+
+    @Override
+    public void onPlayerListUpdate(List<NetworkManager.PlayerInfo> players) {
+        synchronized (this) {
+            latestPlayers = players;
+            if (playersQueued) {
+                coalesced++;
+                return;
+            }
+            playersQueued = true;
+            queue.add(playersEvent);
+        }
+        schedule();
+    }
+
+    @Override
+    public void onChatMessage(String playerName, String message, boolean isSystem) {
+        synchronized (this) {
+            if (chatQueued >= MAX_QUEUED_CHAT) {
+                chatDropped++;
+                chatDroppedTotal++;
+                return;
+            }
+            chatQueued++;
+            queue.add(() -> deliverChat(playerName, message, isSystem));
+        }
+        schedule();
+    }
+
+    @Override
+    public void onGameStart() {
+        post(target::onGameStart);
+    }
+
+    @Override
+    public void onReturnToLobby() {
+        post(target::onReturnToLobby);
+    }
+
+    @Override
+    public void onDisconnected(String reason) {
+        post(() -> target.onDisconnected(reason));
+    }
+
+    @Override
+    public void onError(String error) {
+        post(() -> target.onError(error));
+    }
+
+    @Override
+    public void onPingUpdate(int ping) {
+        synchronized (this) {
+            latestPing = ping;
+            if (pingQueued) {
+                coalesced++;
+                return;
+            }
+            pingQueued = true;
+            queue.add(pingEvent);
+        }
+        schedule();
+    }
+
+    @Override
+    public void onServerFound(LANDiscovery.ServerInfo server) {
+        String key = server.address + ":" + server.tcpPort;
+        synchronized (this) {
+            if (pendingServers.put(key, server) != null) {
+                coalesced++;
+                return;
+            }
+            queue.add(() -> {
+                LANDiscovery.ServerInfo latest = takeServer(key);
+                if (latest != null) {
+                    target.onServerFound(latest);
+                }
+            });
+        }
+        schedule();
+    }
+
+    @Override
+    public void onServerLost(String address) {
+        synchronized (this) {
+            if (pendingServers.remove(address) != null) {
+                coalesced++; // Annonce jamais livrée : inutile de la livrer
+            }
+            queue.add(() -> target.onServerLost(address));
+        }
+        schedule();
+    }
+
+    private void post(Runnable event) {
+        synchronized (this) {
+            queue.add(event);
+        }
+        schedule();
+    }
+
+    /**
+     * Demande un lot sur l'EDT s'il n'y en a pas déjà un de prévu
+     */
+    private void schedule() {
+        synchronized (this) {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        SwingUtilities.invokeLater(this::deliver);
+    }
+
+    // ==================== LIVRAISON (EDT) ====================
+    /**
+     * Livre un lot, ou le repousse si le précédent date de moins d'une image
+     */
+    private void deliver() {
+        long now = System.nanoTime();
+        long wait = lastBatchNanos + FRAME_NANOS - now;
+        if (wait > 0) {
+            deferTimer.setInitialDelay((int) Math.max(1, wait / 1_000_000L));
+            deferTimer.restart();
+            return;
+        }
+        lastBatchNanos = now;
+        batches++;
+
+        for (int i = 0; i < MAX_EVENTS_PER_BATCH; i++) {
+            Runnable event;
+            synchronized (this) {
+                event = queue.poll();
+            }
+            if (event == null) {
+                break;
+            }
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                System.err.println("[NETWORK] Erreur dans un événement réseau: " + e);
+            }
+        }
+
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                scheduled = false;
+                return;
+            }
+        }
+        // Reste des événements : lot suivant à l'image suivante
+        deferTimer.setInitialDelay(GameConfig.FRAME_TIME);
+        deferTimer.restart();
+    }
+
+    private synchronized int takePing() {
+        pingQueued = false;
+        return latestPing;
+    }
+
+    private synchronized List<NetworkManager.PlayerInfo> takePlayers() {
+        playersQueued = false;
+        return latestPlayers;
+    }
+
+    private synchronized LANDiscovery.ServerInfo takeServer(String key) {
+        return pendingServers.remove(key);
+    }
+
+    /**
+     * Livre un message de chat ; après le dernier de la file, signale ceux
+     * qui ont été ignorés
+     */
+    private void deliverChat(String playerName, String message, boolean isSystem) {
+        int dropped = 0;
+        synchronized (this) {
+            chatQueued--;
+            if (chatQueued == 0) {
+                dropped = chatDropped;
+                chatDropped = 0;
+            }
+        }
+        target.onChatMessage(playerName, message, isSystem);
+        if (dropped > 0) {
+            target.onChatMessage("Système", dropped + " messages non affichés", true);
+        }
+    }
+
+    // ==================== STATISTIQUES ====================
+    /**
+     * Événements absorbés par un événement plus récent du même genre
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Messages de chat ignorés faute de place dans la file
+     */
+    public synchronized long getDroppedChat() {
+        return chatDroppedTotal;
+    }
+
+    /**
+     * Événements en attente de livraison
+     */
+    public synchronized int getPendingEvents() {
+        return queue.size();
+    }
+
+    /**
+     * Lots livrés sur l'EDT
+     */
+    public long getBatches() {
+        return batches;
+    }
+}
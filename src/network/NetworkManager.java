@@ -2,14 +2,18 @@ package network;
 
 import core.GameConfig;
 import core.GameEngine;
-import entity.Hole;
-import entity.Obstacle;
-import entity.Player;
+import core.sim.SimHole;
+import core.sim.SimObstacle;
+import core.sim.SimPlayer;
 import java.util.*;
 
 /**
  * Gestionnaire réseau central Fait le pont entre le jeu et les composants
  * réseau (serveur/client) Simplifie l'utilisation du réseau depuis l'UI
+ *
+ * L'hôte est aussi un client : il se connecte à son propre serveur par un
+ * transport en mémoire. L'interface ne consomme donc qu'une seule source
+ * d'état (le GameClient), que l'on héberge ou que l'on rejoigne.
  */
 public class NetworkManager {
 
@@ -24,7 +28,7 @@ public class NetworkManager {
     private boolean inLobby;
     private boolean inGame;
 
-    // Callbacks
+    // Callbacks (relayés vers l'EDT)
     private NetworkListener listener;
 
     public enum NetworkMode {
@@ -104,40 +108,30 @@ public class NetworkManager {
         server.setListener(new GameServer.ServerListener() {
             @Override
             public void onPlayerConnected(int playerId, String name) {
-                notifyPlayerListUpdate();
-                if (listener != null) {
+                // L'hôte lui-même (id 0) n'est pas annoncé
+                if (playerId != 0 && listener != null) {
                     listener.onChatMessage(name, "a rejoint la partie", true);
                 }
             }
 
             @Override
             public void onPlayerDisconnected(int playerId) {
-                notifyPlayerListUpdate();
+                // La liste des joueurs arrive par le client local
             }
 
             @Override
             public void onChatMessage(int playerId, String name, String message) {
-                if (listener != null) {
-                    listener.onChatMessage(name, message, false);
-                }
+                // Reçu par le client local comme par les autres joueurs
             }
 
             @Override
             public void onGameStart() {
-                inLobby = false;
-                inGame = true;
-                if (listener != null) {
-                    listener.onGameStart();
-                }
+                // Reçu par le client local (GAME_START)
             }
 
             @Override
             public void onReturnToLobby() {
-                inLobby = true;
-                inGame = false;
-                if (listener != null) {
-                    listener.onReturnToLobby();
-                }
+                // Reçu par le client local (RETURN_TO_LOBBY)
             }
 
             @Override
@@ -156,7 +150,11 @@ public class NetworkManager {
             if (listener != null) {
                 listener.onModeChanged(mode);
             }
-            notifyPlayerListUpdate();
+
+            // Rejoindre notre propre serveur comme un client, sans socket
+            client = new GameClient(playerName);
+            client.setListener(createClientListener());
+            client.connectLocal(server);
 
             System.out.println("[NETWORK] Mode hôte activé");
             return true;
@@ -194,6 +192,17 @@ public class NetworkManager {
         System.out.println("[NETWORK] Recherche de serveurs...");
     }
 
+    /**
+     * Relance une requête de découverte sans rouvrir la recherche
+     */
+    public void refreshServerSearch() {
+        if (client != null) {
+            client.refreshDiscovery();
+        } else {
+            startServerSearch();
+        }
+    }
+
     /**
      * Arrête la recherche de serveurs
      */
@@ -219,10 +228,21 @@ public class NetworkManager {
         }
 
         client = new GameClient(playerName);
+        client.setListener(createClientListener());
+        client.connect(address, port);
+    }
 
-        client.setListener(new GameClient.ClientListener() {
+    /**
+     * Callbacks du client, partagés par l'hôte (client local) et les joueurs
+     * qui rejoignent une partie
+     */
+    private GameClient.ClientListener createClientListener() {
+        return new GameClient.ClientListener() {
             @Override
             public void onConnected(int playerId, String serverName) {
+                if (mode == NetworkMode.HOST) {
+                    return;
+                }
                 mode = NetworkMode.CLIENT;
                 inLobby = true;
                 inGame = false;
@@ -252,8 +272,8 @@ public class NetworkManager {
             }
 
             @Override
-            public void onPlayerListUpdate(List<Map<String, Object>> players) {
-                notifyPlayerListFromMaps(players);
+            public void onPlayerListUpdate(List<Messages.PlayerEntry> players) {
+                notifyPlayerList(players);
             }
 
             @Override
@@ -292,9 +312,7 @@ public class NetworkManager {
                     listener.onPingUpdate(ping);
                 }
             }
-        });
-
-        client.connect(address, port);
+        };
     }
 
     // ==================== ACTIONS ====================
@@ -302,9 +320,7 @@ public class NetworkManager {
      * Envoie un message de chat
      */
     public void sendChat(String message) {
-        if (mode == NetworkMode.HOST && server != null) {
-            server.sendHostChat(message);
-        } else if (mode == NetworkMode.CLIENT && client != null) {
+        if (mode != NetworkMode.NONE && client != null) {
             client.sendChatMessage(message);
         }
     }
@@ -313,10 +329,10 @@ public class NetworkManager {
      * Envoie une action de changement de gravité
      */
     public void sendGravitySwitch() {
-        if (mode == NetworkMode.CLIENT && client != null) {
+        // L'hôte passe aussi par son client : même chemin que les autres joueurs
+        if (mode != NetworkMode.NONE && client != null) {
             client.sendGravitySwitch();
         }
-        // En mode HOST, le serveur gère localement
     }
 
     /**
@@ -328,46 +344,6 @@ public class NetworkManager {
         }
     }
 
-    /**
-     * Synchronise l'état autoritatif du serveur avec l'état simulé par l'hôte.
-     * Appelé à chaque tick du GamePanel quand on est l'hôte.
-     */
-    public void syncHostState(List<factory.entity.Player> players,
-            List<factory.entity.Hole> holes,
-            List<factory.entity.Obstacle> obstacles) {
-        if (mode != NetworkMode.HOST || server == null) {
-            return;
-        }
-
-        // Convertir en entités réseau
-        List<entity.Player> netPlayers = new ArrayList<>();
-        for (factory.entity.Player p : players) {
-            entity.Player np = new entity.Player(p.getPlayerId(), p.getPlayerName(), p.getPlayerColor());
-            np.setX(p.getX());
-            np.setY(p.getY());
-            np.setVelocityY(p.getVelocityY());
-            np.setGravity(entity.Gravity.valueOf(p.getGravity().name()));
-            if (!p.isAlive()) {
-                np.die();
-            }
-            np.setScore(p.getScore());
-            netPlayers.add(np);
-        }
-
-        List<entity.Hole> netHoles = new ArrayList<>();
-        for (factory.entity.Hole h : holes) {
-            netHoles.add(new entity.Hole(h.getX(), h.getWidth()));
-        }
-
-        List<entity.Obstacle> netObstacles = new ArrayList<>();
-        for (factory.entity.Obstacle o : obstacles) {
-            netObstacles.add(new entity.Obstacle((int) o.getX(), (int) o.getY(), o.getWidth(), o.getHeight()));
-        }
-
-        server.updateAuthoritativeState(netPlayers, netHoles, netObstacles);
-        server.broadcastGameState();
-    }
-
     /**
      * Démarre la partie (hôte uniquement)
      */
@@ -388,16 +364,6 @@ public class NetworkManager {
         }
     }
 
-    /**
-     * Met à jour l'état du jeu côté serveur Appelé à chaque tick par le
-     * GamePanel quand on est l'hôte
-     */
-    public void broadcastGameState() {
-        if (mode == NetworkMode.HOST && server != null && inGame) {
-            server.broadcastGameState();
-        }
-    }
-
     /**
      * Arrête le réseau proprement
      */
@@ -423,64 +389,32 @@ public class NetworkManager {
     }
 
     // ==================== HELPERS ====================
-    private void notifyPlayerListUpdate() {
-        if (listener == null || server == null) {
-            return;
-        }
-
-        List<PlayerInfo> infos = new ArrayList<>();
-
-        // L'hôte
-        PlayerInfo hostInfo = new PlayerInfo();
-        hostInfo.id = 0;
-        hostInfo.name = server.getPlayers().get(0).getPlayerName();
-        hostInfo.colorHex = colorToHex(GameConfig.NEON_CYAN);
-        hostInfo.ready = true;
-        hostInfo.isHost = true;
-        infos.add(hostInfo);
-
-        // Les autres joueurs
-        for (Player p : server.getPlayers()) {
-            if (p.getPlayerId() != 0) {
-                PlayerInfo info = new PlayerInfo();
-                info.id = p.getPlayerId();
-                info.name = p.getPlayerName();
-                info.colorHex = colorToHex(p.getPlayerColor());
-                info.ready = false; // TODO: tracker l'état ready
-                info.isHost = false;
-                infos.add(info);
-            }
-        }
-
-        listener.onPlayerListUpdate(infos);
-    }
-
-    private void notifyPlayerListFromMaps(List<Map<String, Object>> players) {
+    private void notifyPlayerList(List<Messages.PlayerEntry> players) {
         if (listener == null) {
             return;
         }
 
         List<PlayerInfo> infos = new ArrayList<>();
-        for (Map<String, Object> pm : players) {
+        for (Messages.PlayerEntry entry : players) {
             PlayerInfo info = new PlayerInfo();
-            info.id = JsonUtils.getInt(pm, "id", 0);
-            info.name = JsonUtils.getString(pm, "name", "Joueur");
-            info.colorHex = JsonUtils.getString(pm, "color", "#FFFFFF");
-            info.ready = JsonUtils.getBoolean(pm, "ready", false);
-            info.isHost = JsonUtils.getBoolean(pm, "isHost", false);
+            info.id = entry.id();
+            info.name = entry.name();
+            info.colorHex = entry.color();
+            info.ready = entry.ready();
+            info.isHost = entry.isHost();
             infos.add(info);
         }
 
         listener.onPlayerListUpdate(infos);
     }
 
-    private String colorToHex(java.awt.Color c) {
-        return String.format("#%02X%02X%02X", c.getRed(), c.getGreen(), c.getBlue());
-    }
-
     // ==================== ACCESSEURS ====================
+    /**
+     * Écouteur de l'interface : ses callbacks sont rejoués sur l'EDT, par
+     * lots et fusionnés (voir NetworkEventDispatcher)
+     */
     public void setListener(NetworkListener listener) {
-        this.listener = listener;
+        this.listener = listener != null ? new NetworkEventDispatcher(listener) : null;
     }
 
     public NetworkMode getMode() {
@@ -508,12 +442,23 @@ public class NetworkManager {
     }
 
     public int getPing() {
-        if (mode == NetworkMode.CLIENT && client != null) {
+        if (mode != NetworkMode.NONE && client != null) {
             return client.getPing();
         }
         return 0;
     }
 
+    /**
+     * Statistiques de la connexion au serveur (hôte compris), null hors
+     * réseau
+     */
+    public ConnectionStats getConnectionStats() {
+        if (mode != NetworkMode.NONE && client != null) {
+            return client.getStats();
+        }
+        return null;
+    }
+
     public int getPlayerCount() {
         if (mode == NetworkMode.HOST && server != null) {
             return server.getPlayerCount();
@@ -521,30 +466,46 @@ public class NetworkManager {
         return 1;
     }
 
-    public List<Player> getNetworkPlayers() {
-        if (mode == NetworkMode.CLIENT && client != null) {
-            return client.getPlayers();
-        } else if (mode == NetworkMode.HOST && server != null) {
-            return server.getPlayers();
-        }
-        return new ArrayList<>();
+    public List<SimPlayer> getNetworkPlayers() {
+        return client != null ? client.getPlayers() : new ArrayList<>();
     }
 
-    public List<Hole> getNetworkHoles() {
-        if (mode == NetworkMode.CLIENT && client != null) {
-            return client.getHoles();
-        } else if (mode == NetworkMode.HOST && server != null) {
-            return server.getHoles();
-        }
-        return new ArrayList<>();
+    public List<SimHole> getNetworkHoles() {
+        return client != null ? client.getHoles() : new ArrayList<>();
     }
 
-    public List<Obstacle> getNetworkObstacles() {
-        if (mode == NetworkMode.CLIENT && client != null) {
-            return client.getObstacles();
-        } else if (mode == NetworkMode.HOST && server != null) {
-            return server.getObstacles();
+    public List<SimObstacle> getNetworkObstacles() {
+        return client != null ? client.getObstacles() : new ArrayList<>();
+    }
+
+    /**
+     * Position de la ligne d'arrivée, négative tant qu'elle n'est pas apparue
+     */
+    public double getNetworkFinishLineX() {
+        return client != null ? client.getFinishLineX() : -1;
+    }
+
+    /**
+     * Identifiant du vainqueur de la manche en cours, -1 si aucun
+     */
+    public int getNetworkWinnerId() {
+        return client != null ? client.getWinnerId() : -1;
+    }
+
+    /**
+     * Nom d'un joueur réseau (pour l'affichage)
+     */
+    public String getNetworkPlayerName(int playerId) {
+        return client != null ? client.getPlayerName(playerId) : "Joueur " + playerId;
+    }
+
+    /**
+     * Couleur d'un joueur réseau (pour l'affichage)
+     */
+    public java.awt.Color getNetworkPlayerColor(int playerId) {
+        if (client != null) {
+            return java.awt.Color.decode(client.getPlayerColorHex(playerId));
         }
-        return new ArrayList<>();
+        return GameConfig.NEON_CYAN;
     }
 }
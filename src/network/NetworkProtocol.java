@@ -16,15 +16,72 @@ public class NetworkProtocol {
     public static final int TCP_PORT = 25565;           // Port TCP principal
     public static final int UDP_PORT = 25566;           // Port UDP pour le gameplay
     public static final int DISCOVERY_PORT = 25567;     // Port UDP pour découverte LAN
+    public static final int MATCHMAKER_PORT = 25568;    // TCP clients + UDP serveurs du matchmaker
+    public static final int DISCOVERY_QUERY_PORT = 25569; // Port UDP des requêtes de découverte (serveurs)
     
     public static final int TICK_RATE = 60;             // Mises à jour par seconde
     public static final int TICK_INTERVAL = 1000 / TICK_RATE;
     
     public static final String DISCOVERY_MAGIC = "VOIDRUNNER_LAN_V1";
-    public static final int DISCOVERY_INTERVAL = 2000;  // Broadcast toutes les 2s
+    public static final String DISCOVERY_MULTICAST_V4 = "239.255.86.82"; // Groupe de découverte (portée organisation)
+    public static final String DISCOVERY_MULTICAST_V6 = "ff15::5652";    // Groupe de découverte (portée site)
+    public static final int DISCOVERY_INTERVAL = 5000;  // Annonce périodique toutes les 5s (les requêtes sont immédiates)
+    public static final int DISCOVERY_INTERFACE_REFRESH = 30000; // Relecture des adresses de broadcast
     public static final int CONNECTION_TIMEOUT = 5000;  // 5 secondes timeout
+    public static final int MATCHMAKER_HEARTBEAT_INTERVAL = 1000; // Charge envoyée toutes les 1s
     
     public static final int MAX_PLAYERS = 4;
+
+    // Reprise de session : place gardée à un joueur coupé en pleine manche
+    public static final int RECONNECT_GRACE = 10000;    // 10 secondes pour revenir
+    public static final int RECONNECT_RETRY = 500;      // Délai entre deux tentatives du client
+
+    // Empreintes de la simulation jointes à un GAME_STATE sur HASH_INTERVAL
+    public static final int HASH_INTERVAL = 30;          // Deux vérifications par seconde
+    
+    // Versions du protocole (schéma de Messages). Un client qui n'annonce
+    // aucune version parle la 1 : mêmes champs, sans négociation.
+    // 2 : négociation ; 3 : empreintes dans GAME_STATE et DESYNC_REPORT ;
+    // 4 : jeton de session et reprise après coupure (RESYNC) ;
+    // 5 : en-tête de routage des datagrammes client → serveur ;
+    // 6 : dangers transmis une fois à leur apparition (HAZARD_SPAWN)
+    public static final int PROTOCOL_VERSION = 6;       // Version la plus récente comprise
+    public static final int MIN_PROTOCOL_VERSION = 1;   // Version la plus ancienne encore acceptée
+    
+    /**
+     * Version commune la plus récente entre nous et un pair qui comprend
+     * l'intervalle [peerMin, peerMax]
+     *
+     * @return la version retenue, ou -1 si les intervalles sont disjoints
+     */
+    public static int negotiate(int peerMin, int peerMax) {
+        int version = Math.min(PROTOCOL_VERSION, peerMax);
+        return version >= Math.max(MIN_PROTOCOL_VERSION, peerMin) ? version : -1;
+    }
+    
+    // Couleurs des joueurs (#RRGGBB), attribuées selon l'identifiant
+    public static final String[] PLAYER_COLORS = {
+        "#00FFFF", // Cyan
+        "#FF0080", // Rose
+        "#8A2BE2", // Violet
+        "#00FF7F"  // Vert
+    };
+    
+    /**
+     * Couleur d'un joueur selon son identifiant
+     */
+    public static String playerColor(int playerId) {
+        return PLAYER_COLORS[Math.floorMod(playerId, PLAYER_COLORS.length)];
+    }
+    
+    // En-tête de routage (protocole 5) : les datagrammes d'un client vers le
+    // serveur commencent par UDP_ROUTE_MARKER puis le jeton udpToken de son
+    // CONNECT_ACCEPT (8 octets, gros-boutiste), avant le JSON. Les
+    // UDP_ROUTE_SLOT_BITS bits de poids faible du jeton sont l'indice du
+    // client dans la table de routage du serveur, le reste est aléatoire.
+    public static final byte UDP_ROUTE_MARKER = 0x01;   // Jamais le début d'un JSON
+    public static final int UDP_ROUTE_HEADER = 9;       // Marqueur + jeton
+    public static final int UDP_ROUTE_SLOT_BITS = 12;   // 4096 clients au plus par serveur
     
     // === TYPES DE MESSAGES ===
     
@@ -36,19 +93,26 @@ public class NetworkProtocol {
         CONNECT_REQUEST,    // Client → Serveur: demande de connexion
         CONNECT_ACCEPT,     // Serveur → Client: connexion acceptée
         CONNECT_REJECT,     // Serveur → Client: connexion refusée
+        CONNECT_REDIRECT,   // Matchmaker → Client: se connecter à un autre serveur
         DISCONNECT,         // Bidirectionnel: déconnexion propre
         
         // Lobby
         PLAYER_LIST,        // Serveur → Clients: liste des joueurs connectés
         PLAYER_READY,       // Client → Serveur: joueur prêt
         GAME_START,         // Serveur → Clients: lancement de la partie
+        RETURN_TO_LOBBY,    // Serveur → Clients: fin de manche, retour au lobby
         
         // Chat
         CHAT_MESSAGE,       // Bidirectionnel: message de chat
         
         // Synchronisation
         PING,               // Bidirectionnel: mesure de latence
-        PONG                // Réponse au ping
+        PONG,               // Réponse au ping
+        DESYNC_REPORT,      // Client → Serveur: la simulation locale a divergé
+        RESYNC,             // Serveur → Client: image complète après une reprise de session
+        
+        // Jeu
+        HAZARD_SPAWN        // Serveur → Clients: trous et obstacles apparus à ce tick
     }
     
     /**
@@ -57,24 +121,69 @@ public class NetworkProtocol {
     public enum UdpMessageType {
         INPUT,              // Client → Serveur: action du joueur
         GAME_STATE,         // Serveur → Clients: état complet du jeu
-        PLAYER_STATE        // Serveur → Clients: état d'un joueur (delta)
+        PLAYER_STATE,       // Serveur → Clients: état d'un joueur (delta)
+        PROBE,              // Client → Serveur: sonde de latence (navigateur de serveurs)
+        PROBE_REPLY,        // Serveur → Client: réponse immédiate à une sonde
+        PEER_INPUT          // Pair → Pair: inputs récents (mode rollback, sans serveur)
     }
-    
+
+    // === CHAÎNES CONNUES ===
+
+    /**
+     * Noms des champs utilisés par les messages. JsonReader renvoie ces
+     * instances au lieu d'allouer une chaîne par clé lue.
+     */
+    public static final String[] JSON_KEYS = {
+        "type", "playerId", "playerName", "version", "room", "roomId", "reason",
+        "players", "id", "name", "color", "ready", "isHost",
+        "message", "timestamp", "seed", "countdown",
+        "sequence", "action",
+        "tick", "time", "finishLine", "winner", "holes", "obstacles",
+        "x", "y", "vy", "gravity", "alive", "score", "lastInput", "width", "height",
+        "address", "tcpPort", "udpPort", "probePort", "seq", "protocol", "minProtocol",
+        "magic", "nonce", "serverId", "serverName", "playerCount", "maxPlayers", "inGame",
+        "rooms", "maxRooms", "joinableRooms", "overrunRatio",
+        "hashTick", "hazardHash", "worldHash", "lastMatchTick", "localHash", "serverHash", "dump",
+        "frame", "count", "inputs", "ack", "session", "state", "udpToken",
+        "hazards", "kind", "simTick"
+    };
+
+    /**
+     * Valeurs texte récurrentes hors types de messages (déjà connus par les
+     * enums ci-dessus), internées de la même façon
+     */
+    public static final String[] JSON_VALUES = {
+        "GRAVITY_SWITCH", "NONE", "UP", "DOWN", "HOLE", "OBSTACLE",
+        "ANNOUNCE", "QUERY", "REPLY", "BYE", "MM_HEARTBEAT", "MM_UNREGISTER"
+    };
+
     // === FORMATS DES MESSAGES ===
     
     /*
+     * Référence : les records de Messages (un par type des deux enums) et
+     * leurs codecs. Les exemples ci-dessous en sont l'image sur le fil.
+     * 
      * CONNECT_REQUEST:
      * {
      *   "type": "CONNECT_REQUEST",
      *   "playerName": "Juan",
-     *   "version": "1.0"
-     * }
+     *   "version": "1.0",
+     *   "minProtocol": 1,         (versions du protocole comprises ;
+     *   "protocol": 2,             absentes : 1)
+     *   "room": 2,                (optionnel, serveur dédié)
+     *   "session": 81985529       (optionnel, protocole 4 : jeton de la
+     * }                            session à reprendre)
      * 
      * CONNECT_ACCEPT:
      * {
      *   "type": "CONNECT_ACCEPT",
      *   "playerId": 1,
      *   "serverName": "Partie de Juan",
+     *   "roomId": 0,
+     *   "udpPort": 25566,
+     *   "protocol": 2,            (version retenue, absente : 1)
+     *   "session": 81985529,      (protocole 4 : jeton de reprise, absent pour l'hôte)
+     *   "udpToken": 73014444032,  (protocole 5 : jeton de l'en-tête de routage UDP)
      *   "players": [
      *     {"id": 0, "name": "Juan", "color": "#00FFFF", "ready": true},
      *     {"id": 1, "name": "Harry", "color": "#FF00FF", "ready": false}
@@ -87,6 +196,26 @@ public class NetworkProtocol {
      *   "reason": "Partie pleine"
      * }
      * 
+     * CONNECT_REDIRECT:
+     * {
+     *   "type": "CONNECT_REDIRECT",
+     *   "address": "192.168.1.20",
+     *   "tcpPort": 26000,
+     *   "serverName": "Noeud 2"
+     * }
+     * 
+     * MM_HEARTBEAT (UDP, GameServer → Matchmaker):
+     * {
+     *   "type": "MM_HEARTBEAT",
+     *   "serverName": "Noeud 2",
+     *   "tcpPort": 26000,
+     *   "players": 6,
+     *   "rooms": 2,
+     *   "maxRooms": 8,
+     *   "joinableRooms": 1,
+     *   "overrunRatio": 0.002
+     * }
+     * 
      * PLAYER_LIST:
      * {
      *   "type": "PLAYER_LIST",
@@ -106,6 +235,12 @@ public class NetworkProtocol {
      *   "countdown": 3
      * }
      * 
+     * RETURN_TO_LOBBY:
+     * {
+     *   "type": "RETURN_TO_LOBBY",
+     *   "message": "Fin de la manche"
+     * }
+     * 
      * CHAT_MESSAGE:
      * {
      *   "type": "CHAT_MESSAGE",
@@ -121,7 +256,36 @@ public class NetworkProtocol {
      *   "timestamp": 1705600000000
      * }
      * 
-     * INPUT (UDP):
+     * DESYNC_REPORT (client → serveur, protocole 3):
+     * {
+     *   "type": "DESYNC_REPORT",
+     *   "tick": 1230,             (premier tick vérifié dont l'empreinte diffère)
+     *   "lastMatchTick": 1200,    (dernier tick vérifié identique)
+     *   "localHash": 123, "serverHash": 456,
+     *   "dump": "tick 1230..."    (état local et état reçu)
+     * }
+     * 
+     * RESYNC (serveur → client, protocole 4, juste après le CONNECT_ACCEPT
+     * d'une reprise de session):
+     * {
+     *   "type": "RESYNC",
+     *   "seed": 123456789,        (graine de la manche en cours)
+     *   "tick": 1234,             (tick de l'état joint)
+     *   "state": "eJzFkk1..."     (GAME_STATE complet, compressé puis en Base64)
+     * }
+     * 
+     * HAZARD_SPAWN (serveur → clients, protocole 6, au tick où des dangers
+     * apparaissent):
+     * {
+     *   "type": "HAZARD_SPAWN",
+     *   "hazards": [
+     *     {"id": 12, "kind": "HOLE", "tick": 1234, "x": 1595, "width": 80},
+     *     {"id": 13, "kind": "OBSTACLE", "tick": 1234, "x": 1595, "y": 350, "width": 40, "height": 100}
+     *   ]                         (x au tick de simulation donné ; x - GAME_SPEED par
+     *                              tick de simulation ensuite)
+     * }
+     * 
+     * INPUT (UDP, précédé de l'en-tête de routage en protocole 5):
      * {
      *   "type": "INPUT",
      *   "playerId": 1,
@@ -134,21 +298,41 @@ public class NetworkProtocol {
      * {
      *   "type": "GAME_STATE",
      *   "tick": 1234,
+     *   "time": 1705600000000,    (horloge du serveur à l'envoi, en ms)
+     *   "finishLine": 900,        (-1 tant que la ligne d'arrivée n'est pas apparue)
+     *   "winner": -1,             (id du vainqueur, -1 si aucun)
+     *   "simTick": 1200,          (protocole 6 : tick de simulation, qui s'arrête en
+     *                              fin de manche ; les dangers y sont rapportés)
+     *   "hashTick": 1230,         (tous les HASH_INTERVAL ticks, protocole 3 : tick de
+     *   "hazardHash": -81985529,   simulation et empreintes des dangers et du monde)
+     *   "worldHash": 4822678189,
      *   "players": [
-     *     {"id": 0, "x": 100, "y": 300, "vy": 5.0, "gravity": "DOWN", "alive": true, "score": 5},
+     *     {"id": 0, "x": 100, "y": 300, "vy": 5.0, "gravity": "DOWN", "alive": true, "score": 5,
+     *      "lastInput": 12345},   (dernier INPUT appliqué, absent si aucun)
      *     {"id": 1, "x": 100, "y": 450, "vy": -3.0, "gravity": "UP", "alive": true, "score": 4}
      *   ],
      *   "holes": [
      *     {"x": 400, "width": 80, "isGround": true}
      *   ],
-     *   "obstacles": [
+     *   "obstacles": [            (holes et obstacles : protocole 5 ou moins ; en
      *     {"x": 600, "y": 350, "width": 40, "height": 100}
-     *   ]
+     *   ],                         protocole 6, les dangers viennent de HAZARD_SPAWN)
+     *   "hazards": [...]          (image d'un RESYNC seulement : dangers présents,
+     * }                            comme dans HAZARD_SPAWN)
+     * 
+     * LAN_DISCOVERY QUERY (multicast + broadcast UDP client → port DISCOVERY_QUERY_PORT):
+     * {
+     *   "magic": "VOIDRUNNER_LAN_V1",
+     *   "type": "QUERY",
+     *   "nonce": 123456           (une même requête part sur plusieurs adresses)
      * }
      * 
-     * LAN_DISCOVERY (broadcast UDP):
+     * LAN_DISCOVERY (réponse unicast ou annonce multicast + broadcast → DISCOVERY_PORT):
      * {
      *   "magic": "VOIDRUNNER_LAN_V1",
+     *   "type": "REPLY",          (REPLY, ANNOUNCE, ou BYE à l'arrêt du serveur)
+     *   "serverId": "3f2a9c...",  (même serveur reçu par IPv4, IPv6 ou broadcast)
+     *   "probePort": 25566,       (port UDP qui répond aux PROBE)
      *   "serverName": "Partie de Juan",
      *   "playerCount": 2,
      *   "maxPlayers": 4,
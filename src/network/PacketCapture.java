@@ -0,0 +1,261 @@
+package network;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Capture des datagrammes et des messages reçus d'une connexion dans un
+ * fichier, pour les rejouer hors ligne (tools.CaptureReplay)
+ *
+ * Enveloppe un Transport, comme LinkEmulator, et note chaque datagramme
+ * envoyé ou reçu et chaque message fiable reçu avec son instant
+ * (System.nanoTime). Placée au-dessus de l'émulation de liaison, elle voit
+ * exactement ce que le client décode, dans l'ordre où il le décode : en
+ * protocole 6, les dangers n'arrivent que par messages (HAZARD_SPAWN).
+ *
+ * Format (ajout seul : plusieurs connexions peuvent se suivre dans un même
+ * fichier) : une suite d'enregistrements
+ *   type (1 octet) | delta (varint, ns depuis l'enregistrement précédent)
+ *   | longueur (varint) | données
+ * Types : SESSION (début de connexion, données = heure murale en ms sur
+ * 8 octets, delta = 0), RECEIVED et SENT (le datagramme tel quel), PLAYER
+ * (identifiant attribué par le serveur puis protocole négocié, 4 + 4
+ * octets ; 4 seulement dans les captures d'avant le protocole 6) et MESSAGE
+ * (message fiable reçu, JSON en UTF-8).
+ *
+ * L'écriture se fait sous verrou dans un tampon de 64 Ko, depuis les threads
+ * d'envoi et de réception : un mode de mesure, pas de production. Un fichier
+ * ne doit être ouvert que par une connexion à la fois.
+ */
+public class PacketCapture implements Transport {
+
+    public static final int SESSION = 0;
+    public static final int RECEIVED = 1;
+    public static final int SENT = 2;
+    public static final int PLAYER = 3;
+    public static final int MESSAGE = 4;
+
+    /**
+     * Protocole des captures dont le PLAYER ne le note pas : état complet
+     * dans chaque datagramme
+     */
+    private static final int UNRECORDED_PROTOCOL = 5;
+
+    private final Transport inner;
+    private final Path path;
+    private final DataOutputStream out;
+    private long lastNanos;
+    private long records;
+    private boolean closed;
+
+    /**
+     * Un enregistrement relu
+     *
+     * @param type SESSION, RECEIVED, SENT, PLAYER ou MESSAGE
+     * @param nanos instant depuis le début de la session, en ns
+     * @param data contenu (datagramme, heure murale, identifiant et
+     * protocole, ou message)
+     */
+    public record Record(int type, long nanos, byte[] data) {
+
+        /**
+         * Heure murale d'une SESSION ou identifiant d'un PLAYER
+         */
+        public long value() {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            return type == SESSION ? buffer.getLong() : buffer.getInt();
+        }
+
+        /**
+         * Protocole négocié par la connexion d'un PLAYER
+         */
+        public int protocol() {
+            return data.length >= 8 ? ByteBuffer.wrap(data).getInt(4) : UNRECORDED_PROTOCOL;
+        }
+
+        /**
+         * Texte d'un MESSAGE
+         */
+        public String text() {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    }
+
+    private PacketCapture(Transport inner, Path path) throws IOException {
+        this.inner = inner;
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024));
+        this.lastNanos = System.nanoTime();
+        write(SESSION, ByteBuffer.allocate(8).putLong(System.currentTimeMillis()).array(), 8);
+    }
+
+    /**
+     * Enveloppe le transport si une capture est demandée
+     *
+     * @param path fichier de capture (complété), null = pas de capture
+     * @return le transport d'origine si la capture est désactivée ou si le
+     * fichier ne peut pas être ouvert
+     */
+    public static Transport wrap(Transport inner, Path path) {
+        if (path == null) {
+            return inner;
+        }
+        try {
+            PacketCapture capture = new PacketCapture(inner, path);
+            System.out.println("[CAPTURE] Capture des datagrammes dans " + path);
+            return capture;
+        } catch (IOException e) {
+            System.err.println("[CAPTURE] Impossible d'ouvrir " + path + ": " + e.getMessage());
+            return inner;
+        }
+    }
+
+    /**
+     * Note l'identifiant attribué par le serveur et le protocole négocié (le
+     * rejeu en a besoin pour reconnaître l'état de son propre joueur et
+     * décoder les états comme pendant la partie)
+     */
+    public void markPlayer(int playerId, int protocol) {
+        write(PLAYER, ByteBuffer.allocate(8).putInt(playerId).putInt(protocol).array(), 8);
+    }
+
+    // ==================== TRANSPORT ====================
+    @Override
+    public void start(Receiver target) {
+        inner.start(new Receiver() {
+            @Override
+            public void onMessage(String json) {
+                byte[] data = json.getBytes(StandardCharsets.UTF_8);
+                write(MESSAGE, data, data.length);
+                target.onMessage(json);
+            }
+
+            @Override
+            public void onDatagram(byte[] data, int length) {
+                write(RECEIVED, data, length);
+                target.onDatagram(data, length);
+            }
+
+            @Override
+            public void onClosed() {
+                target.onClosed();
+            }
+        });
+    }
+
+    @Override
+    public void sendMessage(String json) {
+        inner.sendMessage(json);
+    }
+
+    @Override
+    public void sendDatagram(byte[] data, int length) {
+        write(SENT, data, length);
+        inner.sendDatagram(data, length);
+    }
+
+    @Override
+    public void close() {
+        inner.close();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+        System.out.println("[CAPTURE] " + records + " enregistrements écrits dans " + path);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return inner.isOpen();
+    }
+
+    /**
+     * Transport capturé (LinkEmulator si la liaison est émulée)
+     */
+    public Transport getInner() {
+        return inner;
+    }
+
+    // ==================== ÉCRITURE ====================
+    private synchronized void write(int type, byte[] data, int length) {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        try {
+            out.write(type);
+            writeVarLong(type == SESSION ? 0 : now - lastNanos);
+            writeVarLong(length);
+            out.write(data, 0, length);
+            records++;
+        } catch (IOException e) {
+            // Disque plein ou fichier supprimé : arrêter la capture, pas la partie
+            System.err.println("[CAPTURE] Erreur d'écriture, capture arrêtée: " + e.getMessage());
+            closed = true;
+        }
+        lastNanos = now;
+    }
+
+    private void writeVarLong(long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    // ==================== LECTURE ====================
+    /**
+     * Relit toute une capture en mémoire
+     *
+     * @throws IOException si le fichier est illisible ; une fin tronquée
+     * (capture interrompue) est ignorée
+     */
+    public static List<Record> read(Path path) throws IOException {
+        List<Record> result = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long nanos = 0;
+            int type;
+            while ((type = in.read()) >= 0) {
+                if (type > MESSAGE) {
+                    throw new IOException("type d'enregistrement inconnu " + type
+                            + " après " + result.size() + " enregistrements");
+                }
+                long delta = readVarLong(in);
+                int length = (int) readVarLong(in);
+                byte[] data = new byte[length];
+                in.readFully(data);
+                nanos = type == SESSION ? 0 : nanos + delta;
+                result.add(new Record(type, nanos, data));
+            }
+        } catch (EOFException e) {
+            // Dernier enregistrement incomplet
+        }
+        return result;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("varint trop long");
+    }
+}
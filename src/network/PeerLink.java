@@ -0,0 +1,107 @@
+package network;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Liaison UDP d'une RollbackSession avec ses pairs
+ *
+ * Un seul socket UDP par pair, qui envoie à l'adresse connue de chaque autre
+ * joueur et lit tout ce qui arrive dans un thread dédié. Les datagrammes
+ * d'une adresse inconnue sont ignorés : la liste des pairs est fixée avant la
+ * manche (lobby, ligne de commande...), personne ne la rejoint en cours. Un
+ * datagramme n'est accepté que pour le joueur de son adresse : un pair ne
+ * peut pas envoyer les inputs d'un autre.
+ */
+public final class PeerLink implements RollbackSession.Sender {
+
+    private final DatagramSocket socket;
+    private final Map<Integer, InetSocketAddress> peers = new HashMap<>();
+    private volatile boolean open = true;
+    private long sendErrors;
+
+    /**
+     * @param port port UDP local (0 = port libre)
+     */
+    public PeerLink(int port) throws SocketException {
+        this.socket = new DatagramSocket(port);
+    }
+
+    /**
+     * Adresse UDP d'un pair (avant start)
+     */
+    public void addPeer(int playerId, InetSocketAddress address) {
+        peers.put(playerId, address);
+    }
+
+    /**
+     * Lance la lecture du socket vers la session
+     */
+    public void start(RollbackSession session) {
+        Thread thread = new Thread(() -> readLoop(session), "Peer-UDP-" + session.getLocalId());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readLoop(RollbackSession session) {
+        byte[] buffer = new byte[2048];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (open) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                int peerId = peerAt(packet.getSocketAddress());
+                if (peerId >= 0) {
+                    session.onDatagram(peerId, packet.getData(), packet.getLength());
+                }
+            } catch (IOException e) {
+                if (open) {
+                    System.err.println("[ROLLBACK] Erreur de réception: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Joueur dont c'est l'adresse, -1 si aucun (quelques pairs : parcours)
+     */
+    private int peerAt(SocketAddress address) {
+        for (Map.Entry<Integer, InetSocketAddress> peer : peers.entrySet()) {
+            if (peer.getValue().equals(address)) {
+                return peer.getKey();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void send(int peerId, byte[] data, int length) {
+        InetSocketAddress address = peers.get(peerId);
+        if (address == null || !open) {
+            return;
+        }
+        try {
+            socket.send(new DatagramPacket(data, length, address));
+        } catch (IOException e) {
+            // Le datagramme suivant reprend les mêmes inputs
+            if (sendErrors++ == 0) {
+                System.err.println("[ROLLBACK] Envoi impossible vers " + address + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    public void close() {
+        open = false;
+        socket.close();
+    }
+}
@@ -0,0 +1,133 @@
+package network;
+
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partie pair à pair prête à jouer : la RollbackSession du joueur local et
+ * sa liaison UDP (PeerLink) avec les autres pairs
+ *
+ * Les pairs se connaissent d'avance (pas de lobby) : chacun lance le jeu
+ * avec son numéro, son port et l'adresse des autres, et la même graine.
+ *
+ * Usage: java -cp bin Main --p2p --id 1 --port 25566
+ *        --peer 2=192.168.1.12:25566 [--peer 3=...] [--seed 1]
+ */
+public final class PeerMatch {
+
+    private final RollbackSession session;
+    private final PeerLink link;
+
+    private PeerMatch(RollbackSession session, PeerLink link) {
+        this.session = session;
+        this.link = link;
+    }
+
+    /**
+     * Lit les options --id, --port, --peer id=hôte[:port] (une par pair) et
+     * --seed, ouvre le port UDP et démarre la réception
+     *
+     * @throws IllegalArgumentException si une option manque ou est invalide
+     * @throws SocketException si le port UDP est indisponible
+     */
+    public static PeerMatch fromArgs(String[] args) throws SocketException {
+        int localId = -1;
+        int port = NetworkProtocol.UDP_PORT;
+        long seed = 1;
+        List<Integer> peerIds = new ArrayList<>();
+        List<InetSocketAddress> peerAddresses = new ArrayList<>();
+        for (int i = 0; i + 1 < args.length; i++) {
+            try {
+                switch (args[i]) {
+                    case "--id":
+                        localId = Integer.parseInt(args[++i]);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--peer":
+                        String peer = args[++i];
+                        int equals = peer.indexOf('=');
+                        int colon = peer.lastIndexOf(':');
+                        if (equals <= 0) {
+                            throw new IllegalArgumentException("Pair invalide (id=hôte[:port]): " + peer);
+                        }
+                        String host = colon > equals ? peer.substring(equals + 1, colon) : peer.substring(equals + 1);
+                        int peerPort = colon > equals ? Integer.parseInt(peer.substring(colon + 1))
+                                : NetworkProtocol.UDP_PORT;
+                        peerIds.add(Integer.parseInt(peer.substring(0, equals)));
+                        peerAddresses.add(new InetSocketAddress(host, peerPort));
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Nombre invalide après " + args[i - 1] + ": " + args[i]);
+            }
+        }
+        if (localId < 1 || peerIds.isEmpty()) {
+            throw new IllegalArgumentException("--p2p demande --id N et au moins un --peer id=hôte[:port]");
+        }
+
+        int[] playerIds = new int[peerIds.size() + 1];
+        playerIds[0] = localId;
+        for (int i = 0; i < peerIds.size(); i++) {
+            int id = peerIds.get(i);
+            if (id < 1) {
+                throw new IllegalArgumentException("Numéro de pair invalide: " + id);
+            }
+            for (int j = 0; j <= i; j++) {
+                if (playerIds[j] == id) {
+                    throw new IllegalArgumentException("Numéro de joueur en double: " + id);
+                }
+            }
+            playerIds[i + 1] = id;
+            if (peerAddresses.get(i).isUnresolved()) {
+                throw new IllegalArgumentException("Hôte inconnu: " + peerAddresses.get(i).getHostString());
+            }
+        }
+
+        PeerLink link = new PeerLink(port);
+        for (int i = 0; i < peerIds.size(); i++) {
+            link.addPeer(peerIds.get(i), peerAddresses.get(i));
+        }
+        RollbackSession session;
+        try {
+            session = new RollbackSession(seed, localId, playerIds, link);
+        } catch (IllegalArgumentException e) {
+            link.close();
+            throw e;
+        }
+        link.start(session);
+        System.out.println("[ROLLBACK] Partie pair à pair: joueur " + localId + " sur le port " + link.getPort()
+                + ", " + peerIds.size() + " pair(s), graine " + seed);
+        return new PeerMatch(session, link);
+    }
+
+    public RollbackSession getSession() {
+        return session;
+    }
+
+    /**
+     * Tous les joueurs de la partie, le local compris, par numéro croissant
+     */
+    public int[] getPlayerIds() {
+        return session.getPlayerIds();
+    }
+
+    public int getLocalId() {
+        return session.getLocalId();
+    }
+
+    /**
+     * Ferme le port UDP : les pairs restants attendront nos inputs
+     */
+    public void close() {
+        link.close();
+        System.out.println("[ROLLBACK] Partie pair à pair terminée (" + session.getRollbacks() + " rollbacks, "
+                + session.getStalls() + " attentes)");
+    }
+}
@@ -0,0 +1,407 @@
+package network;
+
+import core.sim.SimState;
+import core.sim.Simulation;
+import java.util.Arrays;
+
+/**
+ * Partie pair à pair avec rollback (à la GGPO), alternative au GameServer
+ * autoritaire pour 2 à 4 joueurs en réseau local
+ *
+ * Chaque pair fait tourner toute la Simulation. L'input local est appliqué
+ * au tick même où il est saisi : aucun pair n'attend le réseau, l'hôte n'a
+ * plus d'avantage. Les inputs des autres sont prédits, puis corrigés à leur
+ * arrivée : si l'un d'eux contredit la prédiction, la simulation est
+ * restaurée au tick concerné et resimulée jusqu'au tick courant.
+ *
+ * - Input : une inversion de gravité (ou rien) par joueur et par tick. Un
+ *   input étant un appui ponctuel, la prédiction est "pas d'inversion" (la
+ *   répétition du dernier input de GGPO reviendrait à inverser sans cesse) ;
+ *   seule une inversion arrivée en retard provoque donc un rollback.
+ * - Sauvegardes : l'état d'avant chaque tick est copié dans un anneau de
+ *   MAX_ROLLBACK + 1 SimState réutilisés (Simulation.saveState, sans
+ *   allocation). Un pair n'avance pas s'il a déjà prédit MAX_ROLLBACK ticks
+ *   sans nouvelles d'un autre : il attend, comme un client sans état.
+ * - Réseau : chaque PEER_INPUT reprend tous les inputs que le destinataire
+ *   n'a pas encore acquittés (64 au plus), la perte d'un datagramme est donc
+ *   rattrapée par le suivant, sans retransmission.
+ * - Contrôle : tous les NetworkProtocol.HASH_INTERVAL ticks, l'empreinte du
+ *   monde d'un tick dont tous les inputs sont connus est jointe aux envois et
+ *   comparée à la nôtre ; la première différence est signalée.
+ *
+ * Tous les pairs doivent créer la session avec la même graine et la même
+ * liste de joueurs (triée ici, pour que l'ordre des inputs soit commun).
+ * advance est appelé par la boucle de jeu, onDatagram par le thread de
+ * réception : les méthodes publiques sont synchronisées.
+ */
+public final class RollbackSession {
+
+    /**
+     * Ticks qu'un pair peut simuler d'avance sans les inputs des autres
+     * (8 ticks = 133 ms à 60 Hz : au-delà d'un réseau local, il attend)
+     */
+    public static final int MAX_ROLLBACK = 8;
+
+    /**
+     * Inputs gardés par joueur (redondance des envois et inputs reçus en
+     * avance) : 64 envoyables au plus, 64 de marge
+     */
+    private static final int INPUT_WINDOW = 128;
+
+    /**
+     * Inputs au plus par PEER_INPUT (un bit chacun dans un long)
+     */
+    private static final int MAX_INPUTS_PER_DATAGRAM = 64;
+
+    /**
+     * Envoi d'un datagramme à un pair (PeerLink en UDP, file en mémoire
+     * pour les tests de charge)
+     */
+    public interface Sender {
+
+        /**
+         * @param data tableau neuf, que l'envoi peut garder
+         */
+        void send(int peerId, byte[] data, int length);
+    }
+
+    private final Simulation sim = new Simulation();
+    private final int localId;
+    private final int localIndex;
+    private final int[] playerIds;
+    private final Sender sender;
+
+    // Inputs : inversion de gravité par joueur et par tick (anneau), connus
+    // jusqu'à confirmed[i] inclus
+    private final boolean[][] inputs;
+    private final long[] confirmed;
+    private boolean pendingLocal;
+
+    // Accusés : dernier tick de nos inputs reçu par chaque pair
+    private final long[] acked;
+
+    // Sauvegardes de l'état d'avant chaque tick (anneau) et empreintes du
+    // monde d'après chaque tick
+    private final SimState[] states = new SimState[MAX_ROLLBACK + 1];
+    private final long[] hashes = new long[INPUT_WINDOW];
+    private long frame;
+    private long rollbackFrom = Long.MAX_VALUE;
+
+    // Empreintes : la dernière confirmée ici, la dernière reçue de chaque pair
+    private long checkedTick = -1;
+    private long checkedHash;
+    private final long[] peerHashTick;
+    private final long[] peerHash;
+    private final long[] peerComparedTick;
+    private long desyncTick = -1;
+
+    // Statistiques
+    private long rollbacks;
+    private long resimulatedFrames;
+    private int maxRollbackFrames;
+    private long stalls;
+    private long hashChecks;
+
+    /**
+     * @param playerIds tous les joueurs, le local compris (MAX_PLAYERS au plus)
+     */
+    public RollbackSession(long seed, int localId, int[] playerIds, Sender sender) {
+        if (playerIds.length < 1 || playerIds.length > NetworkProtocol.MAX_PLAYERS) {
+            throw new IllegalArgumentException("De 1 à " + NetworkProtocol.MAX_PLAYERS + " joueurs: "
+                    + playerIds.length);
+        }
+        this.playerIds = playerIds.clone();
+        Arrays.sort(this.playerIds);
+        this.localId = localId;
+        this.localIndex = Arrays.binarySearch(this.playerIds, localId);
+        if (localIndex < 0) {
+            throw new IllegalArgumentException("Joueur local " + localId + " absent de la partie");
+        }
+        this.sender = sender;
+
+        int n = this.playerIds.length;
+        inputs = new boolean[n][INPUT_WINDOW];
+        confirmed = new long[n];
+        acked = new long[n];
+        peerHashTick = new long[n];
+        peerHash = new long[n];
+        peerComparedTick = new long[n];
+        Arrays.fill(confirmed, -1);
+        Arrays.fill(acked, -1);
+        Arrays.fill(peerHashTick, -1);
+        Arrays.fill(peerComparedTick, -1);
+        for (int i = 0; i < states.length; i++) {
+            states[i] = new SimState();
+        }
+
+        for (int id : this.playerIds) {
+            sim.addPlayer(id);
+        }
+        sim.reset(seed);
+    }
+
+    // ==================== BOUCLE DE JEU ====================
+    /**
+     * Avance d'un tick avec l'input local, puis envoie nos inputs aux pairs
+     *
+     * @param switchGravity inversion demandée depuis le tick précédent ; si
+     * le pair attend les autres, elle est gardée pour le tick suivant
+     * @return false si le pair attend les inputs des autres (tick non joué)
+     */
+    public synchronized boolean advance(boolean switchGravity) {
+        pendingLocal |= switchGravity;
+        resolveRollback();
+        confirmHashes();
+
+        boolean advanced = frame - (minConfirmed() + 1) < MAX_ROLLBACK;
+        if (advanced) {
+            inputs[localIndex][slot(frame)] = pendingLocal;
+            confirmed[localIndex] = frame;
+            pendingLocal = false;
+            simulate();
+        } else {
+            stalls++;
+        }
+        sendInputs();
+        return advanced;
+    }
+
+    /**
+     * Applique les corrections reçues et renvoie nos inputs sans avancer
+     * (fin de partie, attente d'un pair)
+     */
+    public synchronized void synchronize() {
+        resolveRollback();
+        confirmHashes();
+        sendInputs();
+    }
+
+    /**
+     * Joue le tick frame avec les inputs connus ou prédits
+     */
+    private void simulate() {
+        sim.saveState(states[(int) (frame % states.length)]);
+        // Joueurs ajoutés à la simulation dans l'ordre de playerIds
+        long switches = 0;
+        for (int i = 0; i < playerIds.length; i++) {
+            if (frame <= confirmed[i] && inputs[i][slot(frame)]) {
+                switches |= 1L << i;
+            }
+        }
+        sim.step(switches);
+        frame++;
+        hashes[slot(frame)] = sim.getWorldHash();
+    }
+
+    /**
+     * Revient au premier tick mal prédit et resimule jusqu'au tick courant
+     */
+    private void resolveRollback() {
+        if (rollbackFrom == Long.MAX_VALUE) {
+            return;
+        }
+        long target = frame;
+        int depth = (int) (target - rollbackFrom);
+        sim.restoreState(states[(int) (rollbackFrom % states.length)]);
+        frame = rollbackFrom;
+        rollbackFrom = Long.MAX_VALUE;
+        while (frame < target) {
+            simulate();
+        }
+        rollbacks++;
+        resimulatedFrames += depth;
+        maxRollbackFrames = Math.max(maxRollbackFrames, depth);
+    }
+
+    private long minConfirmed() {
+        long min = Long.MAX_VALUE;
+        for (long c : confirmed) {
+            min = Math.min(min, c);
+        }
+        return min;
+    }
+
+    private static int slot(long frame) {
+        return (int) (frame % INPUT_WINDOW);
+    }
+
+    // ==================== EMPREINTES ====================
+    /**
+     * Retient l'empreinte des ticks multiples de HASH_INTERVAL dont tous les
+     * inputs sont connus (plus jamais resimulés)
+     */
+    private void confirmHashes() {
+        long finalTick = Math.min(minConfirmed() + 1, frame);
+        long next = checkedTick < 0 ? NetworkProtocol.HASH_INTERVAL : checkedTick + NetworkProtocol.HASH_INTERVAL;
+        while (next <= finalTick && frame - next < INPUT_WINDOW) {
+            checkedTick = next;
+            checkedHash = hashes[slot(next)];
+            next += NetworkProtocol.HASH_INTERVAL;
+        }
+        for (int i = 0; i < playerIds.length; i++) {
+            compareHash(i);
+        }
+    }
+
+    /**
+     * Compare l'empreinte reçue d'un pair à la nôtre pour le même tick
+     */
+    private void compareHash(int index) {
+        long tick = peerHashTick[index];
+        if (tick <= peerComparedTick[index] || tick > checkedTick || frame - tick >= INPUT_WINDOW) {
+            return; // Déjà comparé, pas encore confirmé ici, ou trop ancien
+        }
+        peerComparedTick[index] = tick;
+        hashChecks++;
+        if (hashes[slot(tick)] != peerHash[index] && desyncTick < 0) {
+            desyncTick = tick;
+            System.err.println("[ROLLBACK] Désynchronisation avec le joueur " + playerIds[index] + " au tick "
+                    + tick + " : " + Long.toHexString(hashes[slot(tick)]) + " ici, "
+                    + Long.toHexString(peerHash[index]) + " chez lui\n" + sim.dump());
+        }
+    }
+
+    // ==================== RÉSEAU ====================
+    /**
+     * Envoie à chaque pair nos inputs qu'il n'a pas encore acquittés
+     */
+    private void sendInputs() {
+        long last = confirmed[localIndex];
+        for (int i = 0; i < playerIds.length; i++) {
+            if (i == localIndex) {
+                continue;
+            }
+            long first = acked[i] + 1;
+            int count = (int) Math.min(last - first + 1, MAX_INPUTS_PER_DATAGRAM);
+            long bits = 0;
+            for (int k = 0; k < count; k++) {
+                if (inputs[localIndex][slot(first + k)]) {
+                    bits |= 1L << k;
+                }
+            }
+            Messages.PeerInput message = new Messages.PeerInput(localId, first, Math.max(count, 0), bits,
+                    confirmed[i], checkedTick, checkedHash);
+            byte[] data = Messages.toBytes(message);
+            sender.send(playerIds[i], data, data.length);
+        }
+    }
+
+    /**
+     * Datagramme reçu d'un pair
+     *
+     * @param fromId joueur dont l'adresse a envoyé le datagramme : un pair
+     * ne peut annoncer que ses propres inputs
+     */
+    public synchronized void onDatagram(int fromId, byte[] data, int length) {
+        Messages.UdpMessage message;
+        try {
+            message = Messages.decodeUdp(data, length);
+        } catch (RuntimeException e) {
+            return; // Datagramme illisible
+        }
+        if (message instanceof Messages.PeerInput input && input.playerId() == fromId) {
+            onPeerInput(input);
+        }
+    }
+
+    private void onPeerInput(Messages.PeerInput input) {
+        int index = Arrays.binarySearch(playerIds, input.playerId());
+        if (index < 0 || index == localIndex) {
+            return;
+        }
+        acked[index] = Math.max(acked[index], input.ack());
+
+        // Inputs à la suite de ceux déjà connus (les répétitions sont ignorées)
+        long known = confirmed[index];
+        long end = input.frame() + Math.min(input.count(), MAX_INPUTS_PER_DATAGRAM);
+        if (input.frame() <= known + 1 && end - 1 > known && end - 1 - frame < INPUT_WINDOW - MAX_ROLLBACK) {
+            for (long f = known + 1; f < end; f++) {
+                boolean pressed = (input.inputs() >>> (f - input.frame()) & 1) != 0;
+                inputs[index][slot(f)] = pressed;
+                if (pressed && f < frame) {
+                    rollbackFrom = Math.min(rollbackFrom, f); // Prédit "rien", joué trop tôt
+                }
+            }
+            confirmed[index] = end - 1;
+        }
+
+        if (input.hashTick() > peerHashTick[index]) {
+            peerHashTick[index] = input.hashTick();
+            peerHash[index] = input.worldHash();
+        }
+    }
+
+    // ==================== LECTURE ====================
+    /**
+     * Simulation à afficher (état prédit du tick courant). À ne lire que
+     * depuis le thread qui appelle advance, ou sous le verrou de la session.
+     */
+    public Simulation getSimulation() {
+        return sim;
+    }
+
+    public int getLocalId() {
+        return localId;
+    }
+
+    /**
+     * Joueurs de la partie par numéro croissant (ordre des bits d'input)
+     */
+    public int[] getPlayerIds() {
+        return playerIds.clone();
+    }
+
+    /**
+     * Prochain tick à jouer
+     */
+    public synchronized long getFrame() {
+        return frame;
+    }
+
+    /**
+     * Dernier tick dont les inputs de tous les joueurs sont connus
+     */
+    public synchronized long getConfirmedFrame() {
+        return minConfirmed();
+    }
+
+    /**
+     * Premier tick où l'empreinte d'un pair diffère de la nôtre, -1 si aucun
+     */
+    public synchronized long getDesyncTick() {
+        return desyncTick;
+    }
+
+    /**
+     * Dernier tick dont l'empreinte est confirmée ici, -1 si aucun
+     */
+    public synchronized long getCheckedTick() {
+        return checkedTick;
+    }
+
+    public synchronized long getRollbacks() {
+        return rollbacks;
+    }
+
+    public synchronized long getResimulatedFrames() {
+        return resimulatedFrames;
+    }
+
+    public synchronized int getMaxRollbackFrames() {
+        return maxRollbackFrames;
+    }
+
+    /**
+     * Appels à advance où le pair a attendu les autres
+     */
+    public synchronized long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Empreintes de pairs comparées aux nôtres
+     */
+    public synchronized long getHashChecks() {
+        return hashChecks;
+    }
+}
@@ -0,0 +1,427 @@
+package network;
+
+import core.sim.SimHole;
+import core.sim.SimObstacle;
+import core.sim.SimPlayer;
+import core.sim.Simulation;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Salle de jeu : une partie indépendante hébergée par un GameServer
+ *
+ * Chaque salle possède sa propre simulation, ses joueurs et son compteur de
+ * ticks. Un serveur dédié peut héberger plusieurs salles en parallèle, toutes
+ * cadencées par le même pool de threads. Les méthodes qui touchent à la
+ * simulation sont synchronisées sur la salle.
+ *
+ * Les trous et obstacles ne font que reculer de GameConfig.GAME_SPEED par
+ * tick : chacun est transmis une seule fois, à son apparition (spawn event,
+ * takeSpawns), et les clients en déduisent la position au tick de simulation
+ * joint à chaque état (simTick, figé en fin de manche). Les états de chaque
+ * tick ne portent plus que les joueurs ; l'état complet, avec
+ * les positions des dangers, n'est encodé que pour des clients en protocole
+ * 5 ou moins (legacySnapshot).
+ */
+public class Room {
+
+    /**
+     * Pause entre la fin d'une manche et le retour au lobby (mode dédié)
+     */
+    static final int END_OF_MATCH_DELAY_TICKS = NetworkProtocol.TICK_RATE * 3;
+
+    private static final long TICK_PERIOD_NANOS = 1_000_000_000L / NetworkProtocol.TICK_RATE;
+
+    private final int roomId;
+    private final Simulation simulation = new Simulation();
+    private final Map<Integer, String> playerNames = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> lastInputs = new HashMap<>(); // Sous le verrou de la salle
+
+    // État de la manche
+    private volatile boolean gameStarted;
+    private long gameSeed;
+    private long currentTick;
+    private long matchEndTick = -1;
+    private long lastHashedTick = -1;
+
+    // Dangers déjà annoncés (numéro d'apparition le plus élevé) et annonce
+    // du dernier tick, à diffuser par le serveur
+    private int lastSpawnedId = -1;
+    private final JsonWriter spawnWriter = new JsonWriter(256);
+    private String pendingSpawn;
+
+    // État complet du dernier tick pour les clients d'avant HAZARD_SPAWN,
+    // encodé à la demande
+    private final JsonWriter legacyWriter = new JsonWriter(1024);
+    private boolean lastSnapshotHashes;
+    private long legacyTick = -1;
+    private byte[] legacySnapshot;
+
+    // Encodage des états, réutilisé d'un tick à l'autre (sous le verrou de la salle)
+    private final JsonWriter snapshotWriter = new JsonWriter(1024);
+
+    // Tâche planifiée sur le pool de ticks partagé du serveur (partie
+    // hébergée comme serveur dédié)
+    ScheduledFuture<?> tickTask;
+
+    // Mesures de la boucle de ticks
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private volatile long tickCount;
+    private volatile long overrunCount;
+
+    // Retard de la boucle de ticks : échéance du prochain tick (thread de
+    // tick uniquement) et nombre de ticks dus en attente au dernier départ
+    private long nextTickDue;
+    private boolean tickDueSet;
+    private volatile int tickBacklog;
+
+    public Room(int roomId) {
+        this.roomId = roomId;
+    }
+
+    // ==================== JOUEURS ====================
+    public synchronized void addPlayer(int playerId, String playerName) {
+        playerNames.put(playerId, playerName);
+        simulation.addPlayer(playerId);
+    }
+
+    public synchronized void removePlayer(int playerId) {
+        playerNames.remove(playerId);
+        lastInputs.remove(playerId);
+        simulation.removePlayer(playerId);
+    }
+
+    public synchronized void switchGravity(int playerId) {
+        if (gameStarted) {
+            simulation.switchGravity(playerId);
+        }
+    }
+
+    /**
+     * Applique un INPUT ; son numéro est renvoyé dans les états suivants
+     * (lastInput) pour que le client mesure le délai d'application
+     */
+    public synchronized void applyInput(int playerId, long sequence, boolean gravitySwitch) {
+        if (gravitySwitch) {
+            switchGravity(playerId);
+        }
+        lastInputs.merge(playerId, sequence, Math::max);
+    }
+
+    public boolean hasPlayer(int playerId) {
+        return playerNames.containsKey(playerId);
+    }
+
+    public int getPlayerCount() {
+        return playerNames.size();
+    }
+
+    public Set<Integer> getPlayerIds() {
+        return playerNames.keySet();
+    }
+
+    public String getPlayerName(int playerId) {
+        String name = playerNames.get(playerId);
+        return name != null ? name : "Joueur " + playerId;
+    }
+
+    /**
+     * La salle peut accueillir un nouveau joueur
+     */
+    public boolean isJoinable() {
+        return !gameStarted && getPlayerCount() < NetworkProtocol.MAX_PLAYERS;
+    }
+
+    // ==================== MANCHE ====================
+    public synchronized void startMatch(long seed) {
+        gameSeed = seed;
+        simulation.reset(seed);
+        matchEndTick = -1;
+        lastHashedTick = -1;
+        lastSpawnedId = -1;
+        pendingSpawn = null;
+        gameStarted = true;
+    }
+
+    /**
+     * Fin de manche : l'état propre à la manche (simulation, annonces de
+     * dangers, numéros d'inputs) est effacé, la suivante repart de zéro
+     */
+    public synchronized void returnToLobby() {
+        gameStarted = false;
+        simulation.reset(gameSeed);
+        matchEndTick = -1;
+        lastSpawnedId = -1;
+        pendingSpawn = null;
+        lastInputs.clear();
+    }
+
+    /**
+     * Un tick de simulation autonome.
+     *
+     * @return l'état encodé à diffuser, ou null si aucune manche n'est en cours
+     */
+    public byte[] tick() {
+        long start = System.nanoTime();
+        byte[] snapshot;
+        synchronized (this) {
+            if (!gameStarted) {
+                return null;
+            }
+            simulation.step();
+            if (simulation.isFinished() && matchEndTick < 0) {
+                matchEndTick = currentTick + END_OF_MATCH_DELAY_TICKS;
+            }
+            snapshot = buildSnapshot();
+            collectSpawns();
+        }
+        recordTick(System.nanoTime() - start);
+        return snapshot;
+    }
+
+    private void recordTick(long nanos) {
+        lastTickNanos = nanos;
+        if (nanos > maxTickNanos) {
+            maxTickNanos = nanos;
+        }
+        tickCount++;
+        if (nanos > TICK_PERIOD_NANOS) {
+            overrunCount++;
+        }
+    }
+
+    /**
+     * Début d'une exécution planifiée du tick : un pool saturé exécute les
+     * ticks en retard à la suite, le retard sur l'échéance donne donc le
+     * nombre de ticks en attente
+     */
+    void recordTickStart(long now) {
+        if (!tickDueSet) {
+            nextTickDue = now;
+            tickDueSet = true;
+        }
+        tickBacklog = (int) Math.max(0, (now - nextTickDue) / TICK_PERIOD_NANOS);
+        nextTickDue += TICK_PERIOD_NANOS;
+    }
+
+    /**
+     * La manche est terminée et la pause de fin est écoulée
+     */
+    public synchronized boolean isMatchOver() {
+        return gameStarted && matchEndTick >= 0 && currentTick >= matchEndTick;
+    }
+
+    /**
+     * Encode l'état courant de la salle (message GAME_STATE) et avance le
+     * compteur de ticks diffusés. Les positions sont arrondies au centième de
+     * pixel, bien en dessous de ce qu'affiche un client.
+     */
+    public synchronized byte[] buildSnapshot() {
+        currentTick++;
+
+        // Empreintes calculées à chaque tick par la simulation, jointes
+        // périodiquement pour que les clients vérifient leur copie
+        long simTick = simulation.getTick();
+        boolean hashes = simTick > 0 && simTick % NetworkProtocol.HASH_INTERVAL == 0 && simTick != lastHashedTick;
+        if (hashes) {
+            lastHashedTick = simTick;
+        }
+        lastSnapshotHashes = hashes;
+        return writeState(snapshotWriter.reset(), hashes, false, false);
+    }
+
+    /**
+     * État du dernier tick diffusé avec la position de chaque danger, pour
+     * les clients en protocole 5 ou moins. Encodé une fois par tick, au
+     * premier client qui en a besoin.
+     */
+    public synchronized byte[] legacySnapshot() {
+        if (legacyTick != currentTick) {
+            legacySnapshot = writeState(legacyWriter.reset(), lastSnapshotHashes, true, false);
+            legacyTick = currentTick;
+        }
+        return legacySnapshot;
+    }
+
+    /**
+     * Repère les dangers apparus pendant le tick (numéros plus grands que le
+     * dernier annoncé, toujours en fin de liste) et prépare leur annonce :
+     * leur position est celle de l'état qui vient d'être encodé, au tick de
+     * simulation courant
+     */
+    private void collectSpawns() {
+        List<SimHole> holes = simulation.getHoles();
+        List<SimObstacle> obstacles = simulation.getObstacles();
+        int newest = lastSpawnedId;
+        long simTick = simulation.getTick();
+        int firstHole = holes.size();
+        while (firstHole > 0 && holes.get(firstHole - 1).getId() > lastSpawnedId) {
+            firstHole--;
+        }
+        int firstObstacle = obstacles.size();
+        while (firstObstacle > 0 && obstacles.get(firstObstacle - 1).getId() > lastSpawnedId) {
+            firstObstacle--;
+        }
+        if (firstHole == holes.size() && firstObstacle == obstacles.size()) {
+            return;
+        }
+
+        JsonWriter w = spawnWriter.reset()
+                .beginObject()
+                .put("type", NetworkProtocol.TcpMessageType.HAZARD_SPAWN.name())
+                .name("hazards").beginArray();
+        for (int i = firstHole; i < holes.size(); i++) {
+            SimHole h = holes.get(i);
+            Messages.Hazard.writeHole(w, h.getId(), simTick, h.getX(), h.getWidth());
+            newest = Math.max(newest, h.getId());
+        }
+        for (int i = firstObstacle; i < obstacles.size(); i++) {
+            SimObstacle o = obstacles.get(i);
+            Messages.Hazard.writeObstacle(w, o.getId(), simTick, o.getX(), o.getY(), o.getWidth(),
+                    o.getHeight());
+            newest = Math.max(newest, o.getId());
+        }
+        pendingSpawn = w.endArray().endObject().toString();
+        lastSpawnedId = newest;
+    }
+
+    /**
+     * Annonce HAZARD_SPAWN des dangers apparus au dernier tick, null si aucun
+     * (une seule fois par tick)
+     */
+    public synchronized String takeSpawns() {
+        String spawn = pendingSpawn;
+        pendingSpawn = null;
+        return spawn;
+    }
+
+    /**
+     * Image complète de la manche en cours pour un joueur qui reprend sa
+     * session : le même GAME_STATE, au tick déjà diffusé, avec les
+     * empreintes du tick courant pour que le client vérifie aussitôt sa
+     * copie, et les dangers sous les deux formes (positions, et annonces
+     * pour le protocole 6). Null hors manche.
+     */
+    public synchronized Messages.Resync buildKeyframe() {
+        if (!gameStarted) {
+            return null;
+        }
+        byte[] state = writeState(new JsonWriter(1024), simulation.getTick() > 0, true, true);
+        return Messages.Resync.of(gameSeed, currentTick, state);
+    }
+
+    /**
+     * @param positions positions des trous et obstacles ("holes",
+     * "obstacles", protocole 5 ou moins)
+     * @param spawns dangers présents sous forme d'annonces ("hazards")
+     */
+    private byte[] writeState(JsonWriter w, boolean hashes, boolean positions, boolean spawns) {
+        // Champs décrits par Messages.GameState, écrits sans créer de records
+        w.beginObject().put("type", NetworkProtocol.UdpMessageType.GAME_STATE.name());
+        Messages.GameState.writeHeader(w, currentTick, System.currentTimeMillis(),
+                simulation.isFinishLineActive() ? simulation.getFinishLineX() : -1, simulation.getWinnerId());
+        long simTick = simulation.getTick();
+        if (!positions || spawns) {
+            Messages.GameState.writeSimTick(w, simTick);
+        }
+        if (hashes) {
+            Messages.GameState.writeHashes(w, simTick, simulation.getHazardHash(),
+                    simulation.getWorldHash());
+        }
+
+        w.name("players").beginArray();
+        for (SimPlayer p : simulation.getPlayers()) {
+            w.beginObject();
+            Messages.PlayerState.writeFields(w, p.getPlayerId(), getPlayerName(p.getPlayerId()),
+                    NetworkProtocol.playerColor(p.getPlayerId()), p.getX(), p.getY(), p.getVelocityY(),
+                    p.getGravity().name(), p.isAlive(), p.getScore(),
+                    lastInputs.getOrDefault(p.getPlayerId(), 0L));
+            w.endObject();
+        }
+        w.endArray();
+
+        if (positions) {
+            w.name("holes").beginArray();
+            for (SimHole h : simulation.getHoles()) {
+                Messages.HoleState.write(w, h.getX(), h.getWidth());
+            }
+            w.endArray();
+
+            w.name("obstacles").beginArray();
+            for (SimObstacle o : simulation.getObstacles()) {
+                Messages.ObstacleState.write(w, o.getX(), o.getY(), o.getWidth(), o.getHeight());
+            }
+            w.endArray();
+        }
+
+        if (spawns) {
+            w.name("hazards").beginArray();
+            for (SimHole h : simulation.getHoles()) {
+                Messages.Hazard.writeHole(w, h.getId(), simTick, h.getX(), h.getWidth());
+            }
+            for (SimObstacle o : simulation.getObstacles()) {
+                Messages.Hazard.writeObstacle(w, o.getId(), simTick, o.getX(), o.getY(), o.getWidth(),
+                        o.getHeight());
+            }
+            w.endArray();
+        }
+
+        // Copie : le tableau est partagé entre les joueurs et peut être gardé
+        // par le transport (émulateur de liaison, transport en mémoire)
+        return w.endObject().toByteArray();
+    }
+
+    // ==================== ACCESSEURS ====================
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public boolean isGameStarted() {
+        return gameStarted;
+    }
+
+    public long getGameSeed() {
+        return gameSeed;
+    }
+
+    public synchronized int getWinnerId() {
+        return simulation.getWinnerId();
+    }
+
+    public synchronized List<SimPlayer> getPlayers() {
+        return new ArrayList<>(simulation.getPlayers());
+    }
+
+    public synchronized List<SimHole> getHoles() {
+        return new ArrayList<>(simulation.getHoles());
+    }
+
+    public synchronized List<SimObstacle> getObstacles() {
+        return new ArrayList<>(simulation.getObstacles());
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * Ticks dus mais pas encore exécutés au dernier départ de tick
+     */
+    public int getTickBacklog() {
+        return tickBacklog;
+    }
+}
@@ -0,0 +1,358 @@
+package network;
+
+import core.WindowedHistogram;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Mesures de santé d'un GameServer, exposées en JMX et en texte
+ *
+ * Écriture (threads de tick et de réception UDP) : LongAdder et
+ * WindowedHistogram, sans verrou ni allocation. Les jauges (salles, joueurs,
+ * retard des ticks) sont calculées au moment de la lecture à partir des
+ * champs volatils des salles : ni la lecture ni l'écriture ne prennent de
+ * verrou, en particulier pas celui du pool de ticks.
+ *
+ * Lecture : un client JMX lit les attributs un par un ; les résumés
+ * d'histogramme sont donc gardés SUMMARY_CACHE_NANOS pour qu'une lecture
+ * complète ne refasse pas le calcul à chaque attribut.
+ */
+public final class ServerMetrics implements ServerMetricsMBean {
+
+    private static final long SUMMARY_CACHE_NANOS = 250_000_000L;
+
+    private final GameServer server;
+    private final long startNanos = System.nanoTime();
+
+    // Ticks (durée simulation + envoi, en µs)
+    private final LongAdder ticksRun = new LongAdder();
+    private final LongAdder ticksOverrun = new LongAdder();
+    private final LongAdder tickNanos = new LongAdder();
+    private final WindowedHistogram tickDuration = new WindowedHistogram();
+
+    // États diffusés (taille d'un GAME_STATE, en octets)
+    private final LongAdder snapshotsSent = new LongAdder();
+    private final LongAdder snapshotBytesSent = new LongAdder();
+    private final WindowedHistogram snapshotSize = new WindowedHistogram();
+
+    // Inputs
+    private final LongAdder inputsReceived = new LongAdder();
+    private final LongAdder inputsDuplicate = new LongAdder();
+    private final LongAdder inputsRejected = new LongAdder();
+    private final LongAdder datagramsMalformed = new LongAdder();
+    private final LongAdder datagramsUnrouted = new LongAdder();
+    private final LongAdder datagramRebinds = new LongAdder();
+
+    // Résumés mis en cache pour la lecture
+    private volatile WindowedHistogram.Summary tickSummary = WindowedHistogram.Summary.EMPTY;
+    private volatile WindowedHistogram.Summary snapshotSummary = WindowedHistogram.Summary.EMPTY;
+    private volatile long summaryNanos = System.nanoTime() - SUMMARY_CACHE_NANOS;
+
+    private ObjectName objectName;
+
+    ServerMetrics(GameServer server) {
+        this.server = server;
+    }
+
+    // ==================== ENREGISTREMENT ====================
+    /**
+     * Un tick de salle terminé (simulation + envoi de l'état)
+     */
+    void onTick(long nanos) {
+        ticksRun.increment();
+        tickNanos.add(nanos);
+        if (nanos > 1_000_000_000L / NetworkProtocol.TICK_RATE) {
+            ticksOverrun.increment();
+        }
+        tickDuration.record(nanos / 1000);
+    }
+
+    /**
+     * Un GAME_STATE de size octets envoyé à recipients joueurs
+     */
+    void onSnapshot(int size, int recipients) {
+        snapshotsSent.add(recipients);
+        snapshotBytesSent.add((long) size * recipients);
+        snapshotSize.record(size);
+    }
+
+    void onInputReceived() {
+        inputsReceived.increment();
+    }
+
+    void onInputDuplicate() {
+        inputsDuplicate.increment();
+    }
+
+    /**
+     * Input d'un joueur inconnu ou qui se fait passer pour un autre
+     */
+    void onInputRejected() {
+        inputsRejected.increment();
+    }
+
+    void onMalformedDatagram() {
+        datagramsMalformed.increment();
+    }
+
+    /**
+     * Datagramme dont le jeton de routage ne correspond à aucun client
+     */
+    void onUnroutedDatagram() {
+        datagramsUnrouted.increment();
+    }
+
+    /**
+     * Client dont les datagrammes arrivent d'une nouvelle adresse (NAT)
+     */
+    void onDatagramRebind() {
+        datagramRebinds.increment();
+    }
+
+    // ==================== JMX ====================
+    /**
+     * Enregistre les mesures sur le serveur MBean de la JVM
+     */
+    void register() {
+        try {
+            MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("voidrunner:type=GameServer,port=" + server.getTcpPort());
+            if (!mbeans.isRegistered(objectName)) {
+                mbeans.registerMBean(this, objectName);
+            }
+            System.out.println("[METRICS] MBean enregistré: " + objectName);
+        } catch (Exception e) {
+            System.err.println("[METRICS] Enregistrement JMX impossible: " + e.getMessage());
+            objectName = null;
+        }
+    }
+
+    void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception ignored) {
+        }
+        objectName = null;
+    }
+
+    // ==================== LECTURE ====================
+    @Override
+    public int getRooms() {
+        return server.getRooms().size();
+    }
+
+    @Override
+    public int getMaxRooms() {
+        return server.getMaxRooms();
+    }
+
+    @Override
+    public int getPlayers() {
+        int players = 0;
+        for (Room room : server.getRooms()) {
+            players += room.getPlayerCount();
+        }
+        return players;
+    }
+
+    @Override
+    public long getUptimeSeconds() {
+        return (System.nanoTime() - startNanos) / 1_000_000_000L;
+    }
+
+    @Override
+    public long getTicksRun() {
+        return ticksRun.sum();
+    }
+
+    @Override
+    public long getTicksOverrun() {
+        return ticksOverrun.sum();
+    }
+
+    /**
+     * Durée cumulée des ticks, en nanosecondes
+     */
+    public long getTickNanos() {
+        return tickNanos.sum();
+    }
+
+    @Override
+    public double getTickMeanMicros() {
+        return tickSummary().mean();
+    }
+
+    @Override
+    public long getTickP50Micros() {
+        return tickSummary().p50();
+    }
+
+    @Override
+    public long getTickP90Micros() {
+        return tickSummary().p90();
+    }
+
+    @Override
+    public long getTickP99Micros() {
+        return tickSummary().p99();
+    }
+
+    @Override
+    public long getTickMaxMicros() {
+        return tickSummary().max();
+    }
+
+    @Override
+    public long getSnapshotsSent() {
+        return snapshotsSent.sum();
+    }
+
+    @Override
+    public long getSnapshotBytesSent() {
+        return snapshotBytesSent.sum();
+    }
+
+    @Override
+    public double getSnapshotMeanBytes() {
+        refreshSummaries();
+        return snapshotSummary.mean();
+    }
+
+    @Override
+    public long getSnapshotMaxBytes() {
+        refreshSummaries();
+        return snapshotSummary.max();
+    }
+
+    @Override
+    public int getTickQueueDepth() {
+        int backlog = 0;
+        for (Room room : server.getRooms()) {
+            backlog += room.getTickBacklog();
+        }
+        return backlog;
+    }
+
+    @Override
+    public long getInputsReceived() {
+        return inputsReceived.sum();
+    }
+
+    @Override
+    public long getInputsDuplicate() {
+        return inputsDuplicate.sum();
+    }
+
+    @Override
+    public long getInputsRejected() {
+        return inputsRejected.sum();
+    }
+
+    @Override
+    public long getDatagramsMalformed() {
+        return datagramsMalformed.sum();
+    }
+
+    @Override
+    public long getDatagramsUnrouted() {
+        return datagramsUnrouted.sum();
+    }
+
+    @Override
+    public long getDatagramRebinds() {
+        return datagramRebinds.sum();
+    }
+
+    private WindowedHistogram.Summary tickSummary() {
+        refreshSummaries();
+        return tickSummary;
+    }
+
+    /**
+     * Recalcule les résumés s'ils ont plus de SUMMARY_CACHE_NANOS (deux
+     * lecteurs simultanés peuvent les recalculer tous les deux : sans
+     * conséquence)
+     */
+    private void refreshSummaries() {
+        long now = System.nanoTime();
+        if (now - summaryNanos < SUMMARY_CACHE_NANOS) {
+            return;
+        }
+        tickSummary = tickDuration.summarize();
+        snapshotSummary = snapshotSize.summarize();
+        summaryNanos = now;
+    }
+
+    // ==================== FORMAT TEXTE ====================
+    /**
+     * Mesures au format texte de Prometheus (une ligne par valeur, précédée
+     * de HELP et TYPE), servi par MetricsHttpServer
+     */
+    public String formatText() {
+        refreshSummaries();
+        WindowedHistogram.Summary tick = tickSummary;
+        StringBuilder sb = new StringBuilder(2048);
+        gauge(sb, "voidrunner_rooms", "Salles ouvertes", getRooms());
+        gauge(sb, "voidrunner_rooms_max", "Salles simultanées autorisées", getMaxRooms());
+        gauge(sb, "voidrunner_players", "Joueurs dans les salles", getPlayers());
+        gauge(sb, "voidrunner_uptime_seconds", "Durée depuis le démarrage", getUptimeSeconds());
+        counter(sb, "voidrunner_ticks_total", "Ticks de salle exécutés", getTicksRun());
+        counter(sb, "voidrunner_tick_overruns_total", "Ticks ayant dépassé 1/TICK_RATE s", getTicksOverrun());
+        counter(sb, "voidrunner_tick_seconds_total", "Durée cumulée des ticks", getTickNanos() / 1e9);
+        sb.append("# HELP voidrunner_tick_duration_seconds Durée d'un tick sur les ")
+                .append(WindowedHistogram.SLOTS).append(" dernières secondes\n");
+        sb.append("# TYPE voidrunner_tick_duration_seconds summary\n");
+        quantile(sb, "voidrunner_tick_duration_seconds", "0.5", tick.p50() / 1e6);
+        quantile(sb, "voidrunner_tick_duration_seconds", "0.9", tick.p90() / 1e6);
+        quantile(sb, "voidrunner_tick_duration_seconds", "0.99", tick.p99() / 1e6);
+        gauge(sb, "voidrunner_tick_duration_max_seconds", "Tick le plus long récent", tick.max() / 1e6);
+        counter(sb, "voidrunner_snapshots_sent_total", "GAME_STATE envoyés (un par joueur)", getSnapshotsSent());
+        counter(sb, "voidrunner_snapshot_bytes_sent_total", "Octets de GAME_STATE envoyés", getSnapshotBytesSent());
+        gauge(sb, "voidrunner_snapshot_bytes_max", "Plus gros GAME_STATE récent", snapshotSummary.max());
+        gauge(sb, "voidrunner_tick_queue_depth", "Ticks dus mais pas encore exécutés", getTickQueueDepth());
+        counter(sb, "voidrunner_inputs_received_total", "Inputs reçus", getInputsReceived());
+        counter(sb, "voidrunner_inputs_duplicate_total", "Inputs ignorés car déjà reçus", getInputsDuplicate());
+        counter(sb, "voidrunner_inputs_rejected_total", "Inputs de joueurs inconnus ou usurpés", getInputsRejected());
+        counter(sb, "voidrunner_datagrams_malformed_total", "Datagrammes illisibles", getDatagramsMalformed());
+        counter(sb, "voidrunner_datagrams_unrouted_total", "Datagrammes au jeton de routage inconnu",
+                getDatagramsUnrouted());
+        counter(sb, "voidrunner_datagram_rebinds_total", "Changements d'adresse UDP d'un client",
+                getDatagramRebinds());
+        return sb.toString();
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, double value) {
+        metric(sb, name, help, "gauge", value);
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, double value) {
+        metric(sb, name, help, "counter", value);
+    }
+
+    private static void metric(StringBuilder sb, String name, String help, String type, double value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ');
+        appendNumber(sb, value);
+        sb.append('\n');
+    }
+
+    private static void quantile(StringBuilder sb, String name, String q, double value) {
+        sb.append(name).append("{quantile=\"").append(q).append("\"} ");
+        appendNumber(sb, value);
+        sb.append('\n');
+    }
+
+    private static void appendNumber(StringBuilder sb, double value) {
+        if (value == (long) value) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package network;
+
+/**
+ * Interface JMX des mesures d'un GameServer (jconsole, VisualVM, agents JMX)
+ *
+ * Enregistrée sous voidrunner:type=GameServer,port=&lt;port TCP&gt;. Les
+ * centiles portent sur les WindowedHistogram.SLOTS dernières secondes, les
+ * compteurs sur toute la durée du serveur.
+ */
+public interface ServerMetricsMBean {
+
+    // Charge
+    int getRooms();
+
+    int getMaxRooms();
+
+    int getPlayers();
+
+    long getUptimeSeconds();
+
+    // Ticks
+    long getTicksRun();
+
+    long getTicksOverrun();
+
+    double getTickMeanMicros();
+
+    long getTickP50Micros();
+
+    long getTickP90Micros();
+
+    long getTickP99Micros();
+
+    long getTickMaxMicros();
+
+    // États diffusés
+    long getSnapshotsSent();
+
+    long getSnapshotBytesSent();
+
+    double getSnapshotMeanBytes();
+
+    long getSnapshotMaxBytes();
+
+    // File des ticks : ticks dus mais pas encore exécutés, toutes salles
+    int getTickQueueDepth();
+
+    // Inputs
+    long getInputsReceived();
+
+    long getInputsDuplicate();
+
+    long getInputsRejected();
+
+    long getDatagramsMalformed();
+
+    // Routage des datagrammes (protocole 5)
+    long getDatagramsUnrouted();
+
+    long getDatagramRebinds();
+}
@@ -0,0 +1,233 @@
+package network;
+
+import java.io.IOException;
+import java.net.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Mesure de la latence des serveurs découverts sur le LAN
+ *
+ * Envoie de petits datagrammes PROBE à tous les serveurs en parallèle (sans
+ * attendre la réponse du précédent) et tient pour chacun une estimation
+ * glissante du RTT, de sa variation et du taux de perte, écrite dans son
+ * ServerInfo. Le serveur répond par un PROBE_REPLY sur son port UDP de jeu
+ * (ou celui du matchmaker), ce qui mesure le chemin réellement utilisé en
+ * partie.
+ *
+ * Le débit total est plafonné par un seau à jetons : chaque serveur est sondé
+ * au plus une fois par PROBE_INTERVAL, et moins souvent si le LAN compte
+ * beaucoup de serveurs.
+ */
+public class ServerProber {
+
+    /**
+     * Intervalle entre deux sondes d'un même serveur
+     */
+    private static final long PROBE_INTERVAL = 1000;
+
+    /**
+     * Une sonde sans réponse après ce délai est comptée perdue
+     */
+    private static final long PROBE_TIMEOUT = 1000;
+
+    /**
+     * Sondes envoyées au plus par seconde, tous serveurs confondus
+     */
+    private static final double MAX_PROBES_PER_SECOND = 20;
+
+    /**
+     * Poids d'un nouvel échantillon dans les moyennes glissantes (comme
+     * l'estimateur de RTT de TCP)
+     */
+    private static final double RTT_GAIN = 0.125;
+    private static final double RTTVAR_GAIN = 0.25;
+    private static final double LOSS_GAIN = 0.1;
+
+    private final Supplier<Collection<LANDiscovery.ServerInfo>> servers;
+    private DatagramSocket socket;
+    private volatile boolean running;
+    private Thread thread;
+
+    // Sondes en vol : numéro -> serveur et instant d'envoi
+    private final Map<Integer, PendingProbe> pending = new HashMap<>();
+    private int nextSeq;
+    private double tokens = MAX_PROBES_PER_SECOND;
+    private long lastRefill = System.nanoTime();
+
+    private static final class PendingProbe {
+
+        final LANDiscovery.ServerInfo server;
+        final long sentAt;
+
+        PendingProbe(LANDiscovery.ServerInfo server, long sentAt) {
+            this.server = server;
+            this.sentAt = sentAt;
+        }
+    }
+
+    /**
+     * @param servers liste courante des serveurs à sonder (relue à chaque
+     * tour)
+     */
+    public ServerProber(Supplier<Collection<LANDiscovery.ServerInfo>> servers) {
+        this.servers = servers;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::probeLoop, "LAN-Probe");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (socket != null) {
+            socket.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // ==================== BOUCLE ====================
+    private void probeLoop() {
+        try {
+            socket = new DatagramSocket();
+            socket.setSoTimeout(20);
+            byte[] buffer = new byte[256];
+
+            while (running) {
+                long now = System.nanoTime();
+                sendDueProbes(now);
+                expireProbes(now);
+
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    processReply(packet.getData(), packet.getLength(), System.nanoTime());
+                } catch (SocketTimeoutException e) {
+                    // Normal, permet d'envoyer les sondes suivantes
+                }
+            }
+        } catch (Exception e) {
+            if (running) {
+                System.err.println("[LAN] Erreur sondes: " + e.getMessage());
+            }
+        } finally {
+            if (socket != null && !socket.isClosed()) {
+                socket.close();
+            }
+        }
+    }
+
+    private void sendDueProbes(long now) {
+        // Recharger le seau
+        tokens = Math.min(MAX_PROBES_PER_SECOND,
+                tokens + (now - lastRefill) / 1e9 * MAX_PROBES_PER_SECOND);
+        lastRefill = now;
+
+        // Les serveurs en attente depuis le plus longtemps d'abord
+        List<LANDiscovery.ServerInfo> due = new ArrayList<>();
+        for (LANDiscovery.ServerInfo server : servers.get()) {
+            if (now >= server.nextProbeAt) {
+                due.add(server);
+            }
+        }
+        due.sort(Comparator.comparingLong(s -> s.nextProbeAt));
+
+        for (LANDiscovery.ServerInfo server : due) {
+            if (tokens < 1) {
+                return;
+            }
+            tokens--;
+            server.nextProbeAt = now + PROBE_INTERVAL * 1_000_000L;
+
+            int seq = nextSeq++;
+            byte[] data = Messages.toBytes(new Messages.Probe(seq));
+            try {
+                socket.send(new DatagramPacket(data, data.length,
+                        InetAddress.getByName(server.address), server.probePort));
+                pending.put(seq, new PendingProbe(server, now));
+            } catch (IOException e) {
+                recordLoss(server);
+            }
+        }
+    }
+
+    private void expireProbes(long now) {
+        Iterator<PendingProbe> it = pending.values().iterator();
+        while (it.hasNext()) {
+            PendingProbe probe = it.next();
+            if (now - probe.sentAt > PROBE_TIMEOUT * 1_000_000L) {
+                it.remove();
+                recordLoss(probe.server);
+            }
+        }
+    }
+
+    private void processReply(byte[] data, int length, long now) {
+        Messages.UdpMessage msg;
+        try {
+            msg = Messages.decodeUdp(data, length);
+        } catch (IllegalStateException e) {
+            return; // Datagramme malformé
+        }
+        if (!(msg instanceof Messages.ProbeReply reply)) {
+            return;
+        }
+        PendingProbe probe = pending.remove(reply.seq());
+        if (probe == null) {
+            return; // Réponse expirée ou dupliquée
+        }
+        recordRtt(probe.server, (now - probe.sentAt) / 1e6);
+    }
+
+    // ==================== ESTIMATIONS ====================
+    private static void recordRtt(LANDiscovery.ServerInfo server, double rtt) {
+        if (server.rttMs < 0) {
+            server.rttMs = rtt;
+            server.jitterMs = rtt / 2;
+        } else {
+            server.jitterMs += RTTVAR_GAIN * (Math.abs(server.rttMs - rtt) - server.jitterMs);
+            server.rttMs += RTT_GAIN * (rtt - server.rttMs);
+        }
+        server.lossRate += LOSS_GAIN * (0 - server.lossRate);
+    }
+
+    private static void recordLoss(LANDiscovery.ServerInfo server) {
+        server.lossRate += LOSS_GAIN * (1 - server.lossRate);
+    }
+
+    // ==================== CÔTÉ SERVEUR ====================
+    /**
+     * Répond à une sonde reçue par un serveur, un matchmaker ou le port de
+     * découverte
+     *
+     * @return true si le message était une sonde
+     */
+    static boolean answerProbe(DatagramSocket socket, byte[] data, int length, SocketAddress source) {
+        try {
+            if (Messages.decodeUdp(data, length) instanceof Messages.Probe probe) {
+                answerProbe(socket, probe, source);
+                return true;
+            }
+        } catch (IllegalStateException e) {
+            // Pas du JSON : ce n'est pas une sonde
+        }
+        return false;
+    }
+
+    /**
+     * Répond à une sonde déjà décodée
+     */
+    static void answerProbe(DatagramSocket socket, Messages.Probe probe, SocketAddress source) {
+        byte[] reply = Messages.toBytes(new Messages.ProbeReply(probe.seq()));
+        try {
+            socket.send(new DatagramPacket(reply, reply.length, source));
+        } catch (IOException e) {
+            // Le client renverra une sonde
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package network;
+
+import java.io.*;
+import java.net.*;
+
+/**
+ * Transport réseau : messages en TCP (une ligne JSON par message),
+ * datagrammes en UDP
+ *
+ * Côté client, le transport possède son socket UDP et le lit lui-même. Côté
+ * serveur, tous les clients partagent le socket UDP du serveur : c'est la
+ * boucle de réception du serveur qui route les datagrammes, le transport ne
+ * fait qu'envoyer vers l'adresse apprise avec setDatagramPeer.
+ */
+public class SocketTransport implements Transport {
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final PrintWriter writer;
+    private final DatagramSocket udpSocket;
+    private final boolean ownsUdpSocket;
+    private final String name;
+
+    private volatile InetAddress peerAddress;
+    private volatile int peerPort;
+    private volatile boolean open = true;
+
+    /**
+     * @param udpSocket socket UDP utilisé pour les datagrammes
+     * @param ownsUdpSocket true si le transport lit et ferme ce socket (client)
+     * @param name nom donné aux threads de lecture
+     */
+    public SocketTransport(Socket socket, BufferedReader reader, PrintWriter writer,
+            DatagramSocket udpSocket, boolean ownsUdpSocket, String name) {
+        this.socket = socket;
+        this.reader = reader;
+        this.writer = writer;
+        this.udpSocket = udpSocket;
+        this.ownsUdpSocket = ownsUdpSocket;
+        this.name = name;
+    }
+
+    /**
+     * Adresse UDP du pair (connue d'avance côté client, apprise au premier
+     * paquet reçu côté serveur)
+     */
+    public void setDatagramPeer(InetAddress address, int port) {
+        this.peerAddress = address;
+        this.peerPort = port;
+    }
+
+    /**
+     * Le pair UDP connu est déjà cette adresse
+     */
+    public boolean isDatagramPeer(InetAddress address, int port) {
+        return port == peerPort && address.equals(peerAddress);
+    }
+
+    public boolean hasDatagramPeer() {
+        return peerAddress != null;
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        new Thread(() -> tcpReadLoop(receiver), name + "-TCP").start();
+        if (ownsUdpSocket) {
+            new Thread(() -> udpReadLoop(receiver), name + "-UDP").start();
+        }
+    }
+
+    private void tcpReadLoop(Receiver receiver) {
+        try {
+            String line;
+            while (open && (line = reader.readLine()) != null) {
+                receiver.onMessage(line);
+            }
+        } catch (Exception e) {
+            // Connexion perdue
+        }
+        if (open) {
+            close();
+            receiver.onClosed();
+        }
+    }
+
+    private void udpReadLoop(Receiver receiver) {
+        byte[] buffer = new byte[2048];
+
+        while (open) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                udpSocket.receive(packet);
+                receiver.onDatagram(packet.getData(), packet.getLength());
+
+            } catch (SocketTimeoutException e) {
+                // Normal, permet de vérifier open
+            } catch (Exception e) {
+                if (open) {
+                    System.err.println("[NET] Erreur UDP: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sendMessage(String json) {
+        writer.println(json);
+    }
+
+    @Override
+    public void sendDatagram(byte[] data, int length) {
+        InetAddress address = peerAddress;
+        if (!open || address == null) {
+            return;
+        }
+        try {
+            udpSocket.send(new DatagramPacket(data, length, address, peerPort));
+        } catch (Exception e) {
+            // Le pair peut être déconnecté
+        }
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        try {
+            socket.close();
+        } catch (Exception ignored) {
+        }
+        if (ownsUdpSocket) {
+            udpSocket.close();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+}
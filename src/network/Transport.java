@@ -0,0 +1,54 @@
+package network;
+
+/**
+ * Canal de communication entre un client et le serveur
+ *
+ * Deux types d'envois, comme dans le protocole : - les messages, fiables et
+ * ordonnés (lobby, chat, commandes), une ligne JSON chacun - les datagrammes,
+ * temps réel et sans garantie (inputs, état du jeu)
+ *
+ * Implémentations : SocketTransport (TCP + UDP, joueurs distants) et
+ * LoopbackTransport (en mémoire, joueur hôte connecté à son propre serveur).
+ */
+public interface Transport {
+
+    /**
+     * Réception des envois du pair. Les appels sont faits depuis les threads
+     * du transport.
+     */
+    interface Receiver {
+
+        void onMessage(String json);
+
+        /**
+         * @param data n'est valable que pendant l'appel (le tampon peut être
+         * réutilisé ensuite)
+         */
+        void onDatagram(byte[] data, int length);
+
+        /**
+         * La connexion a été perdue ou fermée par le pair
+         */
+        void onClosed();
+    }
+
+    /**
+     * Démarre la réception vers le receiver
+     */
+    void start(Receiver receiver);
+
+    void sendMessage(String json);
+
+    /**
+     * Envoie un datagramme. Le tableau ne doit plus être modifié après
+     * l'envoi : le transport en mémoire le transmet sans copie.
+     */
+    void sendDatagram(byte[] data, int length);
+
+    /**
+     * Ferme le transport. Le receiver local n'est pas notifié.
+     */
+    void close();
+
+    boolean isOpen();
+}
@@ -0,0 +1,285 @@
+package tools;
+
+import network.ConnectionStats;
+import network.GameClient;
+import network.PacketCapture;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rejeu hors ligne d'une capture (PacketCapture) dans le chemin de réception
+ * de GameClient : comptage, décodage du GAME_STATE et application à l'état
+ * du client, sans réseau ni serveur. Les messages fiables qui changent
+ * l'état de la partie (GAME_START, HAZARD_SPAWN...) sont rejoués à leur
+ * place entre les datagrammes, avec le protocole de la connexion capturée.
+ *
+ * Deux modes :
+ * - au plus vite (par défaut) : la capture est rejouée en boucle pendant
+ *   --seconds par manche, après une manche de chauffe ; la meilleure manche
+ *   donne le temps, le débit et les octets alloués par datagramme (messages
+ *   compris). Une même
+ *   capture permet de comparer deux versions du décodeur ou des codecs sur
+ *   un vrai trafic de partie.
+ * - --paced : un seul passage au rythme enregistré (accéléré par --speed),
+ *   avec les centiles du temps de traitement et du retard sur l'horaire.
+ *
+ * Pour capturer : java -cp bin Main --capture partie.vrcap (puis jouer en
+ * réseau), ou GameClient.setCapture.
+ *
+ * Usage: java -cp bin tools.CaptureReplay partie.vrcap [--seconds 2]
+ * [--rounds 5] [--paced] [--speed 1.0]
+ */
+public final class CaptureReplay {
+
+    private CaptureReplay() {
+    }
+
+    /**
+     * Datagrammes et messages reçus pendant une connexion, dans l'ordre, et
+     * le joueur qui les a reçus
+     */
+    private static final class Session {
+
+        int playerId = -1;
+        int protocol = -1;
+        final List<Received> received = new ArrayList<>();
+        int datagrams;
+        long durationNanos;
+    }
+
+    /**
+     * Datagramme (message == null) ou message, décodé en texte au chargement
+     */
+    private record Received(long nanos, byte[] datagram, String message) {
+    }
+
+    // Accumulateur des résultats, lu à la fin
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.err.println("Usage: java -cp bin tools.CaptureReplay fichier.vrcap [--seconds 2] [--rounds 5]"
+                    + " [--paced] [--speed 1.0]");
+            System.exit(1);
+        }
+        Path path = Path.of(args[0]);
+        int seconds = 2;
+        int rounds = 5;
+        boolean paced = false;
+        double speed = 1.0;
+        for (int i = 1; i < args.length; i++) {
+            if ("--paced".equals(args[i])) {
+                paced = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                break;
+            }
+            switch (args[i]) {
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "--speed":
+                    speed = Double.parseDouble(args[++i]);
+                    break;
+            }
+        }
+
+        List<Session> sessions = load(path);
+        long datagrams = 0;
+        long bytes = 0;
+        for (Session session : sessions) {
+            datagrams += session.datagrams;
+            for (Received received : session.received) {
+                if (received.message() == null) {
+                    bytes += received.datagram().length;
+                }
+            }
+        }
+        if (datagrams == 0) {
+            System.err.println("[REPLAY] Aucun datagramme reçu dans " + path);
+            System.exit(1);
+        }
+
+        GameClient client = new GameClient("Replay");
+        if (paced) {
+            replayPaced(client, sessions, speed);
+        } else {
+            replayFast(client, sessions, datagrams, bytes, seconds, rounds);
+        }
+
+        // Vérification : le rejeu est passé par le même classement que la partie
+        ConnectionStats stats = client.getStats();
+        System.out.println("[REPLAY] Dernier passage : " + stats.getNewest() + " états appliqués, "
+                + stats.getLate() + " en retard, " + stats.getDuplicates() + " doublons, "
+                + stats.getMissed() + " perdus");
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Lit la capture et regroupe les datagrammes et messages reçus par
+     * connexion
+     */
+    private static List<Session> load(Path path) throws IOException {
+        List<PacketCapture.Record> records = PacketCapture.read(path);
+        List<Session> sessions = new ArrayList<>();
+        Session current = null;
+        long sent = 0;
+        long messages = 0;
+        for (PacketCapture.Record record : records) {
+            if (record.type() == PacketCapture.SESSION) {
+                current = new Session();
+                sessions.add(current);
+                continue;
+            }
+            if (current == null) {
+                continue; // Début de fichier sans SESSION : capture corrompue
+            }
+            switch (record.type()) {
+                case PacketCapture.PLAYER -> {
+                    current.playerId = (int) record.value();
+                    current.protocol = record.protocol();
+                }
+                case PacketCapture.RECEIVED -> {
+                    current.received.add(new Received(record.nanos(), record.data(), null));
+                    current.datagrams++;
+                }
+                case PacketCapture.MESSAGE -> {
+                    current.received.add(new Received(record.nanos(), null, record.text()));
+                    messages++;
+                }
+                case PacketCapture.SENT -> sent++;
+                default -> {
+                }
+            }
+            current.durationNanos = record.nanos();
+        }
+        long received = 0;
+        long durationNanos = 0;
+        for (Session session : sessions) {
+            received += session.datagrams;
+            durationNanos += session.durationNanos;
+        }
+        System.out.println("[REPLAY] " + path + " : " + sessions.size() + " connexion(s), "
+                + String.format("%.1f s", durationNanos / 1e9) + ", " + received + " datagrammes reçus, "
+                + sent + " envoyés, " + messages + " messages reçus");
+        return sessions;
+    }
+
+    // ==================== AU PLUS VITE ====================
+    private static void replayFast(GameClient client, List<Session> sessions, long datagrams, long bytes,
+            int seconds, int rounds) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        System.out.println("[REPLAY] " + rounds + " x " + seconds + " s, après une manche de chauffe");
+        measure(client, sessions, seconds * 1_000_000_000L);
+
+        double bestNanos = Double.MAX_VALUE;
+        double allocated = 0;
+        for (int r = 0; r < rounds; r++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long[] result = measure(client, sessions, seconds * 1_000_000_000L);
+            long allocatedBytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            double nanos = (double) result[0] / (result[1] * datagrams);
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                allocated = (double) allocatedBytes / (result[1] * datagrams);
+            }
+        }
+        double meanSize = (double) bytes / datagrams;
+        System.out.println(String.format("%12s %12s %14s %12s", "ns/datagr.", "Mo/s", "octets alloués", "taille moy."));
+        System.out.println(String.format("%12.0f %12.1f %14.0f %12.0f", bestNanos,
+                meanSize / bestNanos * 1e9 / 1e6, allocated, meanSize));
+    }
+
+    /**
+     * Rejoue la capture en boucle pendant budgetNanos
+     *
+     * @return durée totale (ns) et nombre de passages complets
+     */
+    private static long[] measure(GameClient client, List<Session> sessions, long budgetNanos) {
+        long start = System.nanoTime();
+        long end = start + budgetNanos;
+        long passes = 0;
+        long now;
+        do {
+            replayOnce(client, sessions);
+            passes++;
+            now = System.nanoTime();
+        } while (now < end);
+        return new long[]{now - start, passes};
+    }
+
+    private static void replayOnce(GameClient client, List<Session> sessions) {
+        for (Session session : sessions) {
+            client.startReplay(session.playerId, session.protocol);
+            for (Received received : session.received) {
+                replay(client, received);
+            }
+        }
+        sink += client.getStats().getNewest();
+    }
+
+    private static void replay(GameClient client, Received received) {
+        if (received.message() != null) {
+            client.replayMessage(received.message());
+        } else {
+            client.replayDatagram(received.datagram(), received.datagram().length);
+        }
+    }
+
+    // ==================== AU RYTHME ENREGISTRÉ ====================
+    private static void replayPaced(GameClient client, List<Session> sessions, double speed) {
+        // Chauffe hors horaire, pour ne pas mesurer l'interpréteur
+        replayOnce(client, sessions);
+
+        List<Long> processing = new ArrayList<>();
+        List<Long> lateness = new ArrayList<>();
+        for (Session session : sessions) {
+            client.startReplay(session.playerId, session.protocol);
+            System.out.println("[REPLAY] Connexion du joueur " + session.playerId + " (protocole "
+                    + session.protocol + ") : " + session.datagrams + " datagrammes, "
+                    + (session.received.size() - session.datagrams) + " messages, vitesse x" + speed);
+            long origin = System.nanoTime();
+            for (Received received : session.received) {
+                long due = origin + (long) (received.nanos() / speed);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                long start = System.nanoTime();
+                replay(client, received);
+                long end = System.nanoTime();
+                if (received.message() == null) {
+                    lateness.add(start - due);
+                    processing.add(end - start);
+                }
+            }
+        }
+        printPercentiles("traitement", processing);
+        printPercentiles("retard", lateness);
+    }
+
+    private static void printPercentiles(String name, List<Long> values) {
+        long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.println(String.format("[REPLAY] %-10s p50 %.1f us, p99 %.1f us, max %.1f us", name,
+                percentile(sorted, 0.50) / 1000.0, percentile(sorted, 0.99) / 1000.0,
+                sorted[sorted.length - 1] / 1000.0));
+    }
+
+    private static long percentile(long[] sorted, double q) {
+        int rank = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+}
@@ -0,0 +1,304 @@
+package tools;
+
+import network.JsonReader;
+import network.JsonUtils;
+import network.Messages;
+import network.NetworkProtocol;
+import network.Room;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Banc d'essai du décodage JSON : JsonUtils.parse contre JsonReader, et
+ * décodage typé des records de Messages (ce que font client et serveur)
+ *
+ * Les messages sont de vrais GAME_STATE (une salle de 4 joueurs en cours de
+ * manche) et un PLAYER_LIST de 4 joueurs. Chaque décodeur extrait les mêmes
+ * champs que GameClient ; la mesure donne le temps et les octets alloués par
+ * message, après une phase de chauffe du JIT.
+ *
+ * Usage: java -cp bin tools.JsonBenchmark [--seconds 2] [--rounds 5]
+ */
+public final class JsonBenchmark {
+
+    private JsonBenchmark() {
+    }
+
+    /**
+     * Un décodage à mesurer ; renvoie une valeur dérivée du message pour
+     * que le JIT ne puisse pas l'éliminer
+     */
+    private interface Decoder {
+
+        long decode(byte[] data);
+    }
+
+    // Accumulateur des résultats, lu à la fin
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int seconds = 2;
+        int rounds = 5;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i]) {
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+            }
+        }
+
+        byte[] gameState = sampleGameState();
+        byte[] playerList = samplePlayerList();
+        JsonReader reader = new JsonReader();
+
+        System.out.println("[BENCH] GAME_STATE " + gameState.length + " octets, PLAYER_LIST "
+                + playerList.length + " octets, " + rounds + " x " + seconds + " s par cas");
+        System.out.println(String.format("%-28s %12s %12s %14s", "cas", "ns/msg", "Mo/s", "octets alloués"));
+
+        run("GAME_STATE JsonUtils.parse", gameState, JsonBenchmark::mapGameState, seconds, rounds);
+        run("GAME_STATE JsonReader", gameState, data -> pullGameState(reader, data), seconds, rounds);
+        run("GAME_STATE Messages", gameState, data -> typedGameState(reader, data), seconds, rounds);
+        run("PLAYER_LIST JsonUtils.parse", playerList, JsonBenchmark::mapPlayerList, seconds, rounds);
+        run("PLAYER_LIST JsonReader", playerList, data -> pullPlayerList(reader, data), seconds, rounds);
+        run("PLAYER_LIST Messages", playerList, data -> typedPlayerList(reader, data), seconds, rounds);
+
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Chauffe puis mesure un décodeur ; affiche la meilleure manche
+     */
+    private static void run(String name, byte[] data, Decoder decoder, int seconds, int rounds) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        measure(data, decoder, seconds * 1_000_000_000L);
+
+        double bestNanos = Double.MAX_VALUE;
+        double allocated = 0;
+        for (int r = 0; r < rounds; r++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long[] result = measure(data, decoder, seconds * 1_000_000_000L);
+            long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            double nanos = (double) result[0] / result[1];
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                allocated = (double) bytes / result[1];
+            }
+        }
+        System.out.println(String.format("%-28s %12.0f %12.1f %14.0f", name, bestNanos,
+                data.length / bestNanos * 1e9 / 1e6, allocated));
+    }
+
+    /**
+     * @return durée totale (ns) et nombre de messages décodés
+     */
+    private static long[] measure(byte[] data, Decoder decoder, long budgetNanos) {
+        long start = System.nanoTime();
+        long end = start + budgetNanos;
+        long count = 0;
+        long now;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                sink += decoder.decode(data);
+            }
+            count += 1000;
+            now = System.nanoTime();
+        } while (now < end);
+        return new long[]{now - start, count};
+    }
+
+    // ==================== MESSAGES ====================
+    private static byte[] sampleGameState() {
+        Room room = new Room(0);
+        for (int p = 0; p < NetworkProtocol.MAX_PLAYERS; p++) {
+            room.addPlayer(p, "Joueur " + p);
+        }
+        room.startMatch(7);
+        Random random = new Random(7);
+        byte[] snapshot = null;
+        // Avancer jusqu'à ce que des obstacles soient à l'écran
+        for (int i = 0; i < 600; i++) {
+            if (random.nextInt(30) == 0) {
+                room.switchGravity(random.nextInt(NetworkProtocol.MAX_PLAYERS));
+            }
+            byte[] next = room.tick();
+            if (next != null) {
+                snapshot = next;
+            }
+        }
+        return snapshot;
+    }
+
+    private static byte[] samplePlayerList() {
+        List<Map<String, Object>> players = new ArrayList<>();
+        for (int id = 0; id < NetworkProtocol.MAX_PLAYERS; id++) {
+            Map<String, Object> player = new LinkedHashMap<>();
+            player.put("id", id);
+            player.put("name", "Joueur " + id);
+            player.put("color", NetworkProtocol.playerColor(id));
+            player.put("ready", id % 2 == 0);
+            player.put("isHost", id == 0);
+            players.add(player);
+        }
+        return JsonUtils.builder()
+                .put("type", NetworkProtocol.TcpMessageType.PLAYER_LIST.name())
+                .putArray("players", players)
+                .build()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ==================== DÉCODEURS ====================
+    private static long mapGameState(byte[] data) {
+        Map<String, Object> msg = JsonUtils.parse(new String(data, StandardCharsets.UTF_8));
+        long sum = (long) JsonUtils.getDouble(msg, "tick", 0) + (long) JsonUtils.getDouble(msg, "time", 0);
+        for (Object obj : JsonUtils.getArray(msg, "players")) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> ps = (Map<String, Object>) obj;
+            sum += JsonUtils.getInt(ps, "id", 0) + (long) JsonUtils.getDouble(ps, "x", 0)
+                    + (long) JsonUtils.getDouble(ps, "y", 0) + (long) JsonUtils.getDouble(ps, "vy", 0)
+                    + JsonUtils.getString(ps, "gravity", "DOWN").length()
+                    + (JsonUtils.getBoolean(ps, "alive", true) ? 1 : 0) + JsonUtils.getInt(ps, "score", 0);
+        }
+        for (Object obj : JsonUtils.getArray(msg, "holes")) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> hs = (Map<String, Object>) obj;
+            sum += JsonUtils.getInt(hs, "x", 0) + JsonUtils.getInt(hs, "width", 80);
+        }
+        for (Object obj : JsonUtils.getArray(msg, "obstacles")) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> os = (Map<String, Object>) obj;
+            sum += JsonUtils.getInt(os, "x", 0) + JsonUtils.getInt(os, "y", 0)
+                    + JsonUtils.getInt(os, "width", 40) + JsonUtils.getInt(os, "height", 100);
+        }
+        return sum;
+    }
+
+    private static long pullGameState(JsonReader reader, byte[] data) {
+        reader.reset(data, 0, data.length);
+        long sum = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextKey()) {
+                case "tick":
+                case "time":
+                    sum += reader.nextLong();
+                    break;
+                case "players":
+                case "holes":
+                case "obstacles":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextKey()) {
+                                case "gravity":
+                                    sum += reader.nextString().length();
+                                    break;
+                                case "alive":
+                                    sum += reader.nextBoolean() ? 1 : 0;
+                                    break;
+                                case "name":
+                                case "color":
+                                    reader.skipValue();
+                                    break;
+                                default:
+                                    sum += (long) reader.nextDouble();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return sum;
+    }
+
+    private static long typedGameState(JsonReader reader, byte[] data) {
+        Messages.GameState state = (Messages.GameState) Messages.decodeUdp(reader.reset(data, 0, data.length));
+        long sum = state.tick() + state.time();
+        for (Messages.PlayerState ps : state.players()) {
+            sum += ps.id() + (long) ps.x() + (long) ps.y() + (long) ps.vy() + ps.gravity().length()
+                    + (ps.alive() ? 1 : 0) + ps.score();
+        }
+        for (Messages.HoleState hs : state.holes()) {
+            sum += (long) hs.x() + hs.width();
+        }
+        for (Messages.ObstacleState os : state.obstacles()) {
+            sum += (long) os.x() + (long) os.y() + os.width() + os.height();
+        }
+        return sum;
+    }
+
+    private static long mapPlayerList(byte[] data) {
+        Map<String, Object> msg = JsonUtils.parse(new String(data, StandardCharsets.UTF_8));
+        long sum = 0;
+        for (Object obj : JsonUtils.getArray(msg, "players")) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> p = (Map<String, Object>) obj;
+            sum += JsonUtils.getInt(p, "id", 0) + JsonUtils.getString(p, "name", "").length()
+                    + JsonUtils.getString(p, "color", "").length()
+                    + (JsonUtils.getBoolean(p, "ready", false) ? 1 : 0)
+                    + (JsonUtils.getBoolean(p, "isHost", false) ? 1 : 0);
+        }
+        return sum;
+    }
+
+    private static long pullPlayerList(JsonReader reader, byte[] data) {
+        reader.reset(data, 0, data.length);
+        long sum = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"players".equals(reader.nextKey())) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextKey()) {
+                        case "id":
+                            sum += reader.nextInt();
+                            break;
+                        case "name":
+                        case "color":
+                            sum += reader.nextString().length();
+                            break;
+                        case "ready":
+                        case "isHost":
+                            sum += reader.nextBoolean() ? 1 : 0;
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        return sum;
+    }
+
+    private static long typedPlayerList(JsonReader reader, byte[] data) {
+        Messages.PlayerList list = (Messages.PlayerList) Messages.decodeTcp(reader.reset(data, 0, data.length));
+        long sum = 0;
+        for (Messages.PlayerEntry p : list.players()) {
+            sum += p.id() + p.name().length() + p.color().length() + (p.ready() ? 1 : 0) + (p.isHost() ? 1 : 0);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,310 @@
+package tools;
+
+import network.GameClient;
+import network.GameServer;
+import network.LinkProfile;
+import network.Messages;
+import network.NetworkProtocol;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Générateur de charge : N bots headless dans une seule JVM
+ *
+ * Chaque bot est un GameClient complet (CONNECT_REQUEST, PLAYER_READY, INPUT
+ * GRAVITY_SWITCH aléatoires, décodage de chaque GAME_STATE), sans
+ * NetworkManager ni découverte LAN. Le nombre de bots augmente par paliers ;
+ * pour chaque palier l'outil affiche le temps de tick du serveur, les
+ * percentiles de latence des états (horloge "time" du serveur -> décodage
+ * côté bot), le débit descendant et les états perdus ou arrivés en retard.
+ *
+ * Sans --host, un serveur dédié est lancé dans la JVM sur des ports libres
+ * (le temps de tick n'est connu que dans ce cas). Avec --host, les bots
+ * visent un serveur ou un matchmaker existant ; la latence suppose alors des
+ * horloges synchronisées.
+ *
+ * Usage: java -cp bin tools.LoadGenerator [--steps 4,8,16,32,64]
+ * [--seconds 10] [--switch-rate 2] [--host adresse] [--port 25565]
+ * [--link "delay=30,loss=0.01"] [--link-seed 1] [--verbose]
+ */
+public final class LoadGenerator {
+
+    private static final long CONNECT_TIMEOUT_MS = 10_000;
+    private static final long INPUT_PERIOD_MS = 50;
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Un client simulé et ses mesures
+     */
+    private static final class Bot implements GameClient.ClientListener {
+
+        final GameClient client;
+        final CountDownLatch connected = new CountDownLatch(1);
+        final LatencyRecorder latencies;
+        volatile boolean failed;
+
+        Bot(String name, LatencyRecorder latencies) {
+            this.client = new GameClient(name);
+            this.latencies = latencies;
+            client.setListener(this);
+        }
+
+        @Override
+        public void onConnected(int playerId, String serverName) {
+            connected.countDown();
+        }
+
+        @Override
+        public void onConnectionFailed(String reason) {
+            failed = true;
+            connected.countDown();
+        }
+
+        @Override
+        public void onDisconnected(String reason) {
+            failed = true;
+        }
+
+        @Override
+        public void onPlayerListUpdate(List<Messages.PlayerEntry> players) {
+        }
+
+        @Override
+        public void onChatMessage(int playerId, String playerName, String message) {
+        }
+
+        @Override
+        public void onGameStart(long seed) {
+        }
+
+        @Override
+        public void onReturnToLobby() {
+        }
+
+        @Override
+        public void onGameStateUpdate() {
+            long sentAt = client.getLastStateTime();
+            if (sentAt > 0) {
+                latencies.add(System.currentTimeMillis() - sentAt);
+            }
+        }
+
+        @Override
+        public void onPingUpdate(int ping) {
+        }
+    }
+
+    /**
+     * Échantillons de latence (ms) d'un palier, partagés par tous les bots
+     */
+    private static final class LatencyRecorder {
+
+        private long[] samples = new long[1 << 16];
+        private int count;
+
+        synchronized void add(long millis) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = millis;
+        }
+
+        synchronized long[] drain() {
+            long[] sorted = Arrays.copyOf(samples, count);
+            count = 0;
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int[] steps = {4, 8, 16, 32, 64};
+        int seconds = 10;
+        double switchRate = 2;
+        String host = null;
+        int port = NetworkProtocol.TCP_PORT;
+        LinkProfile link = null;
+        long linkSeed = 1;
+        boolean verbose = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--verbose".equals(args[i])) {
+                    verbose = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    break;
+                }
+                switch (args[i]) {
+                    case "--steps":
+                        steps = Arrays.stream(args[++i].split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+                        break;
+                    case "--seconds":
+                        seconds = Integer.parseInt(args[++i]);
+                        break;
+                    case "--switch-rate":
+                        switchRate = Double.parseDouble(args[++i]);
+                        break;
+                    case "--host":
+                        host = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--link":
+                        link = LinkProfile.parse(args[++i]);
+                        break;
+                    case "--link-seed":
+                        linkSeed = Long.parseLong(args[++i]);
+                        break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("[LOAD] Argument invalide: " + e.getMessage());
+            System.exit(1);
+        }
+
+        // Les logs de chaque connexion noieraient le rapport
+        PrintStream out = System.out;
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        GameServer server = null;
+        if (host == null) {
+            int maxBots = Arrays.stream(steps).max().orElse(0);
+            server = new GameServer("Load", true, 0, 0);
+            server.setMaxRooms(maxBots / NetworkProtocol.MAX_PLAYERS + 1);
+            if (!server.start()) {
+                System.exit(1);
+            }
+            host = "127.0.0.1";
+            port = server.getTcpPort();
+        }
+
+        out.println("[LOAD] Cible " + host + ":" + port + ", " + seconds + " s par palier, "
+                + switchRate + " inversions/s par bot" + (link != null ? ", liaison " + link : ""));
+        out.println(String.format("%6s %6s %10s %8s %9s %9s %9s %11s %8s %8s", "bots", "salles", "tick (us)",
+                "dépass.", "lat p50", "lat p99", "lat max", "Ko/s desc.", "perdus", "retard"));
+
+        LatencyRecorder latencies = new LatencyRecorder();
+        List<Bot> bots = new CopyOnWriteArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
+
+        // Inputs aléatoires : chaque bot inverse sa gravité switchRate fois par
+        // seconde en moyenne
+        double switchProbability = switchRate * INPUT_PERIOD_MS / 1000.0;
+        Random random = new Random(linkSeed);
+        ScheduledExecutorService inputs = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Load-Inputs");
+            t.setDaemon(true);
+            return t;
+        });
+        inputs.scheduleAtFixedRate(() -> {
+            for (Bot bot : bots) {
+                if (random.nextDouble() < switchProbability) {
+                    bot.client.sendGravitySwitch();
+                }
+            }
+        }, INPUT_PERIOD_MS, INPUT_PERIOD_MS, TimeUnit.MILLISECONDS);
+
+        for (int target : steps) {
+            // Connecter les nouveaux bots avant de les déclarer prêts, pour
+            // que les salles se remplissent avant le départ de la manche
+            List<Bot> added = new ArrayList<>();
+            while (bots.size() + added.size() < target) {
+                Bot bot = new Bot("Bot " + (bots.size() + added.size() + 1), latencies);
+                if (link != null) {
+                    bot.client.setLinkEmulation(link, link, linkSeed + bots.size() + added.size());
+                }
+                bot.client.connect(host, port);
+                added.add(bot);
+            }
+            for (Bot bot : added) {
+                if (!bot.connected.await(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS) || bot.failed) {
+                    failures.incrementAndGet();
+                    continue;
+                }
+                bots.add(bot);
+            }
+            for (Bot bot : added) {
+                bot.client.setReady(true);
+            }
+
+            // Laisser les manches démarrer, puis ouvrir la fenêtre de mesure
+            Thread.sleep(1000);
+            latencies.drain();
+            long[] before = totals(bots);
+            long ticksBefore = server != null ? server.getTicksRun() : 0;
+            long overrunsBefore = server != null ? server.getTicksOverrun() : 0;
+            long nanosBefore = server != null ? server.getTickNanos() : 0;
+
+            Thread.sleep(seconds * 1000L);
+
+            long[] after = totals(bots);
+            long[] sorted = latencies.drain();
+            String tick = "-";
+            String overrun = "-";
+            String rooms = "-";
+            if (server != null) {
+                long ticks = server.getTicksRun() - ticksBefore;
+                tick = ticks == 0 ? "-" : String.format("%.1f", (server.getTickNanos() - nanosBefore) / 1000.0 / ticks);
+                overrun = ticks == 0 ? "-"
+                        : String.format("%.2f%%", 100.0 * (server.getTicksOverrun() - overrunsBefore) / ticks);
+                rooms = String.valueOf(server.getRooms().size());
+            }
+            long received = after[1] - before[1];
+            long missed = after[2] - before[2];
+            long late = after[3] - before[3];
+            long expected = Math.max(1, received + missed);
+
+            out.println(String.format("%6d %6s %10s %8s %7dms %7dms %7dms %11.1f %7.2f%% %7.2f%%",
+                    bots.size(), rooms, tick, overrun,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0),
+                    (after[0] - before[0]) / 1024.0 / seconds,
+                    100.0 * missed / expected, 100.0 * late / expected));
+        }
+
+        if (failures.get() > 0) {
+            out.println("[LOAD] " + failures.get() + " bot(s) n'ont pas pu se connecter");
+        }
+
+        inputs.shutdownNow();
+        for (Bot bot : bots) {
+            bot.client.disconnect();
+        }
+        if (server != null) {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Somme des compteurs des bots : octets reçus, états appliqués, états
+     * perdus, états arrivés en retard
+     */
+    private static long[] totals(List<Bot> bots) {
+        long[] totals = new long[4];
+        for (Bot bot : bots) {
+            totals[0] += bot.client.getBytesReceived();
+            totals[1] += bot.client.getStatesReceived();
+            totals[2] += bot.client.getStatesMissed();
+            totals[3] += bot.client.getStatesOutOfOrder();
+        }
+        return totals;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
@@ -0,0 +1,346 @@
+package tools;
+
+import core.GameConfig;
+import core.sim.SimHole;
+import core.sim.SimObstacle;
+import core.sim.SimPlayer;
+import core.sim.SimState;
+import core.sim.Simulation;
+import network.LinkProfile;
+import network.PeerLink;
+import network.RollbackSession;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Essai du mode pair à pair avec rollback : 2 à 4 pairs (RollbackSession)
+ * dans une seule JVM, chacun piloté par un bot qui inverse sa gravité à
+ * l'approche d'un danger (d'après son état prédit) et parfois au hasard
+ *
+ * Par défaut les pairs échangent par une file en mémoire sur une horloge
+ * virtuelle (60 ticks par seconde simulée, aucune attente réelle) ; --link
+ * retarde et perd les datagrammes (seuls delay, jitter uniforme et loss de
+ * LinkProfile sont appliqués). Avec --udp, chaque pair a son PeerLink sur
+ * la boucle locale et la partie se joue en temps réel.
+ *
+ * À la fin, tous les inputs étant connus, l'état de chaque pair doit être
+ * celui d'une Simulation de référence jouée avec les mêmes inputs, sans
+ * prédiction : l'outil compare les empreintes du monde et sort en erreur
+ * sinon. Il mesure aussi le coût d'une sauvegarde et d'une restauration.
+ *
+ * Usage: java -cp bin tools.RollbackSoak [--peers 4] [--seconds 30]
+ * [--link "delay=40,jitter=15,loss=0.05"] [--switch-rate 0.5] [--seed 1]
+ * [--udp]
+ */
+public final class RollbackSoak {
+
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+    private RollbackSoak() {
+    }
+
+    /**
+     * Un pair, son bot et ses inputs effectivement joués
+     */
+    private static final class Peer {
+
+        final int id;
+        RollbackSession session;
+        PeerLink link;
+        boolean pending;
+        final BitSet played = new BitSet();
+        long advanceNanos;
+        long advanceCalls;
+        long maxAdvanceNanos;
+
+        Peer(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Datagramme en transit dans la file en mémoire
+     */
+    private record Delivery(long due, long seq, int from, Peer to, byte[] data) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int peerCount = 4;
+        int seconds = 30;
+        LinkProfile link = LinkProfile.parse("delay=40,jitter=15,loss=0.05");
+        double switchRate = 0.5;
+        long seed = 1;
+        boolean udp = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--udp".equals(args[i])) {
+                udp = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                break;
+            }
+            switch (args[i]) {
+                case "--peers":
+                    peerCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--link":
+                    link = LinkProfile.parse(args[++i]);
+                    break;
+                case "--switch-rate":
+                    switchRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+            }
+        }
+
+        benchmarkSaveRestore(seed);
+
+        int frames = seconds * 60;
+        int[] ids = new int[peerCount];
+        List<Peer> peers = new ArrayList<>();
+        for (int i = 0; i < peerCount; i++) {
+            ids[i] = i + 1;
+            peers.add(new Peer(i + 1));
+        }
+        double pressChance = switchRate / 60;
+        if (udp) {
+            System.out.println("[SOAK] " + peerCount + " pairs en UDP local, " + seconds + " s en temps réel");
+            runUdp(peers, ids, seed, frames, pressChance);
+        } else {
+            System.out.println("[SOAK] " + peerCount + " pairs en mémoire, " + seconds
+                    + " s simulées, liaison delay=" + link.delayMs + " jitter=" + link.jitterMs
+                    + " loss=" + link.lossRate);
+            runVirtual(peers, ids, seed, frames, pressChance, link);
+        }
+
+        System.exit(report(peers, ids, seed, frames) ? 0 : 1);
+    }
+
+    // ==================== EN MÉMOIRE ====================
+    private static void runVirtual(List<Peer> peers, int[] ids, long seed, int frames, double pressChance,
+            LinkProfile link) {
+        Random random = new Random(seed);
+        PriorityQueue<Delivery> queue = new PriorityQueue<>(
+                Comparator.comparingLong(Delivery::due).thenComparingLong(Delivery::seq));
+        long[] now = {0};
+        long[] seq = {0};
+        Map<Integer, Peer> byId = new HashMap<>();
+        for (Peer peer : peers) {
+            byId.put(peer.id, peer);
+        }
+        for (Peer peer : peers) {
+            peer.session = new RollbackSession(seed, peer.id, ids, (peerId, data, length) -> {
+                if (random.nextDouble() < link.lossRate) {
+                    return;
+                }
+                double jitter = (random.nextDouble() * 2 - 1) * link.jitterMs;
+                long delay = (long) (Math.max(0, link.delayMs + jitter) * 1_000_000L);
+                queue.add(new Delivery(now[0] + delay, seq[0]++, peer.id, byId.get(peerId), data));
+            });
+        }
+
+        // Temps de jeu, puis au plus 10 s pour que tous les inputs arrivent
+        long limit = (long) frames * FRAME_NANOS + 10_000_000_000L;
+        while (now[0] < limit && !allConfirmed(peers, frames)) {
+            while (!queue.isEmpty() && queue.peek().due() <= now[0]) {
+                Delivery d = queue.poll();
+                d.to().session.onDatagram(d.from(), d.data(), d.data().length);
+            }
+            for (Peer peer : peers) {
+                tick(peer, frames, random.nextDouble() < pressChance);
+            }
+            now[0] += FRAME_NANOS;
+        }
+    }
+
+    // ==================== UDP ====================
+    private static void runUdp(List<Peer> peers, int[] ids, long seed, int frames, double pressChance)
+            throws Exception {
+        for (Peer peer : peers) {
+            peer.link = new PeerLink(0);
+        }
+        for (Peer peer : peers) {
+            for (Peer other : peers) {
+                if (other != peer) {
+                    peer.link.addPeer(other.id, new InetSocketAddress("127.0.0.1", other.link.getPort()));
+                }
+            }
+            peer.session = new RollbackSession(seed, peer.id, ids, peer.link);
+            peer.link.start(peer.session);
+        }
+
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        long limit = start + (long) frames * FRAME_NANOS + 10_000_000_000L;
+        for (long n = 0; System.nanoTime() < limit && !allConfirmed(peers, frames); n++) {
+            long wait;
+            while ((wait = start + n * FRAME_NANOS - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            for (Peer peer : peers) {
+                tick(peer, frames, random.nextDouble() < pressChance);
+            }
+        }
+        for (Peer peer : peers) {
+            peer.link.close();
+        }
+    }
+
+    // ==================== BOT ====================
+    /**
+     * Un tick de jeu d'un pair : un input tant que la manche dure, une
+     * simple synchronisation ensuite
+     */
+    private static void tick(Peer peer, int frames, boolean press) {
+        RollbackSession session = peer.session;
+        long frame = session.getFrame();
+        if (frame >= frames) {
+            session.synchronize();
+            return;
+        }
+        peer.pending |= press || seesDanger(session.getSimulation(), peer.id);
+        press = peer.pending;
+        long begin = System.nanoTime();
+        boolean advanced = session.advance(press);
+        long nanos = System.nanoTime() - begin;
+        peer.advanceNanos += nanos;
+        peer.advanceCalls++;
+        peer.maxAdvanceNanos = Math.max(peer.maxAdvanceNanos, nanos);
+        if (advanced) {
+            // Même règle que la session : un appui en attente part au tick joué
+            peer.played.set((int) frame, peer.pending);
+            peer.pending = false;
+        }
+    }
+
+    /**
+     * Obstacle sur notre surface ou trou juste devant : inverser la gravité
+     */
+    private static boolean seesDanger(Simulation sim, int id) {
+        SimPlayer p = sim.getPlayer(id);
+        if (p == null || !p.isAlive() || !p.isGrounded()) {
+            return false;
+        }
+        double front = p.getX() + p.getWidth();
+        for (SimObstacle o : sim.getObstacles()) {
+            boolean onGround = o.getY() > GameConfig.CEILING_Y;
+            if (onGround != p.isGravityUp() && o.getX() + o.getWidth() > p.getX() && o.getX() - front < 150) {
+                return true;
+            }
+        }
+        for (SimHole h : sim.getHoles()) {
+            // Inverser quand le trou atteint l'avant du joueur : il le survole
+            if (h.getX() > p.getX() && h.getX() < front) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean allConfirmed(List<Peer> peers, int frames) {
+        for (Peer peer : peers) {
+            if (peer.session.getFrame() < frames || peer.session.getConfirmedFrame() < frames - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== VÉRIFICATION ====================
+    /**
+     * Rejoue la partie sans prédiction et compare l'état final de chaque pair
+     *
+     * @return true si tous les pairs ont l'état de référence
+     */
+    private static boolean report(List<Peer> peers, int[] ids, long seed, int frames) {
+        Simulation reference = new Simulation();
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        for (int id : sorted) {
+            reference.addPlayer(id);
+        }
+        reference.reset(seed);
+        for (int f = 0; f < frames; f++) {
+            long switches = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (peerById(peers, sorted[i]).played.get(f)) {
+                    switches |= 1L << i;
+                }
+            }
+            reference.step(switches);
+        }
+
+        boolean ok = true;
+        System.out.println(String.format("%5s %9s %9s %10s %9s %8s %8s %10s %10s %s", "pair", "rollbacks",
+                "resimulés", "prof. max", "attentes", "vérifs", "désync", "moy. us", "max us", "état final"));
+        for (Peer peer : peers) {
+            RollbackSession s = peer.session;
+            s.synchronize();
+            boolean same = s.getFrame() == frames && s.getConfirmedFrame() >= frames - 1
+                    && s.getSimulation().getWorldHash() == reference.getWorldHash();
+            ok &= same && s.getDesyncTick() < 0;
+            System.out.println(String.format("%5d %9d %9d %10d %9d %8d %8d %10.1f %10.1f %s", peer.id,
+                    s.getRollbacks(), s.getResimulatedFrames(), s.getMaxRollbackFrames(), s.getStalls(),
+                    s.getHashChecks(), s.getDesyncTick(),
+                    peer.advanceCalls == 0 ? 0 : peer.advanceNanos / 1000.0 / peer.advanceCalls,
+                    peer.maxAdvanceNanos / 1000.0, same ? "identique" : "DIFFÉRENT"));
+        }
+        System.out.println("[SOAK] Référence : tick " + reference.getTick() + ", monde "
+                + Long.toHexString(reference.getWorldHash()) + (reference.isFinished()
+                ? ", terminée (vainqueur " + reference.getWinnerId() + ")" : ""));
+        System.out.println(ok ? "[SOAK] OK : tous les pairs ont l'état de référence"
+                : "[SOAK] ÉCHEC : au moins un pair a divergé");
+        return ok;
+    }
+
+    private static Peer peerById(List<Peer> peers, int id) {
+        for (Peer peer : peers) {
+            if (peer.id == id) {
+                return peer;
+            }
+        }
+        throw new IllegalArgumentException("pair inconnu " + id);
+    }
+
+    // ==================== SAUVEGARDE ====================
+    /**
+     * Coût d'une sauvegarde et d'une restauration d'une partie de 4 joueurs
+     * en cours (dangers à l'écran)
+     */
+    private static void benchmarkSaveRestore(long seed) {
+        Simulation sim = new Simulation();
+        for (int id = 1; id <= 4; id++) {
+            sim.addPlayer(id);
+        }
+        sim.reset(seed);
+        for (int i = 0; i < 300; i++) {
+            sim.step();
+        }
+        SimState state = new SimState();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int iterations = 2_000_000;
+        for (int round = 0; round < 3; round++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long begin = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sim.saveState(state);
+                sim.restoreState(state);
+            }
+            long nanos = System.nanoTime() - begin;
+            long allocated = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+            if (round == 2) {
+                System.out.println(String.format("[SOAK] Sauvegarde + restauration : %.0f ns, %.1f octets alloués"
+                        + " (%d trous, %d obstacles, 4 joueurs)", (double) nanos / iterations,
+                        (double) allocated / iterations, sim.getHoles().size(), sim.getObstacles().size()));
+            }
+        }
+    }
+}
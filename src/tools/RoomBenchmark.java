@@ -0,0 +1,223 @@
+package tools;
+
+import network.NetworkProtocol;
+import network.Room;
+import network.SocketTransport;
+import java.io.*;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Banc d'essai du tick des salles du serveur dédié, envois compris
+ *
+ * Fait tourner N salles de 4 joueurs (inputs aléatoires) sur un pool de ticks
+ * partagé, comme GameServer en mode dédié, puis double N tant que moins de 1%
+ * des ticks dépassent leur budget de 1/60 s. Un tick est en dépassement s'il
+ * dure plus que la période ou s'il démarre plus de deux périodes après le
+ * précédent (un créneau a été sauté).
+ *
+ * Chaque tick fait le travail de GameServer.tickRoom : simulation, encodage
+ * du GAME_STATE, un envoi UDP par joueur depuis un socket partagé (vers un
+ * socket local jamais lu, le noyau jette ce qui déborde) et l'écriture des
+ * HAZARD_SPAWN. Ces messages sont encodés en UTF-8 par le PrintWriter de
+ * chaque SocketTransport mais jetés avant le socket TCP (une connexion par
+ * joueur dépasserait vite le nombre de fichiers ouverts) : l'appel système
+ * d'écriture TCP, un par danger apparu, n'est pas compté.
+ *
+ * Usage: java -cp bin tools.RoomBenchmark [--seconds 5] [--max-rooms 4096]
+ * [--threads N]
+ */
+public final class RoomBenchmark {
+
+    private static final long PERIOD_NANOS = 1_000_000_000L / NetworkProtocol.TICK_RATE;
+    private static final double MAX_OVERRUN_RATIO = 0.01;
+
+    private RoomBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int seconds = 5;
+        int maxRooms = 4096;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i]) {
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-rooms":
+                    maxRooms = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+            }
+        }
+
+        System.out.println("[BENCH] " + threads + " thread(s) de tick, " + NetworkProtocol.TICK_RATE
+                + " Hz, " + seconds + " s par palier");
+        System.out.println(String.format("%8s %10s %10s %10s %10s", "salles", "ticks", "p50 (us)", "p99 (us)", "dépass."));
+
+        int best = 0;
+        try (DatagramSocket udpSocket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+                DatagramSocket sink = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            InetSocketAddress sinkAddress = (InetSocketAddress) sink.getLocalSocketAddress();
+            warmUp(udpSocket, sinkAddress);
+
+            for (int rooms = 1; rooms <= maxRooms; rooms *= 2) {
+                double overrun = runLevel(rooms, threads, seconds, udpSocket, sinkAddress);
+                if (overrun >= MAX_OVERRUN_RATIO) {
+                    break;
+                }
+                best = rooms;
+            }
+        }
+
+        System.out.println("[BENCH] Plafond du tick (envois compris, sans réception ni clients) : " + best
+                + " salle(s) de " + NetworkProtocol.MAX_PLAYERS + " joueurs à " + NetworkProtocol.TICK_RATE + " Hz");
+    }
+
+    /**
+     * Chauffe le JIT hors mesure pour que le premier palier ne soit pas
+     * pénalisé par la compilation
+     */
+    private static void warmUp(DatagramSocket udpSocket, InetSocketAddress sink) {
+        Room room = new Room(-1);
+        for (int p = 0; p < NetworkProtocol.MAX_PLAYERS; p++) {
+            room.addPlayer(p, "Bot " + p);
+        }
+        SocketTransport[] transports = openTransports(udpSocket, sink);
+        Random random = new Random(0);
+        room.startMatch(0);
+        for (int i = 0; i < 20_000; i++) {
+            if (random.nextInt(30) == 0) {
+                room.switchGravity(random.nextInt(NetworkProtocol.MAX_PLAYERS));
+            }
+            tickAndSend(room, transports);
+            if (room.isMatchOver()) {
+                room.startMatch(random.nextLong());
+            }
+        }
+    }
+
+    /**
+     * Transports des joueurs d'une salle, comme ceux du serveur : socket UDP
+     * partagé, datagrammes vers le puits, messages TCP encodés puis jetés
+     */
+    private static SocketTransport[] openTransports(DatagramSocket udpSocket, InetSocketAddress sink) {
+        SocketTransport[] transports = new SocketTransport[NetworkProtocol.MAX_PLAYERS];
+        for (int p = 0; p < transports.length; p++) {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(OutputStream.nullOutputStream(),
+                    StandardCharsets.UTF_8), true);
+            transports[p] = new SocketTransport(new Socket(), null, writer, udpSocket, false, "Bench");
+            transports[p].setDatagramPeer(sink.getAddress(), sink.getPort());
+        }
+        return transports;
+    }
+
+    /**
+     * Un tick de salle avec ses envois (voir GameServer.tickRoom)
+     */
+    private static void tickAndSend(Room room, SocketTransport[] transports) {
+        byte[] snapshot = room.tick();
+        if (snapshot == null) {
+            return;
+        }
+        for (SocketTransport transport : transports) {
+            transport.sendDatagram(snapshot, snapshot.length);
+        }
+        String spawn = room.takeSpawns();
+        if (spawn != null) {
+            for (SocketTransport transport : transports) {
+                transport.sendMessage(spawn);
+            }
+        }
+    }
+
+    /**
+     * Fait tourner un palier et affiche ses mesures
+     *
+     * @return la proportion de ticks en dépassement
+     */
+    private static double runLevel(int roomCount, int threads, int seconds, DatagramSocket udpSocket,
+            InetSocketAddress sink) throws InterruptedException {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(threads,
+                r -> new Thread(r, "Bench-Tick-" + threadIndex.incrementAndGet()));
+
+        long expectedTicks = (long) roomCount * NetworkProtocol.TICK_RATE * seconds;
+        long[] durations = new long[(int) Math.min(expectedTicks * 2, 50_000_000L)];
+        AtomicInteger sampleCount = new AtomicInteger();
+        AtomicInteger overruns = new AtomicInteger();
+
+        for (int r = 0; r < roomCount; r++) {
+            Room room = new Room(r);
+            for (int p = 0; p < NetworkProtocol.MAX_PLAYERS; p++) {
+                room.addPlayer(r * NetworkProtocol.MAX_PLAYERS + p, "Bot " + p);
+            }
+            room.startMatch(r);
+            SocketTransport[] transports = openTransports(udpSocket, sink);
+
+            // Étaler les salles sur la période, comme des créations successives
+            long initialDelay = 10_000_000L + (PERIOD_NANOS * r) / roomCount;
+            long[] previousStart = {0};
+            Random random = new Random(r);
+            pool.scheduleAtFixedRate(() -> {
+                long start = System.nanoTime();
+                long interval = previousStart[0] == 0 ? PERIOD_NANOS : start - previousStart[0];
+                previousStart[0] = start;
+
+                for (int id : room.getPlayerIds()) {
+                    if (random.nextInt(30) == 0) {
+                        room.switchGravity(id);
+                    }
+                }
+                tickAndSend(room, transports);
+                if (room.isMatchOver()) {
+                    room.startMatch(random.nextLong());
+                }
+
+                long duration = System.nanoTime() - start;
+                int index = sampleCount.getAndIncrement();
+                if (index < durations.length) {
+                    durations[index] = duration;
+                }
+                if (duration > PERIOD_NANOS || interval > 2 * PERIOD_NANOS) {
+                    overruns.incrementAndGet();
+                }
+            }, initialDelay, PERIOD_NANOS, TimeUnit.NANOSECONDS);
+        }
+
+        Thread.sleep(seconds * 1000L);
+        pool.shutdownNow();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+
+        int samples = Math.min(sampleCount.get(), durations.length);
+        Arrays.sort(durations, 0, samples);
+        double ratio = samples == 0 ? 1.0 : (double) overruns.get() / sampleCount.get();
+        // Un pool saturé exécute moins de ticks que prévu : ils comptent comme dépassés
+        if (sampleCount.get() < expectedTicks * 0.95) {
+            ratio = Math.max(ratio, 1.0 - (double) sampleCount.get() / expectedTicks);
+        }
+
+        System.out.println(String.format("%8d %10d %10.1f %10.1f %9.2f%%", roomCount, sampleCount.get(),
+                percentile(durations, samples, 0.50) / 1000.0,
+                percentile(durations, samples, 0.99) / 1000.0,
+                ratio * 100));
+        return ratio;
+    }
+
+    private static long percentile(long[] sorted, int count, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        return sorted[Math.min(count - 1, (int) (count * p))];
+    }
+}
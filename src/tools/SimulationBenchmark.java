@@ -0,0 +1,107 @@
+package tools;
+
+import core.sim.Simulation;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Banc d'essai de la simulation seule (core.sim.Simulation), sans réseau ni
+ * rendu : une partie de N joueurs avancée pas à pas aussi vite que possible,
+ * avec des inputs aléatoires tirés d'avance (le tirage n'est pas mesuré).
+ * Une partie terminée est aussitôt relancée sur une autre graine.
+ *
+ * Affiche pour chaque tour les pas par seconde, le coût d'un pas et les
+ * octets alloués par pas (moins d'un octet : seuls les dangers qui
+ * apparaissent et les reset entre deux parties allouent).
+ *
+ * Usage: java -cp bin tools.SimulationBenchmark [--players 4] [--seconds 2]
+ * [--rounds 5] [--switch-rate 0.5] [--seed 1]
+ */
+public final class SimulationBenchmark {
+
+    private static final int INPUT_TABLE = 1 << 16;  // Inputs tirés d'avance (puissance de deux)
+    private static final int BATCH = 100_000;        // Pas entre deux lectures de l'horloge
+
+    private SimulationBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int players = 4;
+        int seconds = 2;
+        int rounds = 5;
+        double switchRate = 0.5;
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i]) {
+                case "--players":
+                    players = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "--switch-rate":
+                    switchRate = Double.parseDouble(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+            }
+        }
+
+        // Inversions de gravité : switchRate par joueur et par seconde de jeu (60 pas)
+        Random random = new Random(seed);
+        long[] inputs = new long[INPUT_TABLE];
+        for (int t = 0; t < INPUT_TABLE; t++) {
+            for (int p = 0; p < players; p++) {
+                if (random.nextDouble() < switchRate / 60) {
+                    inputs[t] |= 1L << p;
+                }
+            }
+        }
+
+        Simulation sim = new Simulation();
+        for (int id = 1; id <= players; id++) {
+            sim.addPlayer(id);
+        }
+        sim.reset(seed);
+
+        System.out.println("[BENCH] Simulation de " + players + " joueurs, " + seconds + " s par tour");
+        System.out.println(String.format("%5s %12s %10s %10s %10s %12s", "tour", "pas/s", "ns/pas",
+                "octets/pas", "parties", "pas/partie"));
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long matchSeed = seed;
+        int t = 0;
+        for (int round = 1; round <= rounds; round++) {
+            long steps = 0;
+            long matches = 0;
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            long bytesBefore = threads.getThreadAllocatedBytes(thread);
+            long begin = System.nanoTime();
+            long end;
+            do {
+                for (int i = 0; i < BATCH; i++) {
+                    sim.step(inputs[t]);
+                    t = (t + 1) & (INPUT_TABLE - 1);
+                    if (sim.isFinished()) {
+                        sim.reset(++matchSeed);
+                        matches++;
+                    }
+                }
+                steps += BATCH;
+                end = System.nanoTime();
+            } while (end < deadline);
+            long allocated = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+
+            double nanos = (double) (end - begin) / steps;
+            System.out.println(String.format("%5d %12.0f %10.1f %10.2f %10d %12.0f", round, 1e9 / nanos, nanos,
+                    (double) allocated / steps, matches, matches == 0 ? (double) steps : (double) steps / matches));
+        }
+        // Empreinte finale : deux exécutions avec les mêmes options jouent les mêmes parties
+        System.out.println("[BENCH] Tick " + sim.getTick() + ", monde " + Long.toHexString(sim.getWorldHash()));
+    }
+}
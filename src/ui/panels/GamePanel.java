@@ -2,34 +2,59 @@ package ui.panels;
 
 import core.GameConfig;
 import core.GameEngine;
+import core.GameLoop;
 import core.GameState;
+import core.WindowedHistogram;
 import core.PlayerConfig;
-import factory.*;
+import core.sim.SimHole;
+import core.sim.SimObstacle;
+import core.sim.SimPlayer;
+import core.sim.Simulation;
 import factory.entity.*;
 import graphics.*;
 import input.InputHandler;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import javax.swing.*;
 import ui.components.ChatPanel;
 import ui.components.NeonButton;
 
 /**
  * Panel principal du jeu (support multijoueur local et réseau)
+ *
+ * Le panel ne contient aucune règle du jeu : en solo et en local, il fait
+ * avancer une core.sim.Simulation avec les inputs des joueurs ; en réseau, il
+ * affiche celle du serveur ; en pair à pair, celle de la RollbackSession du
+ * joueur local. Dans tous les cas, l'état de la simulation est
+ * recopié dans des entités affichables (factory.entity), qui en tirent leurs
+ * effets visuels.
+ *
+ * Animé par une GameLoop : la partie avance de GameConfig.TICK_RATE pas par
+ * seconde, et chaque image est dessinée à la fréquence de l'écran, les
+ * joueurs, trous et obstacles étant interpolés entre les deux derniers pas.
  */
-public class GamePanel extends JPanel implements ActionListener, InputHandler.InputCallback {
+public class GamePanel extends JPanel implements GameLoop.Game, InputHandler.InputCallback {
 
     private GameEngine engine;
-    private Timer gameTimer;
+    private GameLoop gameLoop;
     private InputHandler inputHandler;
 
     // Mode de jeu
     private GameConfig.GameMode gameMode = GameConfig.GameMode.SOLO;
 
-    // Entités multijoueur
+    // Simulation de la partie (solo et local) et inputs du prochain pas
+    private Simulation simulation;
+    private long pendingSwitches;
+    private final Random seedRandom = new Random();
+
+    // Partie pair à pair (Main --p2p) : la session simule, le panel affiche
+    private network.PeerMatch peerMatch;
+    private boolean peerSwitch;
+
+    // Entités affichées
     private List<Player> players;
     private Player player;  // Pour compatibilité rétroactive (premier joueur)
     private List<Hole> holes;
@@ -43,21 +68,31 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
     private boolean isPaused;
     private boolean isGameOver;
     private boolean isVictory;
-    private int frameCount;
-    private int obstacleFrameCount;
 
     // Ligne d'arrivée
-    private static final int SCORE_TO_WIN = 5; // Score nécessaire pour déclencher la ligne d'arrivée
     private double finishLineX; // Position de la ligne d'arrivée
+    private double previousFinishLineX; // Avant le dernier pas (interpolation du rendu)
     private boolean finishLineActive; // Si la ligne d'arrivée est apparue
     private float victoryAlpha; // Animation de victoire
     private float victoryScale;
 
+    // Interpolation de l'image en cours (GameLoop.Game.render)
+    private double renderInterpolation = 1;
+
+    // Statistiques de la boucle et du réseau (F3), recalculées quelques fois par seconde
+    private static final long STATS_REFRESH_MS = 250;
+    private boolean statsVisible;
+    private String[] statsLines = new String[0];
+    private long statsUpdatedAt;
+
     // UI en jeu
     private ChatPanel chatPanel;
     private boolean chatVisible;
     private List<NeonButton> pauseButtons;
     private List<NeonButton> gameOverButtons;
+    // Pair à pair : ni recommencer ni lobby, une partie ne se relance pas seule
+    private List<NeonButton> peerPauseButtons;
+    private List<NeonButton> peerGameOverButtons;
 
     // Animation Game Over
     private float gameOverAlpha;
@@ -83,9 +118,8 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         initUI();
         setupInput();
 
-        // Timer de jeu avec priorité haute
-        gameTimer = new Timer(GameConfig.FRAME_TIME, this);
-        gameTimer.setCoalesce(true); // Fusionner les événements en retard
+        // Boucle de jeu à pas fixe (thread dédié, pas et rendu sur l'EDT)
+        gameLoop = new GameLoop(GameConfig.TICK_RATE, this);
     }
 
     private void initGame() {
@@ -94,8 +128,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         players.add(player);
         holes = new ArrayList<>();
         obstacles = new ArrayList<>();
-        frameCount = 0;
-        obstacleFrameCount = 0;
+        startSimulation();
         isPaused = false;
         isGameOver = false;
         gameOverAlpha = 0;
@@ -128,6 +161,11 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         restartBtn.setOnClick(() -> {
             resetGame();
             resumeGame();
+            // En mode réseau, la partie est simulée par le serveur : l'hôte la relance
+            if (gameMode == GameConfig.GameMode.NETWORK && network.NetworkManager.getInstance().isHost()) {
+                network.NetworkManager.getInstance().returnToLobby();
+                network.NetworkManager.getInstance().startGame();
+            }
         });
 
         NeonButton menuBtn = new NeonButton("MENU PRINCIPAL", centerX, startY + 140, buttonWidth, buttonHeight, GameConfig.NEON_PINK);
@@ -180,20 +218,38 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         gameOverButtons.add(retryBtn);
         gameOverButtons.add(goMenuBtn);
 
+        NeonButton peerResumeBtn = new NeonButton("REPRENDRE", centerX, startY, buttonWidth, buttonHeight, GameConfig.NEON_CYAN);
+        peerResumeBtn.setOnClick(this::resumeGame);
+        NeonButton peerMenuBtn = new NeonButton("QUITTER LA PARTIE", centerX, startY + 70, buttonWidth, buttonHeight, GameConfig.NEON_PINK);
+        peerMenuBtn.setOnClick(() -> engine.setState(GameState.MENU));
+        peerPauseButtons = List.of(peerResumeBtn, peerMenuBtn);
+
+        NeonButton peerEndBtn = new NeonButton("MENU PRINCIPAL", centerX, startY + 80, buttonWidth, buttonHeight, GameConfig.NEON_PINK);
+        peerEndBtn.setOnClick(() -> engine.setState(GameState.MENU));
+        peerGameOverButtons = List.of(peerEndBtn);
+
         setupButtonListeners();
     }
 
+    private List<NeonButton> pauseButtons() {
+        return peerMatch != null ? peerPauseButtons : pauseButtons;
+    }
+
+    private List<NeonButton> gameOverButtons() {
+        return peerMatch != null ? peerGameOverButtons : gameOverButtons;
+    }
+
     private void setupButtonListeners() {
         addMouseMotionListener(new MouseMotionAdapter() {
             @Override
             public void mouseMoved(MouseEvent e) {
                 if (isPaused) {
-                    for (NeonButton btn : pauseButtons) {
+                    for (NeonButton btn : pauseButtons()) {
                         btn.setHovered(btn.contains(e.getX(), e.getY()));
                     }
                 }
                 if (isGameOver || isVictory) {
-                    for (NeonButton btn : gameOverButtons) {
+                    for (NeonButton btn : gameOverButtons()) {
                         btn.setHovered(btn.contains(e.getX(), e.getY()));
                     }
                 }
@@ -207,12 +263,12 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
                 if (!isPaused && !isGameOver && !isVictory && e.getButton() == MouseEvent.BUTTON1) {
                     // Vérifier qu'on ne clique pas sur un bouton
                     boolean onButton = false;
-                    for (NeonButton btn : pauseButtons) {
+                    for (NeonButton btn : pauseButtons()) {
                         if (btn.contains(e.getX(), e.getY())) {
                             onButton = true;
                         }
                     }
-                    for (NeonButton btn : gameOverButtons) {
+                    for (NeonButton btn : gameOverButtons()) {
                         if (btn.contains(e.getX(), e.getY())) {
                             onButton = true;
                         }
@@ -226,14 +282,14 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
                 }
 
                 if (isPaused) {
-                    for (NeonButton btn : pauseButtons) {
+                    for (NeonButton btn : pauseButtons()) {
                         if (btn.contains(e.getX(), e.getY())) {
                             btn.setPressed(true);
                         }
                     }
                 }
                 if (isGameOver || isVictory) {
-                    for (NeonButton btn : gameOverButtons) {
+                    for (NeonButton btn : gameOverButtons()) {
                         if (btn.contains(e.getX(), e.getY())) {
                             btn.setPressed(true);
                         }
@@ -244,7 +300,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
             @Override
             public void mouseReleased(MouseEvent e) {
                 if (isPaused) {
-                    for (NeonButton btn : pauseButtons) {
+                    for (NeonButton btn : pauseButtons()) {
                         if (btn.isHovered()) {
                             btn.click();
                         }
@@ -252,7 +308,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
                     }
                 }
                 if (isGameOver || isVictory) {
-                    for (NeonButton btn : gameOverButtons) {
+                    for (NeonButton btn : gameOverButtons()) {
                         if (btn.isHovered()) {
                             btn.click();
                         }
@@ -277,10 +333,28 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
     public void startGame() {
         isPaused = false;
         isGameOver = false;
-        gameTimer.start();
+        gameLoop.start(displayRefreshRate());
         requestFocusInWindow();
     }
 
+    public void stopGame() {
+        gameLoop.stop();
+    }
+
+    /**
+     * Fréquence de l'écran qui affiche le panel, TARGET_FPS si inconnue
+     */
+    private int displayRefreshRate() {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config != null) {
+            int rate = config.getDevice().getDisplayMode().getRefreshRate();
+            if (rate != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                return rate;
+            }
+        }
+        return GameConfig.TARGET_FPS;
+    }
+
     public void pauseGame() {
         isPaused = true;
     }
@@ -300,21 +374,15 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         // Créer les joueurs à partir des configurations
         players.clear();
 
-        int startX = GameConfig.PLAYER_START_X;
-        int yOffset = 0;
-
         for (PlayerConfig config : configs) {
-            Player p = new Player(config.getPlayerId(), config.getPlayerName(), config.getPlayerColor());
-            // Décaler légèrement chaque joueur pour qu'ils ne se superposent pas au départ
-            p.setY(GameConfig.GROUND_Y - GameConfig.PLAYER_HEIGHT - yOffset);
-            players.add(p);
-            yOffset += 5; // Petit décalage vertical
+            players.add(new Player(config.getPlayerId(), config.getPlayerName(), config.getPlayerColor()));
         }
 
         // Le premier joueur est le joueur "principal" pour la compatibilité
         if (!players.isEmpty()) {
             player = players.get(0);
         }
+        startSimulation();
 
         // En mode réseau client, s'assurer qu'on a au moins la config du joueur local pour l'input
         if (gameMode == GameConfig.GameMode.NETWORK && players.size() > 0 && configs.isEmpty()) {
@@ -331,14 +399,17 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
      * Charge les joueurs depuis le NetworkManager en mode réseau
      */
     public void loadNetworkPlayers() {
+        // Nouvelle manche : effacer l'écran de victoire ou de game over précédent
+        resetGame();
+
         network.NetworkManager networkManager = network.NetworkManager.getInstance();
-        List<entity.Player> networkPlayers = networkManager.getNetworkPlayers();
+        List<core.sim.SimPlayer> networkPlayers = networkManager.getNetworkPlayers();
 
         if (!networkPlayers.isEmpty()) {
             players.clear();
-            // Convertir les joueurs du réseau (entity.Player) en factory.entity.Player
-            for (entity.Player p : networkPlayers) {
-                factory.entity.Player factoryPlayer = new factory.entity.Player(p.getPlayerId(), p.getPlayerName(), p.getPlayerColor());
+            // Créer les joueurs affichables (factory.entity.Player) à partir de l'état de simulation
+            for (core.sim.SimPlayer p : networkPlayers) {
+                factory.entity.Player factoryPlayer = createNetworkPlayer(networkManager, p.getPlayerId());
                 // Copier la position et l'état
                 factoryPlayer.setX(p.getX());
                 factoryPlayer.setY(p.getY());
@@ -350,38 +421,171 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
     }
 
     /**
-     * Synchronise entièrement l'état local avec l'état réseau (client).
+     * Partie pair à pair : un joueur affiché par pair, le joueur local
+     * aux commandes de local (touches du joueur 1 ou clic)
+     */
+    public void startPeerMatch(network.PeerMatch match, PlayerConfig local) {
+        endPeerMatch();
+        peerMatch = match;
+        peerSwitch = false;
+        players.clear();
+        for (int id : match.getPlayerIds()) {
+            players.add(id == local.getPlayerId() ? new Player(id, local.getPlayerName(), local.getPlayerColor())
+                    : new Player(id, "Joueur " + id, PlayerConfig.PLAYER_COLORS[(id - 1) % PlayerConfig.PLAYER_COLORS.length]));
+        }
+        inputHandler.setPlayerConfigs(List.of(local));
+        resetGame();
+    }
+
+    /**
+     * Quitte la partie pair à pair en cours (sans effet s'il n'y en a pas)
+     */
+    public void endPeerMatch() {
+        if (peerMatch != null) {
+            peerMatch.close();
+            peerMatch = null;
+        }
+    }
+
+    private factory.entity.Player createNetworkPlayer(network.NetworkManager networkManager, int playerId) {
+        return new factory.entity.Player(playerId,
+                networkManager.getNetworkPlayerName(playerId),
+                networkManager.getNetworkPlayerColor(playerId));
+    }
+
+    /**
+     * Nouvelle partie locale (solo, local) : une simulation avec les joueurs
+     * affichés, sur une graine tirée au hasard
+     */
+    private void startSimulation() {
+        simulation = new Simulation();
+        for (Player p : players) {
+            simulation.addPlayer(p.getPlayerId());
+        }
+        simulation.reset(seedRandom.nextLong());
+        pendingSwitches = 0;
+    }
+
+    /**
+     * Affiche l'état de la simulation du serveur (client réseau)
      */
     private void syncNetworkState(network.NetworkManager networkManager) {
-        List<entity.Player> netPlayers = networkManager.getNetworkPlayers();
-        if (!netPlayers.isEmpty()) {
-            players.clear();
-            for (entity.Player p : netPlayers) {
-                factory.entity.Player fp = new factory.entity.Player(p.getPlayerId(), p.getPlayerName(), p.getPlayerColor());
-                fp.setX(p.getX());
-                fp.setY(p.getY());
-                fp.setVelocityY(p.getVelocityY());
-                fp.setGravity(factory.entity.Gravity.valueOf(p.getGravity().name()));
-                if (!p.isAlive()) {
-                    fp.die();
+        applySimulationState(networkManager.getNetworkPlayers(), networkManager.getNetworkHoles(),
+                networkManager.getNetworkObstacles(), networkManager.getNetworkFinishLineX(),
+                networkManager.getNetworkWinnerId(), true);
+    }
+
+    /**
+     * Recopie un état de simulation dans les entités affichées. Les joueurs,
+     * trous et obstacles gardent leur entité d'un pas à l'autre : les effets
+     * visuels (traînée, particules) sont dérivés des changements d'état, et
+     * le rendu interpole leurs déplacements.
+     *
+     * @param finishLine abscisse de la ligne d'arrivée, -1 tant qu'elle n'est
+     * pas apparue
+     * @param winnerId vainqueur, -1 si aucun
+     * @param decided false si l'état n'est qu'une prédiction (pair à pair) :
+     * la fin de partie n'est pas encore affichée
+     */
+    private void applySimulationState(List<SimPlayer> simPlayers, List<SimHole> simHoles,
+            List<SimObstacle> simObstacles, double finishLine, int winnerId, boolean decided) {
+        if (!simPlayers.isEmpty()) {
+            List<Player> synced = new ArrayList<>(simPlayers.size());
+            for (SimPlayer p : simPlayers) {
+                Player fp = null;
+                for (Player existing : players) {
+                    if (existing.getPlayerId() == p.getPlayerId()) {
+                        fp = existing;
+                        break;
+                    }
+                }
+                if (fp == null) {
+                    // Joueur distant pas encore affiché
+                    fp = createNetworkPlayer(network.NetworkManager.getInstance(), p.getPlayerId());
                 }
-                fp.setScore(p.getScore());
-                players.add(fp);
+                boolean wasAlive = fp.isAlive();
+                fp.applyState(p.getX(), p.getY(), p.getVelocityY(),
+                        factory.entity.Gravity.valueOf(p.getGravity().name()),
+                        p.isAlive(), p.getScore());
+                fp.updateEffects();
+                if (wasAlive && !fp.isAlive()) {
+                    onPlayerDeath(fp);
+                }
+                synced.add(fp);
             }
+            players.clear();
+            players.addAll(synced);
             player = players.get(0);
         }
 
-        List<entity.Hole> netHoles = networkManager.getNetworkHoles();
-        holes.clear();
-        for (entity.Hole h : netHoles) {
-            holes.add(new factory.entity.Hole(h.getX(), h.getWidth()));
+        // Ligne d'arrivée et fin de partie décidées par la simulation
+        boolean wasActive = finishLineActive;
+        finishLineActive = finishLine >= 0;
+        if (finishLineActive) {
+            previousFinishLineX = wasActive ? finishLineX : finishLine;
+            finishLineX = finishLine;
+        }
+        if (!decided) {
+            // Fin de partie prédite : un input en retard peut encore la changer
+        } else if (winnerId >= 0) {
+            for (Player p : players) {
+                if (p.getPlayerId() == winnerId) {
+                    winner = p;
+                    isVictory = true;
+                    victoryAlpha = 0;
+                    victoryScale = 0;
+                    break;
+                }
+            }
+        } else if (!simPlayers.isEmpty()) {
+            checkAllPlayersDead();
         }
 
-        List<entity.Obstacle> netObstacles = networkManager.getNetworkObstacles();
-        obstacles.clear();
-        for (entity.Obstacle o : netObstacles) {
-            obstacles.add(new factory.entity.Obstacle((int) o.getX(), (int) o.getY(), o.getWidth(), o.getHeight()));
+        syncHoles(simHoles);
+        syncObstacles(simObstacles);
+    }
+
+    /**
+     * Les trous de la simulation et les entités affichées sont dans l'ordre
+     * de leurs numéros : un danger déjà affiché garde son entité, les autres
+     * en reçoivent une (numéro -1, protocole réseau 5 ou moins : toujours)
+     */
+    private void syncHoles(List<SimHole> simHoles) {
+        List<Hole> synced = new ArrayList<>(simHoles.size());
+        int j = 0;
+        for (SimHole h : simHoles) {
+            while (j < holes.size() && holes.get(j).getId() < h.getId()) {
+                j++;
+            }
+            if (h.getId() >= 0 && j < holes.size() && holes.get(j).getId() == h.getId()) {
+                Hole view = holes.get(j++);
+                view.moveTo(h.getX());
+                synced.add(view);
+            } else {
+                synced.add(new Hole(h.getId(), h.getX(), h.getWidth()));
+            }
         }
+        holes.clear();
+        holes.addAll(synced);
+    }
+
+    private void syncObstacles(List<SimObstacle> simObstacles) {
+        List<Obstacle> synced = new ArrayList<>(simObstacles.size());
+        int j = 0;
+        for (SimObstacle o : simObstacles) {
+            while (j < obstacles.size() && obstacles.get(j).getId() < o.getId()) {
+                j++;
+            }
+            if (o.getId() >= 0 && j < obstacles.size() && obstacles.get(j).getId() == o.getId()) {
+                Obstacle view = obstacles.get(j++);
+                view.moveTo(o.getX());
+                synced.add(view);
+            } else {
+                synced.add(new Obstacle(o.getId(), o.getX(), o.getY(), o.getWidth(), o.getHeight()));
+            }
+        }
+        obstacles.clear();
+        obstacles.addAll(synced);
     }
 
     public void resetGame() {
@@ -392,14 +596,14 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
 
         holes.clear();
         obstacles.clear();
-        frameCount = 0;
-        obstacleFrameCount = 0;
+        startSimulation();
         isGameOver = false;
         isVictory = false;
         isPaused = false;
         gameOverAlpha = 0;
         gameOverScale = 0;
         finishLineX = GameConfig.WINDOW_WIDTH + 200;
+        previousFinishLineX = finishLineX;
         finishLineActive = false;
         victoryAlpha = 0;
         victoryScale = 0;
@@ -453,22 +657,22 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
             return;
         }
 
-        // Mode réseau : le client envoie l'input au serveur au lieu de simuler localement
+        // Pair à pair : joué par la session au prochain pas
+        if (peerMatch != null) {
+            peerSwitch = true;
+            return;
+        }
+
+        // Mode réseau : l'input est envoyé au serveur au lieu de simuler localement
         if (gameMode == GameConfig.GameMode.NETWORK) {
-            network.NetworkManager nm = network.NetworkManager.getInstance();
-            if (nm.isClient()) {
-                nm.sendGravitySwitch();
-                return;
-            }
-            // Hôte : on continue à appliquer localement (serveur diffusé ensuite)
+            network.NetworkManager.getInstance().sendGravitySwitch();
+            return;
         }
 
-        // Local/host: appliquer directement sur le joueur
-        for (Player p : players) {
-            if (p.getPlayerId() == playerId && p.isAlive()) {
-                p.switchGravity();
-                break;
-            }
+        // Local: appliqué par la simulation au prochain pas
+        int index = simulation.indexOf(playerId);
+        if (index >= 0) {
+            pendingSwitches |= 1L << index;
         }
     }
 
@@ -488,12 +692,24 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         // Non utilisé - le restart se fait via les boutons
     }
 
+    @Override
+    public void onStatsToggled() {
+        statsVisible = !statsVisible;
+        statsUpdatedAt = 0;
+    }
+
     // === BOUCLE DE JEU ===
     @Override
-    public void actionPerformed(ActionEvent e) {
-        if (!isPaused && !isGameOver && !isVictory) {
+    public void step() {
+        boolean playing = !isPaused && !isGameOver && !isVictory;
+        if (peerMatch != null) {
+            // Les autres pairs attendent nos inputs : la session avance aussi
+            // pendant la pause et renvoie nos inputs après la fin
+            stepPeerMatch(playing);
+        } else if (playing) {
             update();
-        } else if (isGameOver) {
+        }
+        if (isGameOver) {
             // Animation game over
             gameOverAlpha = Math.min(1.0f, gameOverAlpha + 0.03f);
             gameOverScale = Math.min(1.0f, gameOverScale + 0.05f);
@@ -505,267 +721,72 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
 
         // Mise à jour des boutons
         if (isPaused) {
-            for (NeonButton btn : pauseButtons) {
+            for (NeonButton btn : pauseButtons()) {
                 btn.update();
             }
         }
         if (isGameOver || isVictory) {
-            for (NeonButton btn : gameOverButtons) {
+            for (NeonButton btn : gameOverButtons()) {
                 btn.update();
             }
         }
+    }
 
-        repaint();
+    @Override
+    public void render(double interpolation) {
+        // Interpoler seulement pendant que la partie avance : à l'arrêt
+        // (pause, fin), le dernier pas est affiché tel quel
+        renderInterpolation = !isPaused && !isGameOver && !isVictory ? interpolation : 1;
+        if (isShowing()) {
+            paintImmediately(0, 0, getWidth(), getHeight());
+            Toolkit.getDefaultToolkit().sync();
+        }
     }
 
     private void update() {
-        // Mode réseau: les clients ne simulent pas, ils consomment l'état du serveur
+        // Mode réseau: on ne simule pas, on consomme l'état du serveur (l'hôte
+        // aussi, via son client local)
         if (gameMode == GameConfig.GameMode.NETWORK) {
-            network.NetworkManager nm = network.NetworkManager.getInstance();
-            // Client: récupérer l'état réseau et ne rien simuler localement
-            if (nm.isClient()) {
-                background.update();
-                platformRenderer.update();
-                syncNetworkState(nm);
-                // Toujours demander un repaint pour garder le framerate fluide
-                repaint();
-                return;
-            }
-            // Hôte: continue la simulation puis synchronise/broadcast l'état plus bas
+            background.update();
+            platformRenderer.update();
+            syncNetworkState(network.NetworkManager.getInstance());
+            return;
         }
 
         // Mise à jour du fond
         background.update();
         platformRenderer.update();
 
-        // Génération des trous
-        frameCount++;
-        if (frameCount % GameConfig.HOLE_SPAWN_INTERVAL == 0) {
-            holes.add(HoleFactory.generate(GameConfig.WINDOW_WIDTH));
-        }
-
-        // Génération des obstacles
-        obstacleFrameCount++;
-        if (obstacleFrameCount % GameConfig.OBSTACLE_SPAWN_INTERVAL == 0) {
-            Obstacle newObs = ObstacleFactory.generate(GameConfig.WINDOW_WIDTH);
-
-            // Vérifier la distance avec les trous
-            boolean tooClose = false;
-            for (Hole h : holes) {
-                if (Math.abs(newObs.getX() - h.getX()) < GameConfig.MIN_SPAWN_DISTANCE) {
-                    tooClose = true;
-                    break;
-                }
-            }
-
-            if (!tooClose) {
-                obstacles.add(newObs);
-            }
-        }
-
-        // Mise à jour de tous les joueurs
-        for (Player p : players) {
-            p.update();
-
-            // Vérifier si le joueur est poussé hors de l'écran (à gauche)
-            if (p.isAlive() && p.getX() + p.getWidth() < 0) {
-                p.die();
-                onPlayerDeath(p);
-                checkAllPlayersDead();
-            }
-        }
-
-        // Mise à jour des trous
-        Iterator<Hole> holeIt = holes.iterator();
-        while (holeIt.hasNext()) {
-            Hole h = holeIt.next();
-            h.update();
-            if (h.isOffScreen()) {
-                holeIt.remove();
-                // Ajouter le score à tous les joueurs vivants
-                for (Player p : players) {
-                    if (p.isAlive()) {
-                        p.addScore(1);
-                    }
-                }
-            }
-        }
-
-        // Mise à jour des obstacles
-        Iterator<Obstacle> obsIt = obstacles.iterator();
-        while (obsIt.hasNext()) {
-            Obstacle o = obsIt.next();
-            o.update();
-            if (o.isOffScreen()) {
-                obsIt.remove();
-            }
-        }
-
-        // Collision avec obstacles
-        checkObstacleCollisions();
-
-        // Collision avec sol/plafond/trous
-        checkPlatformCollisions();
-
-        // Gestion de la ligne d'arrivée
-        updateFinishLine();
-
-        // Si on est l'hôte réseau, diffuser l'état simulé à chaque tick
-        if (gameMode == GameConfig.GameMode.NETWORK) {
-            network.NetworkManager.getInstance().syncHostState(players, holes, obstacles);
-        }
+        // Un pas de simulation avec les inputs reçus depuis le précédent
+        simulation.step(pendingSwitches);
+        pendingSwitches = 0;
+        applySimulationState(simulation.getPlayers(), simulation.getHoles(), simulation.getObstacles(),
+                simulation.isFinishLineActive() ? simulation.getFinishLineX() : -1, simulation.getWinnerId(), true);
     }
 
-    private void updateFinishLine() {
-        // Activer la ligne d'arrivée quand un joueur atteint le score requis
-        int maxScore = 0;
-        for (Player p : players) {
-            if (p.getScore() > maxScore) {
-                maxScore = p.getScore();
-            }
-        }
-
-        if (!finishLineActive && maxScore >= SCORE_TO_WIN) {
-            finishLineActive = true;
-            finishLineX = GameConfig.WINDOW_WIDTH + 100;
-        }
-
-        // Faire défiler la ligne d'arrivée vers le joueur
-        if (finishLineActive) {
-            finishLineX -= GameConfig.GAME_SPEED;
-
-            // Vérifier si un joueur a atteint la ligne d'arrivée
-            for (Player p : players) {
-                if (p.isAlive() && p.getX() + p.getWidth() >= finishLineX - 10) {
-                    winner = p; // Enregistrer le vainqueur
-                    isVictory = true;
-                    victoryAlpha = 0;
-                    victoryScale = 0;
-                    break;
-                }
-            }
+    /**
+     * Un pas de la partie pair à pair : la session joue notre input, corrige
+     * ses prédictions (rollback) et le panel affiche l'état obtenu. La fin de
+     * partie n'est affichée qu'une fois les inputs de tous les pairs connus
+     * jusqu'au tick qui l'a décidée.
+     */
+    private void stepPeerMatch(boolean playing) {
+        network.RollbackSession session = peerMatch.getSession();
+        if (isGameOver || isVictory) {
+            session.synchronize();
+            return;
         }
-    }
-
-    private void checkObstacleCollisions() {
-        for (Player p : players) {
-            if (!p.isAlive()) {
-                continue;
-            }
-
-            Rectangle playerBounds = p.getBounds();
-
-            for (Obstacle obs : obstacles) {
-                Rectangle obsBounds = obs.getBounds();
-
-                if (playerBounds.intersects(obsBounds)) {
-                    // Toute collision avec un obstacle est mortelle
-                    // Cela évite le bug où le joueur reste piégé sur un obstacle
-                    p.die();
-                    onPlayerDeath(p);
-                    checkAllPlayersDead();
-                    break;
-                }
-            }
+        if (playing) {
+            background.update();
+            platformRenderer.update();
         }
-    }
-
-    private void checkPlatformCollisions() {
-        for (Player p : players) {
-            // Vérifier si le joueur est hors de l'écran (Y trop haut ou trop bas) - fonctionne même si mort
-            if (p.isFalling()) {
-                // Gravité vers le bas: mort si trop bas
-                if (p.getGravity() == Gravity.DOWN && p.getY() > GameConfig.WINDOW_HEIGHT) {
-                    if (p.isAlive()) {
-                        p.die();
-                        onPlayerDeath(p);
-                        checkAllPlayersDead();
-                    }
-                } // Gravité vers le haut: mort si trop haut
-                else if (p.getGravity() == Gravity.UP && p.getY() + p.getHeight() < 0) {
-                    if (p.isAlive()) {
-                        p.die();
-                        onPlayerDeath(p);
-                        checkAllPlayersDead();
-                    }
-                }
-            }
-
-            if (!p.isAlive()) {
-                continue;
-            }
-
-            // Vérifier si au-dessus d'un trou avec une marge de tolérance
-            // On utilise les bords du joueur pour détecter si une partie significative est au-dessus du trou
-            boolean overHole = false;
-            double playerLeft = p.getX() + 10; // Marge intérieure pour plus de tolérance
-            double playerRight = p.getX() + p.getWidth() - 10;
-            double playerCenterX = p.getX() + p.getWidth() / 2.0;
-
-            for (Hole h : holes) {
-                double holeLeft = h.getX();
-                double holeRight = h.getX() + h.getWidth();
+        session.advance(peerSwitch);
+        peerSwitch = false;
 
-                // Le joueur est au-dessus du trou si son centre OU une partie significative est dans le trou
-                boolean centerOverHole = playerCenterX > holeLeft && playerCenterX < holeRight;
-                boolean significantOverlap = playerLeft < holeRight && playerRight > holeLeft
-                        && Math.min(playerRight, holeRight) - Math.max(playerLeft, holeLeft) > p.getWidth() * 0.4;
-
-                if (centerOverHole || significantOverlap) {
-                    overHole = true;
-                    break;
-                }
-            }
-
-            if (p.getGravity() == Gravity.DOWN) {
-                if (p.getY() + p.getHeight() >= GameConfig.GROUND_Y) {
-                    if (overHole) {
-                        p.setFalling(true);
-                        p.setGrounded(false);
-                        // Le joueur tombe dans le trou - animation continue jusqu'à sortie de l'écran
-                    } else {
-                        // Pas au-dessus d'un trou
-                        if (!p.isFalling()) {
-                            p.setY(GameConfig.GROUND_Y - p.getHeight());
-                            p.setGrounded(true);
-                            p.setFalling(false);
-                        } else {
-                            // On était en train de tomber dans un trou mais on en est sorti -> mort
-                            p.die();
-                            onPlayerDeath(p);
-                            checkAllPlayersDead();
-                        }
-                    }
-                } else {
-                    // En l'air mais pas encore au niveau du sol
-                    p.setGrounded(false);
-                }
-            } else {
-                // Gravité inversée (vers le haut)
-                if (p.getY() <= GameConfig.CEILING_Y) {
-                    if (overHole) {
-                        p.setFalling(true);
-                        p.setGrounded(false);
-                        // Le joueur tombe dans le trou - animation continue jusqu'à sortie de l'écran
-                    } else {
-                        // Pas au-dessus d'un trou
-                        if (!p.isFalling()) {
-                            p.setY(GameConfig.CEILING_Y);
-                            p.setGrounded(true);
-                            p.setFalling(false);
-                        } else {
-                            // On était en train de tomber dans un trou mais on en est sorti -> mort
-                            p.die();
-                            onPlayerDeath(p);
-                            checkAllPlayersDead();
-                        }
-                    }
-                } else {
-                    // En l'air mais pas encore au niveau du plafond
-                    p.setGrounded(false);
-                }
-            }
-        }
+        Simulation sim = session.getSimulation();
+        boolean decided = sim.isFinished() && session.getConfirmedFrame() >= sim.getTick() - 1;
+        applySimulationState(sim.getPlayers(), sim.getHoles(), sim.getObstacles(),
+                sim.isFinishLineActive() ? sim.getFinishLineX() : -1, sim.getWinnerId(), decided);
     }
 
     private void checkAllPlayersDead() {
@@ -798,15 +819,17 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         platformRenderer.renderCeiling(g2d);
 
         // Trous
+        double interpolation = renderInterpolation;
         for (Hole h : holes) {
             h.render(g2d, GameConfig.GROUND_Y, GameConfig.CEILING_Y, GameConfig.PLATFORM_HEIGHT);
-            platformRenderer.renderHoleEdges(g2d, h.getX(), h.getWidth(), true);
-            platformRenderer.renderHoleEdges(g2d, h.getX(), h.getWidth(), false);
+            double holeX = h.getRenderX(interpolation);
+            platformRenderer.renderHoleEdges(g2d, holeX, h.getWidth(), true);
+            platformRenderer.renderHoleEdges(g2d, holeX, h.getWidth(), false);
         }
 
         // Obstacles
         for (Obstacle obs : obstacles) {
-            obs.render(g2d);
+            obs.render(g2d, interpolation);
         }
 
         // Ligne d'arrivée
@@ -816,7 +839,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
 
         // Tous les joueurs
         for (Player p : players) {
-            p.render(g2d);
+            p.render(g2d, interpolation);
         }
 
         // UI en jeu
@@ -839,7 +862,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
     }
 
     private void renderFinishLine(Graphics2D g2d) {
-        int x = (int) finishLineX;
+        int x = (int) (previousFinishLineX + (finishLineX - previousFinishLineX) * renderInterpolation);
 
         // Lignes verticales à damier (style drapeau d'arrivée)
         int squareSize = 30;
@@ -884,10 +907,13 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         g2d.setFont(new Font("Arial", Font.BOLD, 20));
         int scoreY = 35;
 
-        // Décaler les scores si on affiche le ping
+        // Décaler les scores si on affiche le ping et les statistiques
         if (isNetworkMode()) {
             scoreY = 65;
         }
+        if (statsVisible) {
+            scoreY = renderStats(g2d, isNetworkMode() ? 55 : 10) + 30;
+        }
 
         for (Player p : players) {
             String scoreText = p.getPlayerName() + ": " + p.getScore();
@@ -922,9 +948,18 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
             // Afficher les contrôles par défaut
             instructions.append("CLIC GAUCHE ou ESPACE: Sauter  ");
         }
-        instructions.append("| ECHAP: Pause");
+        instructions.append("| ECHAP: Pause  | F3: Statistiques");
 
         g2d.drawString(instructions.toString(), 20, GameConfig.WINDOW_HEIGHT - 15);
+
+        // Pair à pair : la partie démarre quand tous les pairs sont lancés
+        if (peerMatch != null && peerMatch.getSession().getConfirmedFrame() < 0) {
+            String waiting = "En attente des autres joueurs...";
+            g2d.setFont(new Font("Arial", Font.BOLD, 28));
+            g2d.setColor(GameConfig.NEON_CYAN);
+            g2d.drawString(waiting, (GameConfig.WINDOW_WIDTH - g2d.getFontMetrics().stringWidth(waiting)) / 2,
+                    GameConfig.WINDOW_HEIGHT / 2);
+        }
     }
 
     /**
@@ -980,6 +1015,100 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         g2d.drawString("PING", 55, 22);
     }
 
+    /**
+     * Cadence de la boucle et, en réseau, statistiques de la connexion sous
+     * l'indicateur de ping (touche F3)
+     *
+     * @return ordonnée du bas du cadre
+     */
+    private int renderStats(Graphics2D g2d, int y) {
+        long now = System.currentTimeMillis();
+        if (now - statsUpdatedAt >= STATS_REFRESH_MS) {
+            statsUpdatedAt = now;
+            String[] loop = formatLoopStats(gameLoop);
+            if (peerMatch != null) {
+                String[] net = formatPeerStats(peerMatch.getSession());
+                statsLines = new String[loop.length + net.length];
+                System.arraycopy(loop, 0, statsLines, 0, loop.length);
+                System.arraycopy(net, 0, statsLines, loop.length, net.length);
+            } else if (isNetworkMode()) {
+                String[] net = formatNetworkStats(network.NetworkManager.getInstance().getConnectionStats());
+                statsLines = new String[loop.length + net.length];
+                System.arraycopy(loop, 0, statsLines, 0, loop.length);
+                System.arraycopy(net, 0, statsLines, loop.length, net.length);
+            } else {
+                statsLines = loop;
+            }
+        }
+
+        int lineHeight = 15;
+        int height = statsLines.length * lineHeight + 12;
+
+        // Fond semi-transparent
+        g2d.setColor(new Color(0, 0, 30, 180));
+        g2d.fillRoundRect(15, y, 300, height, 10, 10);
+
+        // Bordure
+        g2d.setColor(GameConfig.NEON_CYAN);
+        g2d.setStroke(new BasicStroke(1.5f));
+        g2d.drawRoundRect(15, y, 300, height, 10, 10);
+
+        g2d.setFont(new Font("Consolas", Font.PLAIN, 11));
+        g2d.setColor(new Color(200, 200, 200));
+        for (int i = 0; i < statsLines.length; i++) {
+            g2d.drawString(statsLines[i], 25, y + 17 + i * lineHeight);
+        }
+        return y + height;
+    }
+
+    private static String[] formatLoopStats(GameLoop loop) {
+        WindowedHistogram.Summary interval = loop.getFrameInterval();
+        WindowedHistogram.Summary work = loop.getFrameWork();
+        double fps = interval.count() == 0 ? 0 : 1_000_000.0 / interval.mean();
+        return new String[]{
+            String.format("Images %3.0f/s  écart p50 %s  p99 %s", fps,
+                    formatMillis(interval, interval.p50()), formatMillis(interval, interval.p99())),
+            String.format("Image  p50 %s  p99 %s", formatMillis(work, work.p50()), formatMillis(work, work.p99())),
+            String.format("Pas    rattrapés %d  abandonnés %d", loop.getCatchUpTicks(), loop.getDroppedTicks())
+        };
+    }
+
+    private static String[] formatPeerStats(network.RollbackSession session) {
+        long desync = session.getDesyncTick();
+        return new String[]{
+            String.format("Tick   %d  inputs connus jusqu'à %d", session.getFrame(), session.getConfirmedFrame()),
+            String.format("Rollbacks %d  resimulés %d  max %d", session.getRollbacks(),
+                    session.getResimulatedFrames(), session.getMaxRollbackFrames()),
+            String.format("Attentes %d  empreintes %d  %s", session.getStalls(), session.getHashChecks(),
+                    desync < 0 ? "synchro" : "DÉSYNC au tick " + desync)
+        };
+    }
+
+    private static String[] formatNetworkStats(network.ConnectionStats stats) {
+        if (stats == null) {
+            return new String[]{"Pas de connexion"};
+        }
+        WindowedHistogram.Summary rtt = stats.getRtt();
+        WindowedHistogram.Summary interval = stats.getArrivalInterval();
+        WindowedHistogram.Summary input = stats.getInputLatency();
+        return new String[]{
+            String.format("Reçu   %s/s  %3.0f pq/s", network.ConnectionStats.formatBytes(stats.getBytesInPerSecond()),
+                    stats.getPacketsInPerSecond()),
+            String.format("Envoyé %s/s  %3.0f pq/s", network.ConnectionStats.formatBytes(stats.getBytesOutPerSecond()),
+                    stats.getPacketsOutPerSecond()),
+            String.format("Pertes %.1f %%  retard %d  doublons %d", stats.getLossRate() * 100,
+                    stats.getLate(), stats.getDuplicates()),
+            String.format("RTT    p50 %s  p99 %s", formatMillis(rtt, rtt.p50()), formatMillis(rtt, rtt.p99())),
+            String.format("États  âge %d ms  écart p50 %s  p99 %s", Math.max(0, stats.getSnapshotAgeMillis()),
+                    formatMillis(interval, interval.p50()), formatMillis(interval, interval.p99())),
+            String.format("Input  p50 %s  p99 %s", formatMillis(input, input.p50()), formatMillis(input, input.p99()))
+        };
+    }
+
+    private static String formatMillis(WindowedHistogram.Summary summary, long micros) {
+        return summary.count() == 0 ? "-" : String.format("%.1f ms", micros / 1000.0);
+    }
+
     private void renderPauseOverlay(Graphics2D g2d) {
         // Fond semi-transparent
         g2d.setColor(new Color(0, 0, 20, 200));
@@ -1002,7 +1131,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
         g2d.drawString(pauseText, x, y);
 
         // Boutons
-        for (NeonButton btn : pauseButtons) {
+        for (NeonButton btn : pauseButtons()) {
             btn.render(g2d);
         }
     }
@@ -1051,7 +1180,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
 
         // Boutons (avec alpha)
         if (gameOverAlpha > 0.5f) {
-            for (NeonButton btn : gameOverButtons) {
+            for (NeonButton btn : gameOverButtons()) {
                 btn.render(g2d);
             }
         }
@@ -1122,7 +1251,7 @@ public class GamePanel extends JPanel implements ActionListener, InputHandler.In
 
         // Boutons (réutiliser les boutons de game over)
         if (victoryAlpha > 0.5f) {
-            for (NeonButton btn : gameOverButtons) {
+            for (NeonButton btn : gameOverButtons()) {
                 btn.render(g2d);
             }
         }
@@ -49,9 +49,12 @@ public class NetworkPanel extends JPanel {
     // Focus sur les champs
     private int focusedField = -1; // 0: Name, 1: MaxPlayers
 
-    // Liste des serveurs découverts
-    private List<LANDiscovery.ServerInfo> discoveredServers = new ArrayList<>();
+    // Liste des serveurs découverts (modifiée par les threads de découverte),
+    // triée périodiquement par qualité de liaison
+    private List<LANDiscovery.ServerInfo> discoveredServers = new java.util.concurrent.CopyOnWriteArrayList<>();
     private int selectedServerIndex = -1;
+    private long lastServerSort;
+    private static final long SERVER_SORT_INTERVAL = 500;
 
     // Liste des joueurs dans le lobby
     private List<NetworkManager.PlayerInfo> lobbyPlayers = new ArrayList<>();
@@ -188,7 +191,8 @@ public class NetworkPanel extends JPanel {
                 // Vérifier si le serveur existe déjà
                 boolean exists = false;
                 for (int i = 0; i < discoveredServers.size(); i++) {
-                    if (discoveredServers.get(i).address.equals(server.address)) {
+                    LANDiscovery.ServerInfo known = discoveredServers.get(i);
+                    if (known.address.equals(server.address) && known.tcpPort == server.tcpPort) {
                         discoveredServers.set(i, server);
                         exists = true;
                         break;
@@ -250,8 +254,7 @@ public class NetworkPanel extends JPanel {
         discoveredServers.clear();
         selectedServerIndex = -1;
         addStatusMessage("Actualisation...");
-        networkManager.stopServerSearch();
-        networkManager.startServerSearch();
+        networkManager.refreshServerSearch();
     }
 
     private void connectToServer() {
@@ -477,6 +480,30 @@ public class NetworkPanel extends JPanel {
         refreshButton.update();
         connectButton.update();
         readyButton.update();
+
+        if (currentMode == PanelMode.JOIN) {
+            sortServers();
+        }
+    }
+
+    /**
+     * Trie la liste par qualité (sondes de ServerProber) en gardant le
+     * serveur sélectionné, au plus toutes les SERVER_SORT_INTERVAL ms pour
+     * que la liste ne saute pas à chaque mesure
+     */
+    private void sortServers() {
+        long now = System.currentTimeMillis();
+        if (now - lastServerSort < SERVER_SORT_INTERVAL || discoveredServers.size() < 2) {
+            return;
+        }
+        lastServerSort = now;
+
+        LANDiscovery.ServerInfo selected = selectedServerIndex >= 0 && selectedServerIndex < discoveredServers.size()
+                ? discoveredServers.get(selectedServerIndex) : null;
+        discoveredServers.sort(LANDiscovery.ServerInfo.BY_QUALITY);
+        if (selected != null) {
+            selectedServerIndex = discoveredServers.indexOf(selected);
+        }
     }
 
     @Override
@@ -699,6 +726,12 @@ public class NetworkPanel extends JPanel {
                 g2d.setFont(new Font("Arial", Font.PLAIN, 12));
                 g2d.setColor(new Color(150, 150, 180));
                 String details = server.playerCount + "/" + server.maxPlayers + " joueurs • " + server.address;
+                if (server.rttMs >= 0) {
+                    details += " • " + Math.round(server.rttMs) + " ms";
+                    if (server.lossRate >= 0.01) {
+                        details += " (" + Math.round(server.lossRate * 100) + "% perte)";
+                    }
+                }
                 g2d.drawString(details, x + 15, itemY + 38);
 
                 // Indicateur de statut